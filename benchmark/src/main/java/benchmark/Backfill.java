@@ -0,0 +1,67 @@
+package benchmark;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidBackfillFactory;
+
+/**
+ * Backfills 1 billion rows with second-precision timestamps spread over one
+ * year, in batches.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Backfill {
+
+	private static final long ROWS = 1_000_000_000L;
+	private static final long START = Instant.parse("2021-01-01T00:00:00Z").toEpochMilli();
+	private static final int SECONDS = 365 * 24 * 3600;
+
+	@Param({ "10000000" })
+	private int batch;
+
+	private long[] millis;
+	private long[] tsids;
+	private TsidBackfillFactory factory;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		millis = new long[batch];
+		tsids = new long[batch];
+		factory = TsidBackfillFactory.builder().withNode(1).withCapacity(1L << 26).build();
+	}
+
+	@Benchmark
+	public long TsidBackfillFactory_createAt() {
+		final SplittableRandom random = new SplittableRandom(1);
+		long checksum = 0;
+		for (long done = 0; done < ROWS; done += batch) {
+			for (int i = 0; i < batch; i++) {
+				millis[i] = START + random.nextInt(SECONDS) * 1000L;
+			}
+			factory.createAt(millis, tsids);
+			checksum += tsids[0];
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,159 @@
+package benchmark;
+
+import java.util.Arrays;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidBitmap;
+import com.github.f4b6a3.tsid.collections.TsidSet;
+
+/**
+ * Reports the heap used and the time of an intersection and a union of two sets
+ * of TSIDs, as compressed bitmaps, hash sets and sorted arrays.
+ * <p>
+ * The sets overlap by half. The TSIDs are created at a fixed rate per
+ * millisecond by 1 or 64 nodes.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp benchmarks.jar benchmark.BitmapReport [count]}
+ */
+public class BitmapReport {
+
+	public static void main(String[] args) {
+
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+		for (int perMilli : new int[] { 1, 64, 4096 }) {
+			for (int nodes : new int[] { 1, 64 }) {
+				if (perMilli < nodes) {
+					continue;
+				}
+				final long[] tsids = create(count / 2 * 3, perMilli, nodes);
+				final long[] a = Arrays.copyOfRange(tsids, 0, count);
+				final long[] b = Arrays.copyOfRange(tsids, tsids.length - count, tsids.length);
+				System.out.printf("%,d TSIDs per set, %,d per ms, %d nodes%n", count, perMilli, nodes);
+				bitmap(a, b);
+				set(a, b);
+				array(a, b);
+			}
+		}
+	}
+
+	private static void bitmap(final long[] x, final long[] y) {
+		long before = used();
+		final TsidBitmap a = new TsidBitmap();
+		for (long tsid : x) {
+			a.add(tsid);
+		}
+		a.optimize();
+		final long bytes = used() - before;
+		final TsidBitmap b = new TsidBitmap();
+		for (long tsid : y) {
+			b.add(tsid);
+		}
+		b.optimize();
+
+		long time = System.nanoTime();
+		final long and = TsidBitmap.and(a, b).cardinality();
+		final long andTime = System.nanoTime() - time;
+		time = System.nanoTime();
+		final long or = TsidBitmap.or(a, b).cardinality();
+		final long orTime = System.nanoTime() - time;
+		print("TsidBitmap", bytes, x.length, and, andTime, or, orTime);
+	}
+
+	private static void set(final long[] x, final long[] y) {
+		long before = used();
+		final TsidSet a = new TsidSet();
+		for (long tsid : x) {
+			a.add(tsid);
+		}
+		final long bytes = used() - before;
+		final TsidSet b = new TsidSet();
+		for (long tsid : y) {
+			b.add(tsid);
+		}
+
+		long time = System.nanoTime();
+		final TsidSet and = new TsidSet();
+		a.forEach(tsid -> {
+			if (b.contains(tsid)) {
+				and.add(tsid);
+			}
+		});
+		final long andTime = System.nanoTime() - time;
+		time = System.nanoTime();
+		final TsidSet or = new TsidSet(a.size() + b.size());
+		a.forEach(or::add);
+		b.forEach(or::add);
+		final long orTime = System.nanoTime() - time;
+		print("TsidSet", bytes, x.length, and.size(), andTime, or.size(), orTime);
+	}
+
+	private static void array(final long[] x, final long[] y) {
+		final long bytes = (long) x.length * Long.BYTES;
+		final long[] a = x.clone();
+		final long[] b = y.clone();
+
+		long time = System.nanoTime();
+		final long[] and = new long[Math.min(a.length, b.length)];
+		int k = 0;
+		for (int i = 0, j = 0; i < a.length && j < b.length;) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				and[k++] = a[i++];
+				j++;
+			}
+		}
+		final long andTime = System.nanoTime() - time;
+		final int andSize = k;
+		time = System.nanoTime();
+		final long[] or = new long[a.length + b.length];
+		k = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				or[k++] = a[i++];
+			} else if (i == a.length || a[i] > b[j]) {
+				or[k++] = b[j++];
+			} else {
+				or[k++] = a[i++];
+				j++;
+			}
+		}
+		final long orTime = System.nanoTime() - time;
+		print("long[]", bytes, x.length, andSize, andTime, k, orTime);
+	}
+
+	private static long[] create(final int count, final int perMilli, final int nodes) {
+		// each node creates TSIDs in turn, in the same milliseconds
+		final long start = System.currentTimeMillis();
+		final long[] now = { start };
+		final TsidFactory[] factories = new TsidFactory[nodes];
+		for (int i = 0; i < nodes; i++) {
+			factories[i] = TsidFactory.builder().withNode(i * 16).withTimeFunction(() -> now[0]).build();
+		}
+		final long[] tsids = new long[count];
+		for (int i = 0; i < count; i++) {
+			now[0] = start + i / perMilli;
+			tsids[i] = factories[i % nodes].create().toLong();
+		}
+		Arrays.sort(tsids);
+		return tsids;
+	}
+
+	private static void print(String name, long bytes, int count, long and, long andTime, long or, long orTime) {
+		System.out.printf("  %-10s %6.2f bytes/TSID, and %,10d in %7.1f ms, or %,10d in %7.1f ms%n", name,
+				(double) bytes / count, and, andTime / 1e6, or, orTime / 1e6);
+	}
+
+	private static long used() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidBlockCodec;
+import com.github.f4b6a3.tsid.TsidFactory;
+
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BlockCodec {
+
+	@Param({ "1000000" })
+	private int size;
+
+	// TSIDs per millisecond
+	@Param({ "1", "1000" })
+	private int rate;
+
+	private long[] tsids;
+	private byte[] block;
+	private byte[] varints;
+	private int[] indexes;
+
+	@Setup
+	public void setup() {
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withNodeBits(10).withNode(1)
+				.withTimeFunction(() -> now[0]).build();
+		tsids = new long[size];
+		for (int i = 0; i < size; i++) {
+			if (i % rate == 0) {
+				now[0]++;
+			}
+			tsids[i] = factory.create().toLong();
+		}
+		block = TsidBlockCodec.encode(tsids);
+		varints = TsidBlockCodec.encodeVarints(tsids);
+		indexes = new int[size];
+		for (int i = 0; i < size; i++) {
+			indexes[i] = (int) ((i * 0x9E3779B97F4A7C15L) >>> 33) % size;
+		}
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return TsidBlockCodec.encode(tsids);
+	}
+
+	@Benchmark
+	public long[] decode() {
+		return TsidBlockCodec.decode(block);
+	}
+
+	@Benchmark
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += TsidBlockCodec.get(block, indexes[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public byte[] encodeVarints() {
+		return TsidBlockCodec.encodeVarints(tsids);
+	}
+
+	@Benchmark
+	public long[] decodeVarints() {
+		return TsidBlockCodec.decodeVarints(varints);
+	}
+}
@@ -0,0 +1,60 @@
+package benchmark;
+
+import java.util.Arrays;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidBlockCodec;
+import com.github.f4b6a3.tsid.TsidFactory;
+
+/**
+ * Reports the size of sorted TSIDs encoded with {@link TsidBlockCodec}
+ * compared to {@link Tsid#toBytes()}.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmark.BlockCompression [count]}
+ */
+public class BlockCompression {
+
+	public static void main(String[] args) {
+
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+		System.out.printf("%,d TSIDs%n", count);
+		System.out.printf("%-12s %-8s %14s %14s %14s%n", "IDs per ms", "nodes", "toBytes()", "block", "varint");
+
+		for (int rate : new int[] { 1, 16, 1000 }) {
+			for (int nodes : new int[] { 1, 64 }) {
+				measure(count, rate, nodes);
+			}
+		}
+	}
+
+	private static void measure(final int count, final int rate, final int nodes) {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory[] factories = new TsidFactory[nodes];
+		for (int n = 0; n < nodes; n++) {
+			factories[n] = TsidFactory.builder().withNodeBits(10).withNode(n).withTimeFunction(() -> now[0]).build();
+		}
+
+		// the TSIDs of many nodes, interleaved in time, sorted
+		final long[] tsids = new long[count];
+		for (int i = 0; i < count; i++) {
+			if (i % (rate * nodes) == 0) {
+				now[0]++;
+			}
+			tsids[i] = factories[i % nodes].create().toLong();
+		}
+		Arrays.sort(tsids); // same as unsigned order for current TSIDs
+
+		final long raw = (long) count * Tsid.from(tsids[0]).toBytes().length;
+		final long block = TsidBlockCodec.encode(tsids).length;
+		final long varint = TsidBlockCodec.encodeVarints(tsids).length;
+
+		System.out.printf("%-12d %-8d %14s %14s %14s%n", rate, nodes, size(raw, count),
+				size(block, count), size(varint, count));
+	}
+
+	private static String size(final long bytes, final long count) {
+		return String.format("%.3f B/ID", (double) bytes / count);
+	}
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+import java.time.Duration;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidBloomFilter;
+import com.github.f4b6a3.tsid.collections.TsidSet;
+
+/**
+ * Reports the memory, the throughput and the measured false positive rate of a
+ * Bloom filter of TSIDs, compared to an exact {@link TsidSet}.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp benchmarks.jar benchmark.BloomFilterReport [count]}
+ */
+public class BloomFilterReport {
+
+	public static void main(String[] args) {
+
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+		// 10 days of TSIDs at a fixed rate, then as many TSIDs never added
+		final long[] now = { System.currentTimeMillis() };
+		final long start = now[0];
+		final long step = Math.max(1, Duration.ofDays(10).toMillis() / count);
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final long[] tsids = new long[count];
+		final long[] others = new long[count];
+		for (int i = 0; i < count; i++) {
+			now[0] += step;
+			tsids[i] = factory.create().toLong();
+			others[i] = factory.create().toLong();
+		}
+		final long end = now[0];
+
+		System.out.printf("%,d TSIDs%n", count);
+
+		now[0] = start;
+		final TsidBloomFilter filter = TsidBloomFilter.builder().withRetention(Duration.ofDays(10))
+				.withBucketSize(Duration.ofDays(1)).withExpectedInsertions(count / 10).withFalsePositiveRate(0.01)
+				.withTimeFunction(() -> now[0]).build();
+		long time = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			now[0] += step;
+			filter.add(tsids[i]);
+		}
+		long added = System.nanoTime() - time;
+		now[0] = end;
+		int positives = 0;
+		time = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			if (filter.mightContain(others[i])) {
+				positives++;
+			}
+		}
+		long checked = System.nanoTime() - time;
+		print("TsidBloomFilter", filter.getMemory(), added, checked, count, positives);
+
+		final long before = used();
+		time = System.nanoTime();
+		final TsidSet set = new TsidSet();
+		for (int i = 0; i < count; i++) {
+			set.add(tsids[i]);
+		}
+		added = System.nanoTime() - time;
+		final long after = used();
+		positives = 0;
+		time = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			if (set.contains(others[i])) {
+				positives++;
+			}
+		}
+		checked = System.nanoTime() - time;
+		print("TsidSet", after - before, added, checked, count, positives);
+	}
+
+	private static void print(String name, long bytes, long added, long checked, int count, int positives) {
+		System.out.printf("%-16s %6.2f bytes/TSID, add %6.1f M/s, check %6.1f M/s, false positives %.4f%n", name,
+				(double) bytes / count, count * 1e3 / added, count * 1e3 / checked, (double) positives / count);
+	}
+
+	private static long used() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidLongs;
+
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkExtraction {
+
+	@Param({ "1000000", "100000000" })
+	private int size;
+
+	private long[] tsids;
+	private long[] millis;
+	private int[] nodes;
+	private int[] counters;
+
+	@Setup
+	public void setup() {
+		SplittableRandom random = new SplittableRandom(1);
+		tsids = new long[size];
+		for (int i = 0; i < size; i++) {
+			tsids[i] = Tsid.fast().toLong() ^ random.nextInt(1 << 22);
+		}
+		millis = new long[size];
+		nodes = new int[size];
+		counters = new int[size];
+	}
+
+	@Benchmark
+	public long[] Tsid_getUnixMilliseconds() {
+		for (int i = 0; i < size; i++) {
+			millis[i] = Tsid.from(tsids[i]).getUnixMilliseconds();
+		}
+		return millis;
+	}
+
+	@Benchmark
+	public long[] TsidLongs_unixMillis() {
+		TsidLongs.unixMillis(tsids, Tsid.TSID_EPOCH, millis);
+		return millis;
+	}
+
+	@Benchmark
+	public int[] TsidLongs_nodes() {
+		TsidLongs.nodes(tsids, 10, nodes);
+		return nodes;
+	}
+
+	@Benchmark
+	public int[] TsidLongs_counters() {
+		TsidLongs.counters(tsids, 10, counters);
+		return counters;
+	}
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidConcurrentMap;
+
+/**
+ * 90% reads and 10% writes of existing TSIDs.
+ * <p>
+ * Run once for each number of threads, for example with {@code -t 1}, then
+ * {@code -t 2}, up to {@code -t 32}.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 3)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentMapReadWrite {
+
+	@Param({ "1000000" })
+	private int size;
+
+	private long[] tsids;
+	private Tsid[] objects;
+	private TsidConcurrentMap<Object> tsidMap;
+	private ConcurrentHashMap<Tsid, Object> hashMap;
+
+	@Setup
+	public void setup() {
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		tsids = new long[size];
+		objects = new Tsid[size];
+		tsidMap = new TsidConcurrentMap<>();
+		hashMap = new ConcurrentHashMap<>();
+		for (int i = 0; i < size; i++) {
+			tsids[i] = factory.create().toLong();
+			objects[i] = Tsid.from(tsids[i]);
+			tsidMap.put(tsids[i], objects[i]);
+			hashMap.put(objects[i], objects[i]);
+		}
+	}
+
+	@Benchmark
+	public Object TsidConcurrentMap_90_10() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int i = random.nextInt(size);
+		if (random.nextInt(10) == 0) {
+			return tsidMap.put(tsids[i], objects[i]);
+		}
+		return tsidMap.get(tsids[i]);
+	}
+
+	@Benchmark
+	public Object ConcurrentHashMap_90_10() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int i = random.nextInt(size);
+		if (random.nextInt(10) == 0) {
+			return hashMap.put(objects[i], objects[i]);
+		}
+		return hashMap.get(objects[i]);
+	}
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+
+/**
+ * Reports the compressed size of sorted TSIDs for each number of random counter
+ * bits.
+ * <p>
+ * The TSIDs are delta encoded as varints and then compressed with DEFLATE,
+ * which stands in for the general purpose compressors of columnar formats.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmark.CounterCompression [count]}
+ */
+public class CounterCompression {
+
+	public static void main(String[] args) throws IOException {
+
+		final long count = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+
+		System.out.printf("%,d TSIDs%n", count);
+		System.out.printf("%-12s %-20s %14s %14s %14s%n", "IDs per ms", "random counter bits", "raw", "delta+varint",
+				"+deflate");
+
+		for (int rate : new int[] { 1, 16, 1000 }) {
+			for (int bits : new int[] { 12, 8, 4, 0 }) {
+				measure(count, rate, bits);
+			}
+		}
+	}
+
+	private static void measure(final long count, final int rate, final int bits) throws IOException {
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withNodeBits(10).withNode(1)
+				.withTimeFunction(() -> now[0]).withRandomCounterBits(bits).build();
+
+		final CountingOutputStream deflated = new CountingOutputStream();
+		final CountingOutputStream varints = new CountingOutputStream();
+		try (DeflaterOutputStream deflater = new DeflaterOutputStream(deflated, new Deflater(6), 1 << 16)) {
+			final byte[] buffer = new byte[10];
+			long prev = 0;
+			for (long i = 0; i < count; i++) {
+				if (i % rate == 0) {
+					now[0]++;
+				}
+				final long tsid = factory.create().toLong();
+				final int length = varint(tsid - prev, buffer);
+				deflater.write(buffer, 0, length);
+				varints.count += length;
+				prev = tsid;
+			}
+		}
+
+		System.out.printf("%-12d %-20d %14s %14s %14s%n", rate, bits, size(count * 8, count),
+				size(varints.count, count), size(deflated.count, count));
+	}
+
+	private static int varint(long value, final byte[] buffer) {
+		int i = 0;
+		while ((value & ~0x7fL) != 0) {
+			buffer[i++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[i++] = (byte) value;
+		return i;
+	}
+
+	private static String size(final long bytes, final long count) {
+		return String.format("%.3f B/ID", (double) bytes / count);
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidDeduplicator;
+
+/**
+ * Reports the rate and the heap used to detect repeated TSIDs of 1000
+ * producers within a window of 1 second, compared to a set of recent TSIDs in a
+ * {@link ConcurrentHashMap}.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp benchmarks.jar benchmark.Dedup [count] [rate]}
+ */
+public class Dedup {
+
+	private static final int PRODUCERS = 1000;
+	private static final long WINDOW = 1000;
+
+	public static void main(String[] args) {
+
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+		final int rate = args.length > 1 ? Integer.parseInt(args[1]) : 4_000; // TSIDs per ms
+
+		// the TSIDs of many producers, each one with its own node, 1 of 10 repeated
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory[] factories = new TsidFactory[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++) {
+			factories[p] = TsidFactory.builder().withNode(p).withTimeFunction(() -> now[0]).build();
+		}
+		final long[] tsids = new long[count];
+		final long[] times = new long[count];
+		for (int i = 0; i < count; i++) {
+			if (i % rate == 0) {
+				now[0]++;
+			}
+			tsids[i] = i % 10 == 9 ? tsids[i - 5] : factories[i % PRODUCERS].create().toLong();
+			times[i] = now[0];
+		}
+
+		System.out.printf("%,d TSIDs, %,d per ms, window of %d ms%n", count, rate, WINDOW);
+
+		long before = used();
+		final TsidDeduplicator dedup = TsidDeduplicator.builder().withWindow(Duration.ofMillis(WINDOW))
+				.withMaxRate(rate).withTimeFunction(() -> now[0]).build();
+		long added = 0;
+		long time = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			now[0] = times[i];
+			added += dedup.add(tsids[i]) ? 1 : 0;
+		}
+		long elapsed = System.nanoTime() - time;
+		long after = used();
+		print("TsidDeduplicator", added, elapsed, after - before, count, dedup);
+
+		before = used();
+		final Set<Long> set = ConcurrentHashMap.newKeySet();
+		added = 0;
+		time = System.nanoTime();
+		int oldest = 0;
+		for (int i = 0; i < count; i++) {
+			// remove the TSIDs that left the window
+			while (times[oldest] < times[i] - WINDOW) {
+				set.remove(tsids[oldest++]);
+			}
+			added += set.add(tsids[i]) ? 1 : 0;
+		}
+		elapsed = System.nanoTime() - time;
+		after = used();
+		print("ConcurrentHashMap", added, elapsed, after - before, count, set);
+	}
+
+	private static void print(String name, long added, long elapsed, long bytes, int count, Object keep) {
+		System.out.printf("%-18s %6.1f M/s, %,d added, %,d MB%n", name, count * 1e3 / elapsed, added,
+				bytes / (1 << 20));
+		if (keep.hashCode() == 42) {
+			System.out.print(""); // keep it reachable until measured
+		}
+	}
+
+	private static long used() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,60 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+
+/**
+ * Measures the overhead of a persisted high-water mark.
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HighWaterMark {
+
+	private Path file;
+	private TsidFactory plain;
+	private TsidFactory persisted;
+
+	@Setup
+	public void setup() throws IOException {
+		file = Files.createTempFile("tsid", ".hwm");
+		plain = TsidFactory.builder().withNode(1).build();
+		persisted = TsidFactory.builder().withNode(1).withHighWaterMark(file).build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public long TsidFactory_create() {
+		return plain.create().toLong();
+	}
+
+	@Benchmark
+	public long TsidFactory_create_withHighWaterMark() {
+		return persisted.create().toLong();
+	}
+}
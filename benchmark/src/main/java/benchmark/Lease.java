@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidLeaseClient;
+import com.github.f4b6a3.tsid.TsidLeaseServer;
+
+/**
+ * Measures the TSIDs per second of a single lease client.
+ * <p>
+ * The "unix" transport requires JDK 16+.
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Lease {
+
+	@Param({ "tcp", "unix" })
+	private String transport;
+
+	@Param({ "16", "256", "4096" })
+	private int blockSize;
+
+	private Path directory;
+	private TsidLeaseServer server;
+	private TsidLeaseClient client;
+
+	@Setup
+	public void setup() throws Exception {
+		final SocketAddress address;
+		if (transport.equals("unix")) {
+			directory = Files.createTempDirectory("tsid");
+			address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class)
+					.invoke(null, directory.resolve("tsid.sock"));
+		} else {
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		}
+		server = TsidLeaseServer.start(TsidFactory.builder().withNode(1).build(), address);
+		client = TsidLeaseClient.connect(server.getAddress(), blockSize);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		client.close();
+		server.close();
+		if (directory != null) {
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	@Benchmark
+	public long TsidLeaseClient_createLong() {
+		return client.createLong();
+	}
+}
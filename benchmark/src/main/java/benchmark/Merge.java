@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidMerger;
+
+/**
+ * Compares the merges of sorted TSID streams, one per node.
+ * <p>
+ * Each merge returns the sum of all TSIDs, so that nothing is optimized away.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Merge {
+
+	@Param({ "16", "256", "4096" })
+	private int k;
+
+	@Param({ "4000000" })
+	private int size;
+
+	private long[][] arrays;
+	private long[] batch;
+
+	@Setup
+	public void setup() {
+		// nodes creating TSIDs at the same time, so the streams interleave
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory[] factories = new TsidFactory[k];
+		for (int i = 0; i < k; i++) {
+			factories[i] = TsidFactory.builder().withNodeBits(12).withNode(i).withTimeFunction(() -> now[0]).build();
+		}
+		arrays = new long[k][size / k];
+		for (int j = 0; j < size / k; j++) {
+			for (int i = 0; i < k; i++) {
+				arrays[i][j] = factories[i].create().toLong();
+			}
+			now[0]++;
+		}
+		batch = new long[1024];
+	}
+
+	@Benchmark
+	public long TsidMerger_nextLong() {
+		long sum = 0;
+		final TsidMerger merger = TsidMerger.of(arrays);
+		while (merger.hasNext()) {
+			sum += merger.nextLong();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long TsidMerger_nextLongs() {
+		long sum = 0;
+		int count;
+		final TsidMerger merger = TsidMerger.of(arrays);
+		while ((count = merger.nextLongs(batch, 0, batch.length)) > 0) {
+			for (int i = 0; i < count; i++) {
+				sum += batch[i];
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long PriorityQueue_poll() {
+		long sum = 0;
+		final PriorityQueue<Head> queue = new PriorityQueue<>(k);
+		for (long[] array : arrays) {
+			final Iterator<Tsid> iterator = Arrays.stream(array).mapToObj(Tsid::from).iterator();
+			if (iterator.hasNext()) {
+				queue.add(new Head(iterator.next(), iterator));
+			}
+		}
+		Head head;
+		while ((head = queue.poll()) != null) {
+			sum += head.tsid.toLong();
+			if (head.iterator.hasNext()) {
+				head.tsid = head.iterator.next();
+				queue.add(head);
+			}
+		}
+		return sum;
+	}
+
+	private static final class Head implements Comparable<Head> {
+
+		private Tsid tsid;
+		private final Iterator<Tsid> iterator;
+
+		private Head(Tsid tsid, Iterator<Tsid> iterator) {
+			this.tsid = tsid;
+			this.iterator = iterator;
+		}
+
+		@Override
+		public int compareTo(Head that) {
+			return this.tsid.compareTo(that.tsid);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidMultiNodeFactory;
+
+/**
+ * Compares one {@link TsidFactory} per node identifier with a single
+ * {@link TsidMultiNodeFactory}, for 1k and 1M node identifiers.
+ * <p>
+ * The retained heap of each setup is printed before the measurements.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Threads(4)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultiNode {
+
+	@Param({ "1000", "1000000" })
+	private int nodes;
+
+	@Param({ "TsidFactory", "TsidMultiNodeFactory" })
+	private String type;
+
+	private TsidFactory[] factories;
+	private TsidMultiNodeFactory multiFactory;
+
+	@Setup
+	public void setup() {
+		final int nodeBits = 32 - Integer.numberOfLeadingZeros(nodes - 1);
+		final long before = usedMemory();
+		if (type.equals("TsidFactory")) {
+			factories = new TsidFactory[nodes];
+			for (int i = 0; i < nodes; i++) {
+				factories[i] = TsidFactory.builder().withNodeBits(nodeBits).withNode(i).build();
+			}
+		} else {
+			multiFactory = TsidMultiNodeFactory.builder().withNodeBits(nodeBits).build();
+		}
+		System.out.printf("%n%s with %d nodes: %,d bytes%n", type, nodes, usedMemory() - before);
+	}
+
+	@Benchmark
+	public long create() {
+		final int node = ThreadLocalRandom.current().nextInt(nodes);
+		if (multiFactory != null) {
+			return multiFactory.createLongForNode(node);
+		}
+		return factories[node].create().toLong();
+	}
+
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
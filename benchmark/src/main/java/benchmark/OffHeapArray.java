@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidArray;
+import com.github.f4b6a3.tsid.TsidFactory;
+
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-XX:MaxDirectMemorySize=8g" })
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OffHeapArray {
+
+	@Param({ "10000000" })
+	private int size;
+
+	private TsidFactory factory;
+	private long[] shuffled;
+	private TsidArray sorted;
+	private long[] keys;
+
+	@Setup
+	public void setup() {
+		factory = TsidFactory.newInstance1024(1);
+		SplittableRandom random = new SplittableRandom(1);
+		shuffled = new long[size];
+		for (int i = 0; i < size; i++) {
+			shuffled[i] = Tsid.fast().toLong() ^ random.nextInt(1 << 22);
+		}
+		sorted = new TsidArray();
+		for (int i = 0; i < size; i++) {
+			sorted.add(shuffled[i]);
+		}
+		sorted.sort();
+		keys = Arrays.copyOf(shuffled, 1 << 16);
+	}
+
+	@Benchmark
+	public TsidArray TsidArray_fill() {
+		TsidArray array = new TsidArray();
+		array.fill(factory, size);
+		return array;
+	}
+
+	@Benchmark
+	public long[] longArray_fill() {
+		long[] array = new long[size];
+		for (int i = 0; i < size; i++) {
+			array[i] = factory.create().toLong();
+		}
+		return array;
+	}
+
+	@Benchmark
+	public TsidArray TsidArray_sort() {
+		TsidArray array = new TsidArray();
+		for (int i = 0; i < size; i++) {
+			array.add(shuffled[i]);
+		}
+		array.sort();
+		return array;
+	}
+
+	@Benchmark
+	public long TsidArray_binarySearch() {
+		long sum = 0;
+		for (int i = 0; i < keys.length; i++) {
+			sum += sorted.binarySearch(keys[i]);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.function.IntFunction;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidList;
+import com.github.f4b6a3.tsid.collections.TsidMap;
+import com.github.f4b6a3.tsid.collections.TsidSet;
+
+/**
+ * Reports the heap used by collections of TSIDs.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp benchmarks.jar benchmark.SetMemory [count]}
+ */
+public class SetMemory {
+
+	public static void main(String[] args) {
+
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final long[] tsids = new long[count];
+		for (int i = 0; i < count; i++) {
+			tsids[i] = factory.create().toLong();
+		}
+
+		System.out.printf("%,d TSIDs%n", count);
+		measure("ArrayList<Tsid>", tsids, n -> {
+			final ArrayList<Tsid> list = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				list.add(Tsid.from(tsids[i]));
+			}
+			return list;
+		});
+		measure("TsidList", tsids, n -> {
+			final TsidList list = new TsidList();
+			for (int i = 0; i < n; i++) {
+				list.add(tsids[i]);
+			}
+			return list;
+		});
+		measure("HashSet<Tsid>", tsids, n -> {
+			final HashSet<Tsid> set = new HashSet<>();
+			for (int i = 0; i < n; i++) {
+				set.add(Tsid.from(tsids[i]));
+			}
+			return set;
+		});
+		measure("TsidSet", tsids, n -> {
+			final TsidSet set = new TsidSet();
+			for (int i = 0; i < n; i++) {
+				set.add(tsids[i]);
+			}
+			return set;
+		});
+		measure("TsidMap<Object>", tsids, n -> {
+			final Object value = new Object();
+			final TsidMap<Object> map = new TsidMap<>();
+			for (int i = 0; i < n; i++) {
+				map.put(tsids[i], value);
+			}
+			return map;
+		});
+	}
+
+	private static void measure(final String name, final long[] tsids, final IntFunction<Object> builder) {
+		final long before = used();
+		final Object collection = builder.apply(tsids.length);
+		final long after = used();
+		System.out.printf("%-16s %8.1f bytes/TSID%n", name, (double) (after - before) / tsids.length);
+		if (collection.hashCode() == 42) {
+			System.out.print(""); // keep the collection reachable until measured
+		}
+	}
+
+	private static long used() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidSet;
+
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 3)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SetThroughput {
+
+	private static final int SIZE = 10_000_000;
+
+	// TSIDs per millisecond
+	@Param({ "1000" })
+	private int rate;
+
+	private long[] tsids;
+	private Tsid[] objects;
+	private TsidSet tsidSet;
+	private HashSet<Tsid> hashSet;
+
+	@Setup
+	public void setup() {
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withNode(1).withTimeFunction(() -> now[0]).build();
+		tsids = new long[SIZE];
+		objects = new Tsid[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			if (i % rate == 0) {
+				now[0]++;
+			}
+			tsids[i] = factory.create().toLong();
+			objects[i] = Tsid.from(tsids[i]);
+		}
+		tsidSet = new TsidSet();
+		hashSet = new HashSet<>();
+		for (int i = 0; i < SIZE; i++) {
+			tsidSet.add(tsids[i]);
+			hashSet.add(objects[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public TsidSet TsidSet_add() {
+		final TsidSet set = new TsidSet();
+		for (int i = 0; i < SIZE; i++) {
+			set.add(tsids[i]);
+		}
+		return set;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public HashSet<Tsid> HashSet_add() {
+		final HashSet<Tsid> set = new HashSet<>();
+		for (int i = 0; i < SIZE; i++) {
+			set.add(objects[i]);
+		}
+		return set;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public int TsidSet_contains() {
+		int found = 0;
+		for (int i = 0; i < SIZE; i++) {
+			found += tsidSet.contains(tsids[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public int HashSet_contains() {
+		int found = 0;
+		for (int i = 0; i < SIZE; i++) {
+			found += hashSet.contains(objects[i]) ? 1 : 0;
+		}
+		return found;
+	}
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidSharedFactory;
+
+/**
+ * Compares a factory per process with a factory shared through a
+ * memory-mapped file.
+ * <p>
+ * Run it with JDK 8 and with JDK 9+ to compare the file lock and the
+ * compare-and-set.
+ */
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SharedMemory {
+
+	private Path file;
+	private TsidFactory factory;
+	private TsidSharedFactory shared;
+
+	@Setup
+	public void setup() throws IOException {
+		file = Files.createTempFile("tsid", ".state");
+		factory = TsidFactory.builder().withNode(1).build();
+		shared = TsidSharedFactory.builder().withFile(file).withNode(1).build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		shared.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public long TsidFactory_create() {
+		return factory.create().toLong();
+	}
+
+	@Benchmark
+	public long TsidSharedFactory_createLong() {
+		return shared.createLong();
+	}
+}
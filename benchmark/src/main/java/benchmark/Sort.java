@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidSort;
+
+/**
+ * Compares the sorts of TSID arrays.
+ * <p>
+ * Each sort includes the copy of the input. To sort 1 billion TSIDs, run with
+ * {@code -p size=1000000000 -jvmArgsAppend -Xmx24g}.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Sort {
+
+	@Param({ "1000000", "10000000", "100000000" })
+	private int size;
+
+	@Param({ "shuffled", "nearly", "late", "batches" })
+	private String order;
+
+	private long[] input;
+	private long[] work;
+
+	@Setup
+	public void setup() {
+		final SplittableRandom random = new SplittableRandom(1);
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final long[] sorted = new long[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = factory.create().toLong();
+		}
+		input = sorted.clone();
+		switch (order) {
+		case "shuffled":
+			for (int i = size - 1; i > 0; i--) {
+				final int j = random.nextInt(i + 1);
+				input[i] = input[j];
+				input[j] = sorted[i];
+				sorted[i] = input[i];
+				sorted[j] = input[j];
+			}
+			break;
+		case "nearly":
+			// neighbors swapped, as TSIDs received from a few producers
+			for (int i = 1; i < size; i += 1 + random.nextInt(10)) {
+				input[i] = sorted[i - 1];
+				input[i - 1] = sorted[i];
+			}
+			break;
+		case "late":
+			// 4 TSIDs arriving late at each 1/64 of the array
+			final int part = size / 64;
+			for (int p = 1; p < 64; p++) {
+				for (int k = 0; k < 4; k++) {
+					final int i = p * part;
+					final int j = i - 1 - random.nextInt(part / 2);
+					final long late = input[j];
+					System.arraycopy(input, j + 1, input, j, i - j);
+					input[i] = late;
+				}
+			}
+			break;
+		default:
+			// 8 sorted batches in the wrong order
+			final int batch = size / 8;
+			for (int i = 0; i < size; i++) {
+				input[i] = sorted[(i + batch * 3) % size];
+			}
+		}
+		work = new long[size];
+	}
+
+	@Benchmark
+	public long[] TsidSort_sort() {
+		System.arraycopy(input, 0, work, 0, size);
+		TsidSort.sort(work);
+		return work;
+	}
+
+	@Benchmark
+	public long[] TsidSort_parallelSort() {
+		System.arraycopy(input, 0, work, 0, size);
+		TsidSort.parallelSort(work);
+		return work;
+	}
+
+	@Benchmark
+	public long[] Arrays_sort() {
+		System.arraycopy(input, 0, work, 0, size);
+		Arrays.sort(work);
+		return work;
+	}
+
+	@Benchmark
+	public long[] Arrays_parallelSort() {
+		System.arraycopy(input, 0, work, 0, size);
+		Arrays.parallelSort(work);
+		return work;
+	}
+}
@@ -2,6 +2,7 @@
 package benchmark;
 
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -16,7 +17,10 @@ import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
 import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.Tsid128;
+import com.github.f4b6a3.tsid.Tsid128Factory;
 import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.f4b6a3.tsid.TsidFormat;
 
 @Fork(1)
 @Threads(4)
@@ -27,6 +31,16 @@ import com.github.f4b6a3.tsid.TsidCreator;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 public class Throughput {
 
+	private final Tsid tsid = Tsid.fast();
+	private final String base10 = tsid.encode(10);
+	private final String base62 = tsid.encode(62);
+	private final TsidFormat format = TsidFormat.compile("ORD-%S");
+	private final String formatted = format.format(tsid);
+	private final Tsid128Factory factory128 = Tsid128Factory.builder()
+			.withRandomFunction(() -> ThreadLocalRandom.current().nextInt()).build();
+	private final Tsid128 tsid128 = factory128.create();
+	private final String string128 = tsid128.toString();
+
 	@Benchmark
 	public UUID UUID_randomUUID() {
 		return UUID.randomUUID();
@@ -76,4 +90,54 @@ public class Throughput {
 	public String TsidCreator_getTsid4096_toString() {
 		return TsidCreator.getTsid4096().toString();
 	}
+
+	@Benchmark
+	public String Tsid_encode10() {
+		return tsid.encode(10);
+	}
+
+	@Benchmark
+	public Tsid Tsid_decode10() {
+		return Tsid.decode(base10, 10);
+	}
+
+	@Benchmark
+	public String Tsid_encode62() {
+		return tsid.encode(62);
+	}
+
+	@Benchmark
+	public Tsid Tsid_decode62() {
+		return Tsid.decode(base62, 62);
+	}
+
+	@Benchmark
+	public String Tsid_format() {
+		return tsid.format("ORD-%S");
+	}
+
+	@Benchmark
+	public String TsidFormat_format() {
+		return format.format(tsid);
+	}
+
+	@Benchmark
+	public Tsid TsidFormat_parse() {
+		return format.parse(formatted);
+	}
+
+	@Benchmark
+	public Tsid128 Tsid128Factory_create() {
+		return factory128.create();
+	}
+
+	@Benchmark
+	public String Tsid128_toString() {
+		return tsid128.toString();
+	}
+
+	@Benchmark
+	public Tsid128 Tsid128_from() {
+		return Tsid128.from(string128);
+	}
 }
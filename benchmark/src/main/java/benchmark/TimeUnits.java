@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidLayout;
+
+/**
+ * Compares the throughput of one node with millisecond and sub-millisecond time
+ * units, counting how many TSIDs borrow time from the future.
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimeUnits {
+
+	// time unit in nanoseconds and time bits
+	@Param({ "1000000:42", "62500:44", "1000:52" })
+	private String unit;
+
+	private TsidLayout layout;
+	private TsidFactory factory;
+
+	@Setup
+	public void setup() {
+		String[] params = unit.split(":");
+		layout = TsidLayout.builder() //
+				.withTimeUnit(Duration.ofNanos(Long.parseLong(params[0]))) //
+				.withTimeBits(Integer.parseInt(params[1])) //
+				.withNodeBits(10) //
+				.build();
+		factory = TsidFactory.builder().withLayout(layout).withNode(1).build();
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Borrows {
+
+		public long borrowed;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			borrowed = 0;
+		}
+	}
+
+	@Benchmark
+	public long TsidFactory_create(Borrows borrows) {
+		long tsid = factory.create().toLong();
+		if (layout.getUnixMilliseconds(tsid) > System.currentTimeMillis()) {
+			borrows.borrowed++;
+		}
+		return tsid;
+	}
+}
@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidTtlCache;
+
+/**
+ * Reports the heap used and the time to fill and to expire a cache of TSIDs,
+ * compared to a {@link ConcurrentHashMap} that stores the time of each entry.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp benchmarks.jar benchmark.TtlCacheMemory [count]}
+ */
+public class TtlCacheMemory {
+
+	private static final Object VALUE = new Object();
+
+	public static void main(String[] args) {
+
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+		// 10 minutes of TSIDs at a fixed rate
+		final long[] now = { System.currentTimeMillis() };
+		final long start = now[0];
+		final int perMilli = Math.max(1, count / 600_000);
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final long[] tsids = new long[count];
+		for (int i = 0; i < count; i++) {
+			if (i % perMilli == 0) {
+				now[0]++;
+			}
+			tsids[i] = factory.create().toLong();
+		}
+
+		System.out.printf("%,d TSIDs%n", count);
+
+		now[0] = start;
+		long before = used();
+		long time = System.nanoTime();
+		final TsidTtlCache<Object> cache = TsidTtlCache.builder().withTtl(Duration.ofMinutes(10))
+				.withTimeFunction(() -> now[0]).build();
+		for (int i = 0; i < count; i++) {
+			if (i % perMilli == 0) {
+				now[0]++;
+			}
+			cache.put(tsids[i], VALUE);
+		}
+		long filled = System.nanoTime() - time;
+		long after = used();
+		now[0] += Duration.ofMinutes(20).toMillis();
+		time = System.nanoTime();
+		cache.evictExpired();
+		long expired = System.nanoTime() - time;
+		print("TsidTtlCache", after - before, filled, expired, count, cache.size());
+
+		now[0] = start;
+		before = used();
+		time = System.nanoTime();
+		final ConcurrentHashMap<Tsid, Entry> map = new ConcurrentHashMap<>();
+		for (int i = 0; i < count; i++) {
+			if (i % perMilli == 0) {
+				now[0]++;
+			}
+			map.put(Tsid.from(tsids[i]), new Entry(now[0], VALUE));
+		}
+		filled = System.nanoTime() - time;
+		after = used();
+		now[0] += Duration.ofMinutes(20).toMillis();
+		time = System.nanoTime();
+		final long limit = now[0] - Duration.ofMinutes(10).toMillis();
+		map.values().removeIf(entry -> entry.time < limit);
+		expired = System.nanoTime() - time;
+		print("ConcurrentHashMap", after - before, filled, expired, count, map.size());
+	}
+
+	private static void print(String name, long bytes, long filled, long expired, int count, int size) {
+		System.out.printf("%-18s %6.1f bytes/TSID, fill %6.1f M/s, expire all %8.3f ms (%d left)%n", name,
+				(double) bytes / count, count * 1e3 / filled, expired / 1e6, size);
+	}
+
+	private static long used() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static class Entry {
+		final long time;
+		final Object value;
+
+		Entry(long time, Object value) {
+			this.time = time;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.collections.TsidTtlCache;
+
+/**
+ * New TSIDs added to a cache with a time to live of 1 second, while recent
+ * TSIDs are read. Run with {@code -t} for more threads.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 3)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TtlCacheThroughput {
+
+	private static final Object VALUE = new Object();
+	private static final int RECENT = 1 << 16;
+
+	private TsidFactory factory;
+	private TsidTtlCache<Object> cache;
+	private long[] recent;
+
+	@Setup
+	public void setup() {
+		factory = TsidFactory.newInstance1024(1);
+		cache = TsidTtlCache.builder().withTtl(Duration.ofSeconds(1)).build();
+		recent = new long[RECENT];
+		for (int i = 0; i < RECENT; i++) {
+			recent[i] = factory.create().toLong();
+			cache.put(recent[i], VALUE);
+		}
+	}
+
+	@Benchmark
+	public Object putIfAbsent() {
+		final long tsid = factory.create().toLong();
+		recent[(int) tsid & (RECENT - 1)] = tsid;
+		return cache.putIfAbsent(tsid, VALUE);
+	}
+
+	@Benchmark
+	public Object get() {
+		return cache.get(recent[ThreadLocalRandom.current().nextInt(RECENT)]);
+	}
+}
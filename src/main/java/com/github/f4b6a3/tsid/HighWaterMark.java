@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A persisted high-water mark of the time of a {@link TsidFactory}.
+ * <p>
+ * The mark is a lease: the factory may generate TSIDs up to the reserved time.
+ * When half of the lease is used, a new lease is reserved asynchronously, so
+ * that the hot path doesn't wait for the file to be synced. If the factory gets
+ * to the end of the lease before the new lease is synced, it reserves the new
+ * lease synchronously.
+ * <p>
+ * After a restart, the factory starts after the reserved time, even if the
+ * clock went backwards.
+ */
+final class HighWaterMark {
+
+	private static final int FILE_SIZE = 8;
+
+	private final MappedByteBuffer buffer;
+	private final TsidLayout layout;
+	private final long lease;
+
+	private volatile long reserved;
+	private volatile long renewAt;
+
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	private HighWaterMark(final MappedByteBuffer buffer, final TsidLayout layout, final long lease) {
+		this.buffer = buffer;
+		this.layout = layout;
+		this.lease = lease;
+		this.reserved = layout.ticks(buffer.getLong(0));
+		this.renewAt = this.reserved - (lease >>> 1);
+	}
+
+	/**
+	 * Opens or creates the file of a high-water mark.
+	 * 
+	 * @param file   a file
+	 * @param layout the layout of the factory
+	 * @param lease  the length of a lease in time units
+	 * @return a high-water mark
+	 * @throws UncheckedIOException if the file can't be opened or mapped
+	 */
+	static HighWaterMark open(final Path file, final TsidLayout layout, final long lease) {
+		// the mapping remains valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			return new HighWaterMark(channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE), layout, lease);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the reserved time in time units since 1970-01-01.
+	 * 
+	 * @return the reserved time, or zero if the file is new
+	 */
+	long reserved() {
+		return this.reserved;
+	}
+
+	/**
+	 * Makes sure that a time is reserved before it is used.
+	 * 
+	 * @param time a time in time units since 1970-01-01
+	 * @throws UncheckedIOException if the file can't be synced
+	 */
+	void check(final long time) {
+		if (time > this.renewAt) {
+			if (time > this.reserved) {
+				renew(time); // the slow path
+			} else if (this.pending.compareAndSet(false, true)) {
+				CompletableFuture.runAsync(() -> {
+					try {
+						renew(time);
+					} catch (UncheckedIOException e) {
+						// the next lease will be reserved synchronously
+					} finally {
+						this.pending.set(false);
+					}
+				});
+			}
+		}
+	}
+
+	private synchronized void renew(final long time) {
+		final long next = time + this.lease;
+		if (next > this.reserved) {
+			// stored in milliseconds, rounded up, so that the layout may change
+			final long millis = layout.millis(next);
+			this.buffer.putLong(0, layout.ticks(millis) < next ? millis + 1 : millis);
+			this.buffer.force();
+			this.reserved = next;
+			this.renewAt = next - (this.lease >>> 1);
+		}
+	}
+}
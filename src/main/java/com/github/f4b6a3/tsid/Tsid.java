@@ -24,9 +24,8 @@
 
 package com.github.f4b6a3.tsid;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.SplittableRandom;
@@ -145,23 +144,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @throws IllegalArgumentException if bytes are null or its length is not 8
 	 */
 	public static Tsid from(final byte[] bytes) {
-
-		if (bytes == null || bytes.length != TSID_BYTES) {
-			throw new IllegalArgumentException("Invalid TSID bytes"); // null or wrong length!
-		}
-
-		long number = 0;
-
-		number |= (bytes[0x0] & 0xffL) << 56;
-		number |= (bytes[0x1] & 0xffL) << 48;
-		number |= (bytes[0x2] & 0xffL) << 40;
-		number |= (bytes[0x3] & 0xffL) << 32;
-		number |= (bytes[0x4] & 0xffL) << 24;
-		number |= (bytes[0x5] & 0xffL) << 16;
-		number |= (bytes[0x6] & 0xffL) << 8;
-		number |= (bytes[0x7] & 0xffL);
-
-		return new Tsid(number);
+		return new Tsid(TsidLongs.fromBytes(bytes));
 	}
 
 	/**
@@ -178,26 +161,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @see <a href="https://www.crockford.com/base32.html">Crockford's Base 32</a>
 	 */
 	public static Tsid from(final String string) {
-
-		final char[] chars = toCharArray(string);
-
-		long number = 0;
-
-		number |= (long) ALPHABET_VALUES[chars[0x00]] << 60;
-		number |= (long) ALPHABET_VALUES[chars[0x01]] << 55;
-		number |= (long) ALPHABET_VALUES[chars[0x02]] << 50;
-		number |= (long) ALPHABET_VALUES[chars[0x03]] << 45;
-		number |= (long) ALPHABET_VALUES[chars[0x04]] << 40;
-		number |= (long) ALPHABET_VALUES[chars[0x05]] << 35;
-		number |= (long) ALPHABET_VALUES[chars[0x06]] << 30;
-		number |= (long) ALPHABET_VALUES[chars[0x07]] << 25;
-		number |= (long) ALPHABET_VALUES[chars[0x08]] << 20;
-		number |= (long) ALPHABET_VALUES[chars[0x09]] << 15;
-		number |= (long) ALPHABET_VALUES[chars[0x0a]] << 10;
-		number |= (long) ALPHABET_VALUES[chars[0x0b]] << 5;
-		number |= (long) ALPHABET_VALUES[chars[0x0c]];
-
-		return new Tsid(number);
+		return new Tsid(TsidLongs.parse(string));
 	}
 
 	/**
@@ -217,19 +181,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @return an byte array.
 	 */
 	public byte[] toBytes() {
-
-		final byte[] bytes = new byte[TSID_BYTES];
-
-		bytes[0x0] = (byte) (number >>> 56);
-		bytes[0x1] = (byte) (number >>> 48);
-		bytes[0x2] = (byte) (number >>> 40);
-		bytes[0x3] = (byte) (number >>> 32);
-		bytes[0x4] = (byte) (number >>> 24);
-		bytes[0x5] = (byte) (number >>> 16);
-		bytes[0x6] = (byte) (number >>> 8);
-		bytes[0x7] = (byte) (number);
-
-		return bytes;
+		return TsidLongs.toBytes(this.number);
 	}
 
 	/**
@@ -272,7 +224,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 */
 	@Override
 	public String toString() {
-		return toString(ALPHABET_UPPERCASE);
+		return TsidLongs.toString(this.number);
 	}
 
 	/**
@@ -287,7 +239,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @see <a href="https://www.crockford.com/base32.html">Crockford's Base 32</a>
 	 */
 	public String toLowerCase() {
-		return toString(ALPHABET_LOWERCASE);
+		return TsidLongs.toLowerCase(this.number);
 	}
 
 	/**
@@ -321,7 +273,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @return the number of milliseconds since 1970-01-01
 	 */
 	public long getUnixMilliseconds() {
-		return this.getTime() + TSID_EPOCH;
+		return TsidLongs.unixMillis(this.number);
 	}
 
 	/**
@@ -333,7 +285,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @return the number of milliseconds since 1970-01-01
 	 */
 	public long getUnixMilliseconds(final long customEpoch) {
-		return this.getTime() + customEpoch;
+		return TsidLongs.unixMillis(this.number, customEpoch);
 	}
 
 	/**
@@ -344,7 +296,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @return a number of milliseconds.
 	 */
 	long getTime() {
-		return this.number >>> RANDOM_BITS;
+		return TsidLongs.time(this.number);
 	}
 
 	/**
@@ -355,7 +307,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @return a number
 	 */
 	long getRandom() {
-		return this.number & RANDOM_MASK;
+		return TsidLongs.random(this.number);
 	}
 
 	/**
@@ -370,7 +322,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @return true if valid
 	 */
 	public static boolean isValid(final String string) {
-		return string != null && isValidCharArray(string.toCharArray());
+		return TsidLongs.isValid(string);
 	}
 
 	/**
@@ -378,7 +330,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 */
 	@Override
 	public int hashCode() {
-		return (int) (number ^ (number >>> 32));
+		return TsidLongs.hashCode(this.number);
 	}
 
 	/**
@@ -406,19 +358,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 */
 	@Override
 	public int compareTo(Tsid that) {
-
-		// used to compare as UNSIGNED longs
-		final long min = 0x8000000000000000L;
-
-		final long a = this.number + min;
-		final long b = that.number + min;
-
-		if (a > b)
-			return 1;
-		else if (a < b)
-			return -1;
-
-		return 0;
+		return TsidLongs.compareUnsigned(this.number, that.number);
 	}
 
 	/**
@@ -439,7 +379,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @since 5.2.0
 	 */
 	public String encode(final int base) {
-		return BaseN.encode(this, base);
+		return TsidLongs.encode(this.number, base);
 	}
 
 	/**
@@ -463,7 +403,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @since 5.2.0
 	 */
 	public static Tsid decode(final String string, final int base) {
-		return BaseN.decode(string, base);
+		return new Tsid(TsidLongs.decode(string, base));
 	}
 
 	/**
@@ -501,6 +441,9 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * </ul>
 	 * <p>
 	 * The opposite operation can be done by {@link Tsid#unformat(String, String)}.
+	 * <p>
+	 * If the same format is used many times, {@link TsidFormat#compile(String)}
+	 * avoids parsing the format string on every call.
 	 * 
 	 * @param format a custom format
 	 * @return a string using a custom format
@@ -508,42 +451,7 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @since 5.2.0
 	 */
 	public String format(final String format) {
-		if (format != null) {
-			final int i = format.indexOf('%');
-			if (i < 0 || i == format.length() - 1) {
-				throw new IllegalArgumentException(String.format("Invalid format string: \"%s\"", format));
-			}
-
-			final String replacement;
-			final int longest = 20; // base10 string size
-			final char placeholder = format.charAt(i + 1);
-
-			switch (placeholder) {
-			case 'S': // canonical string in upper case
-				replacement = toString();
-				break;
-			case 's': // canonical string in lower case
-				replacement = toLowerCase();
-				break;
-			case 'X': // hexadecimal in upper case
-				replacement = BaseN.encode(this, 16);
-				break;
-			case 'x': // hexadecimal in lower case
-				replacement = BaseN.encode(this, 16).toLowerCase();
-				break;
-			case 'd': // base-10
-				replacement = BaseN.encode(this, 10);
-				break;
-			case 'z': // base-62
-				replacement = BaseN.encode(this, 62);
-				break;
-			default:
-				throw new IllegalArgumentException(String.format("Invalid placeholder: \"%%%s\"", placeholder));
-			}
-			
-			return new StringBuffer(format.length() + longest).append(format).replace(i, i + 2, replacement).toString();
-		}
-		throw new IllegalArgumentException(String.format("Invalid format string: \"%s\"", format));
+		return TsidFormat.compile(format).format(this.number);
 	}
 
 	/**
@@ -569,6 +477,9 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * </li>
 	 * </ul>
 	 * 
+	 * If the same format is used many times, {@link TsidFormat#compile(String)}
+	 * avoids parsing the format string on every call.
+	 * 
 	 * @param formatted a string using a custom format
 	 * @param format    a custom format
 	 * @return a TSID
@@ -577,185 +488,352 @@ public final class Tsid implements Serializable, Comparable<Tsid> {
 	 * @since 5.2.0
 	 */
 	public static Tsid unformat(final String formatted, final String format) {
-		if (formatted != null && format != null) {
-			final int i = format.indexOf('%');
-			if (i < 0 || i == format.length() - 1) {
-				throw new IllegalArgumentException(String.format("Invalid format string: \"%s\"", format));
-			}
-
-			final String head = format.substring(0, i);
-			final String tail = format.substring(i + 2);
-			
-			final char placeholder = format.charAt(i + 1);
-			final int length = formatted.length() - head.length() - tail.length();
-
-			if (formatted.startsWith(head) && formatted.endsWith(tail)) {
-				
-				final String substring = formatted.substring(i, i + length);
-				
-				switch (placeholder) {
-				case 'S': // canonical string (case insensitive)
-					return Tsid.from(substring);
-				case 's': // canonical string (case insensitive)
-					return Tsid.from(substring);
-				case 'X': // hexadecimal (case insensitive)
-					return BaseN.decode(substring.toUpperCase(), 16);
-				case 'x': // hexadecimal (case insensitive)
-					return BaseN.decode(substring.toUpperCase(), 16);
-				case 'd': // base-10
-					return BaseN.decode(substring, 10);
-				case 'z': // base-62
-					return BaseN.decode(substring, 62);
-				default:
-					throw new IllegalArgumentException(String.format("Invalid placeholder: \"%%%s\"", placeholder));
-				}
-			}
-		}
-		throw new IllegalArgumentException(String.format("Invalid formatted string: \"%s\"", formatted));
+		return new Tsid(TsidFormat.compile(format).parseLong(formatted));
 	}
 
-	String toString(final char[] alphabet) {
-
-		final char[] chars = new char[TSID_CHARS];
-
-		chars[0x00] = alphabet[(int) ((number >>> 60) & 0b11111)];
-		chars[0x01] = alphabet[(int) ((number >>> 55) & 0b11111)];
-		chars[0x02] = alphabet[(int) ((number >>> 50) & 0b11111)];
-		chars[0x03] = alphabet[(int) ((number >>> 45) & 0b11111)];
-		chars[0x04] = alphabet[(int) ((number >>> 40) & 0b11111)];
-		chars[0x05] = alphabet[(int) ((number >>> 35) & 0b11111)];
-		chars[0x06] = alphabet[(int) ((number >>> 30) & 0b11111)];
-		chars[0x07] = alphabet[(int) ((number >>> 25) & 0b11111)];
-		chars[0x08] = alphabet[(int) ((number >>> 20) & 0b11111)];
-		chars[0x09] = alphabet[(int) ((number >>> 15) & 0b11111)];
-		chars[0x0a] = alphabet[(int) ((number >>> 10) & 0b11111)];
-		chars[0x0b] = alphabet[(int) ((number >>> 5) & 0b11111)];
-		chars[0x0c] = alphabet[(int) (number & 0b11111)];
-
-		return new String(chars);
-	}
+	static class BaseN {
 
-	static char[] toCharArray(final String string) {
-		char[] chars = string == null ? null : string.toCharArray();
-		if (!isValidCharArray(chars)) {
-			throw new IllegalArgumentException(String.format("Invalid TSID string: \"%s\"", string));
-		}
-		return chars;
-	}
+		static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"; // base-62
 
-	/**
-	 * Checks if the string is a valid TSID.
-	 * 
-	 * A valid TSID string is a sequence of 13 characters from Crockford's base 32
-	 * alphabet.
-	 * 
-	 * The first character of the input string must be between 0 and F.
-	 * 
-	 * @param chars a char array
-	 * @return boolean true if valid
-	 */
-	static boolean isValidCharArray(final char[] chars) {
+		static final char[] DIGITS = ALPHABET.toCharArray();
+		static final char[] DIGITS_LOWERCASE = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray(); // up to base-36
 
-		if (chars == null || chars.length != TSID_CHARS) {
-			return false; // null or wrong size!
-		}
+		private static final Radix[] RADIXES = new Radix[DIGITS.length + 1];
 
-		for (int i = 0; i < chars.length; i++) {
-			try {
-				if (ALPHABET_VALUES[chars[i]] == -1) {
-					return false; // invalid character!
-				}
-			} catch (ArrayIndexOutOfBoundsException e) {
-				return false; // multibyte character!
+		static {
+			for (int base = 2; base < RADIXES.length; base++) {
+				RADIXES[base] = new Radix(base);
 			}
 		}
 
-		// The extra bit added by base-32 encoding must be zero
-		// As a consequence, the 1st char of the input string must be between 0 and F.
-		if ((ALPHABET_VALUES[chars[0]] & 0b10000) != 0) {
-			return false; // overflow!
+		static String encode(final Tsid tsid, final int base) {
+			return encode(tsid.number, base, DIGITS);
 		}
 
-		return true; // It seems to be OK.
-	}
+		static String encode(final long number, final int base, final char[] digits) {
+			final Radix radix = radix(base);
+			final char[] buffer = new char[radix.length];
+			encode(number, radix, digits, buffer, 0);
+			return new String(buffer);
+		}
 
-	static class BaseN {
+		static long decode(final CharSequence string, final int base) {
 
-		static final BigInteger MAX = BigInteger.valueOf(2).pow(64).subtract(BigInteger.ONE);
-		static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"; // base-62
+			if (string == null) {
+				exception(String.format("Invalid base-%d string: null", base));
+			}
 
-		static String encode(final Tsid tsid, final int base) {
+			final Radix radix = radix(base);
+			if (string.length() != radix.length) {
+				exception(String.format("Invalid base-%d length: %s", base, string.length()));
+			}
+
+			return decode(string, 0, radix, radix.values);
+		}
 
+		/**
+		 * Returns the precomputed tables of a base.
+		 * 
+		 * @param base a radix between 2 and 62
+		 * @return the tables of the base
+		 * @throws IllegalArgumentException if the base is invalid
+		 */
+		static Radix radix(final int base) {
 			if (base < 2 || base > 62) {
 				exception(String.format("Invalid base: %s", base));
 			}
+			return RADIXES[base];
+		}
 
-			long x = tsid.number;
-			int b = length(base);
-			char[] buffer = new char[b];
-
-			while (Long.compareUnsigned(x, 0) > 0) {
-				final long div = Long.divideUnsigned(x, base);
-				final long rem = Long.remainderUnsigned(x, base);
-				buffer[--b] = ALPHABET.charAt((int) rem);
-				x = div;
+		/**
+		 * Writes a number in a buffer, left padded with zeros.
+		 * <p>
+		 * The number of chars written is the length of the radix.
+		 * <p>
+		 * If the base is a power of two, each digit is extracted with a shift and a
+		 * mask. Otherwise, only the first division is unsigned and the remaining
+		 * divisions are split into chunks that fit in an integer, so that many digits
+		 * are emitted per 64-bit division.
+		 */
+		static void encode(final long number, final Radix radix, final char[] digits, final char[] buffer,
+				final int offset) {
+
+			int b = offset + radix.length;
+
+			if (radix.shift != 0) {
+				long x = number;
+				while (b > offset) {
+					buffer[--b] = digits[(int) x & radix.mask];
+					x >>>= radix.shift;
+				}
+				return;
 			}
 
-			while (b > 0) {
-				buffer[--b] = '0';
+			// both the quotient and the remainder fit in 63 bits
+			final long quotient = divideUnsigned(number, radix.power);
+			final long remainder = number - quotient * radix.power;
+
+			b = encode(remainder, radix, digits, buffer, b, radix.powerDigits);
+			encode(quotient, radix, digits, buffer, b, b - offset);
+		}
+
+		/**
+		 * Appends a number to an appendable, left padded with zeros.
+		 * <p>
+		 * The digits are emitted from left to right, so no buffer is needed. If the
+		 * base is not a power of two, the number is split into three chunks that fit
+		 * in an integer.
+		 */
+		static void encode(final long number, final Radix radix, final char[] digits, final Appendable appendable)
+				throws IOException {
+
+			if (radix.shift != 0) {
+				for (int i = (radix.length - 1) * radix.shift; i >= 0; i -= radix.shift) {
+					appendable.append(digits[(int) (number >>> i) & radix.mask]);
+				}
+				return;
 			}
-			return new String(buffer);
+
+			final long quotient = divideUnsigned(number, radix.intPower);
+			final int low = (int) (number - quotient * radix.intPower);
+			final int middle = (int) (quotient % radix.intPower);
+			final int high = (int) (quotient / radix.intPower);
+
+			encode(high, radix, digits, appendable, radix.length - 2 * radix.intPowerDigits);
+			encode(middle, radix, digits, appendable, radix.intPowerDigits);
+			encode(low, radix, digits, appendable, radix.intPowerDigits);
 		}
 
-		static Tsid decode(final String string, final int base) {
+		/**
+		 * Reads a number from a char sequence.
+		 * <p>
+		 * The number of chars read is the length of the radix.
+		 * <p>
+		 * The overflow is detected before the last digit is appended, comparing the
+		 * partial value with the precomputed limit of the radix.
+		 */
+		static long decode(final CharSequence string, final int offset, final Radix radix, final byte[] values) {
 
-			if (string == null) {
-				exception(String.format("Invalid base-%d string: null", base));
-			}
-			if (base < 2 || base > 62) {
-				exception(String.format("Invalid base: %s", base));
-			}
+			final int end = offset + radix.length;
 
 			long x = 0L;
-			long last = 0;
-			long plus = 0;
+			int i = offset;
 
-			final int length = length(base);
-			if (string.length() != length) {
-				exception(String.format("Invalid base-%d length: %s", base, string.length()));
+			if (radix.shift != 0) {
+				while (i < end) {
+					x = (x << radix.shift) | value(string, i++, radix, values);
+				}
+				// the extra bits of the first digit must be zero, for example,
+				// in base-32 the first digit carries 1 bit that doesn't fit.
+				if ((value(string, offset, radix, values) >>> radix.firstBits) != 0) {
+					exception(String.format("Invalid base-%d value (overflow): %s", radix.base, slice(string, offset, end)));
+				}
+				return x;
+			}
+
+			// all digits but the last can't overflow
+			final int last = end - 1;
+			while (i + radix.intPowerDigits <= last) {
+				int chunk = 0;
+				for (int j = 0; j < radix.intPowerDigits; j++) {
+					chunk = chunk * radix.base + value(string, i++, radix, values);
+				}
+				x = x * radix.intPower + chunk;
+			}
+			while (i < last) {
+				x = x * radix.base + value(string, i++, radix, values);
+			}
+
+			final int digit = value(string, last, radix, values);
+			if (Long.compareUnsigned(x, radix.limit) > 0 || (x == radix.limit && digit > radix.limitDigit)) {
+				exception(String.format("Invalid base-%d value (overflow): %s", radix.base, slice(string, offset, end)));
 			}
 
-			for (int i = 0; i < length; i++) {
+			return x * radix.base + digit;
+		}
 
-				plus = (int) ALPHABET.indexOf(string.charAt(i));
-				if (plus == -1) {
-					exception(String.format("Invalid base-%d character: %s", base, string.charAt(i)));
+		/**
+		 * Writes the digits of a positive number from right to left.
+		 * 
+		 * @return the position of the leftmost digit written
+		 */
+		private static int encode(long number, final Radix radix, final char[] digits, final char[] buffer, int b,
+				final int count) {
+
+			final int base = radix.base;
+			final int stop = b - count;
+
+			while (number > Integer.MAX_VALUE) {
+				final long quotient = number / radix.intPower;
+				int chunk = (int) (number - quotient * radix.intPower);
+				for (int i = 0; i < radix.intPowerDigits; i++) {
+					final int q = chunk / base;
+					buffer[--b] = digits[chunk - q * base];
+					chunk = q;
 				}
+				number = quotient;
+			}
 
-				last = x;
-				x = (x * base) + plus;
+			int chunk = (int) number;
+			while (b > stop) {
+				final int q = chunk / base;
+				buffer[--b] = digits[chunk - q * base];
+				chunk = q;
 			}
 
-			// finally, check if happened an overflow
-			ByteBuffer buff = ByteBuffer.allocate(8);
-			byte[] bytes = buff.putLong(last).array();
-			BigInteger lazt = new BigInteger(1, bytes);
-			BigInteger baze = BigInteger.valueOf(base);
-			BigInteger pluz = BigInteger.valueOf(plus);
-			if (lazt.multiply(baze).add(pluz).compareTo(MAX) > 0) {
-				throw new IllegalArgumentException(String.format("Invalid base-%d value (overflow): %s", base, lazt));
+			return b;
+		}
+
+		private static void encode(int chunk, final Radix radix, final char[] digits, final Appendable appendable,
+				final int count) throws IOException {
+			for (int i = count - 1; i >= 0; i--) {
+				final int digit = chunk / radix.intPowers[i];
+				chunk -= digit * radix.intPowers[i];
+				appendable.append(digits[digit]);
 			}
+		}
+
+		private static int value(final CharSequence string, final int index, final Radix radix,
+				final byte[] values) {
+			final char chr = string.charAt(index);
+			final int value = chr < values.length ? values[chr] : -1;
+			if (value < 0) {
+				exception(String.format("Invalid base-%d character: %s", radix.base, chr));
+			}
+			return value;
+		}
 
-			return new Tsid(x);
+		/**
+		 * Divides an unsigned number by a positive divisor.
+		 * <p>
+		 * {@link Long#divideUnsigned(long, long)} of JDK 8 uses {@code BigInteger}
+		 * when the dividend is negative.
+		 */
+		private static long divideUnsigned(final long dividend, final long divisor) {
+			final long quotient = ((dividend >>> 1) / divisor) << 1;
+			final long remainder = dividend - quotient * divisor;
+			return quotient + (Long.compareUnsigned(remainder, divisor) >= 0 ? 1 : 0);
 		}
 
-		private static int length(int base) {
-			return (int) Math.ceil(Long.SIZE / (Math.log(base) / Math.log(2)));
+		private static String slice(final CharSequence string, final int start, final int end) {
+			return string.subSequence(start, end).toString();
 		}
 
 		private static void exception(String string) {
 			throw new IllegalArgumentException(string);
 		}
+
+		/**
+		 * Precomputed tables of a base.
+		 */
+		static final class Radix {
+
+			final int base;
+
+			/**
+			 * Number of digits of an unsigned 64-bit number.
+			 */
+			final int length;
+
+			/**
+			 * Shift and mask of a digit if the base is a power of two, otherwise ZERO.
+			 */
+			final int shift;
+			final int mask;
+			/**
+			 * Number of bits of the first digit that fit in 64 bits.
+			 */
+			final int firstBits;
+
+			/**
+			 * Largest power of the base that fits in 63 bits.
+			 */
+			final long power;
+			final int powerDigits;
+
+			/**
+			 * Largest power of the base that fits in 31 bits.
+			 */
+			final int intPower;
+			final int intPowerDigits;
+			final int[] intPowers;
+
+			/**
+			 * Largest number that can be multiplied by the base without overflow, and the
+			 * largest digit that can be added to that product without overflow.
+			 */
+			final long limit;
+			final int limitDigit;
+
+			/**
+			 * Reverse alphabets: case-sensitive and case-insensitive.
+			 */
+			final byte[] values;
+			final byte[] valuesIgnoreCase;
+
+			Radix(final int base) {
+
+				this.base = base;
+
+				int length = 0;
+				for (long x = -1L; x != 0; x = Long.divideUnsigned(x, base)) {
+					length++;
+				}
+				this.length = length;
+
+				if ((base & (base - 1)) == 0) {
+					this.shift = Integer.numberOfTrailingZeros(base);
+					this.mask = base - 1;
+					this.firstBits = Long.SIZE - (length - 1) * shift;
+				} else {
+					this.shift = 0;
+					this.mask = 0;
+					this.firstBits = 0;
+				}
+
+				long power = base;
+				int powerDigits = 1;
+				while (power <= Long.MAX_VALUE / base) {
+					power *= base;
+					powerDigits++;
+				}
+				this.power = power;
+				this.powerDigits = powerDigits;
+
+				int intPower = base;
+				int intPowerDigits = 1;
+				while (intPower <= Integer.MAX_VALUE / base) {
+					intPower *= base;
+					intPowerDigits++;
+				}
+				this.intPower = intPower;
+				this.intPowerDigits = intPowerDigits;
+
+				this.intPowers = new int[intPowerDigits];
+				this.intPowers[0] = 1;
+				for (int i = 1; i < intPowerDigits; i++) {
+					this.intPowers[i] = this.intPowers[i - 1] * base;
+				}
+
+				this.limit = Long.divideUnsigned(-1L, base);
+				this.limitDigit = (int) Long.remainderUnsigned(-1L, base);
+
+				this.values = new byte[128];
+				Arrays.fill(this.values, (byte) -1);
+				for (int i = 0; i < base; i++) {
+					this.values[DIGITS[i]] = (byte) i;
+				}
+
+				if (base <= DIGITS_LOWERCASE.length) {
+					this.valuesIgnoreCase = Arrays.copyOf(this.values, this.values.length);
+					for (int i = 0; i < base; i++) {
+						this.valuesIgnoreCase[DIGITS_LOWERCASE[i]] = (byte) i;
+					}
+				} else {
+					this.valuesIgnoreCase = this.values;
+				}
+			}
+		}
 	}
 
 	private static class LazyHolder {
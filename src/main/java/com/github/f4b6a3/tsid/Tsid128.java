@@ -0,0 +1,460 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import static com.github.f4b6a3.tsid.Tsid.ALPHABET_LOWERCASE;
+import static com.github.f4b6a3.tsid.Tsid.ALPHABET_UPPERCASE;
+import static com.github.f4b6a3.tsid.Tsid.ALPHABET_VALUES;
+import static com.github.f4b6a3.tsid.Tsid.RANDOM_BITS;
+import static com.github.f4b6a3.tsid.Tsid.TSID_EPOCH;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A value object that represents a 128-bit Time-Sorted Unique Identifier.
+ * <p>
+ * Tsid128 is a 128-bit value that has 4 components:
+ * <ul>
+ * <li><b>Time component (48 bits)</b>: a number of milliseconds since
+ * 1970-01-01 (Unix epoch).
+ * <li><b>Node component (16 bits)</b>: a number used to identify the machine or
+ * node.
+ * <li><b>Counter component (32 bits)</b>: a randomly generated number that is
+ * incremented whenever the time component is repeated.
+ * <li><b>Random component (32 bits)</b>: a sequence of random bits generated
+ * for each Tsid128.
+ * </ul>
+ * <p>
+ * The time component covers dates up to the year 10889. The maximum number of
+ * Tsid128s that can be generated per millisecond per node is 2^32.
+ * <p>
+ * The canonical string is 26 characters long and contains only characters from
+ * Crockford's base 32 alphabet. The first character is between 0 and 7.
+ * <p>
+ * Instances of this class are <b>immutable</b>.
+ * 
+ * @see Tsid128Factory
+ * @since 5.3.0
+ */
+public final class Tsid128 implements Serializable, Comparable<Tsid128> {
+
+	private static final long serialVersionUID = 4371542375123457896L;
+
+	/**
+	 * The most significant bits: time and node.
+	 */
+	private final long msb;
+	/**
+	 * The least significant bits: counter and random.
+	 */
+	private final long lsb;
+
+	/**
+	 * Number of bytes of a Tsid128.
+	 */
+	public static final int TSID128_BYTES = 16;
+	/**
+	 * Number of characters of a Tsid128.
+	 */
+	public static final int TSID128_CHARS = 26;
+
+	static final int NODE_BITS = 16;
+	static final int NODE_MASK = 0xffff;
+	static final int COUNTER_BITS = 32;
+	static final long COUNTER_MASK = 0xffffffffL;
+	static final long TIME_MASK = 0xffffffffffffL;
+
+	/**
+	 * Creates a new Tsid128.
+	 * <p>
+	 * This constructor wraps the input values in an immutable object.
+	 * 
+	 * @param msb the most significant bits
+	 * @param lsb the least significant bits
+	 */
+	public Tsid128(final long msb, final long lsb) {
+		this.msb = msb;
+		this.lsb = lsb;
+	}
+
+	/**
+	 * Converts a pair of numbers into a Tsid128.
+	 * 
+	 * @param msb the most significant bits
+	 * @param lsb the least significant bits
+	 * @return a Tsid128
+	 */
+	public static Tsid128 from(final long msb, final long lsb) {
+		return new Tsid128(msb, lsb);
+	}
+
+	/**
+	 * Converts a byte array into a Tsid128.
+	 * 
+	 * @param bytes a byte array
+	 * @return a Tsid128
+	 * @throws IllegalArgumentException if bytes are null or its length is not 16
+	 */
+	public static Tsid128 from(final byte[] bytes) {
+
+		if (bytes == null || bytes.length != TSID128_BYTES) {
+			throw new IllegalArgumentException("Invalid Tsid128 bytes"); // null or wrong length!
+		}
+
+		long msb = 0;
+		long lsb = 0;
+		for (int i = 0; i < 8; i++) {
+			msb = (msb << 8) | (bytes[i] & 0xffL);
+		}
+		for (int i = 8; i < 16; i++) {
+			lsb = (lsb << 8) | (bytes[i] & 0xffL);
+		}
+
+		return new Tsid128(msb, lsb);
+	}
+
+	/**
+	 * Converts a canonical string into a Tsid128.
+	 * <p>
+	 * The input string must be 26 characters long and must contain only characters
+	 * from Crockford's base 32 alphabet.
+	 * <p>
+	 * The first character of the input string must be between 0 and 7.
+	 * <p>
+	 * The string is decoded without intermediate allocations.
+	 * 
+	 * @param string a canonical string
+	 * @return a Tsid128
+	 * @throws IllegalArgumentException if the input string is invalid
+	 * @see <a href="https://www.crockford.com/base32.html">Crockford's Base 32</a>
+	 */
+	public static Tsid128 from(final CharSequence string) {
+
+		if (string == null || string.length() != TSID128_CHARS) {
+			throw new IllegalArgumentException(String.format("Invalid Tsid128 string: \"%s\"", string));
+		}
+
+		long msb = 0;
+		long lsb = 0;
+		int check = 0;
+
+		for (int i = 0; i < 13; i++) {
+			final int value = value(string.charAt(i));
+			msb = (msb << 5) | value;
+			check |= value;
+		}
+
+		// the 14th character is split between the two halves
+		final int split = value(string.charAt(13));
+		msb = (msb << 1) | (split >>> 4);
+		lsb = split & 0b01111;
+		check |= split;
+
+		for (int i = 14; i < TSID128_CHARS; i++) {
+			final int value = value(string.charAt(i));
+			lsb = (lsb << 5) | value;
+			check |= value;
+		}
+
+		// The 2 extra bits added by base-32 encoding must be zero
+		if (check < 0 || value(string.charAt(0)) > 0b00111) {
+			throw new IllegalArgumentException(String.format("Invalid Tsid128 string: \"%s\"", string));
+		}
+
+		return new Tsid128(msb, lsb);
+	}
+
+	/**
+	 * Converts a TSID into a Tsid128.
+	 * <p>
+	 * The random component of the Tsid128 is zero. The TSID can be recovered with
+	 * {@link #toTsid(int)}.
+	 * 
+	 * @param tsid     a TSID created with the default epoch
+	 * @param nodeBits the node identifier bits length of the TSID, between 0 and
+	 *                 20
+	 * @return a Tsid128
+	 * @throws IllegalArgumentException if the node bits are out of range or the
+	 *                                  node identifier is greater than 65535
+	 */
+	public static Tsid128 from(final Tsid tsid, final int nodeBits) {
+		final long number = tsid.toLong();
+		final long node = TsidLongs.node(number, nodeBits);
+		if (node > NODE_MASK) {
+			throw new IllegalArgumentException(String.format("Node ID out of range [0, %s]: %s", NODE_MASK, node));
+		}
+		final long counter = TsidLongs.counter(number, nodeBits);
+		final long msb = (TsidLongs.unixMillis(number) << NODE_BITS) | node;
+		return new Tsid128(msb, counter << COUNTER_BITS);
+	}
+
+	/**
+	 * Returns the most significant bits: time and node.
+	 * 
+	 * @return a number
+	 */
+	public long getMostSignificantBits() {
+		return this.msb;
+	}
+
+	/**
+	 * Returns the least significant bits: counter and random.
+	 * 
+	 * @return a number
+	 */
+	public long getLeastSignificantBits() {
+		return this.lsb;
+	}
+
+	/**
+	 * Converts the Tsid128 into a byte array.
+	 * 
+	 * @return an byte array.
+	 */
+	public byte[] toBytes() {
+		final byte[] bytes = new byte[TSID128_BYTES];
+		for (int i = 0; i < 8; i++) {
+			bytes[i] = (byte) (this.msb >>> (56 - (i << 3)));
+			bytes[i + 8] = (byte) (this.lsb >>> (56 - (i << 3)));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Converts the Tsid128 into a TSID.
+	 * <p>
+	 * The random component is discarded. The result is the TSID that a
+	 * {@link TsidFactory} with the same node bits would generate with the same
+	 * time, node and counter.
+	 * 
+	 * @param nodeBits the node identifier bits length of the TSID, between 0 and
+	 *                 20
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the node bits are out of range or the
+	 *                                  fields don't fit in a TSID
+	 * @see #fitsTsid(int)
+	 */
+	public Tsid toTsid(final int nodeBits) {
+		if (!fitsTsid(nodeBits)) {
+			throw new IllegalArgumentException(
+					String.format("Tsid128 does not fit in a TSID with %s node bits: %s", nodeBits, this));
+		}
+		final long time = (getUnixMilliseconds() - TSID_EPOCH) << RANDOM_BITS;
+		final long node = (long) getNode() << (RANDOM_BITS - nodeBits);
+		return new Tsid(time | node | getCounter());
+	}
+
+	/**
+	 * Checks if the time, node and counter fit in a TSID.
+	 * <p>
+	 * The time must be between 2020-01-01 and 2159-05-15, the node must fit in the
+	 * node bits and the counter must fit in the remaining 22 - node bits.
+	 * 
+	 * @param nodeBits the node identifier bits length of the TSID, between 0 and
+	 *                 20
+	 * @return true if the Tsid128 can be converted into a TSID
+	 * @throws IllegalArgumentException if the node bits are out of range
+	 */
+	public boolean fitsTsid(final int nodeBits) {
+		if (nodeBits < 0 || nodeBits > 20) {
+			throw new IllegalArgumentException(String.format("Node bits out of range [0, 20]: %s", nodeBits));
+		}
+		final long time = getUnixMilliseconds() - TSID_EPOCH;
+		return (time >>> (64 - RANDOM_BITS)) == 0 //
+				&& (getNode() >>> nodeBits) == 0 //
+				&& (getCounter() >>> (RANDOM_BITS - nodeBits)) == 0;
+	}
+
+	/**
+	 * Converts the Tsid128 into a canonical string in upper case.
+	 * <p>
+	 * The output string is 26 characters long and contains only characters from
+	 * Crockford's base 32 alphabet.
+	 * 
+	 * @return a Tsid128 string
+	 * @see <a href="https://www.crockford.com/base32.html">Crockford's Base 32</a>
+	 */
+	@Override
+	public String toString() {
+		final char[] chars = new char[TSID128_CHARS];
+		encode(this.msb, this.lsb, ALPHABET_UPPERCASE, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Converts the Tsid128 into a canonical string in lower case.
+	 * 
+	 * @return a Tsid128 string
+	 * @see <a href="https://www.crockford.com/base32.html">Crockford's Base 32</a>
+	 */
+	public String toLowerCase() {
+		final char[] chars = new char[TSID128_CHARS];
+		encode(this.msb, this.lsb, ALPHABET_LOWERCASE, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Writes the canonical string in upper case into a char array.
+	 * <p>
+	 * It doesn't allocate any object.
+	 * 
+	 * @param chars  a destination array
+	 * @param offset the position of the first character
+	 * @return the position after the last character
+	 * @throws IndexOutOfBoundsException if the array is too short
+	 */
+	public int toChars(final char[] chars, final int offset) {
+		if (offset < 0 || offset > chars.length - TSID128_CHARS) {
+			throw new IndexOutOfBoundsException(String.format("Invalid offset: %s", offset));
+		}
+		encode(this.msb, this.lsb, ALPHABET_UPPERCASE, chars, offset);
+		return offset + TSID128_CHARS;
+	}
+
+	/**
+	 * Returns the instant of creation.
+	 * 
+	 * @return {@link Instant}
+	 */
+	public Instant getInstant() {
+		return Instant.ofEpochMilli(getUnixMilliseconds());
+	}
+
+	/**
+	 * Returns the time of creation in milliseconds since 1970-01-01.
+	 * 
+	 * @return the number of milliseconds since 1970-01-01
+	 */
+	public long getUnixMilliseconds() {
+		return this.msb >>> NODE_BITS;
+	}
+
+	/**
+	 * Returns the node identifier, a number between 0 and 2^16-1.
+	 * 
+	 * @return a number
+	 */
+	public int getNode() {
+		return (int) this.msb & NODE_MASK;
+	}
+
+	/**
+	 * Returns the counter, a number between 0 and 2^32-1.
+	 * 
+	 * @return a number
+	 */
+	public long getCounter() {
+		return this.lsb >>> COUNTER_BITS;
+	}
+
+	/**
+	 * Returns the random component as a number.
+	 * 
+	 * @return a number
+	 */
+	public int getRandom() {
+		return (int) this.lsb;
+	}
+
+	/**
+	 * Checks if the input string is valid.
+	 * <p>
+	 * The input string must be 26 characters long and must contain only characters
+	 * from Crockford's base 32 alphabet.
+	 * <p>
+	 * The first character of the input string must be between 0 and 7.
+	 * 
+	 * @param string a string
+	 * @return true if valid
+	 */
+	public static boolean isValid(final CharSequence string) {
+
+		if (string == null || string.length() != TSID128_CHARS) {
+			return false; // null or wrong size!
+		}
+
+		int check = 0;
+		for (int i = 0; i < TSID128_CHARS; i++) {
+			check |= value(string.charAt(i));
+		}
+
+		// The 2 extra bits added by base-32 encoding must be zero
+		return check >= 0 && value(string.charAt(0)) <= 0b00111;
+	}
+
+	/**
+	 * Returns a hash code value for the Tsid128.
+	 */
+	@Override
+	public int hashCode() {
+		final long bits = this.msb ^ this.lsb;
+		return (int) (bits ^ (bits >>> 32));
+	}
+
+	/**
+	 * Checks if some other Tsid128 is equal to this one.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (other == null)
+			return false;
+		if (other.getClass() != Tsid128.class)
+			return false;
+		Tsid128 that = (Tsid128) other;
+		return (this.msb == that.msb && this.lsb == that.lsb);
+	}
+
+	/**
+	 * Compares two Tsid128s as <b>unsigned</b> 128-bit integers.
+	 * 
+	 * @param that a Tsid128 to be compared with
+	 * @return -1, 0 or 1 as {@code this} is less than, equal to, or greater than
+	 *         {@code that}
+	 */
+	@Override
+	public int compareTo(Tsid128 that) {
+		final int compare = TsidLongs.compareUnsigned(this.msb, that.msb);
+		return compare != 0 ? compare : TsidLongs.compareUnsigned(this.lsb, that.lsb);
+	}
+
+	static void encode(final long msb, final long lsb, final char[] alphabet, final char[] chars, final int offset) {
+
+		// 3 + 12 * 5 + 1 bits from the most significant half
+		chars[offset] = alphabet[(int) (msb >>> 61)];
+		for (int i = 1; i < 13; i++) {
+			chars[offset + i] = alphabet[(int) (msb >>> (61 - 5 * i)) & 0b11111];
+		}
+		chars[offset + 13] = alphabet[(int) (((msb & 1) << 4) | (lsb >>> 60))];
+
+		// 4 + 12 * 5 bits from the least significant half
+		for (int i = 14; i < TSID128_CHARS; i++) {
+			chars[offset + i] = alphabet[(int) (lsb >>> (125 - 5 * i)) & 0b11111];
+		}
+	}
+
+	private static int value(final char chr) {
+		return chr < ALPHABET_VALUES.length ? ALPHABET_VALUES[chr] : -1; // multibyte character!
+	}
+}
@@ -0,0 +1,325 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import com.github.f4b6a3.tsid.TsidFactory.ByteRandom;
+import com.github.f4b6a3.tsid.TsidFactory.IRandom;
+import com.github.f4b6a3.tsid.TsidFactory.IntRandom;
+import com.github.f4b6a3.tsid.TsidFactory.Settings;
+
+/**
+ * A factory that actually generates 128-bit Time-Sorted Unique Identifiers
+ * (Tsid128).
+ * <p>
+ * It works like {@link TsidFactory}: the counter is incremented whenever the
+ * millisecond is repeated and reset to a random value when the millisecond
+ * changes. If the counter overflows, the time is incremented by one
+ * millisecond. The random component is generated for each Tsid128.
+ * <p>
+ * The node identifier has 16 bits and the counter has 32 bits, so up to 65536
+ * nodes can generate up to 2^32 Tsid128s per millisecond each.
+ * <p>
+ * The node identifier provided by the "tsidcreator.node" system property or the
+ * "TSIDCREATOR_NODE" environment variable is used if no node is set.
+ * <p>
+ * This class <b>should</b> be used as a singleton. Make sure that you create
+ * and reuse a single instance of {@link Tsid128Factory} per node in your
+ * distributed system.
+ * 
+ * @since 5.3.0
+ */
+public final class Tsid128Factory {
+
+	private long counter;
+	private long lastTime;
+
+	private final long node;
+
+	private final LongSupplier timeFunction;
+	private final IRandom random;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * It builds a new factory.
+	 * <p>
+	 * The node identifier provided by the "tsidcreator.node" system property or the
+	 * "TSIDCREATOR_NODE" environment variable is embedded in the generated
+	 * Tsid128s. Otherwise the node identifier will be randomly chosen.
+	 */
+	public Tsid128Factory() {
+		this(builder());
+	}
+
+	/**
+	 * It builds a new factory.
+	 *
+	 * @param node the node identifier
+	 */
+	public Tsid128Factory(int node) {
+		this(builder().withNode(node));
+	}
+
+	private Tsid128Factory(Builder builder) {
+		this.random = builder.getRandom();
+		this.timeFunction = builder.getTimeFunction();
+		this.node = builder.getNode();
+		this.lastTime = 0L; // 1970-01-01
+		this.counter = getRandomCounter();
+	}
+
+	/**
+	 * Returns a Tsid128.
+	 *
+	 * @return a Tsid128
+	 */
+	public Tsid128 create() {
+		lock.lock();
+		try {
+			// the random function may not be thread-safe
+			final long _random = random.nextInt() & 0xffffffffL;
+			final long _time = getTime() << Tsid128.NODE_BITS;
+			final long _counter = this.counter << Tsid128.COUNTER_BITS;
+			return new Tsid128(_time | this.node, _counter | _random);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the current time.
+	 * <p>
+	 * If the current time is equal to the previous time, the counter is incremented
+	 * by one. Otherwise the counter is reset to a random value.
+	 *
+	 * @return the current time
+	 */
+	private long getTime() {
+
+		long time = timeFunction.getAsLong();
+
+		if (time <= this.lastTime) {
+			this.counter++;
+			// Carry is 1 if an overflow occurs after ++.
+			long carry = this.counter >>> Tsid128.COUNTER_BITS;
+			this.counter = this.counter & Tsid128.COUNTER_MASK;
+			time = this.lastTime + carry; // increment time
+		} else {
+			// If the system clock has advanced as expected,
+			// simply reset the counter to a new random value.
+			this.counter = this.getRandomCounter();
+		}
+
+		// save current time
+		this.lastTime = time;
+
+		return time & Tsid128.TIME_MASK;
+	}
+
+	/**
+	 * Returns a random counter value from 0 to 2^31-1.
+	 * <p>
+	 * The most significant bit of the counter is left clear, so that at least 2^31
+	 * Tsid128s can be generated after a millisecond change before borrowing the
+	 * next millisecond.
+	 *
+	 * @return a number
+	 */
+	private long getRandomCounter() {
+		return random.nextInt() & 0x7fffffffL;
+	}
+
+	/**
+	 * Returns a builder object.
+	 * <p>
+	 * It is used to build a custom {@link Tsid128Factory}.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * A nested class that builds custom Tsid128 factories.
+	 */
+	public static class Builder {
+
+		private Integer node;
+		private IRandom random;
+		private LongSupplier timeFunction;
+
+		/**
+		 * Set the node identifier.
+		 * <p>
+		 * The range is 0 to 65535.
+		 * 
+		 * @param node a number between 0 and 65535
+		 * @return {@link Builder}
+		 */
+		public Builder withNode(Integer node) {
+			this.node = node;
+			return this;
+		}
+
+		/**
+		 * Set the random generator.
+		 * <p>
+		 * The random generator is used to reset the counter when the millisecond
+		 * changes and to generate the random component.
+		 *
+		 * @param random a {@link Random} generator
+		 * @return {@link Builder}
+		 */
+		public Builder withRandom(Random random) {
+			if (random != null) {
+				if (random instanceof SecureRandom) {
+					this.random = new ByteRandom(random);
+				} else {
+					this.random = new IntRandom(random);
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Set the random function.
+		 * <p>
+		 * A fast random function, for example {@code ThreadLocalRandom}, increases
+		 * the throughput of the factory.
+		 *
+		 * @param randomFunction a random function that returns a integer value
+		 * @return {@link Builder}
+		 */
+		public Builder withRandomFunction(IntSupplier randomFunction) {
+			this.random = new IntRandom(randomFunction);
+			return this;
+		}
+
+		/**
+		 * Set the random function.
+		 * <p>
+		 * The random function must return a byte array of a given length.
+		 *
+		 * @param randomFunction a random function that returns a byte array
+		 * @return {@link Builder}
+		 */
+		public Builder withRandomFunction(IntFunction<byte[]> randomFunction) {
+			this.random = new ByteRandom(randomFunction);
+			return this;
+		}
+
+		/**
+		 * Set the clock to be used in tests.
+		 * 
+		 * @param clock a clock
+		 * @return {@link Builder}
+		 */
+		public Builder withClock(Clock clock) {
+			this.timeFunction = () -> clock.millis();
+			return this;
+		}
+
+		/**
+		 * Set the time function to be used in tests.
+		 *
+		 * @param timeFunction a function that returns the current time in milliseconds,
+		 *                     measured from the UNIX epoch of 1970-01-01T00:00Z (UTC)
+		 * @return {@link Builder}
+		 */
+		public Builder withTimeFunction(LongSupplier timeFunction) {
+			this.timeFunction = timeFunction;
+			return this;
+		}
+
+		/**
+		 * Get the node identifier.
+		 *
+		 * @return a number
+		 * @throws IllegalArgumentException if the node is out of range
+		 */
+		protected Integer getNode() {
+
+			final int max = Tsid128.NODE_MASK;
+
+			if (this.node == null) {
+				if (Settings.getNode() != null) {
+					// use property or variable
+					this.node = Settings.getNode();
+				} else {
+					// use random node identifier
+					this.node = getRandom().nextInt() & max;
+				}
+			}
+
+			if (node < 0 || node > max) {
+				throw new IllegalArgumentException(String.format("Node ID out of range [0, %s]: %s", max, node));
+			}
+
+			return this.node;
+		}
+
+		/**
+		 * Gets the random generator.
+		 *
+		 * @return a random generator
+		 */
+		protected IRandom getRandom() {
+			if (this.random == null) {
+				this.withRandom(new SecureRandom());
+			}
+			return this.random;
+		}
+
+		/**
+		 * Gets the time function to be used in tests.
+		 *
+		 * @return a time function
+		 */
+		protected LongSupplier getTimeFunction() {
+			if (this.timeFunction == null) {
+				this.withTimeFunction(System::currentTimeMillis);
+			}
+			return this.timeFunction;
+		}
+
+		/**
+		 * Returns a build Tsid128 factory.
+		 *
+		 * @return {@link Tsid128Factory}
+		 * @throws IllegalArgumentException if the node is out of range
+		 */
+		public Tsid128Factory build() {
+			return new Tsid128Factory(this);
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * A growable array of TSIDs stored outside the Java heap.
+ * <p>
+ * The TSIDs are stored as primitive {@code long} values in chunks of direct
+ * {@link ByteBuffer}, so that hundreds of millions of TSIDs take 8 bytes each,
+ * don't need to be scanned by the garbage collector and don't need a contiguous
+ * block of memory. The indexes are {@code long} values.
+ * <p>
+ * The TSIDs are stored in big-endian order, so that the bytes of each TSID are
+ * the same as {@link Tsid#toBytes()}.
+ * <p>
+ * The memory of the chunks is released by the garbage collector when the array
+ * is no longer referenced or after {@link #clear()}.
+ * <p>
+ * Instances of this class are <b>not thread-safe</b>.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidArray {
+
+	private final int chunkShift;
+	private final int chunkMask;
+
+	private ByteBuffer[] chunks;
+	private long size;
+
+	static final int DEFAULT_CHUNK_SIZE = 1 << 20; // 8 MB
+	static final int MAX_CHUNK_SIZE = 1 << 27; // 1 GB
+
+	// the number of TSIDs filled or sorted at a time on the heap
+	private static final int BATCH_SIZE = 4096;
+
+	/**
+	 * Creates an empty array with chunks of 2^20 TSIDs (8 MB).
+	 */
+	public TsidArray() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates an empty array with chunks of a given number of TSIDs.
+	 * 
+	 * @param chunkSize the number of TSIDs of each chunk, a power of two between
+	 *                  1 and 2^27
+	 * @throws IllegalArgumentException if the chunk size is invalid
+	 */
+	public TsidArray(final int chunkSize) {
+		if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException(
+					String.format("Chunk size must be a power of two in range [1, %s]: %s", MAX_CHUNK_SIZE, chunkSize));
+		}
+		this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+		this.chunkMask = chunkSize - 1;
+		this.chunks = new ByteBuffer[0];
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * 
+	 * @return the number of TSIDs
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the TSID at a position.
+	 * 
+	 * @param index the position of the TSID
+	 * @return a TSID
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public long get(final long index) {
+		checkIndex(index);
+		return get(this.chunks, index);
+	}
+
+	/**
+	 * Replaces the TSID at a position.
+	 * 
+	 * @param index the position of the TSID
+	 * @param tsid  a TSID
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public void set(final long index, final long tsid) {
+		checkIndex(index);
+		set(this.chunks, index, tsid);
+	}
+
+	/**
+	 * Appends a TSID.
+	 * 
+	 * @param tsid a TSID
+	 */
+	public void add(final long tsid) {
+		ensureCapacity(this.size + 1);
+		set(this.chunks, this.size++, tsid);
+	}
+
+	/**
+	 * Appends TSIDs generated by a factory.
+	 * <p>
+	 * The lock of the factory is acquired once for every few thousand TSIDs.
+	 * 
+	 * @param factory a factory
+	 * @param count   the number of TSIDs to append
+	 * @throws IllegalArgumentException if the count is negative
+	 */
+	public void fill(final TsidFactory factory, final long count) {
+		fill(count, (batch, length) -> factory.create(batch, 0, length));
+	}
+
+	/**
+	 * Appends TSIDs returned by a function.
+	 * <p>
+	 * It can be used with the other factories, for example
+	 * {@code array.fill(() -> factory.createLongForNode(node), count)}.
+	 * 
+	 * @param supplier a function that returns TSIDs
+	 * @param count    the number of TSIDs to append
+	 * @throws IllegalArgumentException if the count is negative
+	 */
+	public void fill(final LongSupplier supplier, final long count) {
+		fill(count, (batch, length) -> {
+			for (int i = 0; i < length; i++) {
+				batch[i] = supplier.getAsLong();
+			}
+		});
+	}
+
+	/**
+	 * Sorts the TSIDs in unsigned order, the same order of
+	 * {@link Tsid#compareTo(Tsid)}.
+	 * <p>
+	 * Each chunk is sorted on the heap with {@link TsidSort}, then the chunks are
+	 * merged. If there is more than one chunk, the merge takes a temporary copy of
+	 * the array outside the Java heap.
+	 */
+	public void sort() {
+
+		final int chunkSize = this.chunkMask + 1;
+		final long[] buffer = new long[(int) Math.min(chunkSize, this.size)];
+		final long[] scratch = new long[buffer.length];
+
+		// sort each chunk
+		for (long start = 0; start < this.size; start += chunkSize) {
+			final LongBuffer chunk = this.chunks[chunk(start)].asLongBuffer();
+			final int length = (int) Math.min(chunkSize, this.size - start);
+			chunk.get(buffer, 0, length);
+			TsidSort.sort(buffer, 0, length, scratch);
+			// Buffer methods, which JDK 9+ overrides with other return types in LongBuffer
+			((Buffer) chunk).rewind();
+			chunk.put(buffer, 0, length);
+		}
+
+		if (this.size <= chunkSize) {
+			return;
+		}
+
+		// merge the sorted runs, alternating between two sets of chunks
+		ByteBuffer[] source = this.chunks;
+		ByteBuffer[] target = allocate(this.chunks.length);
+		for (long run = chunkSize; run < this.size; run <<= 1) {
+			for (long start = 0; start < this.size; start += run << 1) {
+				final long middle = Math.min(start + run, this.size);
+				final long end = Math.min(start + (run << 1), this.size);
+				merge(source, target, start, middle, end);
+			}
+			final ByteBuffer[] swap = source;
+			source = target;
+			target = swap;
+		}
+		this.chunks = source;
+	}
+
+	/**
+	 * Searches a TSID in the sorted array.
+	 * 
+	 * @param tsid a TSID
+	 * @return the index of the TSID if found, otherwise
+	 *         {@code (-(insertion point) - 1)}, like
+	 *         {@link Arrays#binarySearch(long[], long)}
+	 * @see #sort()
+	 */
+	public long binarySearch(final long tsid) {
+		final long index = lowerBound(tsid);
+		if (index < this.size && get(this.chunks, index) == tsid) {
+			return index;
+		}
+		return -index - 1;
+	}
+
+	/**
+	 * Returns the index of the first TSID not less than a given TSID in the sorted
+	 * array.
+	 * 
+	 * @param tsid a TSID
+	 * @return an index between 0 and the size of the array
+	 * @see #sort()
+	 */
+	public long lowerBound(final long tsid) {
+		long low = 0;
+		long high = this.size;
+		while (low < high) {
+			final long middle = (low + high) >>> 1;
+			if (TsidLongs.compareUnsigned(get(this.chunks, middle), tsid) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the first TSID created at or after an instant in the
+	 * sorted array.
+	 * <p>
+	 * The instant is truncated to the time unit of the layout. The TSIDs created
+	 * in a time range are between {@code lowerBound(start, layout)} (inclusive)
+	 * and {@code lowerBound(end, layout)} (exclusive).
+	 * 
+	 * @param instant an instant
+	 * @param layout  the layout of the TSIDs
+	 * @return an index between 0 and the size of the array
+	 * @see #sort()
+	 */
+	public long lowerBound(final Instant instant, final TsidLayout layout) {
+		final long time = layout.ticks(instant) - layout.epochTicks;
+		if (time < 0) {
+			return 0;
+		}
+		if (time > layout.timeMask) {
+			return this.size;
+		}
+		return lowerBound(layout.getTsid(time, 0, 0));
+	}
+
+	/**
+	 * Writes all the TSIDs to a file channel, starting at its current position.
+	 * <p>
+	 * The chunks are written directly from memory outside the Java heap, without
+	 * copying them. Each TSID takes 8 bytes, the same as {@link Tsid#toBytes()}.
+	 * 
+	 * @param channel a file channel
+	 * @return the number of bytes written
+	 * @throws IOException if an I/O error occurs
+	 */
+	public long transferTo(final FileChannel channel) throws IOException {
+		long written = 0;
+		final int chunkSize = this.chunkMask + 1;
+		for (long start = 0; start < this.size; start += chunkSize) {
+			final ByteBuffer chunk = this.chunks[chunk(start)].duplicate();
+			((Buffer) chunk).limit((int) Math.min(chunkSize, this.size - start) * Long.BYTES);
+			while (chunk.hasRemaining()) {
+				written += channel.write(chunk);
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Removes all the TSIDs and releases the chunks.
+	 */
+	public void clear() {
+		this.chunks = new ByteBuffer[0];
+		this.size = 0;
+	}
+
+	private interface Batch {
+		void fill(long[] batch, int length);
+	}
+
+	private void fill(final long count, final Batch batch) {
+
+		if (count < 0) {
+			throw new IllegalArgumentException(String.format("Negative count: %s", count));
+		}
+
+		ensureCapacity(this.size + count);
+
+		final long[] buffer = new long[(int) Math.min(BATCH_SIZE, count)];
+		final long end = this.size + count;
+		while (this.size < end) {
+			// a batch never crosses the end of a chunk
+			final int offset = (int) (this.size & this.chunkMask);
+			final int length = (int) Math.min(Math.min(buffer.length, this.chunkMask + 1 - offset), end - this.size);
+			batch.fill(buffer, length);
+			final LongBuffer chunk = this.chunks[chunk(this.size)].asLongBuffer();
+			((Buffer) chunk).position(offset);
+			chunk.put(buffer, 0, length);
+			this.size += length;
+		}
+	}
+
+	private void merge(final ByteBuffer[] source, final ByteBuffer[] target, final long start, final long middle,
+			final long end) {
+		long i = start;
+		long j = middle;
+		for (long k = start; k < end; k++) {
+			if (j >= end || (i < middle && TsidLongs.compareUnsigned(get(source, i), get(source, j)) <= 0)) {
+				set(target, k, get(source, i++));
+			} else {
+				set(target, k, get(source, j++));
+			}
+		}
+	}
+
+	private void ensureCapacity(final long capacity) {
+		final long chunks = (capacity + this.chunkMask) >>> this.chunkShift;
+		if (chunks > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("Capacity too large: %s", capacity));
+		}
+		if (chunks > this.chunks.length) {
+			final ByteBuffer[] grown = Arrays.copyOf(this.chunks, (int) chunks);
+			for (int c = this.chunks.length; c < grown.length; c++) {
+				grown[c] = allocate();
+			}
+			this.chunks = grown;
+		}
+	}
+
+	private ByteBuffer[] allocate(final int length) {
+		final ByteBuffer[] allocated = new ByteBuffer[length];
+		for (int c = 0; c < length; c++) {
+			allocated[c] = allocate();
+		}
+		return allocated;
+	}
+
+	private ByteBuffer allocate() {
+		return ByteBuffer.allocateDirect((this.chunkMask + 1) * Long.BYTES);
+	}
+
+	private void checkIndex(final long index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException(String.format("Index out of range [0, %s): %s", this.size, index));
+		}
+	}
+
+	private int chunk(final long index) {
+		return (int) (index >>> this.chunkShift);
+	}
+
+	private long get(final ByteBuffer[] chunks, final long index) {
+		return chunks[chunk(index)].getLong(((int) index & this.chunkMask) << 3);
+	}
+
+	private void set(final ByteBuffer[] chunks, final long index, final long tsid) {
+		chunks[chunk(index)].putLong(((int) index & this.chunkMask) << 3, tsid);
+	}
+}
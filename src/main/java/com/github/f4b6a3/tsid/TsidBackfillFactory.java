@@ -0,0 +1,454 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A factory that generates TSIDs for arbitrary times, for example, to backfill
+ * the identifiers of legacy rows.
+ * <p>
+ * Unlike {@link TsidFactory}, it doesn't read a clock. Each call receives the
+ * time of the TSID, in any order. The TSIDs are unique within the factory: the
+ * counter of each millisecond starts at zero and is incremented for each TSID of
+ * that millisecond. If the counter overflows, the next millisecond is borrowed.
+ * TSIDs of the same millisecond are sorted in the order they are created.
+ * <p>
+ * The next counter of each millisecond is kept in primitive hash maps, sharded
+ * by time partition. The number of distinct milliseconds is bounded by the
+ * capacity of the factory; each one takes about 32 bytes of heap.
+ * <p>
+ * The bulk method {@link #createAt(long[], long[])} groups the times by
+ * partition and generates each partition in parallel in a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Make sure that the node identifier of the factory is not used by any other
+ * factory while backfilling, or that the times don't overlap.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidBackfillFactory {
+
+	private static final int SHARDS = 64;
+	private static final int BLOCK_BITS = 10; // partitions of 1024 time units
+
+	private final Shard[] shards;
+	private final long capacity;
+	private final AtomicLong size = new AtomicLong();
+
+	private final long node;
+	private final long counterMask;
+	private final long timeMask;
+	private final int timeShift;
+
+	private final TsidLayout layout;
+	private final ForkJoinPool pool;
+
+	private TsidBackfillFactory(Builder builder) {
+
+		this.layout = builder.config.getLayout();
+		this.capacity = builder.getCapacity();
+		this.pool = builder.getPool();
+
+		this.counterMask = layout.counterMask;
+		this.timeMask = layout.timeMask;
+		this.timeShift = layout.timeShift;
+		this.node = (long) (builder.config.getNode() & layout.nodeMask) << layout.getCounterBits();
+
+		this.shards = new Shard[SHARDS];
+		for (int i = 0; i < SHARDS; i++) {
+			this.shards[i] = new Shard();
+		}
+	}
+
+	/**
+	 * Returns a TSID for a given time.
+	 *
+	 * @param unixMillis the number of milliseconds since 1970-01-01
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the time is out of the range of the
+	 *                                  layout
+	 * @throws IllegalStateException    if the capacity is exceeded
+	 */
+	public Tsid createAt(final long unixMillis) {
+		return new Tsid(createLongAt(unixMillis));
+	}
+
+	/**
+	 * Returns a TSID for a given time as a primitive {@code long}.
+	 *
+	 * @param unixMillis the number of milliseconds since 1970-01-01
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the time is out of the range of the
+	 *                                  layout
+	 * @throws IllegalStateException    if the capacity is exceeded
+	 * @see TsidLongs
+	 */
+	public long createLongAt(final long unixMillis) {
+		return create(time(unixMillis));
+	}
+
+	/**
+	 * Fills an array with TSIDs for the given times.
+	 * <p>
+	 * The output array may be the same as the input array.
+	 *
+	 * @param millis the numbers of milliseconds since 1970-01-01
+	 * @param out    an output array for the TSIDs, at least as long as the input
+	 *               array
+	 * @throws IllegalArgumentException if a time is out of the range of the layout
+	 *                                  or the output array is too short
+	 * @throws IllegalStateException    if the capacity is exceeded
+	 */
+	public void createAt(final long[] millis, final long[] out) {
+
+		final int length = TsidLayout.checkLength(millis, out.length);
+
+		// convert the times in place and count them by partition
+		final int[] starts = new int[SHARDS + 1];
+		for (int i = 0; i < length; i++) {
+			final long time = time(millis[i]);
+			starts[shard(time) + 1]++;
+			out[i] = time;
+		}
+		for (int i = 0; i < SHARDS; i++) {
+			starts[i + 1] += starts[i];
+		}
+
+		// group the indexes by partition, keeping the input order
+		final int[] offsets = starts.clone();
+		final int[] indexes = new int[length];
+		for (int i = 0; i < length; i++) {
+			indexes[offsets[shard(out[i])]++] = i;
+		}
+
+		this.pool.invoke(new PartitionTask(out, indexes, starts, 0, SHARDS));
+	}
+
+	/**
+	 * Returns the number of distinct time units used so far.
+	 * 
+	 * @return a number
+	 */
+	public long size() {
+		return this.size.get();
+	}
+
+	/**
+	 * Returns the layout of the generated TSIDs.
+	 * 
+	 * @return a bit layout
+	 */
+	public TsidLayout getLayout() {
+		return this.layout;
+	}
+
+	private long time(final long unixMillis) {
+		final long time = layout.ticks(unixMillis) - layout.epochTicks;
+		if (time < 0 || time > this.timeMask) {
+			throw new IllegalArgumentException(String.format("Time out of range: %s", Instant.ofEpochMilli(unixMillis)));
+		}
+		return time;
+	}
+
+	private long create(long time) {
+		while (true) {
+			final long counter = this.shards[shard(time)].next(time);
+			if (counter <= this.counterMask) {
+				return (time << this.timeShift) | this.node | counter;
+			}
+			// borrow the next time unit
+			if (++time > this.timeMask) {
+				throw new IllegalArgumentException("Time out of range");
+			}
+		}
+	}
+
+	private static int shard(final long time) {
+		return (int) (time >>> BLOCK_BITS) & (SHARDS - 1);
+	}
+
+	/**
+	 * Returns a builder object.
+	 * <p>
+	 * It is used to build a custom {@link TsidBackfillFactory}.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * A nested class that builds custom backfill factories.
+	 */
+	public static class Builder {
+
+		private final TsidFactory.Builder config = TsidFactory.builder();
+		private Long capacity;
+		private ForkJoinPool pool;
+
+		/**
+		 * Set the node identifier.
+		 * 
+		 * @param node a number between 0 and 2^nodeBits-1
+		 * @return {@link Builder}
+		 */
+		public Builder withNode(Integer node) {
+			this.config.withNode(node);
+			return this;
+		}
+
+		/**
+		 * Set the node identifier bits length within the range 0 to 20.
+		 * 
+		 * @param nodeBits a number between 0 and 20
+		 * @return {@link Builder}
+		 */
+		public Builder withNodeBits(Integer nodeBits) {
+			this.config.withNodeBits(nodeBits);
+			return this;
+		}
+
+		/**
+		 * Set the custom epoch.
+		 * 
+		 * @param customEpoch an instant that represents the custom epoch
+		 * @return {@link Builder}
+		 */
+		public Builder withCustomEpoch(Instant customEpoch) {
+			this.config.withCustomEpoch(customEpoch);
+			return this;
+		}
+
+		/**
+		 * Set the bit layout.
+		 * 
+		 * @param layout a bit layout
+		 * @return {@link Builder}
+		 */
+		public Builder withLayout(TsidLayout layout) {
+			this.config.withLayout(layout);
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of distinct time units.
+		 * <p>
+		 * The default capacity is 2^24 (16,777,216).
+		 * 
+		 * @param capacity a positive number
+		 * @return {@link Builder}
+		 */
+		public Builder withCapacity(long capacity) {
+			this.capacity = capacity;
+			return this;
+		}
+
+		/**
+		 * Set the pool used by the bulk method.
+		 * <p>
+		 * The default pool is the common pool.
+		 * 
+		 * @param pool a fork-join pool
+		 * @return {@link Builder}
+		 */
+		public Builder withPool(ForkJoinPool pool) {
+			this.pool = pool;
+			return this;
+		}
+
+		/**
+		 * Gets the maximum number of distinct time units.
+		 * 
+		 * @return a number
+		 * @throws IllegalArgumentException if the capacity is not positive
+		 */
+		protected long getCapacity() {
+			if (this.capacity == null) {
+				this.capacity = 1L << 24;
+			}
+			if (this.capacity <= 0) {
+				throw new IllegalArgumentException(String.format("Capacity must be positive: %s", this.capacity));
+			}
+			return this.capacity;
+		}
+
+		/**
+		 * Gets the pool used by the bulk method.
+		 * 
+		 * @return a fork-join pool
+		 */
+		protected ForkJoinPool getPool() {
+			if (this.pool == null) {
+				this.pool = ForkJoinPool.commonPool();
+			}
+			return this.pool;
+		}
+
+		/**
+		 * Returns a build backfill factory.
+		 *
+		 * @return {@link TsidBackfillFactory}
+		 * @throws IllegalArgumentException if the node, the node bits or the capacity
+		 *                                  are out of range
+		 */
+		public TsidBackfillFactory build() {
+			return new TsidBackfillFactory(this);
+		}
+	}
+
+	/**
+	 * Generates the TSIDs of a range of partitions.
+	 */
+	private final class PartitionTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] out;
+		private final int[] indexes;
+		private final int[] starts;
+		private final int from;
+		private final int to;
+
+		PartitionTask(long[] out, int[] indexes, int[] starts, int from, int to) {
+			this.out = out;
+			this.indexes = indexes;
+			this.starts = starts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new PartitionTask(out, indexes, starts, from, middle),
+						new PartitionTask(out, indexes, starts, middle, to));
+				return;
+			}
+			for (int i = starts[from]; i < starts[to]; i++) {
+				final int index = indexes[i];
+				out[index] = create(out[index]);
+			}
+		}
+	}
+
+	/**
+	 * An open addressing map from time units to next counters.
+	 * <p>
+	 * Each partition has its own lock, which is held for a single increment, so
+	 * that borrowing from another partition never holds two locks.
+	 */
+	private final class Shard {
+
+		private static final long EMPTY = -1L;
+		private static final int INITIAL_BITS = 4;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private long[] keys;
+		private long[] values;
+		private int bits;
+		private int count;
+
+		Shard() {
+			this.bits = INITIAL_BITS;
+			this.keys = newKeys(1 << INITIAL_BITS);
+			this.values = new long[1 << INITIAL_BITS];
+		}
+
+		/**
+		 * Returns the next counter of a time unit and increments it.
+		 */
+		long next(final long time) {
+			lock.lock();
+			try {
+				int slot = slot(time, this.bits);
+				while (true) {
+					final long key = this.keys[slot];
+					if (key == time) {
+						final long counter = this.values[slot];
+						if (counter <= counterMask) {
+							this.values[slot] = counter + 1;
+						}
+						return counter;
+					}
+					if (key == EMPTY) {
+						insert(slot, time);
+						return 0;
+					}
+					slot = (slot + 1) & (this.keys.length - 1);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void insert(int slot, final long time) {
+			if (size.incrementAndGet() > capacity) {
+				size.decrementAndGet();
+				throw new IllegalStateException(String.format("Capacity exceeded: %s", capacity));
+			}
+			this.keys[slot] = time;
+			this.values[slot] = 1;
+			if (++this.count > (this.keys.length >>> 1)) {
+				resize();
+			}
+		}
+
+		private void resize() {
+			final long[] oldKeys = this.keys;
+			final long[] oldValues = this.values;
+			this.bits++;
+			this.keys = newKeys(1 << this.bits);
+			this.values = new long[1 << this.bits];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY) {
+					int slot = slot(oldKeys[i], this.bits);
+					while (this.keys[slot] != EMPTY) {
+						slot = (slot + 1) & (this.keys.length - 1);
+					}
+					this.keys[slot] = oldKeys[i];
+					this.values[slot] = oldValues[i];
+				}
+			}
+		}
+
+		private long[] newKeys(final int length) {
+			final long[] array = new long[length];
+			Arrays.fill(array, EMPTY);
+			return array;
+		}
+
+		private int slot(final long time, final int bits) {
+			return (int) ((time * 0x9e3779b97f4a7c15L) >>> (64 - bits));
+		}
+	}
+}
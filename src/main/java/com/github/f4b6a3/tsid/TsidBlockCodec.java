@@ -0,0 +1,407 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A codec that compresses sorted arrays of TSIDs stored as primitive
+ * {@code long} values.
+ * <p>
+ * The TSIDs must be sorted in unsigned order, the same order of
+ * {@link Tsid#compareTo(Tsid)}. Duplicates are allowed.
+ * <p>
+ * The block format splits the TSIDs into blocks of 128. Each block stores its
+ * first TSID as a base value and the differences to the base value bit-packed
+ * with the width of the largest difference. Any TSID can be read with
+ * {@link #get(byte[], int)} without decoding the other ones.
+ * <p>
+ * The varint format stores the differences between consecutive TSIDs as
+ * variable-length integers. It is usually smaller, but it can only be decoded
+ * sequentially. It is meant for messages and streams.
+ * <p>
+ * Block format:
+ * 
+ * <pre>
+ * count: int (4 bytes)
+ * for each block:
+ *   base: long (8 bytes)
+ *   offset: int (4 bytes), where the packed differences of the block start
+ *   width: byte (1 byte), the number of bits of each difference, from 0 to 64
+ * for each block:
+ *   differences: long[] (big-endian words, bits packed from the lowest bit)
+ * </pre>
+ * 
+ * Varint format:
+ * 
+ * <pre>
+ * count: varint
+ * for each TSID:
+ *   difference to the previous TSID (or to zero): varint
+ * </pre>
+ * 
+ * @since 5.3.0
+ */
+public final class TsidBlockCodec {
+
+	static final int BLOCK_SIZE = 128;
+
+	private static final int HEADER_BYTES = Integer.BYTES;
+	private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES + Byte.BYTES;
+
+	private TsidBlockCodec() {
+	}
+
+	/**
+	 * Encodes a sorted array of TSIDs in the block format.
+	 * 
+	 * @param tsids an array of TSIDs sorted in unsigned order
+	 * @return a byte array
+	 * @throws IllegalArgumentException if the TSIDs are not sorted
+	 */
+	public static byte[] encode(final long[] tsids) {
+
+		checkSorted(tsids);
+
+		final int count = tsids.length;
+		final int blocks = blocks(count);
+
+		// find the width of each block and the total size
+		final int[] widths = new int[blocks];
+		long length = HEADER_BYTES + (long) blocks * ENTRY_BYTES;
+		for (int b = 0; b < blocks; b++) {
+			final int start = b * BLOCK_SIZE;
+			final int end = Math.min(start + BLOCK_SIZE, count);
+			widths[b] = Long.SIZE - Long.numberOfLeadingZeros(tsids[end - 1] - tsids[start]);
+			length += words(end - start, widths[b]) * Long.BYTES;
+		}
+
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("Too many TSIDs to encode: %s", count));
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		buffer.putInt(count);
+
+		int offset = HEADER_BYTES + blocks * ENTRY_BYTES;
+		for (int b = 0; b < blocks; b++) {
+			final int start = b * BLOCK_SIZE;
+			final int end = Math.min(start + BLOCK_SIZE, count);
+			buffer.putLong(tsids[start]);
+			buffer.putInt(offset);
+			buffer.put((byte) widths[b]);
+			offset += words(end - start, widths[b]) * Long.BYTES;
+		}
+
+		for (int b = 0; b < blocks; b++) {
+			final int start = b * BLOCK_SIZE;
+			final int end = Math.min(start + BLOCK_SIZE, count);
+			pack(tsids, start, end, widths[b], buffer);
+		}
+
+		return buffer.array();
+	}
+
+	/**
+	 * Decodes all the TSIDs of a byte array in the block format.
+	 * 
+	 * @param bytes a byte array in the block format
+	 * @return an array of TSIDs
+	 * @throws IllegalArgumentException if the byte array is invalid
+	 */
+	public static long[] decode(final byte[] bytes) {
+
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		final int count = count(buffer);
+		final long[] tsids = new long[count];
+
+		for (int b = 0; b < blocks(count); b++) {
+			final int entry = HEADER_BYTES + b * ENTRY_BYTES;
+			final long base = buffer.getLong(entry);
+			final int offset = buffer.getInt(entry + Long.BYTES);
+			final int width = width(buffer, entry);
+			final int start = b * BLOCK_SIZE;
+			final int end = Math.min(start + BLOCK_SIZE, count);
+			unpack(buffer, offset, base, width, tsids, start, end);
+		}
+
+		return tsids;
+	}
+
+	/**
+	 * Returns the TSID at a position of a byte array in the block format.
+	 * <p>
+	 * Only the block entry and at most two words of the block are read.
+	 * 
+	 * @param bytes a byte array in the block format
+	 * @param index the position of the TSID
+	 * @return a TSID
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws IllegalArgumentException  if the byte array is invalid
+	 */
+	public static long get(final byte[] bytes, final int index) {
+
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		final int count = count(buffer);
+
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException(String.format("Index out of range [0, %s): %s", count, index));
+		}
+
+		final int entry = HEADER_BYTES + (index / BLOCK_SIZE) * ENTRY_BYTES;
+		final long base = buffer.getLong(entry);
+		final int offset = buffer.getInt(entry + Long.BYTES);
+		final int width = width(buffer, entry);
+
+		return base + read(buffer, offset, width, index % BLOCK_SIZE);
+	}
+
+	/**
+	 * Returns the number of TSIDs of a byte array in the block format.
+	 * 
+	 * @param bytes a byte array in the block format
+	 * @return the number of TSIDs
+	 * @throws IllegalArgumentException if the byte array is invalid
+	 */
+	public static int size(final byte[] bytes) {
+		return count(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Encodes a sorted array of TSIDs in the varint format.
+	 * 
+	 * @param tsids an array of TSIDs sorted in unsigned order
+	 * @return a byte array
+	 * @throws IllegalArgumentException if the TSIDs are not sorted
+	 */
+	public static byte[] encodeVarints(final long[] tsids) {
+
+		checkSorted(tsids);
+
+		// find the total size
+		long length = varintLength(tsids.length);
+		long previous = 0;
+		for (int i = 0; i < tsids.length; i++) {
+			length += varintLength(tsids[i] - previous);
+			previous = tsids[i];
+		}
+
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("Too many TSIDs to encode: %s", tsids.length));
+		}
+
+		final byte[] bytes = new byte[(int) length];
+
+		int position = putVarint(bytes, 0, tsids.length);
+		previous = 0;
+		for (int i = 0; i < tsids.length; i++) {
+			position = putVarint(bytes, position, tsids[i] - previous);
+			previous = tsids[i];
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Decodes all the TSIDs of a byte array in the varint format.
+	 * 
+	 * @param bytes a byte array in the varint format
+	 * @return an array of TSIDs
+	 * @throws IllegalArgumentException if the byte array is invalid
+	 */
+	public static long[] decodeVarints(final byte[] bytes) {
+
+		if (bytes == null) {
+			throw new IllegalArgumentException("Invalid TSID varints: null");
+		}
+
+		final int[] position = { 0 };
+		final long count = getVarint(bytes, position);
+
+		// each varint takes at least 1 byte
+		if (count < 0 || count > bytes.length - position[0]) {
+			throw new IllegalArgumentException(String.format("Invalid TSID varints count: %s", count));
+		}
+
+		final long[] tsids = new long[(int) count];
+		long previous = 0;
+		for (int i = 0; i < tsids.length; i++) {
+			previous += getVarint(bytes, position);
+			tsids[i] = previous;
+		}
+
+		return tsids;
+	}
+
+	private static void checkSorted(final long[] tsids) {
+		for (int i = 1; i < tsids.length; i++) {
+			if (TsidLongs.compareUnsigned(tsids[i - 1], tsids[i]) > 0) {
+				throw new IllegalArgumentException(String.format("TSIDs not sorted at index %s", i));
+			}
+		}
+	}
+
+	private static int blocks(final int count) {
+		return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	private static int words(final int count, final int width) {
+		return (int) (((long) count * width + Long.SIZE - 1) / Long.SIZE);
+	}
+
+	private static int count(final ByteBuffer buffer) {
+
+		if (buffer.capacity() < HEADER_BYTES) {
+			throw new IllegalArgumentException("Invalid TSID block: too short");
+		}
+
+		final int count = buffer.getInt(0);
+		if (count < 0 || HEADER_BYTES + (long) blocks(count) * ENTRY_BYTES > buffer.capacity()) {
+			throw new IllegalArgumentException(String.format("Invalid TSID block count: %s", count));
+		}
+
+		return count;
+	}
+
+	private static int width(final ByteBuffer buffer, final int entry) {
+		final int width = buffer.get(entry + Long.BYTES + Integer.BYTES);
+		if (width < 0 || width > Long.SIZE) {
+			throw new IllegalArgumentException(String.format("Invalid TSID block width: %s", width));
+		}
+		return width;
+	}
+
+	private static void pack(final long[] tsids, final int start, final int end, final int width,
+			final ByteBuffer buffer) {
+
+		if (width == 0) {
+			return; // all equal to the base
+		}
+
+		final long base = tsids[start];
+		long word = 0;
+		int bits = 0; // bits used in the current word
+
+		for (int i = start; i < end; i++) {
+			final long delta = tsids[i] - base;
+			word |= delta << bits;
+			bits += width;
+			if (bits >= Long.SIZE) {
+				buffer.putLong(word);
+				bits -= Long.SIZE;
+				// the bits that did not fit in the previous word
+				word = bits == 0 ? 0 : delta >>> (width - bits);
+			}
+		}
+
+		if (bits > 0) {
+			buffer.putLong(word);
+		}
+	}
+
+	private static void unpack(final ByteBuffer buffer, final int offset, final long base, final int width,
+			final long[] tsids, final int start, final int end) {
+
+		if (width == 0) {
+			for (int i = start; i < end; i++) {
+				tsids[i] = base;
+			}
+			return;
+		}
+
+		final long mask = mask(width);
+		int position = offset;
+		long word = 0;
+		int bits = 0; // bits available in the current word
+
+		for (int i = start; i < end; i++) {
+			long delta;
+			if (bits >= width) {
+				delta = word & mask;
+				word >>>= width; // width < 64 here
+				bits -= width;
+			} else {
+				// the low bits left in the current word and the high bits from the next one
+				final long next = buffer.getLong(position);
+				position += Long.BYTES;
+				final int used = width - bits;
+				delta = (word | (next << bits)) & mask;
+				word = used == Long.SIZE ? 0 : next >>> used;
+				bits = Long.SIZE - used;
+			}
+			tsids[i] = base + delta;
+		}
+	}
+
+	private static long read(final ByteBuffer buffer, final int offset, final int width, final int index) {
+
+		if (width == 0) {
+			return 0;
+		}
+
+		final long bit = (long) index * width;
+		final int position = offset + (int) (bit / Long.SIZE) * Long.BYTES;
+		final int shift = (int) (bit % Long.SIZE);
+
+		long delta = buffer.getLong(position) >>> shift;
+		if (shift + width > Long.SIZE) {
+			delta |= buffer.getLong(position + Long.BYTES) << (Long.SIZE - shift);
+		}
+
+		return delta & mask(width);
+	}
+
+	private static long mask(final int width) {
+		return width == Long.SIZE ? -1L : (1L << width) - 1;
+	}
+
+	private static int varintLength(final long value) {
+		// 7 bits per byte, and at least 1 byte
+		return (Long.SIZE - Long.numberOfLeadingZeros(value | 1) + 6) / 7;
+	}
+
+	private static int putVarint(final byte[] bytes, int position, long value) {
+		while ((value & ~0x7fL) != 0) {
+			bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		bytes[position++] = (byte) value;
+		return position;
+	}
+
+	private static long getVarint(final byte[] bytes, final int[] position) {
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			if (position[0] >= bytes.length) {
+				throw new IllegalArgumentException("Invalid TSID varints: truncated");
+			}
+			final byte b = bytes[position[0]++];
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Invalid TSID varints: too long");
+	}
+}
@@ -24,12 +24,14 @@
 
 package com.github.f4b6a3.tsid;
 
-import static com.github.f4b6a3.tsid.Tsid.RANDOM_BITS;
-import static com.github.f4b6a3.tsid.Tsid.RANDOM_MASK;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.IntFunction;
 import java.util.function.IntSupplier;
@@ -62,6 +64,10 @@ import java.util.function.LongSupplier;
  * A "node" as we call it in this library can be a physical machine, a virtual
  * machine, a container, a k8s pod, a running process, etc.
  * <p>
+ * The bits of the time, node and counter components can be customized with a
+ * {@link TsidLayout}, which can also be used to extract those components from
+ * the generated TSIDs.
+ * <p>
  * This class <b>should</b> be used as a singleton. Make sure that you create
  * and reuse a single instance of {@link TsidFactory} per node in your
  * distributed system.
@@ -79,11 +85,19 @@ public final class TsidFactory {
 	private final int nodeMask;
 	private final int counterMask;
 
-	private final long customEpoch;
-	private final LongSupplier timeFunction;
+	private final int timeShift;
+
+	private final TsidLayout layout;
+	private final LongSupplier tickFunction;
 
 	private final IRandom random;
 	private final int randomBytes;
+	private final int randomMask;
+
+	private final long maxSkew;
+	private final AtomicLong observed = new AtomicLong();
+
+	private final HighWaterMark highWaterMark;
 
 	private final ReentrantLock lock = new ReentrantLock();
 
@@ -134,26 +148,39 @@ public final class TsidFactory {
 	 */
 	private TsidFactory(Builder builder) {
 
-		// setup the custom epoch, the node bits, etc
-		this.customEpoch = builder.getCustomEpoch();
-		this.nodeBits = builder.getNodeBits();
+		// setup the layout, the random function, etc
+		this.layout = builder.getLayout();
 		this.random = builder.getRandom();
-		this.timeFunction = builder.getTimeFunction();
+		this.tickFunction = builder.getTickFunction();
+		this.maxSkew = builder.getMaxSkew().toNanos() / layout.unitNanos;
 
-		// setup constants that depend on node bits
-		this.counterBits = RANDOM_BITS - nodeBits;
-		this.counterMask = RANDOM_MASK >>> nodeBits;
-		this.nodeMask = RANDOM_MASK >>> counterBits;
+		// setup constants that depend on the layout
+		this.nodeBits = layout.getNodeBits();
+		this.counterBits = layout.getCounterBits();
+		this.counterMask = layout.counterMask;
+		this.nodeMask = layout.nodeMask;
+		this.timeShift = layout.timeShift;
 
 		// setup how many bytes to get from the random function
-		this.randomBytes = ((this.counterBits - 1) / 8) + 1;
+		final int randomBits = builder.getRandomCounterBits();
+		this.randomBytes = ((randomBits - 1) / 8) + 1;
+		this.randomMask = (int) ((1L << randomBits) - 1);
 
 		// setup the node identifier
 		this.node = builder.getNode() & nodeMask;
 
+		// setup the persisted high-water mark, if any
+		this.highWaterMark = builder.getHighWaterMark();
+
 		// finally initialize inner state
-		this.lastTime = 0L; // 1970-01-01
-		this.counter = getRandomCounter();
+		if (this.highWaterMark != null && this.highWaterMark.reserved() > 0) {
+			// start after the time reserved before the restart
+			this.lastTime = this.highWaterMark.reserved();
+			this.counter = this.counterMask; // overflows on the next increment
+		} else {
+			this.lastTime = 0L; // 1970-01-01
+			this.counter = getRandomCounter();
+		}
 	}
 
 	/**
@@ -229,7 +256,7 @@ public final class TsidFactory {
 	public Tsid create() {
 		lock.lock();
 		try {
-			final long _time = getTime() << RANDOM_BITS;
+			final long _time = getTime() << this.timeShift;
 			final long _node = (long) this.node << this.counterBits;
 			final long _counter = (long) this.counter & this.counterMask;
 
@@ -239,12 +266,73 @@ public final class TsidFactory {
 		}
 	}
 
+	/**
+	 * Fills part of an array with TSIDs, acquiring the lock only once.
+	 */
+	void create(final long[] tsids, final int offset, final int length) {
+		lock.lock();
+		try {
+			final long _node = (long) this.node << this.counterBits;
+			for (int i = offset; i < offset + length; i++) {
+				final long _time = getTime() << this.timeShift;
+				final long _counter = (long) this.counter & this.counterMask;
+				tsids[i] = _time | _node | _counter;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Observes a TSID received from another node, like a hybrid logical clock.
+	 * <p>
+	 * If the time of the observed TSID is ahead of the time of this factory, the
+	 * next TSIDs are generated after it, so that they are greater than the observed
+	 * TSID. The observed TSID must have the same layout as this factory.
+	 * <p>
+	 * The observed time is ignored if it is ahead of the current time by more than
+	 * the maximum skew, so that a faulty clock can't push this factory far into the
+	 * future.
+	 * <p>
+	 * This method doesn't acquire the lock of the factory, so it can be called for
+	 * every inbound message.
+	 * 
+	 * @param tsid a TSID
+	 * @return false if the observed time was ignored for exceeding the maximum skew
+	 * @since 5.3.0
+	 */
+	public boolean observe(final Tsid tsid) {
+		return observe(tsid.toLong());
+	}
+
+	/**
+	 * Observes a TSID received from another node, like a hybrid logical clock.
+	 * 
+	 * @param tsid a TSID
+	 * @return false if the observed time was ignored for exceeding the maximum skew
+	 * @see #observe(Tsid)
+	 * @since 5.3.0
+	 */
+	public boolean observe(final long tsid) {
+		final long time = layout.getTime(tsid) + layout.epochTicks;
+		if (time <= this.observed.get()) {
+			return true; // nothing new
+		}
+		if (time - tickFunction.getAsLong() > this.maxSkew) {
+			return false; // too far ahead
+		}
+		this.observed.accumulateAndGet(time, Math::max);
+		return true;
+	}
+
 	/**
 	 * Returns the current time.
 	 * <p>
 	 * If the current time is equal to the previous time, the counter is incremented
 	 * by one. Otherwise the counter is reset to a random value.
 	 * <p>
+	 * The current time is advanced past the latest observed time, if any.
+	 * <p>
 	 * The maximum number of increment operations depend on the counter bits. For
 	 * example, if the counter bits is 12, the maximum number of increment
 	 * operations is 2^12 = 4096.
@@ -253,7 +341,13 @@ public final class TsidFactory {
 	 */
 	private long getTime() {
 
-		long time = timeFunction.getAsLong();
+		long time = tickFunction.getAsLong();
+
+		// jump past the latest observed time
+		final long floor = this.observed.get();
+		if (time <= floor) {
+			time = floor + 1;
+		}
 
 		if (time <= this.lastTime) {
 			this.counter++;
@@ -267,38 +361,54 @@ public final class TsidFactory {
 			this.counter = this.getRandomCounter();
 		}
 
+		// reserve the current time before using it
+		if (this.highWaterMark != null) {
+			this.highWaterMark.check(time);
+		}
+
 		// save current time
 		this.lastTime = time;
 
 		// adjust to the custom epoch
-		return time - this.customEpoch;
+		return time - layout.epochTicks;
 	}
 
 	/**
 	 * Returns a random counter value from 0 to 0x3fffff (2^22-1 = 4,194,303).
 	 * <p>
 	 * The counter maximum value depends on the node identifier bits. For example,
-	 * if the node identifier has 10 bits, the counter has 12 bits.
+	 * if the node identifier has 10 bits, the counter has 12 bits. Custom layouts
+	 * may have up to 31 counter bits.
+	 * <p>
+	 * If the random counter bits are fewer than the counter bits, only the lower
+	 * bits are random. If they are zero, the counter starts at zero.
 	 *
 	 * @return a number
 	 */
 	private int getRandomCounter() {
 
+		if (this.randomMask == 0) {
+			return 0;
+		}
+
 		if (random instanceof ByteRandom) {
 
 			final byte[] bytes = random.nextBytes(this.randomBytes);
 
 			switch (bytes.length) {
 			case 1:
-				return (bytes[0] & 0xff) & this.counterMask;
+				return (bytes[0] & 0xff) & this.randomMask;
 			case 2:
-				return (((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff)) & this.counterMask;
+				return (((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff)) & this.randomMask;
+			case 3:
+				return (((bytes[0] & 0xff) << 16) | ((bytes[1] & 0xff) << 8) | (bytes[2] & 0xff)) & this.randomMask;
 			default:
-				return (((bytes[0] & 0xff) << 16) | ((bytes[1] & 0xff) << 8) | (bytes[2] & 0xff)) & this.counterMask;
+				return (((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8)
+						| (bytes[3] & 0xff)) & this.randomMask;
 			}
 
 		} else {
-			return random.nextInt() & this.counterMask;
+			return random.nextInt() & this.randomMask;
 		}
 	}
 
@@ -327,8 +437,14 @@ public final class TsidFactory {
 		private Integer node;
 		private Integer nodeBits;
 		private Long customEpoch;
+		private TsidLayout layout;
 		private IRandom random;
+		private Clock clock;
 		private LongSupplier timeFunction;
+		private Duration maxSkew;
+		private Path highWaterMarkFile;
+		private Integer randomCounterBits;
+		private Duration highWaterMarkLease;
 
 		/**
 		 * Set the node identifier.
@@ -368,6 +484,22 @@ public final class TsidFactory {
 			return this;
 		}
 
+		/**
+		 * Set the bit layout.
+		 * <p>
+		 * The layout defines the time, node and counter bits, the time unit and the
+		 * custom epoch. If a layout is set, the node bits and the custom epoch of the
+		 * builder are ignored.
+		 *
+		 * @param layout a bit layout
+		 * @return {@link Builder}
+		 * @since 5.3.0
+		 */
+		public Builder withLayout(TsidLayout layout) {
+			this.layout = layout;
+			return this;
+		}
+
 		/**
 		 * Set the random generator.
 		 * <p>
@@ -428,11 +560,15 @@ public final class TsidFactory {
 		 * <p>
 		 * {@link Clock} is too complicated. Use {@link #withTimeFunction(LongSupplier)}
 		 * instead.
+		 * <p>
+		 * If the layout has a time unit less than 1 ms, the instants of the clock are
+		 * used instead of its milliseconds.
 		 * 
 		 * @param clock a clock
 		 * @return {@link Builder}
 		 */
 		public Builder withClock(Clock clock) {
+			this.clock = clock;
 			this.timeFunction = () -> clock.millis();
 			return this;
 		}
@@ -445,10 +581,77 @@ public final class TsidFactory {
 		 * @return {@link Builder}
 		 */
 		public Builder withTimeFunction(LongSupplier timeFunction) {
+			this.clock = null;
 			this.timeFunction = timeFunction;
 			return this;
 		}
 
+		/**
+		 * Set the maximum skew of the observed TSIDs.
+		 * <p>
+		 * Observed TSIDs that are ahead of the current time by more than the maximum
+		 * skew are ignored. The default maximum skew is 1 minute.
+		 *
+		 * @param maxSkew a duration
+		 * @return {@link Builder}
+		 * @see TsidFactory#observe(Tsid)
+		 * @since 5.3.0
+		 */
+		public Builder withMaxSkew(Duration maxSkew) {
+			this.maxSkew = maxSkew;
+			return this;
+		}
+
+		/**
+		 * Set how many lower bits of the counter are random when the time changes.
+		 * <p>
+		 * By default, all the counter bits are random. Fewer random bits make sorted
+		 * TSIDs more compressible, because the deltas between consecutive TSIDs get
+		 * smaller. With zero random bits, the counter starts at zero whenever the time
+		 * changes, like Twitter Snowflakes, and the TSIDs are more predictable.
+		 *
+		 * @param randomCounterBits a number between 0 and the counter bits
+		 * @return {@link Builder}
+		 * @since 5.3.0
+		 */
+		public Builder withRandomCounterBits(Integer randomCounterBits) {
+			this.randomCounterBits = randomCounterBits;
+			return this;
+		}
+
+		/**
+		 * Set a file to persist the high-water mark of the time.
+		 * <p>
+		 * The factory reserves leases of 1 second in the file. After a restart, it
+		 * generates TSIDs after the last reserved time, even if the clock went
+		 * backwards.
+		 *
+		 * @param file a file, created if it doesn't exist
+		 * @return {@link Builder}
+		 * @since 5.3.0
+		 */
+		public Builder withHighWaterMark(Path file) {
+			return withHighWaterMark(file, Duration.ofSeconds(1));
+		}
+
+		/**
+		 * Set a file to persist the high-water mark of the time.
+		 * <p>
+		 * The file is synced when half of a lease is used, asynchronously. Longer
+		 * leases sync less often, but after a restart the factory may generate TSIDs
+		 * ahead of the clock by up to a lease.
+		 *
+		 * @param file  a file, created if it doesn't exist
+		 * @param lease the time reserved at once
+		 * @return {@link Builder}
+		 * @since 5.3.0
+		 */
+		public Builder withHighWaterMark(Path file, Duration lease) {
+			this.highWaterMarkFile = file;
+			this.highWaterMarkLease = lease;
+			return this;
+		}
+
 		/**
 		 * Get the node identifier.
 		 *
@@ -457,7 +660,7 @@ public final class TsidFactory {
 		 */
 		protected Integer getNode() {
 
-			final int max = (1 << nodeBits) - 1;
+			final int max = getLayout().nodeMask;
 
 			if (this.node == null) {
 				if (Settings.getNode() != null) {
@@ -465,7 +668,7 @@ public final class TsidFactory {
 					this.node = Settings.getNode();
 				} else {
 					// use random node identifier
-					this.node = this.random.nextInt() & max;
+					this.node = getRandom().nextInt() & max;
 				}
 			}
 
@@ -513,6 +716,78 @@ public final class TsidFactory {
 			return this.customEpoch;
 		}
 
+		/**
+		 * Gets the bit layout.
+		 * <p>
+		 * If no layout is set, a layout is built with the node bits and the custom
+		 * epoch of this builder.
+		 *
+		 * @return a bit layout
+		 * @throws IllegalArgumentException if the node bits are out of range
+		 */
+		protected TsidLayout getLayout() {
+			if (this.layout == null) {
+				this.layout = TsidLayout.builder() //
+						.withNodeBits(getNodeBits()) //
+						.withCustomEpoch(Instant.ofEpochMilli(getCustomEpoch())) //
+						.build();
+			}
+			return this.layout;
+		}
+
+		/**
+		 * Gets the maximum skew of the observed TSIDs.
+		 *
+		 * @return a duration
+		 * @throws IllegalArgumentException if the maximum skew is negative
+		 */
+		protected Duration getMaxSkew() {
+			if (this.maxSkew == null) {
+				this.maxSkew = Duration.ofMinutes(1);
+			}
+			if (this.maxSkew.isNegative()) {
+				throw new IllegalArgumentException(String.format("Negative max skew: %s", this.maxSkew));
+			}
+			return this.maxSkew;
+		}
+
+		/**
+		 * Gets how many lower bits of the counter are random.
+		 *
+		 * @return a number
+		 * @throws IllegalArgumentException if the random counter bits are out of range
+		 */
+		protected Integer getRandomCounterBits() {
+			final int counterBits = getLayout().getCounterBits();
+			if (this.randomCounterBits == null) {
+				this.randomCounterBits = counterBits;
+			}
+			if (this.randomCounterBits < 0 || this.randomCounterBits > counterBits) {
+				throw new IllegalArgumentException(String.format("Random counter bits out of range [0, %s]: %s",
+						counterBits, this.randomCounterBits));
+			}
+			return this.randomCounterBits;
+		}
+
+		/**
+		 * Gets the persisted high-water mark.
+		 *
+		 * @return a high-water mark, or null if no file is set
+		 * @throws IllegalArgumentException if the lease is not positive
+		 * @throws UncheckedIOException     if the file can't be opened or mapped
+		 */
+		HighWaterMark getHighWaterMark() {
+			if (this.highWaterMarkFile == null) {
+				return null;
+			}
+			final TsidLayout layout = getLayout();
+			final long lease = this.highWaterMarkLease.toNanos() / layout.unitNanos;
+			if (lease <= 0) {
+				throw new IllegalArgumentException(String.format("Lease too short: %s", this.highWaterMarkLease));
+			}
+			return HighWaterMark.open(this.highWaterMarkFile, layout, lease);
+		}
+
 		/**
 		 * Gets the random generator.
 		 *
@@ -537,12 +812,34 @@ public final class TsidFactory {
 			return this.timeFunction;
 		}
 
+		/**
+		 * Gets the function that returns the current time in units of the layout.
+		 * <p>
+		 * If the layout has a time unit less than 1 ms and no time function is set,
+		 * the current instant is read from a clock. The system UTC clock has
+		 * microsecond precision since JDK 9. In JDK 8 it has millisecond precision, so
+		 * the sub-millisecond bits just extend the counter.
+		 *
+		 * @return a function that returns a number of time units since 1970-01-01
+		 */
+		protected LongSupplier getTickFunction() {
+			final TsidLayout layout = getLayout();
+			if (layout.ticksPerMilli > 1 && (this.clock != null || this.timeFunction == null)) {
+				final Clock instants = this.clock != null ? this.clock : Clock.systemUTC();
+				return () -> layout.ticks(instants.instant());
+			}
+			final LongSupplier millis = getTimeFunction();
+			return () -> layout.ticks(millis.getAsLong());
+		}
+
 		/**
 		 * Returns a build TSID factory.
 		 *
 		 * @return {@link TsidFactory}
 		 * @throws IllegalArgumentException if the node is out of range
 		 * @throws IllegalArgumentException if the node bits are out of range
+		 * @throws UncheckedIOException     if the high-water mark file can't be
+		 *                                  opened
 		 */
 		public TsidFactory build() {
 			return new TsidFactory(this);
@@ -0,0 +1,343 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.f4b6a3.tsid;
+
+import java.io.IOException;
+
+import com.github.f4b6a3.tsid.Tsid.BaseN;
+import com.github.f4b6a3.tsid.Tsid.BaseN.Radix;
+
+/**
+ * A compiled custom format of TSID strings.
+ * <p>
+ * The format string is parsed only once, when {@link #compile(String)} is
+ * invoked. The prefix, the suffix and the codec of the placeholder are kept for
+ * later use, so that formatting and parsing don't need to scan the format
+ * string again.
+ * <p>
+ * Placeholders:
+ * <ul>
+ * <li>%S: canonical string in upper case
+ * <li>%s: canonical string in lower case
+ * <li>%X: hexadecimal in upper case
+ * <li>%x: hexadecimal in lower case
+ * <li>%d: base-10
+ * <li>%z: base-62
+ * </ul>
+ * <p>
+ * Example:
+ * 
+ * <pre>{@code
+ * TsidFormat format = TsidFormat.compile("ORD-%S");
+ * String string = format.format(tsid); // ORD-0AWE5HZP3SKTK
+ * Tsid other = format.parse(string);
+ * }</pre>
+ * <p>
+ * Instances of this class are <b>immutable</b> and can be shared between
+ * threads.
+ * 
+ * @see Tsid#format(String)
+ * @see Tsid#unformat(String, String)
+ * @since 5.3.0
+ */
+public final class TsidFormat {
+
+	private final String format;
+
+	private final String prefix;
+	private final String suffix;
+
+	private final Radix radix;
+	private final char[] digits;
+	private final byte[] values;
+
+	private final int length;
+
+	private TsidFormat(final String format, final int index, final Radix radix, final char[] digits,
+			final byte[] values) {
+		this.format = format;
+		this.prefix = format.substring(0, index);
+		this.suffix = format.substring(index + 2);
+		this.radix = radix;
+		this.digits = digits;
+		this.values = values;
+		this.length = this.prefix.length() + radix.length + this.suffix.length();
+	}
+
+	/**
+	 * Compiles a custom format.
+	 * <p>
+	 * Only the first occurrence of a placeholder is replaced. The chars before it
+	 * are the prefix and the chars after it are the suffix.
+	 * 
+	 * @param format a custom format
+	 * @return a compiled format
+	 * @throws IllegalArgumentException if the format string is invalid
+	 */
+	public static TsidFormat compile(final String format) {
+
+		final int i = format == null ? -1 : format.indexOf('%');
+		if (i < 0 || i == format.length() - 1) {
+			throw new IllegalArgumentException(String.format("Invalid format string: \"%s\"", format));
+		}
+
+		final char placeholder = format.charAt(i + 1);
+
+		switch (placeholder) {
+		case 'S': // canonical string in upper case
+			return crockford(format, i, Tsid.ALPHABET_UPPERCASE);
+		case 's': // canonical string in lower case
+			return crockford(format, i, Tsid.ALPHABET_LOWERCASE);
+		case 'X': // hexadecimal in upper case
+			return hexadecimal(format, i, BaseN.DIGITS);
+		case 'x': // hexadecimal in lower case
+			return hexadecimal(format, i, BaseN.DIGITS_LOWERCASE);
+		case 'd': // base-10
+			return baseN(format, i, 10);
+		case 'z': // base-62
+			return baseN(format, i, 62);
+		default:
+			throw new IllegalArgumentException(String.format("Invalid placeholder: \"%%%s\"", placeholder));
+		}
+	}
+
+	/**
+	 * Converts a TSID to a string using this format.
+	 * 
+	 * @param tsid a TSID
+	 * @return a formatted string
+	 */
+	public String format(final Tsid tsid) {
+		return format(tsid.toLong());
+	}
+
+	/**
+	 * Converts a TSID to a string using this format.
+	 * 
+	 * @param tsid a TSID
+	 * @return a formatted string
+	 * @see TsidLongs
+	 */
+	public String format(final long tsid) {
+		final char[] chars = new char[this.length];
+		format(tsid, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Writes a TSID to a char array using this format.
+	 * <p>
+	 * The number of chars written is equal to {@link #length()}.
+	 * 
+	 * @param tsid   a TSID
+	 * @param chars  a char array
+	 * @param offset the position of the first char in the array
+	 * @return the position after the last char written
+	 * @throws IndexOutOfBoundsException if the array is too short
+	 */
+	public int format(final Tsid tsid, final char[] chars, final int offset) {
+		return format(tsid.toLong(), chars, offset);
+	}
+
+	/**
+	 * Writes a TSID to a char array using this format.
+	 * <p>
+	 * The number of chars written is equal to {@link #length()}.
+	 * 
+	 * @param tsid   a TSID
+	 * @param chars  a char array
+	 * @param offset the position of the first char in the array
+	 * @return the position after the last char written
+	 * @throws IndexOutOfBoundsException if the array is too short
+	 * @see TsidLongs
+	 */
+	public int format(final long tsid, final char[] chars, final int offset) {
+		if (offset < 0 || chars.length - offset < this.length) {
+			throw new IndexOutOfBoundsException(String.format("Invalid offset: %s", offset));
+		}
+		int i = offset;
+		prefix.getChars(0, prefix.length(), chars, i);
+		i += prefix.length();
+		BaseN.encode(tsid, radix, digits, chars, i);
+		i += radix.length;
+		suffix.getChars(0, suffix.length(), chars, i);
+		return i + suffix.length();
+	}
+
+	/**
+	 * Appends a TSID to a string builder using this format.
+	 * 
+	 * @param tsid    a TSID
+	 * @param builder a string builder
+	 * @return the same string builder
+	 */
+	public StringBuilder format(final Tsid tsid, final StringBuilder builder) {
+		return format(tsid.toLong(), builder);
+	}
+
+	/**
+	 * Appends a TSID to a string builder using this format.
+	 * 
+	 * @param tsid    a TSID
+	 * @param builder a string builder
+	 * @return the same string builder
+	 * @see TsidLongs
+	 */
+	public StringBuilder format(final long tsid, final StringBuilder builder) {
+		try {
+			format(tsid, (Appendable) builder);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // StringBuilder doesn't throw it
+		}
+		return builder;
+	}
+
+	/**
+	 * Appends a TSID to an appendable using this format.
+	 * <p>
+	 * The chars are appended one by one, so no intermediate string is created.
+	 * 
+	 * @param tsid       a TSID
+	 * @param appendable an appendable, for example, a {@link java.io.Writer}
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void format(final Tsid tsid, final Appendable appendable) throws IOException {
+		format(tsid.toLong(), appendable);
+	}
+
+	/**
+	 * Appends a TSID to an appendable using this format.
+	 * <p>
+	 * The chars are appended one by one, so no intermediate string is created.
+	 * 
+	 * @param tsid       a TSID
+	 * @param appendable an appendable, for example, a {@link java.io.Writer}
+	 * @throws IOException if an I/O error occurs
+	 * @see TsidLongs
+	 */
+	public void format(final long tsid, final Appendable appendable) throws IOException {
+		appendable.append(prefix);
+		BaseN.encode(tsid, radix, digits, appendable);
+		appendable.append(suffix);
+	}
+
+	/**
+	 * Converts a string using this format to a TSID.
+	 * 
+	 * @param string a formatted string
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the formatted string is invalid
+	 */
+	public Tsid parse(final CharSequence string) {
+		return new Tsid(parseLong(string));
+	}
+
+	/**
+	 * Converts a slice of a char sequence using this format to a TSID.
+	 * <p>
+	 * The slice must be exactly {@link #length()} chars long.
+	 * 
+	 * @param string a char sequence that contains a formatted string
+	 * @param start  the position of the first char of the slice
+	 * @param end    the position after the last char of the slice
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the formatted string is invalid
+	 */
+	public Tsid parse(final CharSequence string, final int start, final int end) {
+		return new Tsid(parseLong(string, start, end));
+	}
+
+	/**
+	 * Converts a string using this format to a TSID.
+	 * 
+	 * @param string a formatted string
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the formatted string is invalid
+	 * @see TsidLongs
+	 */
+	public long parseLong(final CharSequence string) {
+		return parseLong(string, 0, string == null ? 0 : string.length());
+	}
+
+	/**
+	 * Converts a slice of a char sequence using this format to a TSID.
+	 * <p>
+	 * The slice must be exactly {@link #length()} chars long.
+	 * 
+	 * @param string a char sequence that contains a formatted string
+	 * @param start  the position of the first char of the slice
+	 * @param end    the position after the last char of the slice
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the formatted string is invalid
+	 * @see TsidLongs
+	 */
+	public long parseLong(final CharSequence string, final int start, final int end) {
+		if (string == null || start < 0 || end > string.length() || end - start != this.length
+				|| !matches(string, start, prefix) || !matches(string, end - suffix.length(), suffix)) {
+			throw new IllegalArgumentException(String.format("Invalid formatted string: \"%s\"", string));
+		}
+		return BaseN.decode(string, start + prefix.length(), radix, values);
+	}
+
+	/**
+	 * Returns the length of the formatted strings.
+	 * 
+	 * @return the number of chars
+	 */
+	public int length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the format string.
+	 */
+	@Override
+	public String toString() {
+		return this.format;
+	}
+
+	private static boolean matches(final CharSequence string, final int offset, final String part) {
+		for (int i = 0; i < part.length(); i++) {
+			if (string.charAt(offset + i) != part.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static TsidFormat crockford(final String format, final int index, final char[] alphabet) {
+		return new TsidFormat(format, index, BaseN.radix(32), alphabet, Tsid.ALPHABET_VALUES);
+	}
+
+	private static TsidFormat hexadecimal(final String format, final int index, final char[] digits) {
+		final Radix radix = BaseN.radix(16);
+		return new TsidFormat(format, index, radix, digits, radix.valuesIgnoreCase);
+	}
+
+	private static TsidFormat baseN(final String format, final int index, final int base) {
+		final Radix radix = BaseN.radix(base);
+		return new TsidFormat(format, index, radix, BaseN.DIGITS, radix.values);
+	}
+}
@@ -0,0 +1,592 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.f4b6a3.tsid;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable bit layout of TSIDs.
+ * <p>
+ * A layout has 3 components, from the most to the least significant bits:
+ * <ul>
+ * <li><b>Time</b>: a number of time units since the custom epoch.
+ * <li><b>Node</b>: a number used to identify the machine or node.
+ * <li><b>Counter</b>: a number that is incremented whenever the time component
+ * is repeated.
+ * </ul>
+ * <p>
+ * The sum of the time bits, the node bits and the counter bits is 64.
+ * <p>
+ * The default layout has 42 bits of milliseconds since 2020-01-01, 10 node
+ * bits and 12 counter bits, just like {@link TsidFactory#newInstance1024()}.
+ * <p>
+ * The same layout can be shared by a {@link TsidFactory}, which generates
+ * TSIDs, and by the code that extracts the components of the generated TSIDs.
+ * All the shifts and masks are computed once, when the layout is built.
+ * <p>
+ * Example:
+ * 
+ * <pre>{@code
+ * // 44 bits of milliseconds, 4 node bits and 16 counter bits
+ * TsidLayout layout = TsidLayout.builder().withNodeBits(4).withCounterBits(16).build();
+ * TsidFactory factory = TsidFactory.builder().withLayout(layout).withNode(3).build();
+ * 
+ * long tsid = factory.create().toLong();
+ * int node = layout.getNode(tsid); // 3
+ * }</pre>
+ * <p>
+ * Instances of this class are <b>immutable</b>.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidLayout {
+
+	private final int timeBits;
+	private final int nodeBits;
+	private final int counterBits;
+
+	private final Duration timeUnit;
+	private final Instant customEpoch;
+
+	final int timeShift;
+	final int nodeShift;
+
+	final long timeMask;
+	final int nodeMask;
+	final int counterMask;
+
+	/**
+	 * Time units per millisecond if the time unit is 1 ms or less, otherwise ZERO.
+	 */
+	final long ticksPerMilli;
+	/**
+	 * Milliseconds per time unit if the time unit is more than 1 ms, otherwise
+	 * ZERO.
+	 */
+	final long millisPerTick;
+	final long ticksPerSecond;
+	final long unitNanos;
+
+	/**
+	 * The custom epoch in time units since 1970-01-01.
+	 */
+	final long epochTicks;
+
+	static final int NODE_BITS_MAX = 31;
+	static final int COUNTER_BITS_MAX = 31;
+
+	private static final long NANOS_PER_MILLI = 1_000_000L;
+
+	private TsidLayout(Builder builder) {
+
+		this.nodeBits = builder.getNodeBits();
+		this.counterBits = builder.getCounterBits();
+		this.timeBits = builder.getTimeBits();
+		this.timeUnit = builder.getTimeUnit();
+		this.customEpoch = builder.getCustomEpoch();
+
+		this.nodeShift = this.counterBits;
+		this.timeShift = this.counterBits + this.nodeBits;
+
+		this.timeMask = -1L >>> (Long.SIZE - this.timeBits);
+		this.nodeMask = (int) ((1L << this.nodeBits) - 1);
+		this.counterMask = (int) ((1L << this.counterBits) - 1);
+
+		this.unitNanos = this.timeUnit.toNanos();
+		if (this.unitNanos <= NANOS_PER_MILLI) {
+			this.ticksPerMilli = NANOS_PER_MILLI / this.unitNanos;
+			this.millisPerTick = 0;
+		} else {
+			this.ticksPerMilli = 0;
+			this.millisPerTick = this.unitNanos / NANOS_PER_MILLI;
+		}
+		this.ticksPerSecond = this.ticksPerMilli * 1000;
+
+		this.epochTicks = ticks(this.customEpoch.toEpochMilli());
+	}
+
+	/**
+	 * Returns a builder object.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the time component bits length.
+	 * 
+	 * @return a number of bits
+	 */
+	public int getTimeBits() {
+		return this.timeBits;
+	}
+
+	/**
+	 * Returns the node identifier bits length.
+	 * 
+	 * @return a number of bits
+	 */
+	public int getNodeBits() {
+		return this.nodeBits;
+	}
+
+	/**
+	 * Returns the counter bits length.
+	 * 
+	 * @return a number of bits
+	 */
+	public int getCounterBits() {
+		return this.counterBits;
+	}
+
+	/**
+	 * Returns the duration of one unit of the time component.
+	 * 
+	 * @return a duration
+	 */
+	public Duration getTimeUnit() {
+		return this.timeUnit;
+	}
+
+	/**
+	 * Returns the custom epoch.
+	 * 
+	 * @return an instant
+	 */
+	public Instant getCustomEpoch() {
+		return this.customEpoch;
+	}
+
+	/**
+	 * Returns the time span covered by the time component.
+	 * <p>
+	 * For example, 42 bits of milliseconds cover about 139 years, 52 bits of
+	 * microseconds cover about 142 years and 44 bits of 1/16 ms cover about 34
+	 * years.
+	 * 
+	 * @return a duration
+	 * @throws ArithmeticException if the duration is too long
+	 */
+	public Duration getTimeRange() {
+		return this.timeUnit.multipliedBy(this.timeMask).plus(this.timeUnit);
+	}
+
+	/**
+	 * Returns the last instant that fits in the time component.
+	 * <p>
+	 * TSIDs generated after this instant overflow the time component.
+	 * 
+	 * @return an instant
+	 */
+	public Instant getMaxInstant() {
+		return getInstant(-1L);
+	}
+
+	/**
+	 * Returns the maximum number of TSIDs that can be generated per second per
+	 * node.
+	 * 
+	 * @return a number of TSIDs
+	 */
+	public double getMaxRate() {
+		return (double) (1L << this.counterBits) * TimeUnit.SECONDS.toNanos(1) / this.unitNanos;
+	}
+
+	/**
+	 * Returns the time component of a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return a number of time units since the custom epoch
+	 */
+	public long getTime(final long tsid) {
+		return tsid >>> this.timeShift;
+	}
+
+	/**
+	 * Returns the node identifier of a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return a number between 0 and 2^nodeBits-1
+	 */
+	public int getNode(final long tsid) {
+		return (int) (tsid >>> this.nodeShift) & this.nodeMask;
+	}
+
+	/**
+	 * Returns the counter of a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return a number between 0 and 2^counterBits-1
+	 */
+	public int getCounter(final long tsid) {
+		return (int) tsid & this.counterMask;
+	}
+
+	/**
+	 * Returns the time of creation of a TSID in milliseconds since 1970-01-01.
+	 * 
+	 * @param tsid a TSID
+	 * @return the number of milliseconds since 1970-01-01
+	 */
+	public long getUnixMilliseconds(final long tsid) {
+		return millis(getTime(tsid) + this.epochTicks);
+	}
+
+	/**
+	 * Returns the instant of creation of a TSID.
+	 * <p>
+	 * If the time unit is less than 1 ms, the instant has the same precision.
+	 * 
+	 * @param tsid a TSID
+	 * @return {@link Instant}
+	 */
+	public Instant getInstant(final long tsid) {
+		final long ticks = getTime(tsid) + this.epochTicks;
+		if (this.ticksPerMilli > 1) {
+			final long nanos = Math.floorMod(ticks, this.ticksPerMilli) * this.unitNanos;
+			return Instant.ofEpochMilli(Math.floorDiv(ticks, this.ticksPerMilli)).plusNanos(nanos);
+		}
+		return Instant.ofEpochMilli(millis(ticks));
+	}
+
+	/**
+	 * Returns a TSID with the given components.
+	 * <p>
+	 * Each component is truncated to its bits length.
+	 * 
+	 * @param time    a number of time units since the custom epoch
+	 * @param node    a node identifier
+	 * @param counter a counter
+	 * @return a TSID
+	 */
+	public long getTsid(final long time, final int node, final int counter) {
+		return ((time & this.timeMask) << this.timeShift) //
+				| ((long) (node & this.nodeMask) << this.nodeShift) //
+				| (counter & this.counterMask);
+	}
+
+	/**
+	 * Extracts the times of creation of many TSIDs.
+	 * 
+	 * @param tsids  an array of TSIDs
+	 * @param millis an output array for the numbers of milliseconds since
+	 *               1970-01-01, at least as long as the TSID array
+	 * @throws IllegalArgumentException if the output array is too short
+	 * @see TsidLongs#unixMillis(long[], long, long[])
+	 */
+	public void getUnixMilliseconds(final long[] tsids, final long[] millis) {
+		final int length = checkLength(tsids, millis.length);
+		final int shift = this.timeShift;
+		final long epoch = this.epochTicks;
+		if (this.ticksPerMilli == 1) {
+			for (int i = 0; i < length; i++) {
+				millis[i] = (tsids[i] >>> shift) + epoch;
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				millis[i] = millis((tsids[i] >>> shift) + epoch);
+			}
+		}
+	}
+
+	/**
+	 * Extracts the node identifiers of many TSIDs.
+	 * 
+	 * @param tsids an array of TSIDs
+	 * @param nodes an output array for the node identifiers, at least as long as
+	 *              the TSID array
+	 * @throws IllegalArgumentException if the output array is too short
+	 * @see TsidLongs#nodes(long[], int, int[])
+	 */
+	public void getNodes(final long[] tsids, final int[] nodes) {
+		final int length = checkLength(tsids, nodes.length);
+		final int shift = this.nodeShift;
+		final int mask = this.nodeMask;
+		for (int i = 0; i < length; i++) {
+			nodes[i] = (int) (tsids[i] >>> shift) & mask;
+		}
+	}
+
+	/**
+	 * Extracts the counters of many TSIDs.
+	 * 
+	 * @param tsids    an array of TSIDs
+	 * @param counters an output array for the counters, at least as long as the
+	 *                 TSID array
+	 * @throws IllegalArgumentException if the output array is too short
+	 * @see TsidLongs#counters(long[], int, int[])
+	 */
+	public void getCounters(final long[] tsids, final int[] counters) {
+		final int length = checkLength(tsids, counters.length);
+		final int mask = this.counterMask;
+		for (int i = 0; i < length; i++) {
+			counters[i] = (int) tsids[i] & mask;
+		}
+	}
+
+	/**
+	 * Converts milliseconds since 1970-01-01 to time units since 1970-01-01.
+	 */
+	long ticks(final long millis) {
+		return this.ticksPerMilli != 0 ? millis * this.ticksPerMilli : Math.floorDiv(millis, this.millisPerTick);
+	}
+
+	/**
+	 * Converts an instant to time units since 1970-01-01.
+	 */
+	long ticks(final Instant instant) {
+		if (this.ticksPerMilli != 0) {
+			return instant.getEpochSecond() * this.ticksPerSecond + instant.getNano() / this.unitNanos;
+		}
+		return Math.floorDiv(instant.toEpochMilli(), this.millisPerTick);
+	}
+
+	/**
+	 * Converts time units since 1970-01-01 to milliseconds since 1970-01-01.
+	 */
+	long millis(final long ticks) {
+		return this.ticksPerMilli != 0 ? Math.floorDiv(ticks, this.ticksPerMilli) : ticks * this.millisPerTick;
+	}
+
+	static int checkLength(final long[] tsids, final int length) {
+		if (length < tsids.length) {
+			throw new IllegalArgumentException(String.format("Output array too short: %s < %s", length, tsids.length));
+		}
+		return tsids.length;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(timeBits, nodeBits, counterBits, timeUnit, customEpoch);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == null)
+			return false;
+		if (other.getClass() != TsidLayout.class)
+			return false;
+		TsidLayout that = (TsidLayout) other;
+		return this.timeBits == that.timeBits //
+				&& this.nodeBits == that.nodeBits //
+				&& this.counterBits == that.counterBits //
+				&& this.timeUnit.equals(that.timeUnit) //
+				&& this.customEpoch.equals(that.customEpoch);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TsidLayout[timeBits=%s, nodeBits=%s, counterBits=%s, timeUnit=%s, customEpoch=%s]",
+				timeBits, nodeBits, counterBits, timeUnit, customEpoch);
+	}
+
+	/**
+	 * A nested class that builds TSID layouts.
+	 * <p>
+	 * Only two of the three bits lengths are needed. The missing one is computed
+	 * so that the sum is 64. If only the node bits are given, the time bits are
+	 * 42. If nothing is given, the node bits are 10.
+	 */
+	public static class Builder {
+
+		private Integer timeBits;
+		private Integer nodeBits;
+		private Integer counterBits;
+		private Duration timeUnit;
+		private Instant customEpoch;
+
+		/**
+		 * Set the time component bits length.
+		 * 
+		 * @param timeBits a number of bits
+		 * @return {@link Builder}
+		 */
+		public Builder withTimeBits(Integer timeBits) {
+			this.timeBits = timeBits;
+			return this;
+		}
+
+		/**
+		 * Set the node identifier bits length.
+		 * 
+		 * @param nodeBits a number that must be between 0 and 31.
+		 * @return {@link Builder}
+		 * @throws IllegalArgumentException if the node bits are out of the range [0,
+		 *                                  31] when {@code build()} is invoked
+		 */
+		public Builder withNodeBits(Integer nodeBits) {
+			this.nodeBits = nodeBits;
+			return this;
+		}
+
+		/**
+		 * Set the counter bits length.
+		 * 
+		 * @param counterBits a number that must be between 1 and 31.
+		 * @return {@link Builder}
+		 * @throws IllegalArgumentException if the counter bits are out of the range
+		 *                                  [1, 31] when {@code build()} is invoked
+		 */
+		public Builder withCounterBits(Integer counterBits) {
+			this.counterBits = counterBits;
+			return this;
+		}
+
+		/**
+		 * Set the duration of one unit of the time component.
+		 * <p>
+		 * The time unit must be a divisor of 1 ms, for example 1 microsecond, or a
+		 * multiple of 1 ms, for example 10 ms. The default time unit is 1 ms.
+		 * <p>
+		 * A time unit less than 1 ms spreads the counter over shorter time slices, so
+		 * a burst of TSIDs borrows less time from the future. To increase the maximum
+		 * number of TSIDs per node, the time bits must be reduced, which shortens the
+		 * time range. See {@link TsidLayout#getTimeRange()} and
+		 * {@link TsidLayout#getMaxRate()}.
+		 * 
+		 * @param timeUnit a duration
+		 * @return {@link Builder}
+		 * @throws IllegalArgumentException if the time unit is invalid when
+		 *                                  {@code build()} is invoked
+		 */
+		public Builder withTimeUnit(Duration timeUnit) {
+			this.timeUnit = timeUnit;
+			return this;
+		}
+
+		/**
+		 * Set the custom epoch.
+		 * 
+		 * @param customEpoch an instant that represents the custom epoch.
+		 * @return {@link Builder}
+		 */
+		public Builder withCustomEpoch(Instant customEpoch) {
+			this.customEpoch = customEpoch;
+			return this;
+		}
+
+		/**
+		 * Get the node identifier bits length.
+		 * 
+		 * @return a number
+		 * @throws IllegalArgumentException if the node bits are out of range
+		 */
+		protected Integer getNodeBits() {
+			if (this.nodeBits == null) {
+				if (this.timeBits != null && this.counterBits != null) {
+					this.nodeBits = Long.SIZE - this.timeBits - this.counterBits;
+				} else {
+					this.nodeBits = TsidFactory.NODE_BITS_1024;
+				}
+			}
+			if (nodeBits < 0 || nodeBits > NODE_BITS_MAX) {
+				throw new IllegalArgumentException(
+						String.format("Node bits out of range [0, %s]: %s", NODE_BITS_MAX, nodeBits));
+			}
+			return this.nodeBits;
+		}
+
+		/**
+		 * Get the counter bits length.
+		 * 
+		 * @return a number
+		 * @throws IllegalArgumentException if the counter bits are out of range
+		 */
+		protected Integer getCounterBits() {
+			if (this.counterBits == null) {
+				final int time = this.timeBits != null ? this.timeBits : Long.SIZE - Tsid.RANDOM_BITS;
+				this.counterBits = Long.SIZE - time - getNodeBits();
+			}
+			if (counterBits < 1 || counterBits > COUNTER_BITS_MAX) {
+				throw new IllegalArgumentException(
+						String.format("Counter bits out of range [1, %s]: %s", COUNTER_BITS_MAX, counterBits));
+			}
+			return this.counterBits;
+		}
+
+		/**
+		 * Get the time component bits length.
+		 * 
+		 * @return a number
+		 * @throws IllegalArgumentException if the sum of the bits lengths is not 64
+		 */
+		protected Integer getTimeBits() {
+			if (this.timeBits == null) {
+				this.timeBits = Long.SIZE - getNodeBits() - getCounterBits();
+			}
+			if (timeBits < 1 || timeBits + getNodeBits() + getCounterBits() != Long.SIZE) {
+				throw new IllegalArgumentException(String.format("Invalid bits: time=%s, node=%s, counter=%s",
+						timeBits, getNodeBits(), getCounterBits()));
+			}
+			return this.timeBits;
+		}
+
+		/**
+		 * Get the time unit.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the time unit is invalid
+		 */
+		protected Duration getTimeUnit() {
+			if (this.timeUnit == null) {
+				this.timeUnit = Duration.ofMillis(1);
+			}
+			final long nanos = this.timeUnit.isNegative() || this.timeUnit.getSeconds() > Integer.MAX_VALUE ? -1
+					: this.timeUnit.toNanos();
+			if (nanos <= 0 || (NANOS_PER_MILLI % nanos != 0 && nanos % NANOS_PER_MILLI != 0)) {
+				throw new IllegalArgumentException(String.format("Invalid time unit: %s", this.timeUnit));
+			}
+			return this.timeUnit;
+		}
+
+		/**
+		 * Gets the custom epoch.
+		 * 
+		 * @return an instant
+		 */
+		protected Instant getCustomEpoch() {
+			if (this.customEpoch == null) {
+				this.customEpoch = Instant.ofEpochMilli(Tsid.TSID_EPOCH); // 2020-01-01
+			}
+			return this.customEpoch;
+		}
+
+		/**
+		 * Returns a built TSID layout.
+		 * 
+		 * @return {@link TsidLayout}
+		 * @throws IllegalArgumentException if the bits lengths or the time unit are
+		 *                                  invalid
+		 */
+		public TsidLayout build() {
+			return new TsidLayout(this);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A client that gets blocks of TSIDs from a {@link TsidLeaseServer}.
+ * <p>
+ * The client keeps one request in flight: whenever it starts using a block, it
+ * requests the next one, so that the next block is usually received before the
+ * current one runs out.
+ * <p>
+ * The TSIDs of a client are unique and monotonic, since the server generates
+ * them with a single {@link TsidFactory}. The unused TSIDs of a block are lost
+ * when the client is closed.
+ * 
+ * @see TsidLeaseServer
+ * @since 5.3.0
+ */
+public final class TsidLeaseClient implements Closeable {
+
+	private final SocketChannel channel;
+	private final int blockSize;
+
+	private final ByteBuffer request;
+	private final ByteBuffer response;
+
+	private final long[] block;
+	private int position;
+	private int limit;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private TsidLeaseClient(final SocketAddress address, final int blockSize) throws IOException {
+
+		if (blockSize < 1 || blockSize > TsidLeaseServer.MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException(
+					String.format("Block size out of range [1, %s]: %s", TsidLeaseServer.MAX_BLOCK_SIZE, blockSize));
+		}
+
+		this.blockSize = blockSize;
+		this.block = new long[blockSize];
+		this.request = ByteBuffer.allocate(Integer.BYTES);
+		this.response = ByteBuffer.allocate(blockSize * Long.BYTES);
+
+		this.channel = TsidLeaseServer.openClient(address);
+		try {
+			this.channel.connect(address);
+			request(); // the first block
+			request(); // the next block
+		} catch (IOException | RuntimeException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Connects to a server.
+	 * 
+	 * @param address   the address of the server
+	 * @param blockSize the number of TSIDs per request, from 1 to 65536
+	 * @return a connected client
+	 * @throws IllegalArgumentException if the block size is out of range
+	 * @throws UncheckedIOException     if the client can't connect
+	 */
+	public static TsidLeaseClient connect(final SocketAddress address, final int blockSize) {
+		try {
+			return new TsidLeaseClient(address, blockSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns a TSID.
+	 * 
+	 * @return a TSID
+	 * @throws UncheckedIOException if the server can't be reached
+	 */
+	public Tsid create() {
+		return new Tsid(createLong());
+	}
+
+	/**
+	 * Returns a TSID as a primitive {@code long}.
+	 * 
+	 * @return a TSID
+	 * @throws UncheckedIOException if the server can't be reached
+	 * @see TsidLongs
+	 */
+	public long createLong() {
+		lock.lock();
+		try {
+			if (this.position == this.limit) {
+				receive();
+				request(); // prefetch
+			}
+			return this.block[this.position++];
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private void request() throws IOException {
+		// Buffer methods, which JDK 9+ overrides with other return types in ByteBuffer
+		((Buffer) this.request).clear();
+		this.request.putInt(this.blockSize);
+		((Buffer) this.request).flip();
+		while (this.request.hasRemaining()) {
+			this.channel.write(this.request);
+		}
+	}
+
+	private void receive() throws IOException {
+
+		((Buffer) this.response).clear().limit(Integer.BYTES);
+		read();
+		final int count = this.response.getInt(0);
+		if (count < 1 || count > this.blockSize) {
+			throw new IOException(String.format("Invalid block size: %s", count));
+		}
+
+		((Buffer) this.response).clear().limit(count * Long.BYTES);
+		read();
+		this.response.asLongBuffer().get(this.block, 0, count);
+
+		this.position = 0;
+		this.limit = count;
+	}
+
+	private void read() throws IOException {
+		while (this.response.hasRemaining()) {
+			if (this.channel.read(this.response) < 0) {
+				throw new EOFException("Connection closed by the server");
+			}
+		}
+		((Buffer) this.response).flip();
+	}
+}
@@ -0,0 +1,304 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * A server that hands out blocks of TSIDs to local processes.
+ * <p>
+ * Short-lived processes can get TSIDs from a {@link TsidLeaseClient} instead
+ * of creating their own {@link TsidFactory}, so they don't need a node
+ * identifier and don't seed a secure random generator.
+ * <p>
+ * The server listens on a Unix domain socket, for example
+ * {@code UnixDomainSocketAddress.of("/run/tsid.sock")}, if the JDK supports
+ * them (JDK 16+), or on a TCP socket, for example a loopback address.
+ * <p>
+ * The protocol is binary and pipelined. Each request is a 4-byte block size,
+ * from 1 to {@link #MAX_BLOCK_SIZE}. Each response is a 4-byte count followed
+ * by that many 8-byte TSIDs, in the order of the requests. The server stops
+ * reading the requests of a client while its responses are pending, so each
+ * client uses at most one response of the maximum size in server memory.
+ * <p>
+ * The server runs in a single daemon thread until it is closed.
+ * 
+ * @see TsidLeaseClient
+ * @since 5.3.0
+ */
+public final class TsidLeaseServer implements Closeable {
+
+	/**
+	 * Maximum number of TSIDs per request.
+	 */
+	public static final int MAX_BLOCK_SIZE = 65536;
+
+	// the output buffer of a client holds at most one response of the maximum size
+	private static final int MAX_RESPONSE_SIZE = Integer.BYTES + MAX_BLOCK_SIZE * Long.BYTES;
+
+	private final TsidFactory factory;
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final SocketAddress address;
+	private final Thread thread;
+
+	private volatile boolean closed;
+
+	private TsidLeaseServer(final TsidFactory factory, final SocketAddress address) throws IOException {
+		this.factory = factory;
+		this.server = openServer(address);
+		try {
+			this.server.bind(address);
+			this.server.configureBlocking(false);
+			this.selector = Selector.open();
+			this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException | RuntimeException e) {
+			this.server.close();
+			throw e;
+		}
+		this.address = this.server.getLocalAddress();
+		this.thread = new Thread(this::run, "tsid-lease-server");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Starts a server.
+	 * 
+	 * @param factory a factory that generates the TSIDs
+	 * @param address a Unix domain socket address or a TCP address
+	 * @return a running server
+	 * @throws UncheckedIOException if the server can't listen on the address
+	 */
+	public static TsidLeaseServer start(final TsidFactory factory, final SocketAddress address) {
+		try {
+			return new TsidLeaseServer(factory, address);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the address of the server.
+	 * <p>
+	 * For TCP, it is the bound address, which has the actual port if the port was
+	 * zero.
+	 * 
+	 * @return an address
+	 */
+	public SocketAddress getAddress() {
+		return this.address;
+	}
+
+	/**
+	 * Stops the server.
+	 * <p>
+	 * The socket file of a Unix domain socket is deleted.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		this.selector.wakeup();
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.selector.close();
+		this.server.close();
+		final Path path = path(this.address);
+		if (path != null) {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	private void run() {
+		while (!this.closed) {
+			try {
+				this.selector.select();
+				final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							((Connection) key.attachment()).handle(key);
+						}
+					} catch (IOException | RuntimeException e) {
+						key.channel().close(); // drop the client
+					}
+				}
+			} catch (IOException e) {
+				return;
+			}
+		}
+		for (SelectionKey key : this.selector.keys()) {
+			try {
+				key.channel().close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = this.server.accept();
+		if (channel != null) {
+			channel.configureBlocking(false);
+			channel.register(this.selector, SelectionKey.OP_READ, new Connection());
+		}
+	}
+
+	/**
+	 * The buffers of a client connection.
+	 * <p>
+	 * The output buffer never grows beyond one response of the maximum block size.
+	 * A request is answered only when its response fits, and the connection is not
+	 * read while responses are pending, so a client that doesn't read its
+	 * responses is throttled instead of buffered.
+	 */
+	private final class Connection {
+
+		private final ByteBuffer in = ByteBuffer.allocate(4096);
+		private ByteBuffer out = ByteBuffer.allocate(4096);
+
+		void handle(final SelectionKey key) throws IOException {
+
+			final SocketChannel channel = (SocketChannel) key.channel();
+
+			if (key.isReadable() && channel.read(this.in) < 0) {
+				channel.close();
+				return;
+			}
+
+			boolean pending;
+			do {
+				respond();
+				// Buffer methods, which JDK 9+ overrides with other return types in ByteBuffer
+				((Buffer) this.out).flip();
+				channel.write(this.out);
+				pending = this.out.hasRemaining();
+				this.out.compact();
+			} while (!pending && this.in.position() >= Integer.BYTES);
+
+			key.interestOps(pending ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		private void respond() {
+			((Buffer) this.in).flip();
+			while (this.in.remaining() >= Integer.BYTES) {
+				final int count = this.in.getInt(this.in.position());
+				if (count < 1 || count > MAX_BLOCK_SIZE) {
+					throw new IllegalArgumentException(String.format("Block size out of range [1, %s]: %s",
+							MAX_BLOCK_SIZE, count));
+				}
+				if (!reserve(Integer.BYTES + count * Long.BYTES)) {
+					break; // until the pending responses are written
+				}
+				this.in.getInt();
+				this.out.putInt(count);
+				for (int i = 0; i < count; i++) {
+					this.out.putLong(factory.create().toLong());
+				}
+			}
+			this.in.compact();
+		}
+
+		private boolean reserve(final int bytes) {
+			final int needed = this.out.position() + bytes;
+			if (needed > MAX_RESPONSE_SIZE) {
+				return false;
+			}
+			if (needed > this.out.capacity()) {
+				final int capacity = Math.min(Math.max(this.out.capacity() * 2, needed), MAX_RESPONSE_SIZE);
+				final ByteBuffer larger = ByteBuffer.allocate(capacity);
+				((Buffer) this.out).flip();
+				larger.put(this.out);
+				this.out = larger;
+			}
+			return true;
+		}
+	}
+
+	static ServerSocketChannel openServer(final SocketAddress address) throws IOException {
+		if (address instanceof InetSocketAddress) {
+			return ServerSocketChannel.open();
+		}
+		return (ServerSocketChannel) openUnix(ServerSocketChannel.class);
+	}
+
+	static SocketChannel openClient(final SocketAddress address) throws IOException {
+		if (address instanceof InetSocketAddress) {
+			return SocketChannel.open();
+		}
+		return (SocketChannel) openUnix(SocketChannel.class);
+	}
+
+	/**
+	 * Opens a Unix domain socket channel by reflection, so that this class can be
+	 * compiled for JDK 8.
+	 */
+	private static Object openUnix(final Class<?> type) throws IOException {
+		try {
+			final ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+			return type.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new UnsupportedOperationException(e.getCause());
+		} catch (ReflectiveOperationException | IllegalArgumentException e) {
+			throw new UnsupportedOperationException("Unix domain sockets require JDK 16+", e);
+		}
+	}
+
+	private static Path path(final SocketAddress address) {
+		if (address instanceof InetSocketAddress) {
+			return null;
+		}
+		try {
+			return (Path) address.getClass().getMethod("getPath").invoke(address);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
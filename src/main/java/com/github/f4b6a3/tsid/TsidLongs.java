@@ -0,0 +1,433 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.f4b6a3.tsid;
+
+import static com.github.f4b6a3.tsid.Tsid.ALPHABET_LOWERCASE;
+import static com.github.f4b6a3.tsid.Tsid.ALPHABET_UPPERCASE;
+import static com.github.f4b6a3.tsid.Tsid.ALPHABET_VALUES;
+import static com.github.f4b6a3.tsid.Tsid.RANDOM_BITS;
+import static com.github.f4b6a3.tsid.Tsid.RANDOM_MASK;
+import static com.github.f4b6a3.tsid.Tsid.TSID_BYTES;
+import static com.github.f4b6a3.tsid.Tsid.TSID_CHARS;
+import static com.github.f4b6a3.tsid.Tsid.TSID_EPOCH;
+
+import com.github.f4b6a3.tsid.Tsid.BaseN;
+
+/**
+ * A utility that works with TSIDs stored as primitive {@code long} values.
+ * <p>
+ * Each method is the primitive equivalent of a {@link Tsid} method, so that
+ * TSIDs kept in {@code long} arrays or columnar buffers can be formatted and
+ * inspected without wrapping them in {@link Tsid} objects.
+ * <p>
+ * The methods of {@link Tsid} delegate to this class.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidLongs {
+
+	private TsidLongs() {
+	}
+
+	/**
+	 * Converts a TSID into a canonical string in upper case.
+	 * 
+	 * @param tsid a TSID
+	 * @return a TSID string
+	 * @see Tsid#toString()
+	 */
+	public static String toString(final long tsid) {
+		return toString(tsid, ALPHABET_UPPERCASE);
+	}
+
+	/**
+	 * Converts a TSID into a canonical string in lower case.
+	 * 
+	 * @param tsid a TSID
+	 * @return a TSID string
+	 * @see Tsid#toLowerCase()
+	 */
+	public static String toLowerCase(final long tsid) {
+		return toString(tsid, ALPHABET_LOWERCASE);
+	}
+
+	/**
+	 * Converts a canonical string into a TSID.
+	 * <p>
+	 * The input string must be 13 characters long and must contain only characters
+	 * from Crockford's base 32 alphabet.
+	 * <p>
+	 * The first character of the input string must be between 0 and F.
+	 * 
+	 * @param string a canonical string
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the input string is invalid
+	 * @see Tsid#from(String)
+	 */
+	public static long parse(final CharSequence string) {
+
+		if (string == null || string.length() != TSID_CHARS) {
+			throw new IllegalArgumentException(String.format("Invalid TSID string: \"%s\"", string));
+		}
+
+		long number = 0;
+		int check = 0;
+
+		for (int i = 0; i < TSID_CHARS; i++) {
+			final int value = value(string.charAt(i));
+			number = (number << 5) | value;
+			check |= value;
+		}
+
+		// The extra bit added by base-32 encoding must be zero
+		if (check < 0 || value(string.charAt(0)) > 0b01111) {
+			throw new IllegalArgumentException(String.format("Invalid TSID string: \"%s\"", string));
+		}
+
+		return number;
+	}
+
+	/**
+	 * Checks if the input string is valid.
+	 * <p>
+	 * The input string must be 13 characters long and must contain only characters
+	 * from Crockford's base 32 alphabet.
+	 * <p>
+	 * The first character of the input string must be between 0 and F.
+	 * 
+	 * @param string a string
+	 * @return true if valid
+	 * @see Tsid#isValid(String)
+	 */
+	public static boolean isValid(final CharSequence string) {
+
+		if (string == null || string.length() != TSID_CHARS) {
+			return false; // null or wrong size!
+		}
+
+		int check = 0;
+		for (int i = 0; i < TSID_CHARS; i++) {
+			check |= value(string.charAt(i));
+		}
+
+		// The extra bit added by base-32 encoding must be zero
+		return check >= 0 && value(string.charAt(0)) <= 0b01111;
+	}
+
+	/**
+	 * Converts a TSID into a byte array.
+	 * 
+	 * @param tsid a TSID
+	 * @return an byte array
+	 * @see Tsid#toBytes()
+	 */
+	public static byte[] toBytes(final long tsid) {
+
+		final byte[] bytes = new byte[TSID_BYTES];
+
+		bytes[0x0] = (byte) (tsid >>> 56);
+		bytes[0x1] = (byte) (tsid >>> 48);
+		bytes[0x2] = (byte) (tsid >>> 40);
+		bytes[0x3] = (byte) (tsid >>> 32);
+		bytes[0x4] = (byte) (tsid >>> 24);
+		bytes[0x5] = (byte) (tsid >>> 16);
+		bytes[0x6] = (byte) (tsid >>> 8);
+		bytes[0x7] = (byte) (tsid);
+
+		return bytes;
+	}
+
+	/**
+	 * Converts a byte array into a TSID.
+	 * 
+	 * @param bytes a byte array
+	 * @return a TSID
+	 * @throws IllegalArgumentException if bytes are null or its length is not 8
+	 * @see Tsid#from(byte[])
+	 */
+	public static long fromBytes(final byte[] bytes) {
+
+		if (bytes == null || bytes.length != TSID_BYTES) {
+			throw new IllegalArgumentException("Invalid TSID bytes"); // null or wrong length!
+		}
+
+		long number = 0;
+
+		number |= (bytes[0x0] & 0xffL) << 56;
+		number |= (bytes[0x1] & 0xffL) << 48;
+		number |= (bytes[0x2] & 0xffL) << 40;
+		number |= (bytes[0x3] & 0xffL) << 32;
+		number |= (bytes[0x4] & 0xffL) << 24;
+		number |= (bytes[0x5] & 0xffL) << 16;
+		number |= (bytes[0x6] & 0xffL) << 8;
+		number |= (bytes[0x7] & 0xffL);
+
+		return number;
+	}
+
+	/**
+	 * Converts a TSID to a base-n encoded string.
+	 * 
+	 * @param tsid a TSID
+	 * @param base a radix between 2 and 62
+	 * @return a base-n encoded string
+	 * @throws IllegalArgumentException if the base is invalid
+	 * @see Tsid#encode(int)
+	 */
+	public static String encode(final long tsid, final int base) {
+		return BaseN.encode(tsid, base, BaseN.DIGITS);
+	}
+
+	/**
+	 * Converts a base-n encoded string to a TSID.
+	 * <p>
+	 * <b>Note</b>: this method is CASE-SENSITIVE.
+	 * 
+	 * @param string a base-n encoded string
+	 * @param base   a radix between 2 and 62
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the string or base is invalid
+	 * @see Tsid#decode(String, int)
+	 */
+	public static long decode(final CharSequence string, final int base) {
+		return BaseN.decode(string, base);
+	}
+
+	/**
+	 * Converts a TSID to a string using a custom format.
+	 * 
+	 * @param tsid   a TSID
+	 * @param format a custom format
+	 * @return a string using a custom format
+	 * @throws IllegalArgumentException if the format string is invalid
+	 * @see Tsid#format(String)
+	 * @see TsidFormat
+	 */
+	public static String format(final long tsid, final String format) {
+		return TsidFormat.compile(format).format(tsid);
+	}
+
+	/**
+	 * Converts a string using a custom format to a TSID.
+	 * 
+	 * @param formatted a string using a custom format
+	 * @param format    a custom format
+	 * @return a TSID
+	 * @throws IllegalArgumentException if the formatted string or the format string
+	 *                                  is invalid
+	 * @see Tsid#unformat(String, String)
+	 * @see TsidFormat
+	 */
+	public static long unformat(final CharSequence formatted, final String format) {
+		return TsidFormat.compile(format).parseLong(formatted);
+	}
+
+	/**
+	 * Returns the time of creation in milliseconds since 1970-01-01.
+	 * 
+	 * @param tsid a TSID
+	 * @return the number of milliseconds since 1970-01-01
+	 * @see Tsid#getUnixMilliseconds()
+	 */
+	public static long unixMillis(final long tsid) {
+		return unixMillis(tsid, TSID_EPOCH);
+	}
+
+	/**
+	 * Returns the time of creation in milliseconds since 1970-01-01.
+	 * 
+	 * @param tsid        a TSID
+	 * @param customEpoch the custom epoch in milliseconds since 1970-01-01
+	 * @return the number of milliseconds since 1970-01-01
+	 * @see Tsid#getUnixMilliseconds(long)
+	 */
+	public static long unixMillis(final long tsid, final long customEpoch) {
+		return time(tsid) + customEpoch;
+	}
+
+	/**
+	 * Returns the time component.
+	 * <p>
+	 * The time component is a number between 0 and 2^42-1.
+	 * 
+	 * @param tsid a TSID
+	 * @return a number of milliseconds since the epoch
+	 */
+	public static long time(final long tsid) {
+		return tsid >>> RANDOM_BITS;
+	}
+
+	/**
+	 * Returns the random component.
+	 * <p>
+	 * The random component is a number between 0 and 2^22-1.
+	 * 
+	 * @param tsid a TSID
+	 * @return a number
+	 */
+	public static int random(final long tsid) {
+		return (int) tsid & RANDOM_MASK;
+	}
+
+	/**
+	 * Returns the node identifier.
+	 * 
+	 * @param tsid     a TSID
+	 * @param nodeBits the node identifier bits length, between 0 and 20
+	 * @return a number between 0 and 2^nodeBits-1
+	 * @throws IllegalArgumentException if the node bits are out of range
+	 */
+	public static int node(final long tsid, final int nodeBits) {
+		checkNodeBits(nodeBits);
+		return random(tsid) >>> (RANDOM_BITS - nodeBits);
+	}
+
+	/**
+	 * Returns the counter.
+	 * 
+	 * @param tsid     a TSID
+	 * @param nodeBits the node identifier bits length, between 0 and 20
+	 * @return a number between 0 and 2^(22-nodeBits)-1
+	 * @throws IllegalArgumentException if the node bits are out of range
+	 */
+	public static int counter(final long tsid, final int nodeBits) {
+		checkNodeBits(nodeBits);
+		return random(tsid) & (RANDOM_MASK >>> nodeBits);
+	}
+
+	/**
+	 * Extracts the times of creation of many TSIDs.
+	 * <p>
+	 * The loops of the bulk methods have no branches and no calls, so they can be
+	 * vectorized by the JIT compiler.
+	 * 
+	 * @param tsids       an array of TSIDs
+	 * @param customEpoch the custom epoch in milliseconds since 1970-01-01
+	 * @param millis      an output array for the numbers of milliseconds since
+	 *                    1970-01-01, at least as long as the TSID array
+	 * @throws IllegalArgumentException if the output array is too short
+	 */
+	public static void unixMillis(final long[] tsids, final long customEpoch, final long[] millis) {
+		final int length = TsidLayout.checkLength(tsids, millis.length);
+		for (int i = 0; i < length; i++) {
+			millis[i] = (tsids[i] >>> RANDOM_BITS) + customEpoch;
+		}
+	}
+
+	/**
+	 * Extracts the node identifiers of many TSIDs.
+	 * 
+	 * @param tsids    an array of TSIDs
+	 * @param nodeBits the node identifier bits length, between 0 and 20
+	 * @param nodes    an output array for the node identifiers, at least as long as
+	 *                 the TSID array
+	 * @throws IllegalArgumentException if the node bits are out of range or the
+	 *                                  output array is too short
+	 */
+	public static void nodes(final long[] tsids, final int nodeBits, final int[] nodes) {
+		checkNodeBits(nodeBits);
+		final int length = TsidLayout.checkLength(tsids, nodes.length);
+		final int shift = RANDOM_BITS - nodeBits;
+		final int mask = RANDOM_MASK >>> shift;
+		for (int i = 0; i < length; i++) {
+			nodes[i] = (int) (tsids[i] >>> shift) & mask;
+		}
+	}
+
+	/**
+	 * Extracts the counters of many TSIDs.
+	 * 
+	 * @param tsids    an array of TSIDs
+	 * @param nodeBits the node identifier bits length, between 0 and 20
+	 * @param counters an output array for the counters, at least as long as the
+	 *                 TSID array
+	 * @throws IllegalArgumentException if the node bits are out of range or the
+	 *                                  output array is too short
+	 */
+	public static void counters(final long[] tsids, final int nodeBits, final int[] counters) {
+		checkNodeBits(nodeBits);
+		final int length = TsidLayout.checkLength(tsids, counters.length);
+		final int mask = RANDOM_MASK >>> nodeBits;
+		for (int i = 0; i < length; i++) {
+			counters[i] = (int) tsids[i] & mask;
+		}
+	}
+
+	/**
+	 * Compares two TSIDs as <b>unsigned</b> 64-bit integers.
+	 * 
+	 * @param a a TSID
+	 * @param b a TSID to be compared with
+	 * @return -1, 0 or 1 as {@code a} is less than, equal to, or greater than
+	 *         {@code b}
+	 * @see Tsid#compareTo(Tsid)
+	 */
+	public static int compareUnsigned(final long a, final long b) {
+		// used to compare as UNSIGNED longs
+		return Long.compare(a + Long.MIN_VALUE, b + Long.MIN_VALUE);
+	}
+
+	/**
+	 * Returns a hash code value for a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return a hash code
+	 * @see Tsid#hashCode()
+	 */
+	public static int hashCode(final long tsid) {
+		return (int) (tsid ^ (tsid >>> 32));
+	}
+
+	static String toString(final long tsid, final char[] alphabet) {
+
+		final char[] chars = new char[TSID_CHARS];
+
+		chars[0x00] = alphabet[(int) ((tsid >>> 60) & 0b11111)];
+		chars[0x01] = alphabet[(int) ((tsid >>> 55) & 0b11111)];
+		chars[0x02] = alphabet[(int) ((tsid >>> 50) & 0b11111)];
+		chars[0x03] = alphabet[(int) ((tsid >>> 45) & 0b11111)];
+		chars[0x04] = alphabet[(int) ((tsid >>> 40) & 0b11111)];
+		chars[0x05] = alphabet[(int) ((tsid >>> 35) & 0b11111)];
+		chars[0x06] = alphabet[(int) ((tsid >>> 30) & 0b11111)];
+		chars[0x07] = alphabet[(int) ((tsid >>> 25) & 0b11111)];
+		chars[0x08] = alphabet[(int) ((tsid >>> 20) & 0b11111)];
+		chars[0x09] = alphabet[(int) ((tsid >>> 15) & 0b11111)];
+		chars[0x0a] = alphabet[(int) ((tsid >>> 10) & 0b11111)];
+		chars[0x0b] = alphabet[(int) ((tsid >>> 5) & 0b11111)];
+		chars[0x0c] = alphabet[(int) (tsid & 0b11111)];
+
+		return new String(chars);
+	}
+
+	private static int value(final char chr) {
+		return chr < ALPHABET_VALUES.length ? ALPHABET_VALUES[chr] : -1; // multibyte character!
+	}
+
+	private static void checkNodeBits(final int nodeBits) {
+		if (nodeBits < 0 || nodeBits > 20) {
+			throw new IllegalArgumentException(String.format("Node bits out of range [0, 20]: %s", nodeBits));
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An iterator that merges sorted sources of TSIDs into a single sorted
+ * sequence.
+ * <p>
+ * Each source must return its TSIDs in unsigned order, the same order of
+ * {@link Tsid#compareTo(Tsid)}. The merge returns all the TSIDs of all the
+ * sources in that order, without boxing. Equal TSIDs are returned in the order
+ * of their sources.
+ * <p>
+ * The sources are the leaves of a loser tree. Each internal node keeps the
+ * source that lost the match below it, so after a TSID is returned, only the
+ * path from its source to the root is replayed: one comparison per level,
+ * log2(k) for k sources.
+ * <p>
+ * The low watermark is the smallest TSID that can still be returned. All the
+ * TSIDs before it have been returned, so a stream processor can close the time
+ * windows that end before it.
+ * <p>
+ * Instances of this class are <b>not thread-safe</b>.
+ * <p>
+ * Example:
+ * 
+ * <pre>{@code
+ * TsidMerger merger = new TsidMerger(sources); // one per node
+ * long[] batch = new long[1024];
+ * int count;
+ * while ((count = merger.nextLongs(batch, 0, batch.length)) > 0) {
+ * 	process(batch, count);
+ * 	closeWindowsBefore(merger.getWatermark());
+ * }
+ * }</pre>
+ * 
+ * @since 5.3.0
+ */
+public final class TsidMerger implements PrimitiveIterator.OfLong {
+
+	private final PrimitiveIterator.OfLong[] sources;
+
+	// the heads of the sources, with the highest bit flipped to compare as signed
+	private final long[] heads;
+	private final boolean[] done;
+
+	// the root is the winner, and the other nodes are losers
+	private final int[] tree;
+
+	/**
+	 * Creates a merger of sorted sources of TSIDs.
+	 * 
+	 * @param sources iterators of TSIDs in unsigned order
+	 */
+	public TsidMerger(final PrimitiveIterator.OfLong... sources) {
+
+		this.sources = sources.clone();
+		this.heads = new long[sources.length];
+		this.done = new boolean[sources.length];
+		this.tree = new int[Math.max(1, sources.length)];
+
+		for (int i = 0; i < sources.length; i++) {
+			if (this.sources[i] == null) {
+				throw new IllegalArgumentException(String.format("Null source: %s", i));
+			}
+			this.heads[i] = Long.MIN_VALUE;
+			advance(i);
+		}
+		if (sources.length > 0) {
+			this.tree[0] = build(1);
+		}
+	}
+
+	/**
+	 * Creates a merger of sorted sources of TSIDs.
+	 * 
+	 * @param sources iterators of TSIDs in unsigned order
+	 */
+	public TsidMerger(final List<? extends PrimitiveIterator.OfLong> sources) {
+		this(sources.toArray(new PrimitiveIterator.OfLong[0]));
+	}
+
+	/**
+	 * Creates a merger of sorted arrays of TSIDs.
+	 * 
+	 * @param arrays arrays of TSIDs in unsigned order
+	 * @return a merger
+	 */
+	public static TsidMerger of(final long[]... arrays) {
+		final PrimitiveIterator.OfLong[] sources = new PrimitiveIterator.OfLong[arrays.length];
+		for (int i = 0; i < arrays.length; i++) {
+			sources[i] = Arrays.stream(arrays[i]).iterator();
+		}
+		return new TsidMerger(sources);
+	}
+
+	/**
+	 * Checks if there are more TSIDs.
+	 * 
+	 * @return true if there are more TSIDs
+	 */
+	@Override
+	public boolean hasNext() {
+		return this.sources.length > 0 && !this.done[this.tree[0]];
+	}
+
+	/**
+	 * Returns the next TSID.
+	 * 
+	 * @return a TSID
+	 * @throws NoSuchElementException if there are no more TSIDs
+	 * @throws IllegalStateException  if a source is not sorted
+	 */
+	@Override
+	public long nextLong() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return poll();
+	}
+
+	/**
+	 * Copies the next TSIDs to an array.
+	 * 
+	 * @param tsids  an array
+	 * @param offset the first index
+	 * @param length the maximum number of TSIDs
+	 * @return the number of TSIDs copied, less than length only if there are no
+	 *         more TSIDs
+	 * @throws IllegalStateException if a source is not sorted
+	 */
+	public int nextLongs(final long[] tsids, final int offset, final int length) {
+		if (offset < 0 || length < 0 || length > tsids.length - offset) {
+			throw new IndexOutOfBoundsException(String.format("Range [%s, %s + %s) out of bounds for length %s",
+					offset, offset, length, tsids.length));
+		}
+		int count = 0;
+		while (count < length && hasNext()) {
+			tsids[offset + count++] = poll();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the low watermark.
+	 * <p>
+	 * No TSID returned from now on is less than the low watermark. It is the next
+	 * TSID, or the greatest possible TSID, {@code 0xffffffffffffffffL}, if there
+	 * are no more TSIDs.
+	 * 
+	 * @return a TSID
+	 */
+	public long getWatermark() {
+		return hasNext() ? this.heads[this.tree[0]] ^ Long.MIN_VALUE : -1L;
+	}
+
+	private long poll() {
+		final int winner = this.tree[0];
+		final long tsid = this.heads[winner];
+		advance(winner);
+		replay(winner);
+		return tsid ^ Long.MIN_VALUE;
+	}
+
+	private void advance(final int source) {
+		if (this.sources[source].hasNext()) {
+			final long head = this.sources[source].nextLong() ^ Long.MIN_VALUE;
+			if (head < this.heads[source]) {
+				throw new IllegalStateException(String.format("Source not sorted: %s", source));
+			}
+			this.heads[source] = head;
+		} else {
+			this.done[source] = true;
+			this.heads[source] = Long.MAX_VALUE;
+		}
+	}
+
+	// the node of source i is (k + i), and the parent of node n is (n / 2)
+	private int build(final int node) {
+		final int k = this.sources.length;
+		if (node >= k) {
+			return node - k;
+		}
+		final int left = build(node * 2);
+		final int right = build(node * 2 + 1);
+		if (beats(left, right)) {
+			this.tree[node] = right;
+			return left;
+		}
+		this.tree[node] = left;
+		return right;
+	}
+
+	private void replay(int winner) {
+		for (int node = (this.sources.length + winner) >>> 1; node > 0; node >>>= 1) {
+			final int loser = this.tree[node];
+			if (beats(loser, winner)) {
+				this.tree[node] = winner;
+				winner = loser;
+			}
+		}
+		this.tree[0] = winner;
+	}
+
+	private boolean beats(final int a, final int b) {
+		final long x = this.heads[a];
+		final long y = this.heads[b];
+		if (x != y) {
+			return x < y;
+		}
+		// the sources that ended lose, and ties go to the first source
+		return !this.done[a] && (this.done[b] || a < b);
+	}
+}
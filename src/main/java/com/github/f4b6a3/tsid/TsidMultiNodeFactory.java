@@ -0,0 +1,332 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import com.github.f4b6a3.tsid.TsidFactory.IRandom;
+
+/**
+ * A factory that generates TSIDs for many node identifiers.
+ * <p>
+ * It is an alternative to keeping one {@link TsidFactory} per node identifier,
+ * for example, one node identifier per tenant or per partition. The node
+ * identifier is passed to {@link #createForNode(int)} on each call.
+ * <p>
+ * The state of each node identifier is the last TSID generated for it, kept in
+ * a primitive array indexed by node identifier. A TSID is generated with a
+ * compare-and-set on that array element, so calls for different node
+ * identifiers never contend, and calls for the same node identifier don't
+ * block. The array takes 8 bytes per node identifier: 8 KiB for 10 node bits
+ * and 8 MiB for 20 node bits.
+ * <p>
+ * The random values used to reset the counters are drawn from a single
+ * entropy pool shared by all node identifiers.
+ * <p>
+ * The TSIDs generated for each node identifier are monotonic, just like the
+ * TSIDs of a {@link TsidFactory} with the same layout.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidMultiNodeFactory {
+
+	private final AtomicLongArray states;
+
+	private final int nodeMask;
+	private final int counterBits;
+	private final long counterMask;
+	private final int timeShift;
+
+	private final TsidLayout layout;
+	private final LongSupplier tickFunction;
+
+	private final EntropyPool pool;
+
+	private TsidMultiNodeFactory(Builder builder) {
+
+		this.layout = builder.config.getLayout();
+		this.tickFunction = builder.config.getTickFunction();
+		this.pool = new EntropyPool(builder.config.getRandom());
+
+		if (layout.getNodeBits() > 20) {
+			throw new IllegalArgumentException(
+					String.format("Node bits out of range [0, 20]: %s", layout.getNodeBits()));
+		}
+
+		this.nodeMask = layout.nodeMask;
+		this.counterBits = layout.getCounterBits();
+		this.counterMask = layout.counterMask;
+		this.timeShift = layout.timeShift;
+
+		this.states = new AtomicLongArray(this.nodeMask + 1);
+	}
+
+	/**
+	 * Returns a TSID for a node identifier.
+	 *
+	 * @param node the node identifier
+	 * @return a TSID.
+	 * @throws IllegalArgumentException if the node is out of range
+	 */
+	public Tsid createForNode(final int node) {
+		return new Tsid(createLongForNode(node));
+	}
+
+	/**
+	 * Returns a TSID for a node identifier as a primitive {@code long}.
+	 *
+	 * @param node the node identifier
+	 * @return a TSID.
+	 * @throws IllegalArgumentException if the node is out of range
+	 * @see TsidLongs
+	 */
+	public long createLongForNode(final int node) {
+
+		if (node < 0 || node > this.nodeMask) {
+			throw new IllegalArgumentException(String.format("Node ID out of range [0, %s]: %s", nodeMask, node));
+		}
+
+		final long time = tickFunction.getAsLong() - layout.epochTicks;
+		final long _node = (long) node << this.counterBits;
+
+		while (true) {
+
+			final long last = this.states.get(node);
+			final long lastTime = last >>> this.timeShift;
+
+			long next;
+			if (time > lastTime) {
+				// If the system clock has advanced as expected,
+				// simply reset the counter to a new random value.
+				next = (time << this.timeShift) | _node | (pool.nextInt() & this.counterMask);
+			} else if ((last & this.counterMask) != this.counterMask) {
+				// increment the counter
+				next = last + 1;
+			} else {
+				// increment the time if the counter overflows
+				next = ((lastTime + 1) << this.timeShift) | _node;
+			}
+
+			if (this.states.compareAndSet(node, last, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Returns the layout of the generated TSIDs.
+	 * 
+	 * @return a bit layout
+	 */
+	public TsidLayout getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * Returns a builder object.
+	 * <p>
+	 * It is used to build a custom {@link TsidMultiNodeFactory}.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * A nested class that builds custom multi-node TSID factories.
+	 * <p>
+	 * The settings are the same as the settings of {@link TsidFactory.Builder},
+	 * except the node identifier, which is passed to each call.
+	 */
+	public static class Builder {
+
+		private final TsidFactory.Builder config = TsidFactory.builder();
+
+		/**
+		 * Set the node identifier bits length within the range 0 to 20.
+		 * 
+		 * @param nodeBits a number between 0 and 20
+		 * @return {@link Builder}
+		 */
+		public Builder withNodeBits(Integer nodeBits) {
+			this.config.withNodeBits(nodeBits);
+			return this;
+		}
+
+		/**
+		 * Set the custom epoch.
+		 * 
+		 * @param customEpoch an instant that represents the custom epoch
+		 * @return {@link Builder}
+		 */
+		public Builder withCustomEpoch(Instant customEpoch) {
+			this.config.withCustomEpoch(customEpoch);
+			return this;
+		}
+
+		/**
+		 * Set the bit layout, with up to 20 node bits.
+		 * 
+		 * @param layout a bit layout
+		 * @return {@link Builder}
+		 */
+		public Builder withLayout(TsidLayout layout) {
+			this.config.withLayout(layout);
+			return this;
+		}
+
+		/**
+		 * Set the random generator of the entropy pool.
+		 * 
+		 * @param random a {@link Random} generator
+		 * @return {@link Builder}
+		 */
+		public Builder withRandom(Random random) {
+			this.config.withRandom(random);
+			return this;
+		}
+
+		/**
+		 * Set the random function of the entropy pool.
+		 * 
+		 * @param randomFunction a random function that returns a integer value
+		 * @return {@link Builder}
+		 */
+		public Builder withRandomFunction(IntSupplier randomFunction) {
+			this.config.withRandomFunction(randomFunction);
+			return this;
+		}
+
+		/**
+		 * Set the random function of the entropy pool.
+		 * 
+		 * @param randomFunction a random function that returns a byte array
+		 * @return {@link Builder}
+		 */
+		public Builder withRandomFunction(IntFunction<byte[]> randomFunction) {
+			this.config.withRandomFunction(randomFunction);
+			return this;
+		}
+
+		/**
+		 * Set the clock to be used in tests.
+		 * 
+		 * @param clock a clock
+		 * @return {@link Builder}
+		 */
+		public Builder withClock(Clock clock) {
+			this.config.withClock(clock);
+			return this;
+		}
+
+		/**
+		 * Set the time function to be used in tests.
+		 *
+		 * @param timeFunction a function that returns the current time in milliseconds,
+		 *                     measured from the UNIX epoch of 1970-01-01T00:00Z (UTC)
+		 * @return {@link Builder}
+		 */
+		public Builder withTimeFunction(LongSupplier timeFunction) {
+			this.config.withTimeFunction(timeFunction);
+			return this;
+		}
+
+		/**
+		 * Returns a build multi-node TSID factory.
+		 *
+		 * @return {@link TsidMultiNodeFactory}
+		 * @throws IllegalArgumentException if the node bits are out of range
+		 */
+		public TsidMultiNodeFactory build() {
+			return new TsidMultiNodeFactory(this);
+		}
+	}
+
+	/**
+	 * A pool of random values shared by all node identifiers.
+	 * <p>
+	 * The pool is refilled with a single call to the random generator, so that a
+	 * {@code SecureRandom} is locked once per refill instead of once per value.
+	 * Values may occasionally be reused by concurrent readers during a refill,
+	 * which is harmless because they are only used as initial counters.
+	 */
+	static final class EntropyPool {
+
+		private static final int SIZE = 1024;
+
+		private final IRandom random;
+		private final AtomicInteger index = new AtomicInteger();
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile int[] values;
+
+		EntropyPool(IRandom random) {
+			this.random = random;
+			this.values = fill();
+		}
+
+		int nextInt() {
+			final int i = this.index.getAndIncrement();
+			final int[] current = this.values;
+			if (i >= 0 && i < SIZE) {
+				return current[i];
+			}
+			return refill();
+		}
+
+		private int refill() {
+			lock.lock();
+			try {
+				final int i = this.index.get();
+				if (i < 0 || i >= SIZE) {
+					this.values = fill();
+					this.index.set(1);
+					return this.values[0];
+				}
+			} finally {
+				lock.unlock();
+			}
+			return nextInt(); // refilled by another thread
+		}
+
+		private int[] fill() {
+			final byte[] bytes = this.random.nextBytes(SIZE * Integer.BYTES);
+			final int[] ints = new int[SIZE];
+			for (int i = 0; i < SIZE; i++) {
+				final int j = i * Integer.BYTES;
+				ints[i] = ((bytes[j] & 0xff) << 24) | ((bytes[j + 1] & 0xff) << 16) | ((bytes[j + 2] & 0xff) << 8)
+						| (bytes[j + 3] & 0xff);
+			}
+			return ints;
+		}
+	}
+}
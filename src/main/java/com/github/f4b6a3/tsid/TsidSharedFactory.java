@@ -0,0 +1,455 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import com.github.f4b6a3.tsid.TsidFactory.IRandom;
+
+/**
+ * A factory that shares its state with other processes of the same host
+ * through a memory-mapped file.
+ * <p>
+ * All processes that use the same file generate unique and monotonic TSIDs
+ * with the same node identifier, as if they were a single {@link TsidFactory}.
+ * So the processes of a host don't need distinct node identifiers.
+ * <p>
+ * The state is the last TSID generated, which packs the time and the counter.
+ * It is updated with a compare-and-set on the mapped buffer when it is
+ * available, which is the case since JDK 9. In JDK 8, the state is updated
+ * while holding a {@link FileLock} on the file, which is much slower.
+ * <p>
+ * The file also records the node identifier and the layout (the bits, the time
+ * unit and the custom epoch), so that processes with different settings can't
+ * share it.
+ * <p>
+ * All processes must run on JDK 9 or later, or all on JDK 8, because the two
+ * ways of updating the state don't exclude each other.
+ * <p>
+ * Use a single instance of this class per file in each process. The mapped
+ * buffer is released by the garbage collector after {@link #close()}.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidSharedFactory implements Closeable {
+
+	private static final int STATE_OFFSET = 0;
+	private static final int CONFIG_OFFSET = 8;
+	// version, time bits, node bits, counter bits, node, time unit and epoch
+	private static final int CONFIG_SIZE = 4 + Integer.BYTES + Long.BYTES * 2 + Integer.BYTES;
+	private static final int FILE_SIZE = CONFIG_OFFSET + CONFIG_SIZE;
+	private static final byte VERSION = 1;
+
+	private static final MethodHandle COMPARE_AND_SET = compareAndSet();
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	private final long node;
+	private final int counterBits;
+	private final long counterMask;
+	private final int timeShift;
+
+	private final TsidLayout layout;
+	private final LongSupplier tickFunction;
+	private final IRandom random;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private TsidSharedFactory(Builder builder) throws IOException {
+
+		this.layout = builder.config.getLayout();
+		this.random = builder.config.getRandom();
+		this.tickFunction = builder.config.getTickFunction();
+
+		this.counterBits = layout.getCounterBits();
+		this.counterMask = layout.counterMask;
+		this.timeShift = layout.timeShift;
+		this.node = (long) (builder.config.getNode() & layout.nodeMask) << this.counterBits;
+
+		this.channel = FileChannel.open(builder.getFile(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			final FileLock fileLock = this.channel.lock();
+			try {
+				this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+				this.buffer.order(ByteOrder.BIG_ENDIAN);
+				checkConfig();
+			} finally {
+				fileLock.release();
+			}
+		} catch (IOException | RuntimeException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a TSID.
+	 *
+	 * @return a TSID.
+	 * @throws UncheckedIOException if the file can't be locked
+	 */
+	public Tsid create() {
+		return new Tsid(createLong());
+	}
+
+	/**
+	 * Returns a TSID as a primitive {@code long}.
+	 *
+	 * @return a TSID.
+	 * @throws UncheckedIOException if the file can't be locked
+	 * @see TsidLongs
+	 */
+	public long createLong() {
+		final long time = tickFunction.getAsLong() - layout.epochTicks;
+		if (COMPARE_AND_SET != null) {
+			// drawn at most once, even if the compare-and-set is retried
+			long counter = -1L;
+			while (true) {
+				final long last = this.buffer.getLong(STATE_OFFSET);
+				if (counter < 0 && time > (last >>> this.timeShift)) {
+					counter = getRandomCounter();
+				}
+				final long next = next(last, time, counter);
+				if (compareAndSet(last, next)) {
+					return next;
+				}
+			}
+		}
+		return createLocked(time);
+	}
+
+	/**
+	 * Returns the layout of the generated TSIDs.
+	 * 
+	 * @return a bit layout
+	 */
+	public TsidLayout getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * Closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private long createLocked(final long time) {
+		lock.lock();
+		try {
+			final FileLock fileLock = this.channel.lock();
+			try {
+				final long last = this.buffer.getLong(STATE_OFFSET);
+				final long counter = time > (last >>> this.timeShift) ? getRandomCounter() : 0L;
+				final long next = next(last, time, counter);
+				this.buffer.putLong(STATE_OFFSET, next);
+				return next;
+			} finally {
+				fileLock.release();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private long next(final long last, final long time, final long counter) {
+		final long lastTime = last >>> this.timeShift;
+		if (time > lastTime) {
+			// If the system clock has advanced as expected,
+			// simply reset the counter to a new random value.
+			return (time << this.timeShift) | this.node | counter;
+		} else if ((last & this.counterMask) != this.counterMask) {
+			// increment the counter
+			return last + 1;
+		} else {
+			// increment the time if the counter overflows
+			return ((lastTime + 1) << this.timeShift) | this.node;
+		}
+	}
+
+	/**
+	 * Returns a random counter value.
+	 * <p>
+	 * The random function is called under the lock, like in {@link TsidFactory},
+	 * because it may not be thread-safe.
+	 */
+	private long getRandomCounter() {
+		lock.lock();
+		try {
+			return random.nextInt() & this.counterMask;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean compareAndSet(final long expected, final long next) {
+		try {
+			return (boolean) COMPARE_AND_SET.invokeExact((ByteBuffer) this.buffer, STATE_OFFSET, expected, next);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void checkConfig() {
+
+		final ByteBuffer config = ByteBuffer.allocate(CONFIG_SIZE);
+		config.put(VERSION);
+		config.put((byte) layout.getTimeBits());
+		config.put((byte) layout.getNodeBits());
+		config.put((byte) layout.getCounterBits());
+		config.putInt((int) (this.node >>> this.counterBits));
+		config.putLong(layout.getTimeUnit().toNanos());
+		config.putLong(layout.getCustomEpoch().getEpochSecond());
+		config.putInt(layout.getCustomEpoch().getNano());
+
+		final byte[] expected = config.array();
+		final byte[] existing = new byte[CONFIG_SIZE];
+		for (int i = 0; i < CONFIG_SIZE; i++) {
+			existing[i] = this.buffer.get(CONFIG_OFFSET + i);
+		}
+
+		if (existing[0] == 0) {
+			// a new file
+			for (int i = 0; i < CONFIG_SIZE; i++) {
+				this.buffer.put(CONFIG_OFFSET + i, expected[i]);
+			}
+		} else if (!Arrays.equals(existing, expected)) {
+			throw new IllegalArgumentException("The file is shared with a different node or layout");
+		}
+	}
+
+	/**
+	 * Returns a compare-and-set method handle for long values of byte buffers, or
+	 * null in JDK 8.
+	 * <p>
+	 * The handle is obtained by reflection, so that this class can be compiled for
+	 * JDK 8.
+	 */
+	private static MethodHandle compareAndSet() {
+		try {
+			final Class<?> varHandle = Class.forName("java.lang.invoke.VarHandle");
+			final Class<?> accessMode = Class.forName("java.lang.invoke.VarHandle$AccessMode");
+			final Object handle = MethodHandles.class.getMethod("byteBufferViewVarHandle", Class.class, ByteOrder.class)
+					.invoke(null, long[].class, ByteOrder.BIG_ENDIAN);
+			final Object mode = accessMode.getField("COMPARE_AND_SET").get(null);
+			final MethodType type = MethodType.methodType(boolean.class, ByteBuffer.class, int.class, long.class,
+					long.class);
+			final MethodHandle invoker = (MethodHandle) MethodHandles.class
+					.getMethod("varHandleExactInvoker", accessMode, MethodType.class).invoke(null, mode, type);
+			return invoker.bindTo(varHandle.cast(handle));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null; // JDK 8
+		}
+	}
+
+	/**
+	 * Returns a builder object.
+	 * <p>
+	 * It is used to build a custom {@link TsidSharedFactory}.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * A nested class that builds shared TSID factories.
+	 * <p>
+	 * The settings are the same as the settings of {@link TsidFactory.Builder},
+	 * plus the file that holds the shared state.
+	 */
+	public static class Builder {
+
+		private final TsidFactory.Builder config = TsidFactory.builder();
+		private Path file;
+
+		/**
+		 * Set the file that holds the shared state.
+		 * 
+		 * @param file a path
+		 * @return {@link Builder}
+		 */
+		public Builder withFile(Path file) {
+			this.file = file;
+			return this;
+		}
+
+		/**
+		 * Set the node identifier.
+		 * 
+		 * @param node a number between 0 and 2^nodeBits-1
+		 * @return {@link Builder}
+		 */
+		public Builder withNode(Integer node) {
+			this.config.withNode(node);
+			return this;
+		}
+
+		/**
+		 * Set the node identifier bits length within the range 0 to 20.
+		 * 
+		 * @param nodeBits a number between 0 and 20
+		 * @return {@link Builder}
+		 */
+		public Builder withNodeBits(Integer nodeBits) {
+			this.config.withNodeBits(nodeBits);
+			return this;
+		}
+
+		/**
+		 * Set the custom epoch.
+		 * 
+		 * @param customEpoch an instant that represents the custom epoch
+		 * @return {@link Builder}
+		 */
+		public Builder withCustomEpoch(Instant customEpoch) {
+			this.config.withCustomEpoch(customEpoch);
+			return this;
+		}
+
+		/**
+		 * Set the bit layout.
+		 * 
+		 * @param layout a bit layout
+		 * @return {@link Builder}
+		 */
+		public Builder withLayout(TsidLayout layout) {
+			this.config.withLayout(layout);
+			return this;
+		}
+
+		/**
+		 * Set the random generator.
+		 * 
+		 * @param random a {@link Random} generator
+		 * @return {@link Builder}
+		 */
+		public Builder withRandom(Random random) {
+			this.config.withRandom(random);
+			return this;
+		}
+
+		/**
+		 * Set the random function.
+		 * 
+		 * @param randomFunction a random function that returns a integer value
+		 * @return {@link Builder}
+		 */
+		public Builder withRandomFunction(IntSupplier randomFunction) {
+			this.config.withRandomFunction(randomFunction);
+			return this;
+		}
+
+		/**
+		 * Set the random function.
+		 * 
+		 * @param randomFunction a random function that returns a byte array
+		 * @return {@link Builder}
+		 */
+		public Builder withRandomFunction(IntFunction<byte[]> randomFunction) {
+			this.config.withRandomFunction(randomFunction);
+			return this;
+		}
+
+		/**
+		 * Set the clock to be used in tests.
+		 * 
+		 * @param clock a clock
+		 * @return {@link Builder}
+		 */
+		public Builder withClock(Clock clock) {
+			this.config.withClock(clock);
+			return this;
+		}
+
+		/**
+		 * Set the time function to be used in tests.
+		 *
+		 * @param timeFunction a function that returns the current time in milliseconds,
+		 *                     measured from the UNIX epoch of 1970-01-01T00:00Z (UTC)
+		 * @return {@link Builder}
+		 */
+		public Builder withTimeFunction(LongSupplier timeFunction) {
+			this.config.withTimeFunction(timeFunction);
+			return this;
+		}
+
+		/**
+		 * Gets the file that holds the shared state.
+		 * 
+		 * @return a path
+		 * @throws IllegalArgumentException if the file is not set
+		 */
+		protected Path getFile() {
+			if (this.file == null) {
+				throw new IllegalArgumentException("The file is not set");
+			}
+			return this.file;
+		}
+
+		/**
+		 * Returns a build shared TSID factory.
+		 *
+		 * @return {@link TsidSharedFactory}
+		 * @throws IllegalArgumentException if the settings are invalid or don't match
+		 *                                  the settings recorded in the file
+		 * @throws UncheckedIOException     if the file can't be opened or mapped
+		 */
+		public TsidSharedFactory build() {
+			try {
+				return new TsidSharedFactory(this);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,567 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * A utility that sorts arrays of TSIDs stored as primitive {@code long} values.
+ * <p>
+ * The TSIDs are sorted in unsigned order, the same order of
+ * {@link Tsid#compareTo(Tsid)}. {@link Arrays#sort(long[])} sorts in signed
+ * order, which is different for TSIDs with the highest bit set.
+ * <p>
+ * Large arrays are sorted with a least significant digit radix sort, one byte
+ * at a time. A pass is skipped if all the TSIDs have the same byte, as the high
+ * bytes of TSIDs created within a short period of time. Arrays that are already
+ * sorted are returned as they are, and arrays made of a few sorted runs, such
+ * as concatenated batches, are merged. Arrays with TSIDs close to their places,
+ * such as TSIDs received from a few producers, are sorted by insertion, up to a
+ * limit of moves. Small arrays are sorted by comparison.
+ * <p>
+ * The sorts of large arrays take a temporary array of the same length.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidSort {
+
+	// below this length, a comparison sort is faster
+	private static final int RADIX_THRESHOLD = 1 << 11;
+	// below this length, a parallel sort is not worth it
+	private static final int PARALLEL_THRESHOLD = 1 << 17;
+	// up to this number of sorted runs, the runs are merged
+	private static final int MAX_RUNS = 16;
+	// up to one descent in this number of TSIDs, an insertion sort is tried
+	private static final int NEARLY_SORTED = 4;
+	// the moves per TSID after which an insertion sort gives up
+	private static final int MAX_MOVES = 2;
+	// a TSID is inserted at the cost of one move, plus one per 2^MOVE_SHIFT TSIDs it
+	// passes, since they are shifted at once
+	private static final int MOVE_SHIFT = 2;
+	// the TSIDs passed one by one before an insertion searches further
+	private static final int NEAR = 8;
+
+	private static final int RADIX = 1 << Byte.SIZE;
+	private static final int DIGITS = Long.BYTES;
+
+	private TsidSort() {
+	}
+
+	/**
+	 * Sorts an array of TSIDs in unsigned order.
+	 * 
+	 * @param tsids an array of TSIDs
+	 */
+	public static void sort(final long[] tsids) {
+		sort(tsids, 0, tsids.length);
+	}
+
+	/**
+	 * Sorts a range of an array of TSIDs in unsigned order.
+	 * 
+	 * @param tsids     an array of TSIDs
+	 * @param fromIndex the first index, inclusive
+	 * @param toIndex   the last index, exclusive
+	 * @throws IllegalArgumentException       if fromIndex is greater than toIndex
+	 * @throws ArrayIndexOutOfBoundsException if fromIndex is negative or toIndex is
+	 *                                        greater than the array length
+	 */
+	public static void sort(final long[] tsids, final int fromIndex, final int toIndex) {
+		check(tsids.length, fromIndex, toIndex);
+		sort(tsids, fromIndex, toIndex, null);
+	}
+
+	/**
+	 * Sorts an array of TSIDs in unsigned order, in parallel.
+	 * <p>
+	 * The work is split between the threads of the common pool. Small arrays are
+	 * sorted sequentially.
+	 * 
+	 * @param tsids an array of TSIDs
+	 */
+	public static void parallelSort(final long[] tsids) {
+		parallelSort(tsids, 0, tsids.length);
+	}
+
+	/**
+	 * Sorts a range of an array of TSIDs in unsigned order, in parallel.
+	 * <p>
+	 * The work is split between the threads of the common pool.
+	 * 
+	 * @param tsids     an array of TSIDs
+	 * @param fromIndex the first index, inclusive
+	 * @param toIndex   the last index, exclusive
+	 * @throws IllegalArgumentException       if fromIndex is greater than toIndex
+	 * @throws ArrayIndexOutOfBoundsException if fromIndex is negative or toIndex is
+	 *                                        greater than the array length
+	 */
+	public static void parallelSort(final long[] tsids, final int fromIndex, final int toIndex) {
+		parallelSort(tsids, fromIndex, toIndex, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Sorts a range of an array of TSIDs in unsigned order, in parallel.
+	 * <p>
+	 * The work is split between the threads of a pool.
+	 * 
+	 * @param tsids     an array of TSIDs
+	 * @param fromIndex the first index, inclusive
+	 * @param toIndex   the last index, exclusive
+	 * @param pool      a fork-join pool
+	 * @throws IllegalArgumentException       if fromIndex is greater than toIndex
+	 * @throws ArrayIndexOutOfBoundsException if fromIndex is negative or toIndex is
+	 *                                        greater than the array length
+	 */
+	public static void parallelSort(final long[] tsids, final int fromIndex, final int toIndex,
+			final ForkJoinPool pool) {
+
+		check(tsids.length, fromIndex, toIndex);
+		final int length = toIndex - fromIndex;
+		final int parallelism = pool.getParallelism();
+		if (length < PARALLEL_THRESHOLD || parallelism == 1) {
+			sort(tsids, fromIndex, toIndex, null);
+			return;
+		}
+
+		final int chunks = Math.min(parallelism * 4, length / (PARALLEL_THRESHOLD / 4));
+		final int[] starts = new int[chunks + 1];
+		for (int c = 0; c <= chunks; c++) {
+			starts[c] = fromIndex + (int) ((long) length * c / chunks);
+		}
+
+		// the runs and the digits of each chunk
+		final int[] runs = new int[chunks];
+		final int[][] counts = new int[chunks][];
+		invoke(pool, chunks, c -> {
+			runs[c] = runs(tsids, starts[c], starts[c + 1]);
+			counts[c] = count(tsids, starts[c], starts[c + 1]);
+		});
+		int total = 1;
+		for (int c = 0; c < chunks; c++) {
+			total += runs[c] - 1;
+			if (c > 0 && greater(tsids[starts[c] - 1], tsids[starts[c]])) {
+				total++;
+			}
+		}
+		if (total == 1) {
+			return;
+		}
+
+		boolean moved = false;
+		if (total > MAX_RUNS && total <= length / NEARLY_SORTED) {
+
+			// sort each chunk, then move the TSIDs that cross the chunk bounds
+			final boolean[] sorted = new boolean[chunks];
+			invoke(pool, chunks, c -> sorted[c] = insert(tsids, starts[c], starts[c] + 1, starts[c + 1],
+					(long) (starts[c + 1] - starts[c]) * MAX_MOVES, false) >= 0);
+			boolean done = true;
+			for (int c = 0; c < chunks && done; c++) {
+				done = sorted[c];
+			}
+			// the bounds share one limit, since they are fixed one after another
+			long limit = (long) length * MAX_MOVES;
+			for (int c = 1; c < chunks && done; c++) {
+				final long moves = insert(tsids, fromIndex, starts[c], starts[c + 1], limit, true);
+				done = moves >= 0;
+				limit -= moves;
+			}
+			if (done) {
+				return;
+			}
+			moved = true;
+		}
+
+		final long[] buffer = new long[length];
+		if (total <= MAX_RUNS) {
+			merge(tsids, fromIndex, toIndex, buffer, pool);
+			return;
+		}
+
+		// the counts of all the chunks, which don't change from pass to pass
+		final int[] totals = new int[DIGITS * RADIX];
+		for (int[] count : counts) {
+			for (int i = 0; i < totals.length; i++) {
+				totals[i] += count[i];
+			}
+		}
+
+		long[] source = tsids;
+		long[] target = buffer;
+		int sourceOffset = fromIndex;
+		int targetOffset = 0;
+		for (int d = 0; d < DIGITS; d++) {
+
+			final int shift = d * Byte.SIZE;
+			final int base = d * RADIX;
+			if (totals[base + ((int) (tsids[fromIndex] >>> shift) & 0xff)] == length) {
+				continue; // all the TSIDs have the same digit
+			}
+
+			final long[] from = source;
+			final long[] to = target;
+			final int fromOffset = sourceOffset;
+			final int toOffset = targetOffset;
+
+			// the counts of the chunks change once the TSIDs move
+			final int[][] chunkCounts = new int[chunks][];
+			if (!moved) {
+				for (int c = 0; c < chunks; c++) {
+					chunkCounts[c] = Arrays.copyOfRange(counts[c], base, base + RADIX);
+				}
+			} else {
+				invoke(pool, chunks, c -> chunkCounts[c] = count(from, starts[c] - fromIndex + fromOffset,
+						starts[c + 1] - fromIndex + fromOffset, shift));
+			}
+
+			// where each chunk writes each digit
+			final int[][] offsets = new int[chunks][RADIX];
+			int offset = toOffset;
+			for (int b = 0; b < RADIX; b++) {
+				for (int c = 0; c < chunks; c++) {
+					offsets[c][b] = offset;
+					offset += chunkCounts[c][b];
+				}
+			}
+			invoke(pool, chunks, c -> {
+				final int[] next = offsets[c];
+				final int end = starts[c + 1] - fromIndex + fromOffset;
+				for (int i = starts[c] - fromIndex + fromOffset; i < end; i++) {
+					final long tsid = from[i];
+					to[next[(int) (tsid >>> shift) & 0xff]++] = tsid;
+				}
+			});
+
+			source = to;
+			target = from;
+			sourceOffset = toOffset;
+			targetOffset = fromOffset;
+			moved = true;
+		}
+
+		if (source != tsids) {
+			final long[] from = source;
+			invoke(pool, chunks, c -> System.arraycopy(from, starts[c] - fromIndex, tsids, starts[c],
+					starts[c + 1] - starts[c]));
+		}
+	}
+
+	/**
+	 * Sorts a range of an array of TSIDs with a temporary array, which is
+	 * allocated if null or too short.
+	 */
+	static void sort(final long[] tsids, final int fromIndex, final int toIndex, long[] buffer) {
+
+		final int length = toIndex - fromIndex;
+		if (length < 2) {
+			return;
+		}
+
+		final int runs = runs(tsids, fromIndex, toIndex);
+		if (runs == 1) {
+			return;
+		}
+
+		if (length < RADIX_THRESHOLD) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				tsids[i] ^= Long.MIN_VALUE; // to sort as unsigned
+			}
+			Arrays.sort(tsids, fromIndex, toIndex);
+			for (int i = fromIndex; i < toIndex; i++) {
+				tsids[i] ^= Long.MIN_VALUE;
+			}
+			return;
+		}
+
+		if (runs > MAX_RUNS && runs <= length / NEARLY_SORTED
+				&& insert(tsids, fromIndex, fromIndex + 1, toIndex, (long) length * MAX_MOVES, false) >= 0) {
+			return;
+		}
+
+		if (buffer == null || buffer.length < length) {
+			buffer = new long[length];
+		}
+		if (runs <= MAX_RUNS) {
+			merge(tsids, fromIndex, toIndex, buffer, null);
+			return;
+		}
+
+		final int[] counts = count(tsids, fromIndex, toIndex);
+		long[] source = tsids;
+		long[] target = buffer;
+		int sourceOffset = fromIndex;
+		int targetOffset = 0;
+		for (int d = 0; d < DIGITS; d++) {
+
+			final int shift = d * Byte.SIZE;
+			final int base = d * RADIX;
+			if (counts[base + ((int) (tsids[fromIndex] >>> shift) & 0xff)] == length) {
+				continue; // all the TSIDs have the same digit
+			}
+
+			// where each digit starts
+			final int[] next = new int[RADIX];
+			int offset = targetOffset;
+			for (int b = 0; b < RADIX; b++) {
+				next[b] = offset;
+				offset += counts[base + b];
+			}
+			for (int i = sourceOffset; i < sourceOffset + length; i++) {
+				final long tsid = source[i];
+				target[next[(int) (tsid >>> shift) & 0xff]++] = tsid;
+			}
+
+			final long[] swap = source;
+			source = target;
+			target = swap;
+			final int swapOffset = sourceOffset;
+			sourceOffset = targetOffset;
+			targetOffset = swapOffset;
+		}
+
+		if (source != tsids) {
+			System.arraycopy(source, sourceOffset, tsids, fromIndex, length);
+		}
+	}
+
+	private static void check(final int length, final int fromIndex, final int toIndex) {
+		if (fromIndex > toIndex) {
+			throw new IllegalArgumentException(String.format("fromIndex(%s) > toIndex(%s)", fromIndex, toIndex));
+		}
+		if (fromIndex < 0) {
+			throw new ArrayIndexOutOfBoundsException(fromIndex);
+		}
+		if (toIndex > length) {
+			throw new ArrayIndexOutOfBoundsException(toIndex);
+		}
+	}
+
+	private static boolean greater(final long a, final long b) {
+		return a + Long.MIN_VALUE > b + Long.MIN_VALUE;
+	}
+
+	private static int runs(final long[] tsids, final int fromIndex, final int toIndex) {
+		int runs = 1;
+		for (int i = fromIndex + 1; i < toIndex; i++) {
+			if (greater(tsids[i - 1], tsids[i])) {
+				runs++;
+			}
+		}
+		return runs;
+	}
+
+	// the counts of all the digits
+	private static int[] count(final long[] tsids, final int fromIndex, final int toIndex) {
+		final int[] counts = new int[DIGITS * RADIX];
+		for (int i = fromIndex; i < toIndex; i++) {
+			final long tsid = tsids[i];
+			counts[(int) tsid & 0xff]++;
+			counts[RADIX + ((int) (tsid >>> 8) & 0xff)]++;
+			counts[RADIX * 2 + ((int) (tsid >>> 16) & 0xff)]++;
+			counts[RADIX * 3 + ((int) (tsid >>> 24) & 0xff)]++;
+			counts[RADIX * 4 + ((int) (tsid >>> 32) & 0xff)]++;
+			counts[RADIX * 5 + ((int) (tsid >>> 40) & 0xff)]++;
+			counts[RADIX * 6 + ((int) (tsid >>> 48) & 0xff)]++;
+			counts[RADIX * 7 + (int) (tsid >>> 56)]++;
+		}
+		return counts;
+	}
+
+	// the counts of one digit
+	private static int[] count(final long[] tsids, final int fromIndex, final int toIndex, final int shift) {
+		final int[] counts = new int[RADIX];
+		for (int i = fromIndex; i < toIndex; i++) {
+			counts[(int) (tsids[i] >>> shift) & 0xff]++;
+		}
+		return counts;
+	}
+
+	// inserts each TSID in the sorted TSIDs before it, stopping at the first TSID
+	// in place if the next ones are sorted, and returns the number of moves, or -1
+	// if it would be more than a limit
+	private static long insert(final long[] tsids, final int fromIndex, final int start, final int toIndex,
+			final long limit, final boolean sortedAfter) {
+		long moves = 0;
+		for (int i = start; i < toIndex; i++) {
+			final long tsid = tsids[i];
+			if (!greater(tsids[i - 1], tsid)) {
+				if (sortedAfter) {
+					return moves;
+				}
+				continue;
+			}
+
+			// the first TSID greater than this one, searched near it first
+			int hi = i - 1;
+			final int near = Math.max(fromIndex, i - NEAR);
+			while (hi > near && greater(tsids[hi - 1], tsid)) {
+				hi--;
+			}
+			if (hi == near && hi > fromIndex && greater(tsids[hi - 1], tsid)) {
+				// gallop back, then search
+				int lo = hi - 1;
+				for (int step = 2; lo >= fromIndex && greater(tsids[lo], tsid); step <<= 1) {
+					hi = lo;
+					lo = hi - step;
+				}
+				lo = Math.max(lo, fromIndex - 1);
+				while (hi - lo > 1) {
+					final int mid = (lo + hi) >>> 1;
+					if (greater(tsids[mid], tsid)) {
+						hi = mid;
+					} else {
+						lo = mid;
+					}
+				}
+			}
+
+			moves += 1 + ((i - hi) >>> MOVE_SHIFT);
+			if (moves > limit) {
+				return -1;
+			}
+			if (i - hi < NEAR) {
+				for (int j = i; j > hi; j--) {
+					tsids[j] = tsids[j - 1];
+				}
+			} else {
+				System.arraycopy(tsids, hi, tsids, hi + 1, i - hi);
+			}
+			tsids[hi] = tsid;
+		}
+		return moves;
+	}
+
+	// merges the sorted runs, alternating between the array and the buffer
+	private static void merge(final long[] tsids, final int fromIndex, final int toIndex, final long[] buffer,
+			final ForkJoinPool pool) {
+
+		final int length = toIndex - fromIndex;
+		final int[] bounds = new int[runs(tsids, fromIndex, toIndex) + 1];
+		int runs = 0;
+		for (int i = fromIndex + 1; i < toIndex; i++) {
+			if (greater(tsids[i - 1], tsids[i])) {
+				bounds[++runs] = i - fromIndex;
+			}
+		}
+		bounds[++runs] = length;
+
+		long[] source = tsids;
+		long[] target = buffer;
+		int sourceOffset = fromIndex;
+		int targetOffset = 0;
+		while (runs > 1) {
+
+			final long[] from = source;
+			final long[] to = target;
+			final int fromOffset = sourceOffset;
+			final int toOffset = targetOffset;
+			final int last = runs;
+			final int pairs = (runs + 1) / 2;
+			final IntConsumer action = p -> {
+				final int start = bounds[p * 2];
+				final int middle = bounds[Math.min(p * 2 + 1, last)];
+				final int end = bounds[Math.min(p * 2 + 2, last)];
+				merge(from, fromOffset + start, fromOffset + middle, fromOffset + end, to, toOffset + start);
+			};
+			if (pool != null) {
+				invoke(pool, pairs, action);
+			} else {
+				for (int p = 0; p < pairs; p++) {
+					action.accept(p);
+				}
+			}
+
+			for (int p = 0; p < pairs; p++) {
+				bounds[p] = bounds[p * 2];
+			}
+			bounds[pairs] = length;
+			runs = pairs;
+
+			source = to;
+			target = from;
+			sourceOffset = toOffset;
+			targetOffset = fromOffset;
+		}
+
+		if (source != tsids) {
+			System.arraycopy(source, sourceOffset, tsids, fromIndex, length);
+		}
+	}
+
+	private static void merge(final long[] source, final int start, final int middle, final int end,
+			final long[] target, int index) {
+		if (middle == end || !greater(source[middle - 1], source[middle])) {
+			System.arraycopy(source, start, target, index, end - start); // in order
+			return;
+		}
+		if (greater(source[start], source[end - 1])) {
+			System.arraycopy(source, middle, target, index, end - middle); // swapped
+			System.arraycopy(source, start, target, index + end - middle, middle - start);
+			return;
+		}
+		int i = start;
+		int j = middle;
+		while (i < middle && j < end) {
+			target[index++] = greater(source[i], source[j]) ? source[j++] : source[i++];
+		}
+		System.arraycopy(source, i, target, index, middle - i);
+		System.arraycopy(source, j, target, index + middle - i, end - j);
+	}
+
+	private static void invoke(final ForkJoinPool pool, final int count, final IntConsumer action) {
+		pool.invoke(new ChunkTask(action, 0, count));
+	}
+
+	/**
+	 * Performs an action for a range of chunks.
+	 */
+	private static final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient IntConsumer action;
+		private final int from;
+		private final int to;
+
+		ChunkTask(IntConsumer action, int from, int to) {
+			this.action = action;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(action, from, middle), new ChunkTask(action, middle, to));
+				return;
+			}
+			if (to > from) {
+				action.accept(from);
+			}
+		}
+	}
+}
@@ -0,0 +1,1082 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import com.github.f4b6a3.tsid.TsidLayout;
+
+/**
+ * A compressed bitmap of TSIDs, in the style of Roaring bitmaps.
+ * <p>
+ * The time bits of a TSID select a container, and the node and counter bits are
+ * stored in it. A container is one of:
+ * <ul>
+ * <li>an array of sorted values, 4 bytes per TSID;
+ * <li>a list of runs of consecutive values, 8 bytes per run;
+ * <li>a bitmap of all the possible values, 512 KB with the default layout.
+ * </ul>
+ * A factory increments the counter within a millisecond, so the TSIDs of a node
+ * in a millisecond form a single run.
+ * <p>
+ * There is one container per unit of time, 1 ms by default, so the bitmap suits
+ * sets with many TSIDs per millisecond. With about one TSID per millisecond,
+ * each container costs more than 60 bytes, and a sorted {@code long} array is
+ * smaller.
+ * <p>
+ * Additions use arrays until a bitmap is smaller. Call {@link #optimize()} to
+ * convert the containers to runs where runs are smaller. The results of
+ * {@link #and(TsidBitmap, TsidBitmap)}, {@link #or(TsidBitmap, TsidBitmap)} and
+ * {@link #andNot(TsidBitmap, TsidBitmap)} are new bitmaps.
+ * <p>
+ * The iterators and streams return the TSIDs in ascending order, without boxing.
+ * <p>
+ * Instances of this class are <b>not thread-safe</b>.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidBitmap {
+
+	private final int lowBits;
+	private final int lowMask;
+	private final int words; // of a bitmap container
+	private final int arrayMax; // the cardinality above which a bitmap is smaller
+
+	private long[] keys;
+	private Container[] containers;
+	private int size;
+
+	private static final byte ARRAY = 0;
+	private static final byte RUN = 1;
+	private static final byte BITMAP = 2;
+
+	/**
+	 * Creates an empty bitmap for the default layout.
+	 */
+	public TsidBitmap() {
+		this(TsidLayout.builder().build());
+	}
+
+	/**
+	 * Creates an empty bitmap for a layout.
+	 * 
+	 * @param layout a layout
+	 * @throws IllegalArgumentException if the node bits plus the counter bits are
+	 *                                  greater than 31
+	 */
+	public TsidBitmap(final TsidLayout layout) {
+		this(layout.getNodeBits() + layout.getCounterBits());
+	}
+
+	private TsidBitmap(final int lowBits) {
+		this(lowBits, 4);
+	}
+
+	private TsidBitmap(final int lowBits, final int capacity) {
+		if (lowBits < 0 || lowBits > 31) {
+			throw new IllegalArgumentException(
+					String.format("Node bits plus counter bits greater than 31: %s", lowBits));
+		}
+		this.lowBits = lowBits;
+		this.lowMask = (int) ((1L << lowBits) - 1);
+		this.words = (int) Math.max(1, (1L << lowBits) >>> 6);
+		this.arrayMax = this.words * 2;
+		this.keys = new long[Math.max(4, capacity)];
+		this.containers = new Container[Math.max(4, capacity)];
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * 
+	 * @return the cardinality
+	 */
+	public long cardinality() {
+		long cardinality = 0;
+		for (int i = 0; i < this.size; i++) {
+			cardinality += this.containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Checks if the bitmap is empty.
+	 * 
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Adds a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID was not in the bitmap
+	 */
+	public boolean add(final long tsid) {
+
+		final long key = tsid >>> this.lowBits;
+		final int low = (int) tsid & this.lowMask;
+
+		int i = find(key);
+		if (i < 0) {
+			insert(-i - 1, key, new ArrayContainer(new int[] { low }, 1));
+			return true;
+		}
+
+		final Container container = this.containers[i];
+		if (!container.add(low)) {
+			return false;
+		}
+		if (container.type() == ARRAY && container.cardinality() > this.arrayMax) {
+			this.containers[i] = bitmap(container.runs());
+		} else if (container.type() == RUN && container.numberOfRuns() > this.words) {
+			// the runs take more than a bitmap
+			this.containers[i] = container(container.runs());
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the bitmap contains a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if found
+	 */
+	public boolean contains(final long tsid) {
+		final int i = find(tsid >>> this.lowBits);
+		return i >= 0 && this.containers[i].contains((int) tsid & this.lowMask);
+	}
+
+	/**
+	 * Removes all the TSIDs.
+	 */
+	public void clear() {
+		Arrays.fill(this.containers, 0, this.size, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Converts each container to its smallest representation: an array, a list of
+	 * runs or a bitmap.
+	 */
+	public void optimize() {
+		for (int i = 0; i < this.size; i++) {
+			this.containers[i] = optimize(this.containers[i]);
+		}
+	}
+
+	/**
+	 * Returns the intersection of two bitmaps.
+	 * 
+	 * @param a a bitmap
+	 * @param b another bitmap
+	 * @return a new bitmap
+	 * @throws IllegalArgumentException if the bitmaps have different layouts
+	 */
+	public static TsidBitmap and(final TsidBitmap a, final TsidBitmap b) {
+		final TsidBitmap result = new TsidBitmap(check(a, b).lowBits, Math.min(a.size, b.size));
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				result.append(a.keys[i], result.and(a.containers[i++], b.containers[j++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the union of two bitmaps.
+	 * 
+	 * @param a a bitmap
+	 * @param b another bitmap
+	 * @return a new bitmap
+	 * @throws IllegalArgumentException if the bitmaps have different layouts
+	 */
+	public static TsidBitmap or(final TsidBitmap a, final TsidBitmap b) {
+		final TsidBitmap result = new TsidBitmap(check(a, b).lowBits, a.size + b.size);
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+				result.append(a.keys[i], a.containers[i++].copy());
+			} else if (i == a.size || a.keys[i] > b.keys[j]) {
+				result.append(b.keys[j], b.containers[j++].copy());
+			} else {
+				result.append(a.keys[i], result.or(a.containers[i++], b.containers[j++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the TSIDs of a bitmap that are not in another.
+	 * 
+	 * @param a a bitmap
+	 * @param b another bitmap
+	 * @return a new bitmap
+	 * @throws IllegalArgumentException if the bitmaps have different layouts
+	 */
+	public static TsidBitmap andNot(final TsidBitmap a, final TsidBitmap b) {
+		final TsidBitmap result = new TsidBitmap(check(a, b).lowBits, a.size);
+		int j = 0;
+		for (int i = 0; i < a.size; i++) {
+			while (j < b.size && b.keys[j] < a.keys[i]) {
+				j++;
+			}
+			if (j < b.size && b.keys[j] == a.keys[i]) {
+				result.append(a.keys[i], result.andNot(a.containers[i], b.containers[j]));
+			} else {
+				result.append(a.keys[i], a.containers[i].copy());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the TSIDs, in ascending order.
+	 * 
+	 * @return an array of TSIDs
+	 * @throws IllegalStateException if there are too many TSIDs for an array
+	 */
+	public long[] toArray() {
+		final long cardinality = cardinality();
+		if (cardinality > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException(String.format("Too many TSIDs for an array: %s", cardinality));
+		}
+		final long[] tsids = new long[(int) cardinality];
+		final int[] j = { 0 };
+		forEach(tsid -> tsids[j[0]++] = tsid);
+		return tsids;
+	}
+
+	/**
+	 * Performs an action for each TSID, in ascending order.
+	 * 
+	 * @param action an action
+	 */
+	public void forEach(final LongConsumer action) {
+		for (int i = 0; i < this.size; i++) {
+			this.containers[i].forEach(this.keys[i] << this.lowBits, action);
+		}
+	}
+
+	/**
+	 * Returns an iterator of the TSIDs, in ascending order.
+	 * <p>
+	 * The bitmap must not be modified while iterating.
+	 * 
+	 * @return an iterator that doesn't box the TSIDs
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+
+			private int index = 0;
+			private int low = size > 0 ? containers[0].next(0) : -1;
+
+			@Override
+			public boolean hasNext() {
+				return this.low >= 0;
+			}
+
+			@Override
+			public long nextLong() {
+				if (this.low < 0) {
+					throw new NoSuchElementException();
+				}
+				final long tsid = (keys[this.index] << lowBits) | this.low;
+				this.low = this.low < lowMask ? containers[this.index].next(this.low + 1) : -1;
+				if (this.low < 0 && ++this.index < size) {
+					this.low = containers[this.index].next(0);
+				}
+				return tsid;
+			}
+		};
+	}
+
+	/**
+	 * Returns a sequential stream of the TSIDs, in ascending order.
+	 * 
+	 * @return a stream
+	 */
+	public LongStream stream() {
+		final int characteristics = Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.SORTED
+				| Spliterator.NONNULL;
+		return StreamSupport.longStream(Spliterators.spliterator(iterator(), cardinality(), characteristics), false);
+	}
+
+	/**
+	 * Returns the bitmap as a byte array.
+	 * <p>
+	 * The format is: the number of node and counter bits (1 byte), the number of
+	 * containers (4 bytes) and, for each container, its key (8 bytes), its type (1
+	 * byte), its number of values, runs or TSIDs (4 bytes) and its data, all in big
+	 * endian order.
+	 * 
+	 * @return a byte array
+	 */
+	public byte[] toBytes() {
+		int length = Byte.BYTES + Integer.BYTES;
+		for (int i = 0; i < this.size; i++) {
+			length += Long.BYTES + Byte.BYTES + Integer.BYTES + this.containers[i].bytes();
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.put((byte) this.lowBits);
+		buffer.putInt(this.size);
+		for (int i = 0; i < this.size; i++) {
+			buffer.putLong(this.keys[i]);
+			buffer.put(this.containers[i].type());
+			this.containers[i].write(buffer);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Returns a bitmap from a byte array.
+	 * 
+	 * @param bytes a byte array returned by {@link #toBytes()}
+	 * @return a bitmap
+	 * @throws IllegalArgumentException if the bytes are invalid
+	 */
+	public static TsidBitmap from(final byte[] bytes) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("Invalid TSID bitmap: null");
+		}
+		try {
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			final TsidBitmap bitmap = new TsidBitmap(buffer.get());
+			final int size = buffer.getInt();
+			if (size < 0 || size > buffer.remaining() / (Long.BYTES + Byte.BYTES + Integer.BYTES)) {
+				throw new IllegalArgumentException(String.format("Invalid TSID bitmap size: %s", size));
+			}
+			for (int i = 0; i < size; i++) {
+				final long key = buffer.getLong();
+				if (key < 0 || (bitmap.size > 0 && key <= bitmap.keys[bitmap.size - 1])) {
+					throw new IllegalArgumentException(String.format("Invalid TSID bitmap key: %s", key));
+				}
+				bitmap.append(key, bitmap.read(buffer));
+			}
+			if (buffer.hasRemaining()) {
+				throw new IllegalArgumentException("Invalid TSID bitmap: too long");
+			}
+			return bitmap;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Invalid TSID bitmap: truncated");
+		}
+	}
+
+	private static TsidBitmap check(final TsidBitmap a, final TsidBitmap b) {
+		if (a.lowBits != b.lowBits) {
+			throw new IllegalArgumentException(
+					String.format("Bitmaps of different layouts: %s and %s bits", a.lowBits, b.lowBits));
+		}
+		return a;
+	}
+
+	private int find(final long key) {
+		// TSIDs are usually added in ascending order
+		if (this.size == 0 || this.keys[this.size - 1] < key) {
+			return -this.size - 1;
+		}
+		if (this.keys[this.size - 1] == key) {
+			return this.size - 1;
+		}
+		return Arrays.binarySearch(this.keys, 0, this.size, key);
+	}
+
+	private void insert(final int i, final long key, final Container container) {
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+			this.containers = Arrays.copyOf(this.containers, this.size * 2);
+		}
+		System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+		System.arraycopy(this.containers, i, this.containers, i + 1, this.size - i);
+		this.keys[i] = key;
+		this.containers[i] = container;
+		this.size++;
+	}
+
+	private void append(final long key, final Container container) {
+		if (container != null) {
+			insert(this.size, key, container);
+		}
+	}
+
+	private Container and(final Container a, final Container b) {
+		if (a.type() == BITMAP && b.type() == BITMAP) {
+			final long[] x = ((BitmapContainer) a).words;
+			final long[] y = ((BitmapContainer) b).words;
+			final long[] words = new long[this.words];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = x[i] & y[i];
+			}
+			return shrink(new BitmapContainer(words));
+		}
+		if (a.type() == ARRAY) {
+			return filter((ArrayContainer) a, b, true);
+		}
+		if (b.type() == ARRAY) {
+			return filter((ArrayContainer) b, a, true);
+		}
+		final int[] x = a.runs();
+		final int[] y = b.runs();
+		final int[] runs = new int[x.length + y.length];
+		return container(runs, andRuns(x, y, runs));
+	}
+
+	private Container or(final Container a, final Container b) {
+		if (a.type() == BITMAP || b.type() == BITMAP) {
+			final BitmapContainer bitmap = (BitmapContainer) (a.type() == BITMAP ? a : b).copy();
+			final int[] runs = (a.type() == BITMAP ? b : a).runs();
+			for (int i = 0; i < runs.length; i += 2) {
+				bitmap.set(runs[i], runs[i + 1], true);
+			}
+			return bitmap;
+		}
+		if (a.type() == ARRAY && b.type() == ARRAY) {
+			final ArrayContainer union = merge((ArrayContainer) a, (ArrayContainer) b);
+			return union.size > this.arrayMax ? bitmap(union.runs()) : union;
+		}
+		final int[] x = a.runs();
+		final int[] y = b.runs();
+		final int[] runs = new int[x.length + y.length];
+		return container(runs, orRuns(x, y, runs));
+	}
+
+	private Container andNot(final Container a, final Container b) {
+		if (a.type() == ARRAY) {
+			return filter((ArrayContainer) a, b, false);
+		}
+		if (a.type() == BITMAP) {
+			final BitmapContainer bitmap = (BitmapContainer) a.copy();
+			final int[] runs = b.runs();
+			for (int i = 0; i < runs.length; i += 2) {
+				bitmap.set(runs[i], runs[i + 1], false);
+			}
+			return shrink(bitmap);
+		}
+		final int[] x = a.runs();
+		final int[] y = b.runs();
+		final int[] runs = new int[x.length + y.length];
+		return container(runs, andNotRuns(x, y, runs));
+	}
+
+	private static Container filter(final ArrayContainer a, final Container b, final boolean keep) {
+		final int[] values = new int[a.size];
+		int size = 0;
+		for (int i = 0; i < a.size; i++) {
+			if (b.contains(a.values[i]) == keep) {
+				values[size++] = a.values[i];
+			}
+		}
+		return size == 0 ? null : new ArrayContainer(values, size);
+	}
+
+	private static ArrayContainer merge(final ArrayContainer a, final ArrayContainer b) {
+		final int[] values = new int[a.size + b.size];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.size || j < b.size) {
+			if (j == b.size || (i < a.size && a.values[i] < b.values[j])) {
+				values[k++] = a.values[i++];
+			} else if (i == a.size || a.values[i] > b.values[j]) {
+				values[k++] = b.values[j++];
+			} else {
+				values[k++] = a.values[i++];
+				j++;
+			}
+		}
+		return new ArrayContainer(values, k);
+	}
+
+	private static int andRuns(final int[] a, final int[] b, final int[] out) {
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.length && j < b.length) {
+			final int start = Math.max(a[i], b[j]);
+			final int end = Math.min(a[i + 1], b[j + 1]);
+			if (start <= end) {
+				if (k > 0 && start - 1 == out[k - 1]) {
+					out[k - 1] = end;
+				} else {
+					out[k++] = start;
+					out[k++] = end;
+				}
+			}
+			if (a[i + 1] < b[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+		return k;
+	}
+
+	private static int orRuns(final int[] a, final int[] b, final int[] out) {
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.length || j < b.length) {
+			final int start;
+			final int end;
+			if (j == b.length || (i < a.length && a[i] <= b[j])) {
+				start = a[i];
+				end = a[i + 1];
+				i += 2;
+			} else {
+				start = b[j];
+				end = b[j + 1];
+				j += 2;
+			}
+			if (k > 0 && start - 1 <= out[k - 1]) {
+				out[k - 1] = Math.max(out[k - 1], end);
+			} else {
+				out[k++] = start;
+				out[k++] = end;
+			}
+		}
+		return k;
+	}
+
+	private static int andNotRuns(final int[] a, final int[] b, final int[] out) {
+		int j = 0;
+		int k = 0;
+		for (int i = 0; i < a.length; i += 2) {
+			long start = a[i];
+			final int end = a[i + 1];
+			while (j < b.length && b[j + 1] < start) {
+				j += 2;
+			}
+			for (int m = j; m < b.length && b[m] <= end && start <= end; m += 2) {
+				if (b[m] > start) {
+					out[k++] = (int) start;
+					out[k++] = b[m] - 1;
+				}
+				start = b[m + 1] + 1L;
+			}
+			if (start <= end) {
+				out[k++] = (int) start;
+				out[k++] = end;
+			}
+		}
+		return k;
+	}
+
+	private Container optimize(final Container container) {
+		final byte type = best(container.cardinality(), container.numberOfRuns());
+		return type == container.type() ? container : container(container.runs());
+	}
+
+	private Container shrink(final BitmapContainer bitmap) {
+		if (bitmap.cardinality == 0) {
+			return null;
+		}
+		return bitmap.cardinality > this.arrayMax ? bitmap : array(bitmap.runs(), bitmap.cardinality);
+	}
+
+	private byte best(final long cardinality, final long runs) {
+		final long array = cardinality * Integer.BYTES;
+		final long run = runs * Integer.BYTES * 2;
+		final long bitmap = (long) this.words * Long.BYTES;
+		if (array <= run && array <= bitmap) {
+			return ARRAY;
+		}
+		return run <= bitmap ? RUN : BITMAP;
+	}
+
+	private Container container(final int[] runs) {
+		return container(runs, runs.length);
+	}
+
+	private Container container(final int[] runs, final int length) {
+		if (length == 0) {
+			return null;
+		}
+		long cardinality = 0;
+		for (int i = 0; i < length; i += 2) {
+			cardinality += runs[i + 1] - runs[i] + 1L;
+		}
+		switch (best(cardinality, length / 2)) {
+		case ARRAY:
+			return array(runs, (int) cardinality);
+		case RUN:
+			return new RunContainer(Arrays.copyOf(runs, length), length, (int) cardinality);
+		default:
+			return bitmap(Arrays.copyOf(runs, length));
+		}
+	}
+
+	private static ArrayContainer array(final int[] runs, final int cardinality) {
+		final int[] values = new int[cardinality];
+		int k = 0;
+		for (int i = 0; i < runs.length && k < cardinality; i += 2) {
+			for (int value = runs[i]; value <= runs[i + 1] && k < cardinality; value++) {
+				values[k++] = value;
+			}
+		}
+		return new ArrayContainer(values, cardinality);
+	}
+
+	private BitmapContainer bitmap(final int[] runs) {
+		final BitmapContainer bitmap = new BitmapContainer(new long[this.words]);
+		for (int i = 0; i < runs.length; i += 2) {
+			bitmap.set(runs[i], runs[i + 1], true);
+		}
+		return bitmap;
+	}
+
+	private Container read(final ByteBuffer buffer) {
+		final byte type = buffer.get();
+		final int count = buffer.getInt();
+		final int max = type == RUN ? this.lowMask / 2 + 1 : this.arrayMax;
+		final long ints = type == RUN ? count * 2L : count;
+		if (count < 1 || (type != BITMAP && (count > max || ints > buffer.remaining() / Integer.BYTES))) {
+			throw new IllegalArgumentException(String.format("Invalid TSID bitmap container size: %s", count));
+		}
+		switch (type) {
+		case ARRAY:
+		case RUN:
+			final int[] values = new int[(int) ints];
+			long min = 0; // ascending values, and runs apart
+			for (int i = 0; i < values.length; i++) {
+				values[i] = buffer.getInt();
+				if (values[i] < min || values[i] > this.lowMask) {
+					throw new IllegalArgumentException(String.format("Invalid TSID bitmap value: %s", values[i]));
+				}
+				min = type == ARRAY ? values[i] + 1L : values[i] + (i % 2 == 1 ? 2L : 0L);
+			}
+			return type == ARRAY ? new ArrayContainer(values, values.length) : container(values);
+		case BITMAP:
+			final long[] words = new long[this.words];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = buffer.getLong();
+			}
+			final BitmapContainer bitmap = new BitmapContainer(words);
+			if (bitmap.cardinality != count || (this.lowBits < 6 && (words[0] >>> (1 << this.lowBits)) != 0)) {
+				throw new IllegalArgumentException("Invalid TSID bitmap container cardinality");
+			}
+			return bitmap;
+		default:
+			throw new IllegalArgumentException(String.format("Invalid TSID bitmap container type: %s", type));
+		}
+	}
+
+	private abstract static class Container {
+
+		abstract byte type();
+
+		abstract int cardinality();
+
+		abstract int numberOfRuns();
+
+		abstract boolean contains(int low);
+
+		abstract boolean add(int low);
+
+		// the smallest value not less than low, or -1
+		abstract int next(int low);
+
+		abstract void forEach(long high, LongConsumer action);
+
+		// the first and the last value of each run, not to be modified
+		abstract int[] runs();
+
+		abstract Container copy();
+
+		abstract int bytes();
+
+		abstract void write(ByteBuffer buffer);
+	}
+
+	private static final class ArrayContainer extends Container {
+
+		private int[] values;
+		private int size;
+
+		ArrayContainer(final int[] values, final int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		byte type() {
+			return ARRAY;
+		}
+
+		@Override
+		int cardinality() {
+			return this.size;
+		}
+
+		@Override
+		int numberOfRuns() {
+			int runs = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (i == 0 || this.values[i] != this.values[i - 1] + 1) {
+					runs++;
+				}
+			}
+			return runs;
+		}
+
+		@Override
+		boolean contains(final int low) {
+			return Arrays.binarySearch(this.values, 0, this.size, low) >= 0;
+		}
+
+		@Override
+		boolean add(final int low) {
+			int i = this.size;
+			if (this.size > 0 && this.values[this.size - 1] >= low) {
+				i = Arrays.binarySearch(this.values, 0, this.size, low);
+				if (i >= 0) {
+					return false;
+				}
+				i = -i - 1;
+			}
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			System.arraycopy(this.values, i, this.values, i + 1, this.size - i);
+			this.values[i] = low;
+			this.size++;
+			return true;
+		}
+
+		@Override
+		int next(final int low) {
+			int i = Arrays.binarySearch(this.values, 0, this.size, low);
+			if (i < 0) {
+				i = -i - 1;
+			}
+			return i < this.size ? this.values[i] : -1;
+		}
+
+		@Override
+		void forEach(final long high, final LongConsumer action) {
+			for (int i = 0; i < this.size; i++) {
+				action.accept(high | this.values[i]);
+			}
+		}
+
+		@Override
+		int[] runs() {
+			final int[] runs = new int[numberOfRuns() * 2];
+			int k = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (i == 0 || this.values[i] != this.values[i - 1] + 1) {
+					runs[k++] = this.values[i];
+					runs[k++] = this.values[i];
+				} else {
+					runs[k - 1] = this.values[i];
+				}
+			}
+			return runs;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(this.values, this.size), this.size);
+		}
+
+		@Override
+		int bytes() {
+			return this.size * Integer.BYTES;
+		}
+
+		@Override
+		void write(final ByteBuffer buffer) {
+			buffer.putInt(this.size);
+			for (int i = 0; i < this.size; i++) {
+				buffer.putInt(this.values[i]);
+			}
+		}
+	}
+
+	private static final class RunContainer extends Container {
+
+		private int[] runs; // the first and the last value of each run
+		private int length;
+		private int cardinality;
+
+		RunContainer(final int[] runs, final int length, final int cardinality) {
+			this.runs = runs;
+			this.length = length;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		byte type() {
+			return RUN;
+		}
+
+		@Override
+		int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		int numberOfRuns() {
+			return this.length / 2;
+		}
+
+		@Override
+		boolean contains(final int low) {
+			final int i = floor(low);
+			return i >= 0 && low <= this.runs[i + 1];
+		}
+
+		@Override
+		boolean add(final int low) {
+			final int i = floor(low);
+			if (i >= 0 && low <= this.runs[i + 1]) {
+				return false;
+			}
+			final boolean before = i >= 0 && this.runs[i + 1] == low - 1;
+			final boolean after = i + 2 < this.length && this.runs[i + 2] == low + 1;
+			if (before && after) {
+				// joins two runs
+				this.runs[i + 1] = this.runs[i + 3];
+				System.arraycopy(this.runs, i + 4, this.runs, i + 2, this.length - i - 4);
+				this.length -= 2;
+			} else if (before) {
+				this.runs[i + 1] = low;
+			} else if (after) {
+				this.runs[i + 2] = low;
+			} else {
+				if (this.length == this.runs.length) {
+					this.runs = Arrays.copyOf(this.runs, this.length * 2);
+				}
+				System.arraycopy(this.runs, i + 2, this.runs, i + 4, this.length - i - 2);
+				this.runs[i + 2] = low;
+				this.runs[i + 3] = low;
+				this.length += 2;
+			}
+			this.cardinality++;
+			return true;
+		}
+
+		@Override
+		int next(final int low) {
+			final int i = floor(low);
+			if (i >= 0 && low <= this.runs[i + 1]) {
+				return low;
+			}
+			return i + 2 < this.length ? this.runs[i + 2] : -1;
+		}
+
+		@Override
+		void forEach(final long high, final LongConsumer action) {
+			for (int i = 0; i < this.length; i += 2) {
+				for (long low = this.runs[i]; low <= this.runs[i + 1]; low++) {
+					action.accept(high | low);
+				}
+			}
+		}
+
+		@Override
+		int[] runs() {
+			return this.length == this.runs.length ? this.runs : Arrays.copyOf(this.runs, this.length);
+		}
+
+		@Override
+		Container copy() {
+			return new RunContainer(Arrays.copyOf(this.runs, this.length), this.length, this.cardinality);
+		}
+
+		@Override
+		int bytes() {
+			return this.length * Integer.BYTES;
+		}
+
+		@Override
+		void write(final ByteBuffer buffer) {
+			buffer.putInt(this.length / 2);
+			for (int i = 0; i < this.length; i++) {
+				buffer.putInt(this.runs[i]);
+			}
+		}
+
+		// the index of the last run that starts at or before low, or -2
+		private int floor(final int low) {
+			int lo = 0;
+			int hi = this.length / 2 - 1;
+			while (lo <= hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (this.runs[mid * 2] <= low) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return hi * 2;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+
+		private final long[] words;
+		private int cardinality;
+
+		BitmapContainer(final long[] words) {
+			this.words = words;
+			for (long word : words) {
+				this.cardinality += Long.bitCount(word);
+			}
+		}
+
+		@Override
+		byte type() {
+			return BITMAP;
+		}
+
+		@Override
+		int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		int numberOfRuns() {
+			int runs = 0;
+			long previous = 0;
+			for (long word : this.words) {
+				// the bits that start a run
+				runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+				previous = word;
+			}
+			return runs;
+		}
+
+		@Override
+		boolean contains(final int low) {
+			return (this.words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		boolean add(final int low) {
+			final long word = this.words[low >>> 6];
+			if ((word & (1L << low)) != 0) {
+				return false;
+			}
+			this.words[low >>> 6] = word | (1L << low);
+			this.cardinality++;
+			return true;
+		}
+
+		@Override
+		int next(final int low) {
+			int i = low >>> 6;
+			long word = this.words[i] & (-1L << low);
+			while (word == 0) {
+				if (++i == this.words.length) {
+					return -1;
+				}
+				word = this.words[i];
+			}
+			return i * Long.SIZE + Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		void forEach(final long high, final LongConsumer action) {
+			for (int i = 0; i < this.words.length; i++) {
+				long word = this.words[i];
+				while (word != 0) {
+					action.accept(high | (i * Long.SIZE + Long.numberOfTrailingZeros(word)));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		int[] runs() {
+			final int[] runs = new int[numberOfRuns() * 2];
+			int k = 0;
+			for (int i = 0; i < this.words.length; i++) {
+				long word = this.words[i];
+				while (word != 0) {
+					final int start = Long.numberOfTrailingZeros(word);
+					final long filled = word | ((1L << start) - 1);
+					final int end = filled == -1L ? Long.SIZE : Long.numberOfTrailingZeros(~filled);
+					if (k > 0 && start == 0 && runs[k - 1] == i * Long.SIZE - 1) {
+						runs[k - 1] = i * Long.SIZE + end - 1; // continues the previous word
+					} else {
+						runs[k++] = i * Long.SIZE + start;
+						runs[k++] = i * Long.SIZE + end - 1;
+					}
+					word = end == Long.SIZE ? 0 : word & (-1L << end);
+				}
+			}
+			return runs;
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(this.words.clone());
+		}
+
+		@Override
+		int bytes() {
+			return this.words.length * Long.BYTES;
+		}
+
+		@Override
+		void write(final ByteBuffer buffer) {
+			buffer.putInt(this.cardinality);
+			for (long word : this.words) {
+				buffer.putLong(word);
+			}
+		}
+
+		void set(final int start, final int end, final boolean value) {
+			for (int i = start >>> 6; i <= end >>> 6; i++) {
+				long mask = -1L;
+				if (i == start >>> 6) {
+					mask &= -1L << start;
+				}
+				if (i == end >>> 6) {
+					mask &= -1L >>> (63 - (end & 63));
+				}
+				final long word = this.words[i];
+				this.words[i] = value ? word | mask : word & ~mask;
+				this.cardinality += Long.bitCount(this.words[i]) - Long.bitCount(word);
+			}
+		}
+	}
+}
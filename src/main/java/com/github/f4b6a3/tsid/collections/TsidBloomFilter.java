@@ -0,0 +1,584 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import com.github.f4b6a3.tsid.TsidLayout;
+
+/**
+ * A Bloom filter of TSIDs, partitioned by the time of creation of the TSIDs.
+ * <p>
+ * There is one filter for each bucket of time. The bucket of a TSID is chosen
+ * by its time of creation, read from the TSID itself, so each lookup reads a
+ * single filter. The buckets are kept in a ring that covers the retention. When
+ * the time advances, the filter of an expired bucket is cleared and reused by a
+ * new bucket.
+ * <p>
+ * A TSID that was added is always found. A TSID that was not added may be found
+ * with the configured probability of false positives. TSIDs older than the
+ * retention, or more than one bucket ahead of the clock, are never found and
+ * never added.
+ * <p>
+ * The k bit positions are derived from the 64 bits of the TSID with double
+ * hashing, without any allocation.
+ * <p>
+ * The filters may be stored on the Java heap, outside the Java heap, or in a
+ * memory-mapped file that survives restarts.
+ * <p>
+ * Lookups don't lock. Additions lock a single filter. A TSID added by another
+ * thread at the same time may not be found yet.
+ * <p>
+ * Example:
+ * 
+ * <pre>{@code
+ * // TSIDs of the last 30 days, in daily buckets of up to 10 million TSIDs
+ * TsidBloomFilter filter = TsidBloomFilter.builder()
+ * 		.withRetention(Duration.ofDays(30))
+ * 		.withBucketSize(Duration.ofDays(1))
+ * 		.withExpectedInsertions(10_000_000)
+ * 		.withFalsePositiveRate(0.01)
+ * 		.withFile(Paths.get("/var/lib/myapp/tsids.bloom"))
+ * 		.build();
+ * 
+ * if (!filter.mightContain(tsid)) {
+ * 	filter.add(tsid); // certainly a new TSID
+ * }
+ * }</pre>
+ * 
+ * @since 5.3.0
+ */
+public final class TsidBloomFilter {
+
+	private final TsidLayout layout;
+	private final LongSupplier timeFunction;
+	private final long retentionMillis;
+	private final long bucketMillis;
+
+	private final long bits; // per bucket
+	private final int hashes;
+
+	private final ByteBuffer header;
+	private final ByteBuffer[] filters;
+	private final ReentrantLock[] locks;
+
+	// file header: magic, version, filters, hashes, bits, bucket size
+	private static final int MAGIC = 0x54534246; // "TSBF"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+
+	// each filter starts with its bucket number
+	private static final int BUCKET_BYTES = Long.BYTES;
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	static final long MAX_BITS = (Integer.MAX_VALUE - BUCKET_BYTES) / Long.BYTES * (long) Long.SIZE;
+	// the most bits reached by a 32-bit double hash
+	static final long NARROW_BITS = 1L << 32;
+	private static final int MAX_HASHES = 16;
+
+	private TsidBloomFilter(final Builder builder) {
+
+		this.layout = builder.getLayout();
+		this.timeFunction = builder.getTimeFunction();
+		this.retentionMillis = builder.getRetention().toMillis();
+		this.bucketMillis = builder.getBucketSize().toMillis();
+
+		// optimal number of bits and hashes, rounded up to whole words
+		final long n = builder.getExpectedInsertions();
+		final double p = builder.getFalsePositiveRate();
+		final double optimal = Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+		if (optimal > MAX_BITS) {
+			throw new IllegalArgumentException(String.format("Filter too large: %.0f bits", optimal));
+		}
+		this.bits = Math.max(Long.SIZE, ((long) optimal + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+		this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) this.bits / n * Math.log(2))));
+
+		// the buckets of the retention, plus the current and the next bucket
+		final long count = (this.retentionMillis + this.bucketMillis - 1) / this.bucketMillis + 2;
+		if (count > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException(String.format("Too many buckets: %s", count));
+		}
+		this.filters = new ByteBuffer[(int) count];
+		this.locks = new ReentrantLock[(int) count];
+		for (int i = 0; i < this.locks.length; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+
+		final int filterBytes = BUCKET_BYTES + (int) (this.bits / Byte.SIZE);
+		final Path file = builder.getFile();
+		if (file != null) {
+			this.header = map(file, filterBytes);
+		} else {
+			this.header = ByteBuffer.allocate(HEADER_BYTES);
+			for (int i = 0; i < this.filters.length; i++) {
+				this.filters[i] = builder.isOffHeap() ? ByteBuffer.allocateDirect(filterBytes)
+						: ByteBuffer.allocate(filterBytes);
+				this.filters[i].putLong(0, EMPTY);
+			}
+		}
+	}
+
+	/**
+	 * Returns a builder object.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Adds a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID was certainly not added before, false if it might
+	 *         have been added before or if it is out of the retention
+	 */
+	public boolean add(final long tsid) {
+
+		final long bucket = bucket(tsid);
+		if (bucket == EMPTY) {
+			return false;
+		}
+
+		final int index = (int) Math.floorMod(bucket, (long) this.filters.length);
+		final ByteBuffer filter = this.filters[index];
+		final ReentrantLock lock = this.locks[index];
+
+		lock.lock();
+		try {
+			final long current = filter.getLong(0);
+			if (current > bucket) {
+				return false; // a newer bucket took the filter
+			}
+			if (current < bucket) {
+				// the old bucket is dropped
+				for (int i = BUCKET_BYTES; i < filter.capacity(); i += Long.BYTES) {
+					filter.putLong(i, 0);
+				}
+				filter.putLong(0, bucket);
+			}
+
+			boolean changed = false;
+			final long hash = mix(tsid);
+			final long hash2 = this.bits > NARROW_BITS ? mix(hash) : 0;
+			for (int i = 0; i < this.hashes; i++) {
+				final long bit = position(hash, hash2, i, this.bits);
+				final int offset = BUCKET_BYTES + (int) (bit >>> 6) * Long.BYTES;
+				final long word = filter.getLong(offset);
+				final long mask = 1L << bit;
+				if ((word & mask) == 0) {
+					filter.putLong(offset, word | mask);
+					changed = true;
+				}
+			}
+			return changed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks if a TSID might have been added, without locking.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID might have been added, false if it was certainly not
+	 *         added or if it is out of the retention
+	 */
+	public boolean mightContain(final long tsid) {
+
+		final long bucket = bucket(tsid);
+		if (bucket == EMPTY) {
+			return false;
+		}
+
+		final ByteBuffer filter = this.filters[(int) Math.floorMod(bucket, (long) this.filters.length)];
+		if (filter.getLong(0) != bucket) {
+			return false;
+		}
+
+		final long hash = mix(tsid);
+		final long hash2 = this.bits > NARROW_BITS ? mix(hash) : 0;
+		for (int i = 0; i < this.hashes; i++) {
+			final long bit = position(hash, hash2, i, this.bits);
+			if ((filter.getLong(BUCKET_BYTES + (int) (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the changes to the file, if the filters are stored in a file.
+	 */
+	public void flush() {
+		if (this.header instanceof MappedByteBuffer) {
+			((MappedByteBuffer) this.header).force();
+			for (ByteBuffer filter : this.filters) {
+				((MappedByteBuffer) filter).force();
+			}
+		}
+	}
+
+	/**
+	 * Returns the memory used by the filters.
+	 * 
+	 * @return a number of bytes
+	 */
+	public long getMemory() {
+		return (long) this.filters.length * (BUCKET_BYTES + this.bits / Byte.SIZE);
+	}
+
+	/**
+	 * Returns the number of bits of the filter of each bucket.
+	 * 
+	 * @return a number of bits
+	 */
+	public long getBits() {
+		return this.bits;
+	}
+
+	/**
+	 * Returns the number of bit positions of each TSID.
+	 * 
+	 * @return a number of hashes
+	 */
+	public int getHashes() {
+		return this.hashes;
+	}
+
+	private long bucket(final long tsid) {
+		final long now = this.timeFunction.getAsLong();
+		final long millis = this.layout.getUnixMilliseconds(tsid);
+		if (millis < now - this.retentionMillis || millis >= now + this.bucketMillis) {
+			return EMPTY; // out of the retention
+		}
+		return Math.floorDiv(millis, this.bucketMillis);
+	}
+
+	/**
+	 * Returns the i-th bit position of a hash in a filter.
+	 * <p>
+	 * Up to 2^32 bits, the position is a 32-bit double hash of the two halves of
+	 * the hash, mapped to [0, bits) without division. Larger filters use the
+	 * second hash, since 32 bits can't reach their other positions.
+	 */
+	static long position(final long hash, final long hash2, final int i, final long bits) {
+		if (bits > NARROW_BITS) {
+			return Long.remainderUnsigned(hash + i * hash2, bits);
+		}
+		final int h = (int) hash + i * (int) (hash >>> 32);
+		return ((h & 0xffffffffL) * bits) >>> 32;
+	}
+
+	private static long mix(long tsid) {
+		// the finalizer of MurmurHash3
+		tsid ^= tsid >>> 33;
+		tsid *= 0xff51afd7ed558ccdL;
+		tsid ^= tsid >>> 33;
+		tsid *= 0xc4ceb9fe1a85ec53L;
+		tsid ^= tsid >>> 33;
+		return tsid;
+	}
+
+	private ByteBuffer map(final Path file, final int filterBytes) {
+		// the mappings remain valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+
+			final boolean created = channel.size() == 0;
+			final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			if (created) {
+				mapped.putInt(0, MAGIC);
+				mapped.putInt(4, VERSION);
+				mapped.putInt(8, this.filters.length);
+				mapped.putInt(12, this.hashes);
+				mapped.putLong(16, this.bits);
+				mapped.putLong(24, this.bucketMillis);
+			} else if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+					|| mapped.getInt(8) != this.filters.length || mapped.getInt(12) != this.hashes
+					|| mapped.getLong(16) != this.bits || mapped.getLong(24) != this.bucketMillis) {
+				throw new IllegalArgumentException(
+						String.format("File of a Bloom filter with other settings: %s", file));
+			}
+
+			for (int i = 0; i < this.filters.length; i++) {
+				final long position = HEADER_BYTES + (long) i * filterBytes;
+				this.filters[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, filterBytes);
+				if (created) {
+					this.filters[i].putLong(0, EMPTY);
+				}
+			}
+			return mapped;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * A builder of Bloom filters.
+	 */
+	public static class Builder {
+
+		private TsidLayout layout;
+		private LongSupplier timeFunction;
+		private Duration retention;
+		private Duration bucketSize;
+		private Long expectedInsertions;
+		private Double falsePositiveRate;
+		private boolean offHeap;
+		private Path file;
+
+		private static final Duration DEFAULT_BUCKET_SIZE = Duration.ofDays(1);
+		private static final long DEFAULT_EXPECTED_INSERTIONS = 1_000_000;
+		private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+		/**
+		 * Set how long the TSIDs are kept, measured from their time of creation.
+		 * <p>
+		 * It is required. It must be at least 1 ms.
+		 * 
+		 * @param retention a duration
+		 * @return {@link Builder}
+		 */
+		public Builder withRetention(Duration retention) {
+			this.retention = retention;
+			return this;
+		}
+
+		/**
+		 * Set the span of time of the TSIDs of each filter.
+		 * <p>
+		 * The default is 1 day, or the retention if it is shorter.
+		 * 
+		 * @param bucketSize a duration of at least 1 ms
+		 * @return {@link Builder}
+		 */
+		public Builder withBucketSize(Duration bucketSize) {
+			this.bucketSize = bucketSize;
+			return this;
+		}
+
+		/**
+		 * Set the expected number of TSIDs of each bucket.
+		 * <p>
+		 * The default is 1 million.
+		 * 
+		 * @param expectedInsertions a positive number
+		 * @return {@link Builder}
+		 */
+		public Builder withExpectedInsertions(long expectedInsertions) {
+			this.expectedInsertions = expectedInsertions;
+			return this;
+		}
+
+		/**
+		 * Set the probability of false positives when each bucket has the expected
+		 * number of TSIDs.
+		 * <p>
+		 * The default is 0.01.
+		 * 
+		 * @param falsePositiveRate a probability between 0 and 1, exclusive
+		 * @return {@link Builder}
+		 */
+		public Builder withFalsePositiveRate(double falsePositiveRate) {
+			this.falsePositiveRate = falsePositiveRate;
+			return this;
+		}
+
+		/**
+		 * Store the filters outside the Java heap, in direct byte buffers.
+		 * 
+		 * @return {@link Builder}
+		 */
+		public Builder withOffHeap() {
+			this.offHeap = true;
+			return this;
+		}
+
+		/**
+		 * Store the filters in a memory-mapped file, so that they survive restarts.
+		 * <p>
+		 * The file is created if it doesn't exist. An existing file must have been
+		 * created with the same settings.
+		 * 
+		 * @param file a file
+		 * @return {@link Builder}
+		 */
+		public Builder withFile(Path file) {
+			this.file = file;
+			return this;
+		}
+
+		/**
+		 * Set the layout of the TSIDs.
+		 * <p>
+		 * The default layout is the layout of {@link TsidLayout.Builder#build()}.
+		 * 
+		 * @param layout a layout
+		 * @return {@link Builder}
+		 */
+		public Builder withLayout(TsidLayout layout) {
+			this.layout = layout;
+			return this;
+		}
+
+		/**
+		 * Set the time function to be used in tests.
+		 *
+		 * @param timeFunction a function that returns the current time in milliseconds,
+		 *                     measured from the UNIX epoch of 1970-01-01T00:00Z (UTC)
+		 * @return {@link Builder}
+		 */
+		public Builder withTimeFunction(LongSupplier timeFunction) {
+			this.timeFunction = timeFunction;
+			return this;
+		}
+
+		/**
+		 * Get the retention.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the retention is missing or less than 1
+		 *                                  ms
+		 */
+		protected Duration getRetention() {
+			if (this.retention == null || this.retention.toMillis() < 1) {
+				throw new IllegalArgumentException(String.format("Invalid retention: %s", this.retention));
+			}
+			return this.retention;
+		}
+
+		/**
+		 * Get the bucket size.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the bucket size is less than 1 ms
+		 */
+		protected Duration getBucketSize() {
+			if (this.bucketSize == null) {
+				this.bucketSize = getRetention().compareTo(DEFAULT_BUCKET_SIZE) < 0 ? getRetention()
+						: DEFAULT_BUCKET_SIZE;
+			}
+			if (this.bucketSize.toMillis() < 1) {
+				throw new IllegalArgumentException(String.format("Invalid bucket size: %s", this.bucketSize));
+			}
+			return this.bucketSize;
+		}
+
+		/**
+		 * Get the expected number of TSIDs of each bucket.
+		 * 
+		 * @return a number of TSIDs
+		 * @throws IllegalArgumentException if the number is not positive
+		 */
+		protected long getExpectedInsertions() {
+			if (this.expectedInsertions == null) {
+				this.expectedInsertions = DEFAULT_EXPECTED_INSERTIONS;
+			}
+			if (this.expectedInsertions < 1) {
+				throw new IllegalArgumentException(
+						String.format("Invalid expected insertions: %s", this.expectedInsertions));
+			}
+			return this.expectedInsertions;
+		}
+
+		/**
+		 * Get the probability of false positives.
+		 * 
+		 * @return a probability
+		 * @throws IllegalArgumentException if the probability is out of range
+		 */
+		protected double getFalsePositiveRate() {
+			if (this.falsePositiveRate == null) {
+				this.falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+			}
+			if (!(this.falsePositiveRate > 0 && this.falsePositiveRate < 1)) {
+				throw new IllegalArgumentException(
+						String.format("False positive rate out of range (0, 1): %s", this.falsePositiveRate));
+			}
+			return this.falsePositiveRate;
+		}
+
+		/**
+		 * Checks if the filters are stored outside the Java heap.
+		 * 
+		 * @return true if off-heap
+		 */
+		protected boolean isOffHeap() {
+			return this.offHeap;
+		}
+
+		/**
+		 * Get the file of the filters.
+		 * 
+		 * @return a file, or null
+		 */
+		protected Path getFile() {
+			return this.file;
+		}
+
+		/**
+		 * Get the layout.
+		 * 
+		 * @return a layout
+		 */
+		protected TsidLayout getLayout() {
+			if (this.layout == null) {
+				this.layout = TsidLayout.builder().build();
+			}
+			return this.layout;
+		}
+
+		/**
+		 * Get the time function.
+		 * 
+		 * @return a time function
+		 */
+		protected LongSupplier getTimeFunction() {
+			if (this.timeFunction == null) {
+				this.timeFunction = System::currentTimeMillis;
+			}
+			return this.timeFunction;
+		}
+
+		/**
+		 * Returns a built Bloom filter.
+		 * 
+		 * @return {@link TsidBloomFilter}
+		 */
+		public TsidBloomFilter build() {
+			return new TsidBloomFilter(this);
+		}
+	}
+}
@@ -0,0 +1,473 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * A concurrent hash map with TSIDs as keys.
+ * <p>
+ * The map is split into segments, each one with its own table of primitive
+ * keys and values with open addressing and linear probing. The segment of a
+ * TSID is chosen by the top bits of its hash, and its slot by the next bits.
+ * <p>
+ * Reads are lock-free: they read the current table of a segment and never
+ * block. Writes acquire the lock of a single segment. When a segment is full,
+ * only that segment is resized, so there is no pause for the whole map.
+ * <p>
+ * A removed TSID leaves its key in the table with a null value, so that
+ * concurrent reads never miss a TSID moved by a removal. The slot is reused if
+ * the same TSID is added again, and it is dropped when the segment is resized.
+ * <p>
+ * Null values are not allowed. The iteration is weakly consistent, like
+ * {@link java.util.concurrent.ConcurrentHashMap}.
+ * 
+ * @param <V> the type of the values
+ * @since 5.3.0
+ */
+public final class TsidConcurrentMap<V> {
+
+	private final Segment<V>[] segments;
+	private final int segmentShift;
+
+	// zero marks an empty slot, so the zero TSID is kept apart, with its own lock
+	private final AtomicReference<V> zero = new AtomicReference<>();
+	private final ReentrantLock zeroLock = new ReentrantLock();
+
+	private static final int MIN_SEGMENTS = 16;
+	private static final int MAX_SEGMENTS = 1 << 12;
+
+	/**
+	 * Creates an empty map.
+	 * <p>
+	 * The number of segments is 4 times the number of available processors.
+	 */
+	public TsidConcurrentMap() {
+		this(0);
+	}
+
+	/**
+	 * Creates an empty map for an expected number of TSIDs.
+	 * 
+	 * @param expected the expected number of TSIDs
+	 * @throws IllegalArgumentException if the expected number is negative
+	 */
+	public TsidConcurrentMap(final int expected) {
+		this(expected, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * Creates an empty map for an expected number of TSIDs and a number of
+	 * segments.
+	 * 
+	 * @param expected the expected number of TSIDs
+	 * @param segments the number of segments, rounded up to a power of two between
+	 *                 16 and 4096
+	 * @throws IllegalArgumentException if the expected number or the number of
+	 *                                  segments is negative
+	 */
+	@SuppressWarnings("unchecked")
+	public TsidConcurrentMap(final int expected, final int segments) {
+
+		if (expected < 0) {
+			throw new IllegalArgumentException(String.format("Negative expected size: %s", expected));
+		}
+		if (segments < 0) {
+			throw new IllegalArgumentException(String.format("Negative number of segments: %s", segments));
+		}
+
+		final int count = Math.min(MAX_SEGMENTS, Math.max(MIN_SEGMENTS, Integer.highestOneBit(segments - 1) << 1));
+		this.segments = (Segment<V>[]) new Segment<?>[count];
+		this.segmentShift = Long.SIZE - Integer.numberOfTrailingZeros(count);
+
+		final int capacity = TsidHash.capacity(expected / count);
+		for (int i = 0; i < count; i++) {
+			this.segments[i] = new Segment<>(capacity);
+		}
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * <p>
+	 * The result is an estimate if the map is modified concurrently.
+	 * 
+	 * @return the number of TSIDs
+	 */
+	public int size() {
+		long size = this.zero.get() != null ? 1 : 0;
+		for (Segment<V> segment : this.segments) {
+			size += segment.size;
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns true if the map has no TSIDs.
+	 * 
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Checks if the map has a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID is in the map
+	 */
+	public boolean containsKey(final long tsid) {
+		return get(tsid) != null;
+	}
+
+	/**
+	 * Returns the value of a TSID, without locking.
+	 * 
+	 * @param tsid a TSID
+	 * @return the value, or null if the TSID is not in the map
+	 */
+	public V get(final long tsid) {
+		if (tsid == 0) {
+			return this.zero.get();
+		}
+		final long hash = TsidHash.hash(tsid);
+		return segment(hash).get(tsid, hash);
+	}
+
+	/**
+	 * Associates a value with a TSID.
+	 * 
+	 * @param tsid  a TSID
+	 * @param value a value
+	 * @return the previous value, or null if the TSID was not in the map
+	 * @throws NullPointerException if the value is null
+	 */
+	public V put(final long tsid, final V value) {
+		Objects.requireNonNull(value, "Null value");
+		if (tsid == 0) {
+			this.zeroLock.lock();
+			try {
+				return this.zero.getAndSet(value);
+			} finally {
+				this.zeroLock.unlock();
+			}
+		}
+		final long hash = TsidHash.hash(tsid);
+		return segment(hash).put(tsid, hash, value, false);
+	}
+
+	/**
+	 * Associates a value with a TSID if the TSID is not in the map.
+	 * 
+	 * @param tsid  a TSID
+	 * @param value a value
+	 * @return the current value, or null if the TSID was not in the map
+	 * @throws NullPointerException if the value is null
+	 */
+	public V putIfAbsent(final long tsid, final V value) {
+		Objects.requireNonNull(value, "Null value");
+		if (tsid == 0) {
+			this.zeroLock.lock();
+			try {
+				final V current = this.zero.get();
+				if (current == null) {
+					this.zero.set(value);
+				}
+				return current;
+			} finally {
+				this.zeroLock.unlock();
+			}
+		}
+		final long hash = TsidHash.hash(tsid);
+		return segment(hash).put(tsid, hash, value, true);
+	}
+
+	/**
+	 * Returns the value of a TSID, computing it if the TSID is not in the map.
+	 * <p>
+	 * The function is called at most once, while the lock of a segment is held,
+	 * so it must be short and must not update this map. A null computed value is
+	 * not stored.
+	 * 
+	 * @param tsid     a TSID
+	 * @param function a function that computes the value of the TSID
+	 * @return the current or the computed value
+	 */
+	public V computeIfAbsent(final long tsid, final LongFunction<? extends V> function) {
+
+		final V current = get(tsid);
+		if (current != null) {
+			return current;
+		}
+
+		if (tsid == 0) {
+			this.zeroLock.lock();
+			try {
+				final V value = this.zero.get();
+				if (value != null) {
+					return value;
+				}
+				final V computed = function.apply(tsid);
+				if (computed != null) {
+					this.zero.set(computed);
+				}
+				return computed;
+			} finally {
+				this.zeroLock.unlock();
+			}
+		}
+
+		final long hash = TsidHash.hash(tsid);
+		final Segment<V> segment = segment(hash);
+		segment.lock.lock();
+		try {
+			final V value = segment.get(tsid, hash);
+			if (value != null) {
+				return value;
+			}
+			final V computed = function.apply(tsid);
+			if (computed != null) {
+				segment.put(tsid, hash, computed, false);
+			}
+			return computed;
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return the removed value, or null if the TSID was not in the map
+	 */
+	public V remove(final long tsid) {
+		if (tsid == 0) {
+			this.zeroLock.lock();
+			try {
+				return this.zero.getAndSet(null);
+			} finally {
+				this.zeroLock.unlock();
+			}
+		}
+		final long hash = TsidHash.hash(tsid);
+		return segment(hash).remove(tsid, hash);
+	}
+
+	/**
+	 * Removes all the TSIDs.
+	 * <p>
+	 * The segments are cleared one at a time.
+	 */
+	public void clear() {
+		this.zeroLock.lock();
+		try {
+			this.zero.set(null);
+		} finally {
+			this.zeroLock.unlock();
+		}
+		for (Segment<V> segment : this.segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Performs an action for each TSID and value, in unspecified order.
+	 * <p>
+	 * The changes made during the iteration may or may not be seen.
+	 * 
+	 * @param action an action
+	 */
+	public void forEach(final TsidMap.EntryConsumer<? super V> action) {
+		final V value = this.zero.get();
+		if (value != null) {
+			action.accept(0, value);
+		}
+		for (Segment<V> segment : this.segments) {
+			segment.forEach(action);
+		}
+	}
+
+	private Segment<V> segment(final long hash) {
+		return this.segments[(int) (hash >>> this.segmentShift)];
+	}
+
+	private static final class Table {
+
+		final AtomicLongArray keys;
+		final AtomicReferenceArray<Object> values;
+		final int mask;
+		final int threshold;
+
+		Table(final int capacity) {
+			this.keys = new AtomicLongArray(capacity);
+			this.values = new AtomicReferenceArray<>(capacity);
+			this.mask = capacity - 1;
+			this.threshold = capacity / 4 * 3;
+		}
+
+		int index(final long hash) {
+			// the top bits choose the segment
+			return (int) hash & this.mask;
+		}
+	}
+
+	private static final class Segment<V> {
+
+		final ReentrantLock lock = new ReentrantLock();
+
+		volatile Table table;
+		volatile int size;
+		int used; // slots with a key, including the removed ones
+
+		Segment(final int capacity) {
+			this.table = new Table(capacity);
+		}
+
+		@SuppressWarnings("unchecked")
+		V get(final long tsid, final long hash) {
+			final Table t = this.table;
+			int i = t.index(hash);
+			long key;
+			while ((key = t.keys.get(i)) != 0) {
+				if (key == tsid) {
+					return (V) t.values.get(i);
+				}
+				i = (i + 1) & t.mask;
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		V put(final long tsid, final long hash, final V value, final boolean onlyIfAbsent) {
+			lock.lock();
+			try {
+				final Table t = this.table;
+				int i = t.index(hash);
+				long key;
+				while ((key = t.keys.get(i)) != 0) {
+					if (key == tsid) {
+						final V previous = (V) t.values.get(i);
+						if (previous == null) {
+							this.size++;
+						}
+						if (previous == null || !onlyIfAbsent) {
+							t.values.set(i, value);
+						}
+						return previous;
+					}
+					i = (i + 1) & t.mask;
+				}
+
+				// the value is visible before the key
+				t.values.set(i, value);
+				t.keys.set(i, tsid);
+				this.size++;
+				if (++this.used > t.threshold) {
+					resize();
+				}
+				return null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		V remove(final long tsid, final long hash) {
+			lock.lock();
+			try {
+				final Table t = this.table;
+				int i = t.index(hash);
+				long key;
+				while ((key = t.keys.get(i)) != 0) {
+					if (key == tsid) {
+						final V previous = (V) t.values.getAndSet(i, null);
+						if (previous != null) {
+							this.size--;
+						}
+						return previous;
+					}
+					i = (i + 1) & t.mask;
+				}
+				return null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void clear() {
+			lock.lock();
+			try {
+				this.table = new Table(TsidHash.capacity(0));
+				this.size = 0;
+				this.used = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void forEach(final TsidMap.EntryConsumer<? super V> action) {
+			final Table t = this.table;
+			for (int i = 0; i < t.keys.length(); i++) {
+				final long key = t.keys.get(i);
+				if (key != 0) {
+					final V value = (V) t.values.get(i);
+					if (value != null) {
+						action.accept(key, value);
+					}
+				}
+			}
+		}
+
+		private void resize() {
+
+			// room for twice the TSIDs, without the removed ones
+			final Table old = this.table;
+			final Table t = new Table(TsidHash.capacity(Math.min(this.size, TsidHash.MAX_CAPACITY / 2) * 2));
+			for (int j = 0; j < old.keys.length(); j++) {
+				final long key = old.keys.get(j);
+				final Object value = old.values.get(j);
+				if (key != 0 && value != null) {
+					int i = t.index(TsidHash.hash(key));
+					while (t.keys.get(i) != 0) {
+						i = (i + 1) & t.mask;
+					}
+					t.values.set(i, value);
+					t.keys.set(i, key);
+				}
+			}
+
+			// the reads switch to the new table
+			this.table = t;
+			this.used = this.size;
+		}
+
+	}
+}
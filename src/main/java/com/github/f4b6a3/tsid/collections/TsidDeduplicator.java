@@ -0,0 +1,408 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+import com.github.f4b6a3.tsid.TsidLayout;
+
+/**
+ * A concurrent detector of repeated TSIDs within a sliding window of time.
+ * <p>
+ * The TSIDs are partitioned by their time component. Each unit of time has a
+ * bucket that keeps only the node and counter bits of its TSIDs, as {@code int}
+ * values in a lock-free hash set of fixed capacity. The buckets are kept in a
+ * ring that covers the window, plus the maximum skew of TSIDs generated ahead
+ * of the local clock. When the time advances, the bucket of an old time is
+ * replaced by the bucket of a new time, so that whole units of time are dropped
+ * at once and the memory is bounded.
+ * <p>
+ * Some TSIDs can't be checked:
+ * <ul>
+ * <li>TSIDs older than the window;
+ * <li>TSIDs ahead of the local clock by more than the maximum skew;
+ * <li>TSIDs of a unit of time that already has more TSIDs than the maximum
+ * rate.
+ * </ul>
+ * <p>
+ * These TSIDs are rejected or passed through, as defined by
+ * {@link Builder#withUncheckedPolicy(Policy)}. The default is to reject them,
+ * so that replayed TSIDs are never accepted.
+ * <p>
+ * The sum of the node bits and the counter bits of the layout must be at most
+ * 31.
+ * <p>
+ * Example:
+ * 
+ * <pre>{@code
+ * TsidDeduplicator dedup = TsidDeduplicator.builder()
+ * 		.withWindow(Duration.ofSeconds(5))
+ * 		.withMaxRate(16384) // TSIDs per millisecond, of all the producers
+ * 		.build();
+ * 
+ * if (dedup.add(message.getId())) {
+ * 	// the first time the TSID was seen
+ * }
+ * }</pre>
+ * 
+ * @since 5.3.0
+ */
+public final class TsidDeduplicator {
+
+	/**
+	 * What to do with the TSIDs that can't be checked.
+	 */
+	public enum Policy {
+		/**
+		 * Pass them through, as if they were seen for the first time.
+		 */
+		PASS,
+		/**
+		 * Reject them, as if they were repeated.
+		 */
+		REJECT
+	}
+
+	private final TsidLayout layout;
+	private final LongSupplier timeFunction;
+	private final long windowMillis;
+	private final long skewMillis;
+	private final boolean pass;
+
+	private final int lowMask;
+	private final int capacity;
+
+	private final AtomicReferenceArray<Bucket> ring;
+	private final int ringMask;
+
+	private TsidDeduplicator(final Builder builder) {
+
+		this.layout = builder.getLayout();
+		this.timeFunction = builder.getTimeFunction();
+		this.windowMillis = builder.getWindow().toMillis();
+		this.skewMillis = builder.getMaxSkew().toMillis();
+		this.pass = builder.getUncheckedPolicy() == Policy.PASS;
+
+		final int lowBits = this.layout.getNodeBits() + this.layout.getCounterBits();
+		if (lowBits > 31) {
+			throw new IllegalArgumentException(
+					String.format("Node bits plus counter bits greater than 31: %s", lowBits));
+		}
+		this.lowMask = (int) ((1L << lowBits) - 1);
+
+		// at most half full at the maximum rate
+		this.capacity = TsidHash.capacity(builder.getMaxRate() * 3 / 2);
+
+		// one bucket for each unit of time in the window and in the skew
+		final long unitNanos = this.layout.getTimeUnit().toNanos();
+		final long span = (builder.getWindow().plus(builder.getMaxSkew()).toNanos() + unitNanos - 1) / unitNanos + 2;
+		if (span > TsidHash.MAX_CAPACITY) {
+			throw new IllegalArgumentException(String.format("Window too long: %s", builder.getWindow()));
+		}
+		final int size = Integer.highestOneBit((int) span - 1) << 1;
+		this.ring = new AtomicReferenceArray<>(size);
+		this.ringMask = size - 1;
+	}
+
+	/**
+	 * Returns a builder object.
+	 * 
+	 * @return a builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Adds a TSID if it was not seen within the window.
+	 * <p>
+	 * This method doesn't lock. Of many threads that add the same TSID at the same
+	 * time, only one gets true.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID was not seen before, false if it was seen before,
+	 *         or the unchecked policy if it can't be checked
+	 */
+	public boolean add(final long tsid) {
+
+		final long now = this.timeFunction.getAsLong();
+		final long millis = this.layout.getUnixMilliseconds(tsid);
+		if (millis < now - this.windowMillis || millis > now + this.skewMillis) {
+			return this.pass; // out of the window
+		}
+
+		final long time = this.layout.getTime(tsid);
+		final int index = (int) time & this.ringMask;
+
+		Bucket bucket;
+		while ((bucket = this.ring.get(index)) == null || bucket.time < time) {
+			// the old bucket is dropped
+			final Bucket next = new Bucket(time, this.capacity);
+			if (this.ring.compareAndSet(index, bucket, next)) {
+				bucket = next;
+				break;
+			}
+		}
+
+		if (bucket.time > time) {
+			return this.pass; // a newer time took the bucket
+		}
+
+		return bucket.add(((int) tsid & this.lowMask) + 1, this.pass);
+	}
+
+	/**
+	 * Returns the memory taken by the buckets when all of them are in use.
+	 * 
+	 * @return a number of bytes
+	 */
+	public long getMaxMemory() {
+		return (long) this.ring.length() * this.capacity * Integer.BYTES;
+	}
+
+	private static final class Bucket {
+
+		final long time;
+		// the node and counter bits plus one, so that zero marks an empty slot
+		final AtomicIntegerArray table;
+
+		Bucket(final long time, final int capacity) {
+			this.time = time;
+			this.table = new AtomicIntegerArray(capacity);
+		}
+
+		boolean add(final int low, final boolean full) {
+			final int mask = this.table.length() - 1;
+			int i = TsidHash.index(low, mask);
+			for (int probes = 0; probes <= mask;) {
+				final int slot = this.table.get(i);
+				if (slot == low) {
+					return false;
+				}
+				if (slot == 0) {
+					if (this.table.compareAndSet(i, 0, low)) {
+						return true;
+					}
+					continue; // another thread took the slot: check it again
+				}
+				i = (i + 1) & mask;
+				probes++;
+			}
+			return full; // more TSIDs than the maximum rate
+		}
+	}
+
+	/**
+	 * A builder of duplicate detectors.
+	 */
+	public static class Builder {
+
+		private TsidLayout layout;
+		private LongSupplier timeFunction;
+		private Duration window;
+		private Duration maxSkew;
+		private Integer maxRate;
+		private Policy uncheckedPolicy;
+
+		private static final Duration DEFAULT_WINDOW = Duration.ofSeconds(1);
+		private static final int DEFAULT_MAX_RATE = 4096;
+		private static final int MAX_MAX_RATE = TsidHash.MAX_CAPACITY / 2 - 1;
+
+		/**
+		 * Set the window of time in which repeated TSIDs are detected.
+		 * <p>
+		 * The default window is 1 second.
+		 * 
+		 * @param window a duration of at least 1 ms
+		 * @return {@link Builder}
+		 */
+		public Builder withWindow(Duration window) {
+			this.window = window;
+			return this;
+		}
+
+		/**
+		 * Set the maximum skew of TSIDs generated ahead of the local clock.
+		 * <p>
+		 * The default maximum skew is the window.
+		 * 
+		 * @param maxSkew a duration
+		 * @return {@link Builder}
+		 */
+		public Builder withMaxSkew(Duration maxSkew) {
+			this.maxSkew = maxSkew;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of TSIDs per unit of time of the layout, from all the
+		 * producers.
+		 * <p>
+		 * Each bucket has room for twice the maximum rate. The default is 4096.
+		 * 
+		 * @param maxRate a number of TSIDs
+		 * @return {@link Builder}
+		 */
+		public Builder withMaxRate(Integer maxRate) {
+			this.maxRate = maxRate;
+			return this;
+		}
+
+		/**
+		 * Set the policy for the TSIDs that can't be checked.
+		 * <p>
+		 * The default policy is {@link Policy#REJECT}.
+		 * 
+		 * @param uncheckedPolicy a policy
+		 * @return {@link Builder}
+		 */
+		public Builder withUncheckedPolicy(Policy uncheckedPolicy) {
+			this.uncheckedPolicy = uncheckedPolicy;
+			return this;
+		}
+
+		/**
+		 * Set the layout of the TSIDs.
+		 * <p>
+		 * The default layout is the layout of {@link TsidLayout.Builder#build()}.
+		 * 
+		 * @param layout a layout
+		 * @return {@link Builder}
+		 */
+		public Builder withLayout(TsidLayout layout) {
+			this.layout = layout;
+			return this;
+		}
+
+		/**
+		 * Set the time function to be used in tests.
+		 *
+		 * @param timeFunction a function that returns the current time in milliseconds,
+		 *                     measured from the UNIX epoch of 1970-01-01T00:00Z (UTC)
+		 * @return {@link Builder}
+		 */
+		public Builder withTimeFunction(LongSupplier timeFunction) {
+			this.timeFunction = timeFunction;
+			return this;
+		}
+
+		/**
+		 * Get the window.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the window is less than 1 ms
+		 */
+		protected Duration getWindow() {
+			if (this.window == null) {
+				this.window = DEFAULT_WINDOW;
+			}
+			if (this.window.toMillis() < 1) {
+				throw new IllegalArgumentException(String.format("Invalid window: %s", this.window));
+			}
+			return this.window;
+		}
+
+		/**
+		 * Get the maximum skew.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the maximum skew is negative
+		 */
+		protected Duration getMaxSkew() {
+			if (this.maxSkew == null) {
+				this.maxSkew = getWindow();
+			}
+			if (this.maxSkew.isNegative()) {
+				throw new IllegalArgumentException(String.format("Invalid max skew: %s", this.maxSkew));
+			}
+			return this.maxSkew;
+		}
+
+		/**
+		 * Get the maximum rate.
+		 * 
+		 * @return a number of TSIDs
+		 * @throws IllegalArgumentException if the maximum rate is out of range
+		 */
+		protected int getMaxRate() {
+			if (this.maxRate == null) {
+				this.maxRate = DEFAULT_MAX_RATE;
+			}
+			// a bucket takes more than twice the maximum rate
+			if (this.maxRate < 1 || this.maxRate > MAX_MAX_RATE) {
+				throw new IllegalArgumentException(
+						String.format("Max rate out of range [1, %s]: %s", MAX_MAX_RATE, this.maxRate));
+			}
+			return this.maxRate;
+		}
+
+		/**
+		 * Get the policy for the TSIDs that can't be checked.
+		 * 
+		 * @return a policy
+		 */
+		protected Policy getUncheckedPolicy() {
+			if (this.uncheckedPolicy == null) {
+				this.uncheckedPolicy = Policy.REJECT;
+			}
+			return this.uncheckedPolicy;
+		}
+
+		/**
+		 * Get the layout.
+		 * 
+		 * @return a layout
+		 */
+		protected TsidLayout getLayout() {
+			if (this.layout == null) {
+				this.layout = TsidLayout.builder().build();
+			}
+			return this.layout;
+		}
+
+		/**
+		 * Get the time function.
+		 * 
+		 * @return a time function
+		 */
+		protected LongSupplier getTimeFunction() {
+			if (this.timeFunction == null) {
+				this.timeFunction = System::currentTimeMillis;
+			}
+			return this.timeFunction;
+		}
+
+		/**
+		 * Returns a built duplicate detector.
+		 * 
+		 * @return {@link TsidDeduplicator}
+		 */
+		public TsidDeduplicator build() {
+			return new TsidDeduplicator(this);
+		}
+	}
+}
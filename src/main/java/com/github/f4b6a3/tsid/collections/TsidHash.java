@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+/**
+ * The hash function of the TSID collections.
+ * <p>
+ * The low bits of a TSID are a counter and a node identifier, that change with
+ * every TSID, and the high bits are a timestamp, that changes slowly. The high
+ * half is folded into the low half, so that TSIDs that differ only in the
+ * timestamp don't collide, and then multiplied by the golden ratio (Fibonacci
+ * hashing). The top bits of the product, which depend on all the bits of the
+ * TSID, are folded back into the low bits.
+ * <p>
+ * The index is taken from the low bits of the hash. If it were taken from the
+ * top bits, the TSIDs of a table would be iterated in the order of their
+ * indexes, and adding them to a smaller table would fill its first slots into
+ * one long cluster. With the low bits, the indexes of the smaller table cycle
+ * instead.
+ */
+final class TsidHash {
+
+	static final int MAX_CAPACITY = 1 << 30;
+
+	private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+	private TsidHash() {
+	}
+
+	/**
+	 * Returns the hash of a TSID. The top bits and the low bits are well
+	 * distributed.
+	 */
+	static long hash(final long tsid) {
+		final long hash = (tsid ^ (tsid >>> 32)) * GOLDEN_RATIO;
+		return hash ^ (hash >>> 32);
+	}
+
+	/**
+	 * Returns the index of a TSID in a table of (mask + 1) slots.
+	 */
+	static int index(final long tsid, final int mask) {
+		return (int) hash(tsid) & mask;
+	}
+
+	/**
+	 * Returns the capacity for a number of elements with a load factor of 3/4, a
+	 * power of two of at least 16.
+	 */
+	static int capacity(final int expected) {
+		if (expected < 0) {
+			throw new IllegalArgumentException(String.format("Negative expected size: %s", expected));
+		}
+		final long minimum = Math.max(16, (long) expected * 4 / 3 + 1);
+		if (minimum > MAX_CAPACITY) {
+			throw new IllegalArgumentException(String.format("Expected size too large: %s", expected));
+		}
+		return Integer.highestOneBit((int) minimum - 1) << 1;
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidLongs;
+import com.github.f4b6a3.tsid.TsidSort;
+
+/**
+ * A growable list of TSIDs stored in a {@code long} array.
+ * <p>
+ * Each TSID takes 8 bytes, instead of the 24 bytes of a {@link Tsid} object
+ * plus the reference to it in a {@code List<Tsid>}. The iterators and streams
+ * don't box the TSIDs.
+ * <p>
+ * The list can be sorted in unsigned order, the same order of
+ * {@link Tsid#compareTo(Tsid)}, and searched by TSID.
+ * <p>
+ * Instances of this class are <b>not thread-safe</b>.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidList {
+
+	private long[] tsids;
+	private int size;
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Creates an empty list.
+	 */
+	public TsidList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty list with an initial capacity.
+	 * 
+	 * @param capacity the initial capacity
+	 * @throws IllegalArgumentException if the capacity is negative
+	 */
+	public TsidList(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException(String.format("Negative capacity: %s", capacity));
+		}
+		this.tsids = new long[capacity];
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * 
+	 * @return the number of TSIDs
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the list has no TSIDs.
+	 * 
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the TSID at a position.
+	 * 
+	 * @param index the position of the TSID
+	 * @return a TSID
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public long get(final int index) {
+		checkIndex(index);
+		return this.tsids[index];
+	}
+
+	/**
+	 * Replaces the TSID at a position.
+	 * 
+	 * @param index the position of the TSID
+	 * @param tsid  a TSID
+	 * @return the replaced TSID
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public long set(final int index, final long tsid) {
+		checkIndex(index);
+		final long previous = this.tsids[index];
+		this.tsids[index] = tsid;
+		return previous;
+	}
+
+	/**
+	 * Appends a TSID.
+	 * 
+	 * @param tsid a TSID
+	 */
+	public void add(final long tsid) {
+		if (this.size == this.tsids.length) {
+			grow(this.size + 1);
+		}
+		this.tsids[this.size++] = tsid;
+	}
+
+	/**
+	 * Appends all the TSIDs of an array.
+	 * 
+	 * @param tsids an array of TSIDs
+	 */
+	public void addAll(final long[] tsids) {
+		if (this.size + tsids.length > this.tsids.length) {
+			grow((long) this.size + tsids.length);
+		}
+		System.arraycopy(tsids, 0, this.tsids, this.size, tsids.length);
+		this.size += tsids.length;
+	}
+
+	/**
+	 * Removes all the TSIDs.
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * Sorts the TSIDs in unsigned order, the same order of
+	 * {@link Tsid#compareTo(Tsid)}.
+	 */
+	public void sort() {
+		TsidSort.sort(this.tsids, 0, this.size);
+	}
+
+	/**
+	 * Searches a TSID in the sorted list.
+	 * 
+	 * @param tsid a TSID
+	 * @return the index of the TSID if found, otherwise
+	 *         {@code (-(insertion point) - 1)}, like
+	 *         {@link Arrays#binarySearch(long[], long)}
+	 * @see #sort()
+	 */
+	public int binarySearch(final long tsid) {
+		final int index = lowerBound(tsid);
+		if (index < this.size && this.tsids[index] == tsid) {
+			return index;
+		}
+		return -index - 1;
+	}
+
+	/**
+	 * Returns the index of the first TSID not less than a given TSID in the sorted
+	 * list.
+	 * 
+	 * @param tsid a TSID
+	 * @return an index between 0 and the size of the list
+	 * @see #sort()
+	 */
+	public int lowerBound(final long tsid) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (TsidLongs.compareUnsigned(this.tsids[middle], tsid) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a copy of the TSIDs.
+	 * 
+	 * @return an array of TSIDs
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(this.tsids, this.size);
+	}
+
+	/**
+	 * Performs an action for each TSID, in order.
+	 * 
+	 * @param action an action
+	 */
+	public void forEach(final LongConsumer action) {
+		for (int i = 0; i < this.size; i++) {
+			action.accept(this.tsids[i]);
+		}
+	}
+
+	/**
+	 * Returns an iterator of the TSIDs, in order.
+	 * 
+	 * @return an iterator that doesn't box the TSIDs
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < size;
+			}
+
+			@Override
+			public long nextLong() {
+				if (this.index >= size) {
+					throw new NoSuchElementException();
+				}
+				return tsids[this.index++];
+			}
+		};
+	}
+
+	/**
+	 * Returns a sequential stream of the TSIDs, in order.
+	 * 
+	 * @return a stream
+	 */
+	public LongStream stream() {
+		return StreamSupport.longStream(Spliterators.spliterator(this.tsids, 0, this.size, Spliterator.ORDERED),
+				false);
+	}
+
+	private void grow(final long minimum) {
+		if (minimum > MAX_CAPACITY) {
+			throw new IllegalStateException(String.format("List too large: %s", minimum));
+		}
+		final long capacity = Math.max(minimum, Math.min(MAX_CAPACITY, this.tsids.length * 3L / 2 + 1));
+		this.tsids = Arrays.copyOf(this.tsids, (int) capacity);
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException(String.format("Index out of range [0, %s): %s", this.size, index));
+		}
+	}
+}
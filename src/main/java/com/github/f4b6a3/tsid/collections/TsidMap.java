@@ -0,0 +1,367 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import com.github.f4b6a3.tsid.Tsid;
+
+/**
+ * A hash map with TSIDs as keys, stored in a {@code long} array.
+ * <p>
+ * The keys are stored with open addressing and linear probing, with a maximum
+ * load factor of 3/4. The values are stored in a parallel array. There are no
+ * entry objects and no {@link Tsid} objects, and the keys are not boxed.
+ * <p>
+ * Null values are allowed. The iteration order is unspecified.
+ * <p>
+ * Instances of this class are <b>not thread-safe</b>.
+ * 
+ * @param <V> the type of the values
+ * @since 5.3.0
+ */
+public final class TsidMap<V> {
+
+	// zero marks an empty slot, so the zero TSID is kept apart
+	private long[] keys;
+	private Object[] values;
+	private boolean hasZero;
+	private Object zeroValue;
+
+	private int size;
+	private int threshold;
+
+	/**
+	 * An action that accepts a TSID and a value, without boxing the TSID.
+	 *
+	 * @param <V> the type of the values
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer<V> {
+		/**
+		 * Performs the action.
+		 * 
+		 * @param tsid  a TSID
+		 * @param value a value
+		 */
+		void accept(long tsid, V value);
+	}
+
+	/**
+	 * Creates an empty map.
+	 */
+	public TsidMap() {
+		this(0);
+	}
+
+	/**
+	 * Creates an empty map for an expected number of TSIDs.
+	 * 
+	 * @param expected the expected number of TSIDs
+	 * @throws IllegalArgumentException if the expected number is negative or too
+	 *                                  large
+	 */
+	public TsidMap(final int expected) {
+		allocate(TsidHash.capacity(expected));
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * 
+	 * @return the number of TSIDs
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map has no TSIDs.
+	 * 
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Checks if the map has a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID is in the map
+	 */
+	public boolean containsKey(final long tsid) {
+		return tsid == 0 ? this.hasZero : find(tsid) >= 0;
+	}
+
+	/**
+	 * Returns the value of a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return the value, or null if the TSID is not in the map
+	 */
+	public V get(final long tsid) {
+		if (tsid == 0) {
+			return value(this.zeroValue);
+		}
+		final int i = find(tsid);
+		return i >= 0 ? value(this.values[i]) : null;
+	}
+
+	/**
+	 * Associates a value with a TSID.
+	 * 
+	 * @param tsid  a TSID
+	 * @param value a value
+	 * @return the previous value, or null if the TSID was not in the map
+	 */
+	public V put(final long tsid, final V value) {
+
+		if (tsid == 0) {
+			final V previous = value(this.zeroValue);
+			if (!this.hasZero) {
+				this.hasZero = true;
+				this.size++;
+			}
+			this.zeroValue = value;
+			return previous;
+		}
+
+		final int mask = this.keys.length - 1;
+		int i = TsidHash.index(tsid, mask);
+		long slot;
+		while ((slot = this.keys[i]) != 0) {
+			if (slot == tsid) {
+				final V previous = value(this.values[i]);
+				this.values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+
+		this.keys[i] = tsid;
+		this.values[i] = value;
+		if (++this.size > this.threshold) {
+			rehash(this.keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the value of a TSID, computing it if the TSID is not in the map or
+	 * its value is null.
+	 * <p>
+	 * A null computed value is not stored, like
+	 * {@link java.util.Map#computeIfAbsent(Object, java.util.function.Function)}.
+	 * 
+	 * @param tsid     a TSID
+	 * @param function a function that computes the value of the TSID
+	 * @return the current or the computed value
+	 */
+	public V computeIfAbsent(final long tsid, final LongFunction<? extends V> function) {
+		final V current = get(tsid);
+		if (current != null) {
+			return current;
+		}
+		final V value = function.apply(tsid);
+		if (value != null) {
+			put(tsid, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Removes a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return the removed value, or null if the TSID was not in the map
+	 */
+	public V remove(final long tsid) {
+
+		if (tsid == 0) {
+			final V previous = value(this.zeroValue);
+			if (this.hasZero) {
+				this.hasZero = false;
+				this.zeroValue = null;
+				this.size--;
+			}
+			return previous;
+		}
+
+		final int i = find(tsid);
+		if (i < 0) {
+			return null;
+		}
+		final V previous = value(this.values[i]);
+		delete(i);
+		this.size--;
+		return previous;
+	}
+
+	/**
+	 * Removes all the TSIDs.
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.values, null);
+		this.hasZero = false;
+		this.zeroValue = null;
+		this.size = 0;
+	}
+
+	/**
+	 * Performs an action for each TSID and value, in unspecified order.
+	 * 
+	 * @param action an action
+	 */
+	public void forEach(final EntryConsumer<? super V> action) {
+		if (this.hasZero) {
+			action.accept(0, value(this.zeroValue));
+		}
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != 0) {
+				action.accept(this.keys[i], value(this.values[i]));
+			}
+		}
+	}
+
+	/**
+	 * Returns an iterator of the TSIDs, in unspecified order.
+	 * <p>
+	 * The map must not be modified while iterating.
+	 * 
+	 * @return an iterator that doesn't box the TSIDs
+	 */
+	public PrimitiveIterator.OfLong keyIterator() {
+		return new PrimitiveIterator.OfLong() {
+
+			private final long[] slots = keys;
+			private boolean zero = hasZero;
+			private int index = next(0);
+
+			@Override
+			public boolean hasNext() {
+				return this.zero || this.index < this.slots.length;
+			}
+
+			@Override
+			public long nextLong() {
+				if (this.zero) {
+					this.zero = false;
+					return 0;
+				}
+				if (this.index >= this.slots.length) {
+					throw new NoSuchElementException();
+				}
+				final long tsid = this.slots[this.index];
+				this.index = next(this.index + 1);
+				return tsid;
+			}
+
+			private int next(int i) {
+				while (i < this.slots.length && this.slots[i] == 0) {
+					i++;
+				}
+				return i;
+			}
+		};
+	}
+
+	/**
+	 * Returns a sequential stream of the TSIDs, in unspecified order.
+	 * 
+	 * @return a stream
+	 */
+	public LongStream keyStream() {
+		return StreamSupport.longStream(
+				Spliterators.spliterator(keyIterator(), this.size, Spliterator.DISTINCT | Spliterator.SIZED), false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> V value(final Object value) {
+		return (V) value;
+	}
+
+	private int find(final long tsid) {
+		final int mask = this.keys.length - 1;
+		int i = TsidHash.index(tsid, mask);
+		long slot;
+		while ((slot = this.keys[i]) != 0) {
+			if (slot == tsid) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void allocate(final int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.threshold = capacity / 4 * 3;
+	}
+
+	private void rehash(final int capacity) {
+		if (capacity > TsidHash.MAX_CAPACITY) {
+			throw new IllegalStateException(String.format("Map too large: %s", this.size));
+		}
+		final long[] oldKeys = this.keys;
+		final Object[] oldValues = this.values;
+		allocate(capacity);
+		final int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != 0) {
+				int i = TsidHash.index(oldKeys[j], mask);
+				while (this.keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				this.keys[i] = oldKeys[j];
+				this.values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private void delete(int gap) {
+		// shift back the next TSIDs of the probe sequence, so no search stops early
+		final int mask = this.keys.length - 1;
+		int i = gap;
+		long slot;
+		while ((slot = this.keys[i = (i + 1) & mask]) != 0) {
+			final int home = TsidHash.index(slot, mask);
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				this.keys[gap] = slot;
+				this.values[gap] = this.values[i];
+				gap = i;
+			}
+		}
+		this.keys[gap] = 0;
+		this.values[gap] = null;
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import com.github.f4b6a3.tsid.Tsid;
+
+/**
+ * A hash set of TSIDs stored in a {@code long} array.
+ * <p>
+ * The TSIDs are stored with open addressing and linear probing, with a maximum
+ * load factor of 3/4, taking from 10.7 to 21.3 bytes per TSID. A
+ * {@code HashSet<Tsid>} takes more than 60 bytes per TSID, and every lookup
+ * follows a reference to a node and another to a {@link Tsid}.
+ * <p>
+ * The iterators and streams don't box the TSIDs. Their order is unspecified.
+ * <p>
+ * Instances of this class are <b>not thread-safe</b>.
+ * 
+ * @since 5.3.0
+ */
+public final class TsidSet {
+
+	// zero marks an empty slot, so the zero TSID is kept apart
+	private long[] table;
+	private boolean hasZero;
+
+	private int size;
+	private int threshold;
+
+	/**
+	 * Creates an empty set.
+	 */
+	public TsidSet() {
+		this(0);
+	}
+
+	/**
+	 * Creates an empty set for an expected number of TSIDs.
+	 * 
+	 * @param expected the expected number of TSIDs
+	 * @throws IllegalArgumentException if the expected number is negative or too
+	 *                                  large
+	 */
+	public TsidSet(final int expected) {
+		allocate(TsidHash.capacity(expected));
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * 
+	 * @return the number of TSIDs
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the set has no TSIDs.
+	 * 
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Adds a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID was not in the set
+	 */
+	public boolean add(final long tsid) {
+
+		if (tsid == 0) {
+			if (this.hasZero) {
+				return false;
+			}
+			this.hasZero = true;
+			this.size++;
+			return true;
+		}
+
+		final int mask = this.table.length - 1;
+		int i = TsidHash.index(tsid, mask);
+		long slot;
+		while ((slot = this.table[i]) != 0) {
+			if (slot == tsid) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		this.table[i] = tsid;
+		if (++this.size > this.threshold) {
+			rehash(this.table.length << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the set has a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID is in the set
+	 */
+	public boolean contains(final long tsid) {
+
+		if (tsid == 0) {
+			return this.hasZero;
+		}
+
+		final int mask = this.table.length - 1;
+		int i = TsidHash.index(tsid, mask);
+		long slot;
+		while ((slot = this.table[i]) != 0) {
+			if (slot == tsid) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID was in the set
+	 */
+	public boolean remove(final long tsid) {
+
+		if (tsid == 0) {
+			if (!this.hasZero) {
+				return false;
+			}
+			this.hasZero = false;
+			this.size--;
+			return true;
+		}
+
+		final int mask = this.table.length - 1;
+		int i = TsidHash.index(tsid, mask);
+		long slot;
+		while ((slot = this.table[i]) != 0) {
+			if (slot == tsid) {
+				delete(i);
+				this.size--;
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all the TSIDs.
+	 */
+	public void clear() {
+		Arrays.fill(this.table, 0);
+		this.hasZero = false;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns a copy of the TSIDs, in unspecified order.
+	 * 
+	 * @return an array of TSIDs
+	 */
+	public long[] toArray() {
+		final long[] tsids = new long[this.size];
+		int j = 0;
+		if (this.hasZero) {
+			tsids[j++] = 0;
+		}
+		for (long slot : this.table) {
+			if (slot != 0) {
+				tsids[j++] = slot;
+			}
+		}
+		return tsids;
+	}
+
+	/**
+	 * Performs an action for each TSID, in unspecified order.
+	 * 
+	 * @param action an action
+	 */
+	public void forEach(final LongConsumer action) {
+		if (this.hasZero) {
+			action.accept(0);
+		}
+		for (long slot : this.table) {
+			if (slot != 0) {
+				action.accept(slot);
+			}
+		}
+	}
+
+	/**
+	 * Returns an iterator of the TSIDs, in unspecified order.
+	 * <p>
+	 * The set must not be modified while iterating.
+	 * 
+	 * @return an iterator that doesn't box the TSIDs
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+
+			private final long[] slots = table;
+			private boolean zero = hasZero;
+			private int index = next(0);
+
+			@Override
+			public boolean hasNext() {
+				return this.zero || this.index < this.slots.length;
+			}
+
+			@Override
+			public long nextLong() {
+				if (this.zero) {
+					this.zero = false;
+					return 0;
+				}
+				if (this.index >= this.slots.length) {
+					throw new NoSuchElementException();
+				}
+				final long tsid = this.slots[this.index];
+				this.index = next(this.index + 1);
+				return tsid;
+			}
+
+			private int next(int i) {
+				while (i < this.slots.length && this.slots[i] == 0) {
+					i++;
+				}
+				return i;
+			}
+		};
+	}
+
+	/**
+	 * Returns a sequential stream of the TSIDs, in unspecified order.
+	 * 
+	 * @return a stream
+	 */
+	public LongStream stream() {
+		return StreamSupport.longStream(
+				Spliterators.spliterator(iterator(), this.size, Spliterator.DISTINCT | Spliterator.SIZED), false);
+	}
+
+	private void allocate(final int capacity) {
+		this.table = new long[capacity];
+		this.threshold = capacity / 4 * 3;
+	}
+
+	private void rehash(final int capacity) {
+		if (capacity > TsidHash.MAX_CAPACITY) {
+			throw new IllegalStateException(String.format("Set too large: %s", this.size));
+		}
+		final long[] old = this.table;
+		allocate(capacity);
+		final int mask = capacity - 1;
+		for (long tsid : old) {
+			if (tsid != 0) {
+				int i = TsidHash.index(tsid, mask);
+				while (this.table[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				this.table[i] = tsid;
+			}
+		}
+	}
+
+	private void delete(int gap) {
+		// shift back the next TSIDs of the probe sequence, so no search stops early
+		final int mask = this.table.length - 1;
+		int i = gap;
+		long slot;
+		while ((slot = this.table[i = (i + 1) & mask]) != 0) {
+			final int home = TsidHash.index(slot, mask);
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				this.table[gap] = slot;
+				gap = i;
+			}
+		}
+		this.table[gap] = 0;
+	}
+}
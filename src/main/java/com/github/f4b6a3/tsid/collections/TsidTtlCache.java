@@ -0,0 +1,418 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-2022 Fabio Lima
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.f4b6a3.tsid.collections;
+
+import java.time.Duration;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.github.f4b6a3.tsid.TsidLayout;
+
+/**
+ * A concurrent cache with TSIDs as keys that expire by the time of creation of
+ * the TSIDs.
+ * <p>
+ * A TSID expires when its time of creation, read from the TSID itself, is older
+ * than the time to live. No time is stored in the cache, so each entry takes
+ * only its key and its value.
+ * <p>
+ * The entries are kept in buckets by the time of creation of their TSIDs. Since
+ * all the TSIDs of a bucket expire together, whole buckets are dropped at once,
+ * without looking at their entries. Expired buckets are dropped by the writes
+ * when the current bucket changes, or by {@link #evictExpired()}. Expired TSIDs
+ * are never returned, even if their bucket has not been dropped yet.
+ * <p>
+ * TSIDs ahead of the clock by more than a maximum skew are not stored, since
+ * their buckets would be kept until their time, for example keys with a bogus
+ * time sent by clients.
+ * <p>
+ * Each bucket is a {@link TsidConcurrentMap}, so reads are lock-free. Null
+ * values are not allowed.
+ * <p>
+ * Example:
+ * 
+ * <pre>{@code
+ * // TSIDs of requests handled in the last 10 minutes
+ * TsidTtlCache<Response> cache = TsidTtlCache.<Response>builder().withTtl(Duration.ofMinutes(10)).build();
+ * Response previous = cache.putIfAbsent(request.getId(), response); // a long TSID
+ * }</pre>
+ * 
+ * @param <V> the type of the values
+ * @since 5.3.0
+ */
+public final class TsidTtlCache<V> {
+
+	private final TsidLayout layout;
+	private final LongSupplier timeFunction;
+	private final long ttl;
+	private final long maxSkew;
+	private final long bucketMillis;
+	private final int segments;
+
+	// buckets by the time of creation of their TSIDs divided by the bucket size
+	private final ConcurrentSkipListMap<Long, TsidConcurrentMap<V>> buckets = new ConcurrentSkipListMap<>();
+	private final AtomicLong evicted = new AtomicLong(Long.MIN_VALUE);
+
+	private TsidTtlCache(final Builder<V> builder) {
+		this.layout = builder.getLayout();
+		this.timeFunction = builder.getTimeFunction();
+		this.ttl = builder.getTtl().toMillis();
+		this.maxSkew = builder.getMaxSkew().toMillis();
+		this.bucketMillis = builder.getBucketSize().toMillis();
+		this.segments = builder.getSegments();
+	}
+
+	/**
+	 * Returns a builder object.
+	 * 
+	 * @param <V> the type of the values
+	 * @return a builder
+	 */
+	public static <V> Builder<V> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * Returns the value of a TSID, without locking.
+	 * 
+	 * @param tsid a TSID
+	 * @return the value, or null if the TSID is not in the cache or is expired
+	 */
+	public V get(final long tsid) {
+		final long time = this.layout.getUnixMilliseconds(tsid);
+		if (expired(time, now())) {
+			return null;
+		}
+		final TsidConcurrentMap<V> bucket = this.buckets.get(bucket(time));
+		return bucket != null ? bucket.get(tsid) : null;
+	}
+
+	/**
+	 * Checks if the cache has a TSID that is not expired.
+	 * 
+	 * @param tsid a TSID
+	 * @return true if the TSID is in the cache
+	 */
+	public boolean containsKey(final long tsid) {
+		return get(tsid) != null;
+	}
+
+	/**
+	 * Associates a value with a TSID, unless the TSID is expired or too far ahead
+	 * of the clock.
+	 * 
+	 * @param tsid  a TSID
+	 * @param value a value
+	 * @return the previous value, or null if the TSID was not in the cache
+	 * @throws NullPointerException if the value is null
+	 */
+	public V put(final long tsid, final V value) {
+		final TsidConcurrentMap<V> bucket = writable(tsid);
+		return bucket != null ? bucket.put(tsid, value) : null;
+	}
+
+	/**
+	 * Associates a value with a TSID if the TSID is not in the cache, unless the
+	 * TSID is expired or too far ahead of the clock.
+	 * <p>
+	 * It can be used to discard repeated requests, for example.
+	 * 
+	 * @param tsid  a TSID
+	 * @param value a value
+	 * @return the current value, or null if the TSID was not in the cache
+	 * @throws NullPointerException if the value is null
+	 */
+	public V putIfAbsent(final long tsid, final V value) {
+		final TsidConcurrentMap<V> bucket = writable(tsid);
+		return bucket != null ? bucket.putIfAbsent(tsid, value) : null;
+	}
+
+	/**
+	 * Removes a TSID.
+	 * 
+	 * @param tsid a TSID
+	 * @return the removed value, or null if the TSID was not in the cache
+	 */
+	public V remove(final long tsid) {
+		final TsidConcurrentMap<V> bucket = this.buckets.get(bucket(this.layout.getUnixMilliseconds(tsid)));
+		return bucket != null ? bucket.remove(tsid) : null;
+	}
+
+	/**
+	 * Returns the number of TSIDs.
+	 * <p>
+	 * The result includes the expired TSIDs of buckets not yet dropped, and it is
+	 * an estimate if the cache is modified concurrently.
+	 * 
+	 * @return the number of TSIDs
+	 */
+	public int size() {
+		long size = 0;
+		for (TsidConcurrentMap<V> bucket : this.buckets.values()) {
+			size += bucket.size();
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Drops the buckets whose TSIDs are all expired.
+	 * 
+	 * @return the number of dropped buckets
+	 */
+	public int evictExpired() {
+		final long live = Math.floorDiv(now() - this.ttl + 1, this.bucketMillis);
+		this.evicted.accumulateAndGet(live, Math::max);
+		final NavigableMap<Long, TsidConcurrentMap<V>> expired = this.buckets.headMap(live, false);
+		int dropped = 0;
+		while (expired.pollFirstEntry() != null) {
+			dropped++;
+		}
+		return dropped;
+	}
+
+	/**
+	 * Removes all the TSIDs.
+	 */
+	public void clear() {
+		this.buckets.clear();
+	}
+
+	private TsidConcurrentMap<V> writable(final long tsid) {
+
+		final long now = now();
+		final long time = this.layout.getUnixMilliseconds(tsid);
+		if (expired(time, now) || time - now > this.maxSkew) {
+			return null;
+		}
+
+		// drop the expired buckets once per bucket of time
+		final long live = Math.floorDiv(now - this.ttl + 1, this.bucketMillis);
+		if (live > this.evicted.get()) {
+			evictExpired();
+		}
+
+		return this.buckets.computeIfAbsent(bucket(time), b -> new TsidConcurrentMap<>(0, this.segments));
+	}
+
+	private boolean expired(final long time, final long now) {
+		return time + this.ttl <= now;
+	}
+
+	private long bucket(final long time) {
+		return Math.floorDiv(time, this.bucketMillis);
+	}
+
+	private long now() {
+		return this.timeFunction.getAsLong();
+	}
+
+	/**
+	 * A builder of caches.
+	 * 
+	 * @param <V> the type of the values
+	 */
+	public static class Builder<V> {
+
+		private TsidLayout layout;
+		private LongSupplier timeFunction;
+		private Duration ttl;
+		private Duration maxSkew;
+		private Duration bucketSize;
+		private Integer segments;
+
+		private static final int BUCKETS_PER_TTL = 64;
+
+		/**
+		 * Set the time to live of the TSIDs, measured from their time of creation.
+		 * <p>
+		 * It is required. It must be at least 1 ms.
+		 * 
+		 * @param ttl a duration
+		 * @return {@link Builder}
+		 */
+		public Builder<V> withTtl(Duration ttl) {
+			this.ttl = ttl;
+			return this;
+		}
+
+		/**
+		 * Set the maximum skew of TSIDs generated ahead of the local clock.
+		 * <p>
+		 * TSIDs further ahead are not stored. The default maximum skew is the time to
+		 * live.
+		 * 
+		 * @param maxSkew a duration
+		 * @return {@link Builder}
+		 */
+		public Builder<V> withMaxSkew(Duration maxSkew) {
+			this.maxSkew = maxSkew;
+			return this;
+		}
+
+		/**
+		 * Set the span of time of the TSIDs of each bucket.
+		 * <p>
+		 * The default is 1/64 of the time to live, at least 1 ms. Smaller buckets free
+		 * memory sooner, but there are more buckets.
+		 * 
+		 * @param bucketSize a duration of at least 1 ms
+		 * @return {@link Builder}
+		 */
+		public Builder<V> withBucketSize(Duration bucketSize) {
+			this.bucketSize = bucketSize;
+			return this;
+		}
+
+		/**
+		 * Set the layout of the TSIDs.
+		 * <p>
+		 * The default layout is the layout of {@link TsidLayout.Builder#build()}.
+		 * 
+		 * @param layout a layout
+		 * @return {@link Builder}
+		 */
+		public Builder<V> withLayout(TsidLayout layout) {
+			this.layout = layout;
+			return this;
+		}
+
+		/**
+		 * Set the number of segments of each bucket.
+		 * <p>
+		 * The default is the same of {@link TsidConcurrentMap#TsidConcurrentMap()}.
+		 * 
+		 * @param segments the number of segments
+		 * @return {@link Builder}
+		 */
+		public Builder<V> withSegments(Integer segments) {
+			this.segments = segments;
+			return this;
+		}
+
+		/**
+		 * Set the time function to be used in tests.
+		 *
+		 * @param timeFunction a function that returns the current time in milliseconds,
+		 *                     measured from the UNIX epoch of 1970-01-01T00:00Z (UTC)
+		 * @return {@link Builder}
+		 */
+		public Builder<V> withTimeFunction(LongSupplier timeFunction) {
+			this.timeFunction = timeFunction;
+			return this;
+		}
+
+		/**
+		 * Get the time to live.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the time to live is missing or less than
+		 *                                  1 ms
+		 */
+		protected Duration getTtl() {
+			if (this.ttl == null || this.ttl.toMillis() < 1) {
+				throw new IllegalArgumentException(String.format("Invalid time to live: %s", this.ttl));
+			}
+			return this.ttl;
+		}
+
+		/**
+		 * Get the maximum skew.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the maximum skew is negative
+		 */
+		protected Duration getMaxSkew() {
+			if (this.maxSkew == null) {
+				this.maxSkew = getTtl();
+			}
+			if (this.maxSkew.isNegative()) {
+				throw new IllegalArgumentException(String.format("Invalid max skew: %s", this.maxSkew));
+			}
+			return this.maxSkew;
+		}
+
+		/**
+		 * Get the bucket size.
+		 * 
+		 * @return a duration
+		 * @throws IllegalArgumentException if the bucket size is less than 1 ms
+		 */
+		protected Duration getBucketSize() {
+			if (this.bucketSize == null) {
+				this.bucketSize = Duration.ofMillis(Math.max(1, getTtl().toMillis() / BUCKETS_PER_TTL));
+			}
+			if (this.bucketSize.toMillis() < 1) {
+				throw new IllegalArgumentException(String.format("Invalid bucket size: %s", this.bucketSize));
+			}
+			return this.bucketSize;
+		}
+
+		/**
+		 * Get the layout.
+		 * 
+		 * @return a layout
+		 */
+		protected TsidLayout getLayout() {
+			if (this.layout == null) {
+				this.layout = TsidLayout.builder().build();
+			}
+			return this.layout;
+		}
+
+		/**
+		 * Get the number of segments.
+		 * 
+		 * @return the number of segments
+		 */
+		protected int getSegments() {
+			if (this.segments == null) {
+				this.segments = Runtime.getRuntime().availableProcessors() * 4;
+			}
+			return this.segments;
+		}
+
+		/**
+		 * Get the time function.
+		 * 
+		 * @return a time function
+		 */
+		protected LongSupplier getTimeFunction() {
+			if (this.timeFunction == null) {
+				this.timeFunction = System::currentTimeMillis;
+			}
+			return this.timeFunction;
+		}
+
+		/**
+		 * Returns a built cache.
+		 * 
+		 * @return {@link TsidTtlCache}
+		 */
+		public TsidTtlCache<V> build() {
+			return new TsidTtlCache<>(this);
+		}
+	}
+}
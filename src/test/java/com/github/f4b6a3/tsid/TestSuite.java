@@ -1,5 +1,13 @@
 package com.github.f4b6a3.tsid;
 
+import com.github.f4b6a3.tsid.collections.TsidBitmapTest;
+import com.github.f4b6a3.tsid.collections.TsidBloomFilterTest;
+import com.github.f4b6a3.tsid.collections.TsidConcurrentMapTest;
+import com.github.f4b6a3.tsid.collections.TsidDeduplicatorTest;
+import com.github.f4b6a3.tsid.collections.TsidListTest;
+import com.github.f4b6a3.tsid.collections.TsidMapTest;
+import com.github.f4b6a3.tsid.collections.TsidSetTest;
+import com.github.f4b6a3.tsid.collections.TsidTtlCacheTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -9,6 +17,25 @@ import org.junit.runners.Suite;
 	TsidBaseNTest.class,
 	TsidFactoryTest.class,
 	TsidFormatTest.class,
+	TsidLongsTest.class,
+	TsidLayoutTest.class,
+	Tsid128Test.class,
+	TsidMultiNodeFactoryTest.class,
+	TsidBackfillFactoryTest.class,
+	TsidSharedFactoryTest.class,
+	TsidLeaseServerTest.class,
+	TsidBlockCodecTest.class,
+	TsidArrayTest.class,
+	TsidSortTest.class,
+	TsidMergerTest.class,
+	TsidListTest.class,
+	TsidSetTest.class,
+	TsidMapTest.class,
+	TsidConcurrentMapTest.class,
+	TsidTtlCacheTest.class,
+	TsidDeduplicatorTest.class,
+	TsidBloomFilterTest.class,
+	TsidBitmapTest.class,
 	TsidFactory00001Test.class,
 	TsidFactory00064Test.class,
 	TsidFactory00256Test.class,
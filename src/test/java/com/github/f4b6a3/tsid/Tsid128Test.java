@@ -0,0 +1,185 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class Tsid128Test {
+
+	private static final int LOOP_MAX = 1_000;
+
+	@Test
+	public void testToStringAndFrom() {
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long msb = ThreadLocalRandom.current().nextLong();
+			final long lsb = ThreadLocalRandom.current().nextLong();
+			final Tsid128 tsid = Tsid128.from(msb, lsb);
+
+			final String string = tsid.toString();
+			assertEquals(Tsid128.TSID128_CHARS, string.length());
+			assertEquals(toString(msb, lsb), string);
+			assertEquals(string.toLowerCase(), tsid.toLowerCase());
+			assertEquals(tsid, Tsid128.from(string));
+			assertEquals(tsid, Tsid128.from(new StringBuilder(string.toLowerCase())));
+			assertTrue(Tsid128.isValid(string));
+
+			final char[] chars = new char[30];
+			assertEquals(Tsid128.TSID128_CHARS + 2, tsid.toChars(chars, 2));
+			assertEquals(string, new String(chars, 2, Tsid128.TSID128_CHARS));
+
+			assertEquals(tsid, Tsid128.from(tsid.toBytes()));
+			assertEquals(Long.toHexString(msb), Long.toHexString(tsid.getMostSignificantBits()));
+			assertEquals(lsb, tsid.getLeastSignificantBits());
+		}
+
+		assertEquals("00000000000000000000000000", Tsid128.from(0, 0).toString());
+		assertEquals("7ZZZZZZZZZZZZZZZZZZZZZZZZZ", Tsid128.from(-1, -1).toString());
+	}
+
+	@Test
+	public void testFromInvalid() {
+		String[] strings = { null, "", "0000000000000000000000000", "000000000000000000000000000",
+				"80000000000000000000000000", "0000000000000000000000000#", "0000000000000U000000000000",
+				"0000000000000000000000000\u00e9" };
+		for (String string : strings) {
+			assertFalse(Tsid128.isValid(string));
+			try {
+				Tsid128.from(string);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+		try {
+			Tsid128.from(new byte[8]);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testCompareTo() {
+		Tsid128[] tsids = new Tsid128[LOOP_MAX];
+		for (int i = 0; i < LOOP_MAX; i++) {
+			tsids[i] = Tsid128.from(ThreadLocalRandom.current().nextLong(), ThreadLocalRandom.current().nextLong());
+		}
+		Arrays.sort(tsids);
+		for (int i = 1; i < LOOP_MAX; i++) {
+			assertTrue(toBigInteger(tsids[i - 1]).compareTo(toBigInteger(tsids[i])) <= 0);
+			// the strings are sorted too
+			assertTrue(tsids[i - 1].toString().compareTo(tsids[i].toString()) <= 0);
+		}
+	}
+
+	@Test
+	public void testToTsid() {
+		for (int nodeBits = 0; nodeBits <= 16; nodeBits++) {
+			TsidFactory factory = TsidFactory.builder().withNodeBits(nodeBits).build();
+			for (int i = 0; i < LOOP_MAX; i++) {
+				Tsid tsid = factory.create();
+				Tsid128 tsid128 = Tsid128.from(tsid, nodeBits);
+				assertEquals(tsid.getUnixMilliseconds(), tsid128.getUnixMilliseconds());
+				assertEquals(0, tsid128.getRandom());
+				assertTrue(tsid128.fitsTsid(nodeBits));
+				assertEquals(tsid, tsid128.toTsid(nodeBits));
+			}
+		}
+
+		try {
+			Tsid128.from(TsidFactory.builder().withNodeBits(20).withNode(1 << 16).build().create(), 20);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+
+		Tsid128 tsid128 = Tsid128Factory.builder().withNode(1 << 12).build().create();
+		assertFalse(tsid128.fitsTsid(10));
+		try {
+			tsid128.toTsid(10);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		assertFalse(Tsid128.from(0, 0).fitsTsid(10)); // before 2020
+	}
+
+	@Test
+	public void testFactory() {
+		final long time = System.currentTimeMillis();
+		Tsid128Factory factory = Tsid128Factory.builder().withNode(0xabcd).withTimeFunction(() -> time)
+				.withRandomFunction(() -> ThreadLocalRandom.current().nextInt()).build();
+
+		Tsid128 prev = factory.create();
+		for (int i = 0; i < LOOP_MAX; i++) {
+			Tsid128 tsid = factory.create();
+			assertEquals(0xabcd, tsid.getNode());
+			assertEquals(prev.getCounter() + 1, tsid.getCounter());
+			assertTrue(tsid.getUnixMilliseconds() == time);
+			assertTrue(tsid.compareTo(prev) > 0);
+			prev = tsid;
+		}
+
+		try {
+			Tsid128Factory.builder().withNode(1 << 16).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testFactoryRandomCounter() {
+		final long time = System.currentTimeMillis();
+		Tsid128Factory factory = Tsid128Factory.builder().withTimeFunction(() -> time)
+				.withRandomFunction(() -> Integer.MAX_VALUE).build();
+		// the counter starts below 2^31, leaving room for 2^31 increments
+		Tsid128 first = factory.create();
+		assertEquals(Integer.MAX_VALUE, first.getCounter());
+		assertEquals(time, first.getUnixMilliseconds());
+	}
+
+	@Test
+	public void testFactoryParallel() throws InterruptedException {
+		final Tsid128Factory factory = Tsid128Factory.builder()
+				.withRandomFunction(() -> ThreadLocalRandom.current().nextInt()).build();
+		final Set<Tsid128> set = new HashSet<>();
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < LOOP_MAX * 10; j++) {
+					Tsid128 tsid = factory.create();
+					synchronized (set) {
+						set.add(tsid);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(threads.length * LOOP_MAX * 10, set.size());
+	}
+
+	private static BigInteger toBigInteger(Tsid128 tsid) {
+		return new BigInteger(1, tsid.toBytes());
+	}
+
+	private static String toString(long msb, long lsb) {
+		final String alphabet = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+		BigInteger number = toBigInteger(Tsid128.from(msb, lsb));
+		final char[] chars = new char[Tsid128.TSID128_CHARS];
+		for (int i = chars.length - 1; i >= 0; i--) {
+			chars[i] = alphabet.charAt(number.intValue() & 0b11111);
+			number = number.shiftRight(5);
+		}
+		return new String(chars);
+	}
+}
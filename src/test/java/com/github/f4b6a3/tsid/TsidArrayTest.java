@@ -0,0 +1,162 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidArrayTest {
+
+	@Test
+	public void testAddAndGet() {
+		final TsidArray array = new TsidArray(16);
+		for (int i = 0; i < 100; i++) {
+			array.add(i * 3L);
+		}
+		assertEquals(100, array.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i * 3L, array.get(i));
+		}
+		array.set(50, -1L);
+		assertEquals(-1L, array.get(50));
+
+		try {
+			array.get(100);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			array.set(-1, 0);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+
+		array.clear();
+		assertEquals(0, array.size());
+	}
+
+	@Test
+	public void testInvalidChunkSize() {
+		for (int chunkSize : new int[] { 0, -1, 3, 1 << 30 }) {
+			try {
+				new TsidArray(chunkSize);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void testFill() {
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final TsidArray array = new TsidArray(64);
+		array.add(0);
+		array.fill(factory, 10_000);
+		array.fill(() -> -1L, 5);
+		assertEquals(10_006, array.size());
+		for (int i = 2; i < 10_001; i++) {
+			assertTrue(array.get(i - 1) < array.get(i));
+		}
+		assertEquals(-1L, array.get(10_005));
+	}
+
+	@Test
+	public void testSortAndSearch() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		for (int size : new int[] { 0, 1, 15, 16, 17, 1000 }) {
+			final TsidArray array = new TsidArray(16);
+			final long[] expected = new long[size];
+			for (int i = 0; i < size; i++) {
+				// small values to have duplicates, and negative values to test unsigned order
+				expected[i] = random.nextBoolean() ? random.nextInt(500) : -random.nextInt(500);
+				array.add(expected[i]);
+			}
+
+			array.sort();
+			unsignedSort(expected);
+			for (int i = 0; i < size; i++) {
+				assertEquals(expected[i], array.get(i));
+			}
+
+			for (int i = 0; i < 100; i++) {
+				final long key = random.nextBoolean() ? random.nextInt(600) : -random.nextInt(600);
+				final long index = array.binarySearch(key);
+				final long lower = array.lowerBound(key);
+				if (index >= 0) {
+					assertEquals(lower, index);
+					assertEquals(key, array.get(index));
+				} else {
+					assertEquals(lower, -index - 1);
+				}
+				assertTrue(lower == 0 || TsidLongs.compareUnsigned(array.get(lower - 1), key) < 0);
+				assertTrue(lower == size || TsidLongs.compareUnsigned(array.get(lower), key) >= 0);
+			}
+		}
+	}
+
+	@Test
+	public void testLowerBoundInstant() {
+		final TsidLayout layout = TsidLayout.builder().build();
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withLayout(layout).withTimeFunction(() -> now[0]).build();
+
+		final long start = now[0];
+		final TsidArray array = new TsidArray(8);
+		for (int i = 0; i < 100; i++) {
+			now[0]++;
+			array.fill(factory, 3); // 3 TSIDs per millisecond
+		}
+
+		assertEquals(0, array.lowerBound(Instant.ofEpochMilli(start), layout));
+		assertEquals(30, array.lowerBound(Instant.ofEpochMilli(start + 11), layout));
+		assertEquals(30, array.lowerBound(Instant.ofEpochMilli(start + 11).plusNanos(999_999), layout));
+		assertEquals(300, array.lowerBound(Instant.ofEpochMilli(start + 101), layout));
+		assertEquals(0, array.lowerBound(Instant.EPOCH, layout));
+		assertEquals(300, array.lowerBound(layout.getMaxInstant().plusSeconds(1), layout));
+	}
+
+	@Test
+	public void testTransferTo() throws IOException {
+		final TsidArray array = new TsidArray(16);
+		array.fill(TsidFactory.newInstance1024(), 100);
+
+		final Path file = Files.createTempFile("tsid-array", ".bin");
+		try {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				assertEquals(800, array.transferTo(channel));
+			}
+			final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+			assertEquals(800, bytes.capacity());
+			for (int i = 0; i < 100; i++) {
+				final byte[] tsid = new byte[Tsid.TSID_BYTES];
+				bytes.get(tsid);
+				assertArrayEquals(Tsid.from(array.get(i)).toBytes(), tsid);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void unsignedSort(final long[] tsids) {
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] ^= Long.MIN_VALUE;
+		}
+		Arrays.sort(tsids);
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] ^= Long.MIN_VALUE;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class TsidBackfillFactoryTest {
+
+	private static final int LOOP_MAX = 100_000;
+
+	private static final long START = Instant.parse("2021-01-01T00:00:00Z").toEpochMilli();
+
+	@Test
+	public void testCreateAt() {
+		TsidBackfillFactory factory = TsidBackfillFactory.builder().withNode(5).build();
+		TsidLayout layout = factory.getLayout();
+
+		Tsid tsid1 = factory.createAt(START + 1000);
+		Tsid tsid2 = factory.createAt(START);
+		Tsid tsid3 = factory.createAt(START + 1000);
+
+		assertEquals(START + 1000, tsid1.getUnixMilliseconds());
+		assertEquals(START, tsid2.getUnixMilliseconds());
+		assertEquals(5, layout.getNode(tsid1.toLong()));
+		assertEquals(0, layout.getCounter(tsid1.toLong()));
+		assertEquals(0, layout.getCounter(tsid2.toLong()));
+		assertEquals(1, layout.getCounter(tsid3.toLong()));
+		assertTrue(tsid3.compareTo(tsid1) > 0);
+		assertEquals(2, factory.size());
+	}
+
+	@Test
+	public void testBorrow() {
+		TsidLayout layout = TsidLayout.builder().withNodeBits(20).build(); // 2 counter bits
+		TsidBackfillFactory factory = TsidBackfillFactory.builder().withLayout(layout).withNode(1).build();
+		long prev = 0;
+		for (int i = 0; i < 10; i++) {
+			long tsid = factory.createLongAt(START);
+			assertEquals(START + i / 4, layout.getUnixMilliseconds(tsid));
+			assertTrue(tsid > prev);
+			prev = tsid;
+		}
+		// the borrowed milliseconds are not reused
+		long tsid = factory.createLongAt(START + 1);
+		assertEquals(START + 2, layout.getUnixMilliseconds(tsid));
+		assertEquals(2, layout.getCounter(tsid));
+		assertEquals(3, layout.getCounter(factory.createLongAt(START + 2)));
+	}
+
+	@Test
+	public void testBulk() {
+		SplittableRandom random = new SplittableRandom(1);
+		TsidLayout layout = TsidLayout.builder().withNodeBits(16).build(); // 6 counter bits
+		TsidBackfillFactory factory = TsidBackfillFactory.builder().withLayout(layout).withNode(1).build();
+
+		long[] millis = new long[LOOP_MAX];
+		for (int i = 0; i < LOOP_MAX; i++) {
+			millis[i] = START + random.nextInt(10_000) * 10; // many rows per millisecond
+		}
+		long[] out = new long[LOOP_MAX];
+		factory.createAt(millis, out);
+
+		Set<Long> set = new HashSet<>();
+		for (int i = 0; i < LOOP_MAX; i++) {
+			assertTrue(set.add(out[i]));
+			assertTrue(layout.getUnixMilliseconds(out[i]) >= millis[i]);
+		}
+
+		// in place, after the first batch
+		factory.createAt(millis, millis);
+		for (int i = 0; i < LOOP_MAX; i++) {
+			assertTrue(set.add(millis[i]));
+		}
+	}
+
+	@Test
+	public void testInvalid() {
+		TsidBackfillFactory factory = TsidBackfillFactory.builder().withCapacity(2).build();
+		try {
+			factory.createAt(Tsid.TSID_EPOCH - 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			factory.createAt(new long[2], new long[1]);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		factory.createAt(START);
+		factory.createAt(START + 1);
+		factory.createAt(START + 1);
+		try {
+			factory.createAt(START + 2);
+			fail();
+		} catch (IllegalStateException e) {
+			// success
+		}
+	}
+}
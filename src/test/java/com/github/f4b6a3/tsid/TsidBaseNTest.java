@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.junit.Test;
 
@@ -48,6 +49,55 @@ public class TsidBaseNTest {
 		}
 	}
 
+	@Test
+	public void testBasePowerOfTwo() {
+		final int[] radixes = { 2, 4, 8, 16, 32 };
+		for (int radix : radixes) {
+			final int length = new BigInteger("ffffffffffffffff", 16).toString(radix).length();
+			for (int i = 0; i < 1000; i++) {
+				Tsid tsid = Tsid.fast();
+				String string = Long.toUnsignedString(tsid.toLong(), radix).toUpperCase();
+				while (string.length() < length) {
+					string = "0" + string;
+				}
+				assertEquals(string, tsid.encode(radix));
+				assertEquals(tsid, Tsid.decode(string, radix));
+			}
+			Tsid max = new Tsid(-1L);
+			assertEquals(max, Tsid.decode(max.encode(radix), radix));
+		}
+	}
+
+	@Test
+	public void testAllBases() {
+		final BigInteger max = BigInteger.ONE.shiftLeft(64);
+		for (int radix = 2; radix <= 62; radix++) {
+			final BigInteger base = BigInteger.valueOf(radix);
+			final int length = encode(max.subtract(BigInteger.ONE), base, 0).length();
+			for (int i = 0; i < 100; i++) {
+				long number = i < 3 ? i - 1 : ThreadLocalRandom.current().nextLong() >>> (i % 64);
+				String string = encode(new BigInteger(Long.toUnsignedString(number)), base, length);
+				Tsid tsid = new Tsid(number);
+				assertEquals(string, tsid.encode(radix));
+				assertEquals(tsid, Tsid.decode(string, radix));
+			}
+			capture(encode(max, base, length), radix); // 2^64
+		}
+	}
+
+	private static String encode(BigInteger number, BigInteger base, int length) {
+		StringBuilder string = new StringBuilder();
+		while (number.signum() > 0) {
+			BigInteger[] divrem = number.divideAndRemainder(base);
+			string.insert(0, BaseN.ALPHABET.charAt(divrem[1].intValue()));
+			number = divrem[0];
+		}
+		while (string.length() < length) {
+			string.insert(0, '0');
+		}
+		return string.toString();
+	}
+
 	@Test
 	public void testIllegalArgumentException() {
 
@@ -99,6 +149,12 @@ public class TsidBaseNTest {
 			capture("gggggggggggg", 43);
 			capture("JaO7KT4W5fAf", 43); // 2^64
 
+			capture("0000000000000000000000", 2);
+			capture("2000000000000000000000", 8); // 2^64
+			capture("000000000000000G", 16);
+			capture("000000000000000a", 16); // case-sensitive
+			capture("G000000000000", 32); // 2^64
+
 			capture("", 62);
 			capture(null, 62);
 			capture("0000000000", 62);
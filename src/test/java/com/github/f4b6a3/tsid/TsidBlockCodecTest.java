@@ -0,0 +1,128 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidBlockCodecTest {
+
+	private static final int LOOP_MAX = 100;
+
+	@Test
+	public void testEncodeAndDecode() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long[] tsids = sorted(random, random.nextInt(1000), random.nextInt(65));
+			check(tsids);
+		}
+	}
+
+	@Test
+	public void testEncodeFactoryTsids() {
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final long[] tsids = new long[10_000];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = factory.create().toLong();
+		}
+		final byte[] bytes = check(tsids);
+		assertTrue(bytes.length < tsids.length * Tsid.TSID_BYTES / 2);
+	}
+
+	@Test
+	public void testEdgeCases() {
+		check(new long[0]);
+		check(new long[] { 0 });
+		check(new long[] { -1 });
+		check(new long[] { 0, -1 }); // width 64
+		check(new long[] { 5, 5, 5, 5 }); // width 0
+		check(new long[] { Long.MAX_VALUE, Long.MIN_VALUE, -1 }); // unsigned order
+
+		final long[] full = new long[TsidBlockCodec.BLOCK_SIZE * 3];
+		for (int i = 0; i < full.length; i++) {
+			full[i] = i == 0 ? 0 : -full.length + i; // width 64 in the first block
+		}
+		check(full);
+	}
+
+	@Test
+	public void testNotSorted() {
+		final long[] tsids = { 1, 3, 2 };
+		try {
+			TsidBlockCodec.encode(tsids);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidBlockCodec.encodeVarints(new long[] { -1, 0 });
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testInvalidBytes() {
+		final byte[] bytes = TsidBlockCodec.encode(new long[] { 1, 2, 3 });
+		try {
+			TsidBlockCodec.get(bytes, 3);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			TsidBlockCodec.decode(Arrays.copyOf(bytes, 10));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidBlockCodec.size(new byte[3]);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+
+		final byte[] varints = TsidBlockCodec.encodeVarints(new long[] { 1, 2, -1 });
+		try {
+			TsidBlockCodec.decodeVarints(Arrays.copyOf(varints, varints.length - 1));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	private static byte[] check(final long[] tsids) {
+
+		final byte[] bytes = TsidBlockCodec.encode(tsids);
+		assertEquals(tsids.length, TsidBlockCodec.size(bytes));
+		assertArrayEquals(tsids, TsidBlockCodec.decode(bytes));
+		for (int i = 0; i < tsids.length; i++) {
+			assertEquals(tsids[i], TsidBlockCodec.get(bytes, i));
+		}
+
+		final byte[] varints = TsidBlockCodec.encodeVarints(tsids);
+		assertArrayEquals(tsids, TsidBlockCodec.decodeVarints(varints));
+
+		return bytes;
+	}
+
+	private static long[] sorted(final SplittableRandom random, final int count, final int bits) {
+		// random TSIDs that differ only in the lower bits, in unsigned order
+		final long base = random.nextLong();
+		final long[] tsids = new long[count];
+		for (int i = 0; i < count; i++) {
+			final long offset = bits == 0 ? 0 : random.nextLong() >>> (Long.SIZE - bits);
+			tsids[i] = (base + offset) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(tsids);
+		for (int i = 0; i < count; i++) {
+			tsids[i] ^= Long.MIN_VALUE;
+		}
+		return tsids;
+	}
+}
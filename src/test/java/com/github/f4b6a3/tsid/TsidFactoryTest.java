@@ -2,8 +2,12 @@ package com.github.f4b6a3.tsid;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
@@ -401,6 +405,156 @@ public class TsidFactoryTest {
 		assertEquals(ms1, ms2); // LEAP SECOND! DON'T MOVE BACKWARDS!
 	}
 
+	@Test
+	public void testHighWaterMark() throws IOException {
+		final Path file = Files.createTempFile("tsid", ".hwm");
+		try {
+			final long now = System.currentTimeMillis();
+			TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now).withHighWaterMark(file).build();
+			Tsid last = null;
+			for (int i = 0; i < 100; i++) {
+				last = factory.create();
+			}
+
+			// restart with a clock that went backwards
+			TsidFactory restarted = TsidFactory.builder().withTimeFunction(() -> now - 60_000)
+					.withHighWaterMark(file).build();
+			Tsid next = restarted.create();
+			assertTrue(next.compareTo(last) > 0);
+			assertTrue(next.getUnixMilliseconds() <= now + 1001);
+			for (int i = 0; i < 100; i++) {
+				Tsid tsid = restarted.create();
+				assertTrue(tsid.compareTo(next) > 0);
+				next = tsid;
+			}
+
+			// restart without a high-water mark: no guarantee
+			TsidFactory plain = TsidFactory.builder().withTimeFunction(() -> now - 60_000).build();
+			assertTrue(plain.create().compareTo(last) < 0);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testHighWaterMarkLease() throws IOException {
+		final Path file = Files.createTempFile("tsid", ".hwm");
+		try {
+			final long[] now = { System.currentTimeMillis() };
+			TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0])
+					.withHighWaterMark(file, Duration.ofMillis(100)).build();
+			for (int i = 0; i < 1000; i++) {
+				now[0]++;
+				factory.create();
+			}
+			// the lease is renewed at least synchronously
+			TsidFactory restarted = TsidFactory.builder().withTimeFunction(() -> 0L).withHighWaterMark(file).build();
+			assertTrue(restarted.create().getUnixMilliseconds() > now[0]);
+
+			try {
+				TsidFactory.builder().withHighWaterMark(file, Duration.ZERO).build();
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testWithRandomCounterBits() {
+		final long[] now = { System.currentTimeMillis() };
+		TsidFactory factory = TsidFactory.builder().withNodeBits(10).withTimeFunction(() -> now[0])
+				.withRandomCounterBits(0).build();
+		for (int i = 0; i < 100; i++) {
+			now[0]++;
+			assertEquals(0, factory.create().toLong() & 0xfff);
+			assertEquals(1, factory.create().toLong() & 0xfff);
+		}
+
+		factory = TsidFactory.builder().withNodeBits(10).withTimeFunction(() -> now[0]).withRandomCounterBits(4)
+				.build();
+		for (int i = 0; i < 100; i++) {
+			now[0]++;
+			assertTrue((factory.create().toLong() & 0xfff) < 16);
+		}
+
+		try {
+			TsidFactory.builder().withNodeBits(10).withRandomCounterBits(13).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testObserve() {
+		final long now = System.currentTimeMillis();
+		TsidFactory local = TsidFactory.builder().withNode(1).withTimeFunction(() -> now).build();
+		TsidFactory remote = TsidFactory.builder().withNode(2).withTimeFunction(() -> now + 100).build();
+
+		Tsid ahead = remote.create();
+		assertTrue(local.create().compareTo(ahead) < 0);
+
+		assertTrue(local.observe(ahead));
+		Tsid next = local.create();
+		assertTrue(next.compareTo(ahead) > 0);
+		assertEquals(now + 101, next.getUnixMilliseconds());
+
+		// the counter is incremented after the jump
+		assertTrue(local.create().compareTo(next) > 0);
+
+		// observing an older TSID changes nothing
+		assertTrue(local.observe(Tsid.from(0L)));
+		assertTrue(local.create().getUnixMilliseconds() == now + 101);
+	}
+
+	@Test
+	public void testObserveMaxSkew() {
+		final long now = System.currentTimeMillis();
+		TsidFactory local = TsidFactory.builder().withTimeFunction(() -> now).withMaxSkew(Duration.ofSeconds(1))
+				.build();
+		TsidFactory remote = TsidFactory.builder().withTimeFunction(() -> now + 2000).build();
+
+		Tsid ahead = remote.create();
+		assertFalse(local.observe(ahead.toLong()));
+		assertEquals(now, local.create().getUnixMilliseconds());
+
+		try {
+			TsidFactory.builder().withMaxSkew(Duration.ofSeconds(-1)).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testObserveParallel() throws InterruptedException {
+		final TsidFactory local = TsidFactory.builder().withNode(1).build();
+		final TsidFactory remote = TsidFactory.builder().withNode(2)
+				.withTimeFunction(() -> System.currentTimeMillis() + 50).build();
+
+		final Thread[] threads = new Thread[4];
+		final boolean[] failed = new boolean[1];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 10_000; j++) {
+					Tsid observed = remote.create();
+					local.observe(observed);
+					if (local.create().compareTo(observed) <= 0) {
+						failed[0] = true;
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertFalse(failed[0]);
+	}
+
 	@Test
 	public void testByteRandomNextInt() {
 
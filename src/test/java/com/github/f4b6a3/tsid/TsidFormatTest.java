@@ -2,6 +2,10 @@ package com.github.f4b6a3.tsid;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ThreadLocalRandom;
+
 import org.junit.Test;
 
 import static com.github.f4b6a3.tsid.Tsid.BaseN.encode;
@@ -111,6 +115,87 @@ public class TsidFormatTest {
 		}
 	}
 
+	@Test
+	public void testUnformatHexadecimalIgnoreCase() {
+		for (int i = 0; i < 100; i++) {
+			Tsid tsid = Tsid.fast();
+			String upper = "HEAD" + encode(tsid, 16) + "TAIL";
+			String lower = "HEAD" + encode(tsid, 16).toLowerCase() + "TAIL";
+			assertEquals(tsid, Tsid.unformat(upper, "HEAD%xTAIL"));
+			assertEquals(tsid, Tsid.unformat(lower, "HEAD%XTAIL"));
+		}
+	}
+
+	@Test
+	public void testCompile() throws IOException {
+
+		String[] placeholders = { "%S", "%s", "%X", "%x", "%d", "%z" };
+		String[][] string = { //
+				{ "HEAD", "TAIL" }, //
+				{ "HEAD", "" }, //
+				{ "", "TAIL" }, //
+				{ "", "" } //
+		};
+
+		for (int i = 0; i < 100; i++) {
+			Tsid tsid = new Tsid(ThreadLocalRandom.current().nextLong());
+			for (String placeholder : placeholders) {
+				for (int j = 0; j < string.length; j++) {
+
+					String format = string[j][0] + placeholder + string[j][1];
+					String formatted = tsid.format(format);
+					TsidFormat compiled = TsidFormat.compile(format);
+
+					assertEquals(format, compiled.toString());
+					assertEquals(formatted.length(), compiled.length());
+					assertEquals(formatted, compiled.format(tsid));
+					assertEquals(tsid, compiled.parse(formatted));
+
+					// char array
+					char[] chars = new char[compiled.length() + 2];
+					assertEquals(chars.length - 1, compiled.format(tsid, chars, 1));
+					assertEquals(formatted, new String(chars, 1, compiled.length()));
+
+					// appendable
+					StringWriter writer = new StringWriter();
+					compiled.format(tsid, (Appendable) writer);
+					assertEquals(formatted, writer.toString());
+					assertEquals("<" + formatted, compiled.format(tsid, new StringBuilder("<")).toString());
+
+					// slice
+					String line = "<<" + formatted + ">>";
+					assertEquals(tsid, compiled.parse(line, 2, line.length() - 2));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCompileIllegalArgumentException() {
+
+		String[] formats = { null, "", "%", "%a", "INVALID", "INVALID%" };
+		for (String format : formats) {
+			try {
+				TsidFormat.compile(format);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+
+		TsidFormat format = TsidFormat.compile("HEAD%STAIL");
+		String[] strings = { null, "", "HEADTAIL", "HEAD" + Tsid.fast() + "TOES", "BANG" + Tsid.fast() + "TAIL",
+				"HEAD" + Tsid.fast() + "TAILS", "HEAD" + "G000000000000" + "TAIL" };
+		for (String string : strings) {
+			try {
+				format.parse(string);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
 	@Test
 	public void testIllegalArgumentException() {
 
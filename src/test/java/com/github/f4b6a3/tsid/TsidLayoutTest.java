@@ -0,0 +1,217 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidLayoutTest {
+
+	private static final int LOOP_MAX = 1_000;
+
+	@Test
+	public void testDefaultLayout() {
+		TsidLayout layout = TsidLayout.builder().build();
+		assertEquals(42, layout.getTimeBits());
+		assertEquals(10, layout.getNodeBits());
+		assertEquals(12, layout.getCounterBits());
+		assertEquals(Duration.ofMillis(1), layout.getTimeUnit());
+		assertEquals(Instant.ofEpochMilli(Tsid.TSID_EPOCH), layout.getCustomEpoch());
+
+		for (int i = 0; i < LOOP_MAX; i++) {
+			long tsid = ThreadLocalRandom.current().nextLong();
+			assertEquals(Tsid.from(tsid).getUnixMilliseconds(), layout.getUnixMilliseconds(tsid));
+			assertEquals(Tsid.from(tsid).getInstant(), layout.getInstant(tsid));
+			assertEquals(TsidLongs.node(tsid, 10), layout.getNode(tsid));
+			assertEquals(TsidLongs.counter(tsid, 10), layout.getCounter(tsid));
+		}
+	}
+
+	@Test
+	public void testBuilderBits() {
+		assertEquals(44, TsidLayout.builder().withNodeBits(4).withCounterBits(16).build().getTimeBits());
+		assertEquals(42, TsidLayout.builder().withNodeBits(20).build().getTimeBits());
+		assertEquals(8, TsidLayout.builder().withTimeBits(48).withNodeBits(8).build().getCounterBits());
+		assertEquals(2, TsidLayout.builder().withTimeBits(40).withCounterBits(22).build().getNodeBits());
+
+		Integer[][] invalid = { //
+				{ 42, 10, 10 }, // sum is not 64
+				{ null, 32, null }, // node bits too big
+				{ null, -1, null }, // negative node bits
+				{ null, 10, 0 }, // no counter bits
+				{ 0, 32, 32 }, // no time bits
+		};
+		for (Integer[] bits : invalid) {
+			try {
+				TsidLayout.builder().withTimeBits(bits[0]).withNodeBits(bits[1]).withCounterBits(bits[2]).build();
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void testBuilderTimeUnit() {
+		Duration[] valid = { Duration.ofNanos(1), Duration.ofNanos(1000), Duration.ofNanos(62_500),
+				Duration.ofMillis(1), Duration.ofMillis(10), Duration.ofSeconds(1) };
+		for (Duration unit : valid) {
+			assertEquals(unit, TsidLayout.builder().withTimeUnit(unit).build().getTimeUnit());
+		}
+		Duration[] invalid = { Duration.ZERO, Duration.ofNanos(-1), Duration.ofNanos(3), Duration.ofNanos(1_500_000) };
+		for (Duration unit : invalid) {
+			try {
+				TsidLayout.builder().withTimeUnit(unit).build();
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void testGetTsid() {
+		TsidLayout layout = TsidLayout.builder().withTimeBits(40).withNodeBits(8).build();
+		for (int i = 0; i < LOOP_MAX; i++) {
+			long time = ThreadLocalRandom.current().nextLong(1L << 40);
+			int node = ThreadLocalRandom.current().nextInt(1 << 8);
+			int counter = ThreadLocalRandom.current().nextInt(1 << 16);
+			long tsid = layout.getTsid(time, node, counter);
+			assertEquals(time, layout.getTime(tsid));
+			assertEquals(node, layout.getNode(tsid));
+			assertEquals(counter, layout.getCounter(tsid));
+		}
+	}
+
+	@Test
+	public void testTimeUnits() {
+		Instant epoch = Instant.parse("2015-10-23T00:00:00Z");
+
+		// 1 microsecond
+		TsidLayout micros = TsidLayout.builder().withTimeBits(52).withNodeBits(4).withCustomEpoch(epoch)
+				.withTimeUnit(Duration.ofNanos(1000)).build();
+		long tsid = micros.getTsid(1_234_567L, 0, 0);
+		assertEquals(epoch.plusNanos(1_234_567_000L), micros.getInstant(tsid));
+		assertEquals(epoch.toEpochMilli() + 1234, micros.getUnixMilliseconds(tsid));
+
+		// 10 milliseconds
+		TsidLayout centis = TsidLayout.builder().withTimeBits(39).withNodeBits(8).withCustomEpoch(epoch)
+				.withTimeUnit(Duration.ofMillis(10)).build();
+		tsid = centis.getTsid(1_234_567L, 0, 0);
+		assertEquals(epoch.plusMillis(12_345_670L), centis.getInstant(tsid));
+		assertEquals(epoch.toEpochMilli() + 12_345_670L, centis.getUnixMilliseconds(tsid));
+	}
+
+	@Test
+	public void testBulk() {
+		TsidLayout layout = TsidLayout.builder().withNodeBits(6).withTimeUnit(Duration.ofNanos(62_500)).build();
+		long[] tsids = new long[LOOP_MAX];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = ThreadLocalRandom.current().nextLong() >>> 1;
+		}
+		long[] millis = new long[tsids.length];
+		int[] nodes = new int[tsids.length];
+		int[] counters = new int[tsids.length];
+		layout.getUnixMilliseconds(tsids, millis);
+		layout.getNodes(tsids, nodes);
+		layout.getCounters(tsids, counters);
+		for (int i = 0; i < tsids.length; i++) {
+			assertEquals(layout.getUnixMilliseconds(tsids[i]), millis[i]);
+			assertEquals(layout.getNode(tsids[i]), nodes[i]);
+			assertEquals(layout.getCounter(tsids[i]), counters[i]);
+		}
+	}
+
+	@Test
+	public void testFactoryWithLayout() {
+		final long now = System.currentTimeMillis();
+		TsidLayout layout = TsidLayout.builder().withNodeBits(4).withCounterBits(16).build();
+		TsidFactory factory = TsidFactory.builder().withLayout(layout).withNode(3).withTimeFunction(() -> now)
+				.build();
+
+		long previous = 0;
+		for (int i = 0; i < LOOP_MAX; i++) {
+			long tsid = factory.create().toLong();
+			assertEquals(3, layout.getNode(tsid));
+			assertEquals(now, layout.getUnixMilliseconds(tsid));
+			assertTrue(tsid > previous);
+			previous = tsid;
+		}
+
+		try {
+			TsidFactory.builder().withLayout(layout).withNode(16).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testFactoryWithWideCounter() {
+		TsidLayout layout = TsidLayout.builder().withNodeBits(2).withCounterBits(30).build();
+		TsidFactory factory = TsidFactory.builder().withLayout(layout).withNode(1).build();
+		for (int i = 0; i < LOOP_MAX; i++) {
+			long tsid = factory.create().toLong();
+			assertEquals(1, layout.getNode(tsid));
+		}
+	}
+
+	@Test
+	public void testTimeRange() {
+		TsidLayout millis = TsidLayout.builder().build();
+		assertEquals(Duration.ofMillis(1L << 42), millis.getTimeRange());
+		assertEquals(Instant.ofEpochMilli(Tsid.TSID_EPOCH + (1L << 42) - 1), millis.getMaxInstant());
+		assertEquals(1000.0 * (1 << 12), millis.getMaxRate(), 0.0);
+
+		TsidLayout micros = TsidLayout.builder().withTimeUnit(Duration.ofNanos(1000)).withTimeBits(52)
+				.withNodeBits(6).build();
+		assertEquals(Duration.ofNanos(1000L << 52), micros.getTimeRange());
+		assertEquals(Instant.ofEpochMilli(Tsid.TSID_EPOCH).plusNanos(1000L * ((1L << 52) - 1)), micros.getMaxInstant());
+		assertEquals(1000000.0 * (1 << 6), micros.getMaxRate(), 0.0);
+	}
+
+	@Test
+	public void testFactoryWithMicroseconds() {
+		TsidLayout layout = TsidLayout.builder().withTimeUnit(Duration.ofNanos(1000)).withTimeBits(52)
+				.withNodeBits(6).build();
+
+		Instant instant = Instant.parse("2030-01-02T03:04:05.123456Z");
+		Clock clock = Clock.fixed(instant, ZoneOffset.UTC);
+		TsidFactory factory = TsidFactory.builder().withLayout(layout).withNode(1).withClock(clock).build();
+		long tsid = factory.create().toLong();
+		assertEquals(instant, layout.getInstant(tsid));
+		assertEquals(instant.toEpochMilli(), layout.getUnixMilliseconds(tsid));
+		assertEquals(1, layout.getNode(tsid));
+
+		// the system clock by default
+		factory = TsidFactory.builder().withLayout(layout).build();
+		long prev = 0;
+		for (int i = 0; i < LOOP_MAX; i++) {
+			long before = System.currentTimeMillis();
+			tsid = factory.create().toLong();
+			long millis = layout.getUnixMilliseconds(tsid);
+			assertTrue(millis >= before - 1 && millis <= System.currentTimeMillis() + 1000);
+			assertTrue(tsid > prev);
+			prev = tsid;
+		}
+
+		// a time function in milliseconds
+		factory = TsidFactory.builder().withLayout(layout).withTimeFunction(() -> 1893553445123L).build();
+		assertEquals(Instant.ofEpochMilli(1893553445123L), layout.getInstant(factory.create().toLong()));
+	}
+
+	@Test
+	public void testEquals() {
+		TsidLayout layout1 = TsidLayout.builder().withNodeBits(4).build();
+		TsidLayout layout2 = TsidLayout.builder().withNodeBits(4).withCounterBits(18).build();
+		TsidLayout layout3 = TsidLayout.builder().withNodeBits(5).build();
+		assertEquals(layout1, layout2);
+		assertEquals(layout1.hashCode(), layout2.hashCode());
+		assertNotEquals(layout1, layout3);
+	}
+}
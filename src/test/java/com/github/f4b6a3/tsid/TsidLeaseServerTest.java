@@ -0,0 +1,173 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TsidLeaseServerTest {
+
+	private static final int LOOP_MAX = 10_000;
+
+	private static SocketAddress loopback() {
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+	}
+
+	@Test
+	public void testClient() throws IOException {
+		TsidFactory factory = TsidFactory.builder().withNode(3).build();
+		try (TsidLeaseServer server = TsidLeaseServer.start(factory, loopback());
+				TsidLeaseClient client = TsidLeaseClient.connect(server.getAddress(), 100)) {
+			long prev = 0;
+			for (int i = 0; i < LOOP_MAX; i++) {
+				long tsid = client.createLong();
+				assertTrue(tsid > prev);
+				assertEquals(3, TsidLongs.node(tsid, 10));
+				prev = tsid;
+			}
+		}
+	}
+
+	@Test
+	public void testManyClients() throws Exception {
+		TsidFactory factory = TsidFactory.builder().build();
+		try (TsidLeaseServer server = TsidLeaseServer.start(factory, loopback())) {
+			final Set<Long> set = new HashSet<>();
+			final Thread[] threads = new Thread[8];
+			for (int i = 0; i < threads.length; i++) {
+				final int blockSize = 1 << i;
+				threads[i] = new Thread(() -> {
+					try (TsidLeaseClient client = TsidLeaseClient.connect(server.getAddress(), blockSize)) {
+						for (int j = 0; j < LOOP_MAX; j++) {
+							long tsid = client.createLong();
+							synchronized (set) {
+								set.add(tsid);
+							}
+						}
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(threads.length * LOOP_MAX, set.size());
+		}
+	}
+
+	@Test
+	public void testPipelinedRequests() throws IOException {
+		TsidFactory factory = TsidFactory.builder().build();
+		try (TsidLeaseServer server = TsidLeaseServer.start(factory, loopback());
+				SocketChannel channel = SocketChannel.open(server.getAddress())) {
+
+			// three requests in a single write
+			ByteBuffer requests = ByteBuffer.allocate(12).putInt(1).putInt(2).putInt(3);
+			requests.flip();
+			channel.write(requests);
+
+			ByteBuffer responses = ByteBuffer.allocate(3 * 4 + 6 * 8);
+			while (responses.hasRemaining()) {
+				assertTrue(channel.read(responses) > 0);
+			}
+			responses.flip();
+			long prev = 0;
+			for (int count = 1; count <= 3; count++) {
+				assertEquals(count, responses.getInt());
+				for (int i = 0; i < count; i++) {
+					long tsid = responses.getLong();
+					assertTrue(tsid > prev);
+					prev = tsid;
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 3_000)
+	public void testClientNotReading() throws IOException {
+		TsidFactory factory = TsidFactory.builder().build();
+		try (TsidLeaseServer server = TsidLeaseServer.start(factory, loopback());
+				SocketChannel channel = SocketChannel.open(server.getAddress())) {
+
+			// 67M TSIDs requested at once, and not read
+			ByteBuffer requests = ByteBuffer.allocate(4096);
+			while (requests.hasRemaining()) {
+				requests.putInt(TsidLeaseServer.MAX_BLOCK_SIZE);
+			}
+			requests.flip();
+			while (requests.hasRemaining()) {
+				channel.write(requests);
+			}
+
+			// the other clients are served without waiting for those TSIDs
+			try (TsidLeaseClient client = TsidLeaseClient.connect(server.getAddress(), 16)) {
+				for (int i = 0; i < LOOP_MAX; i++) {
+					assertNotNull(client.create());
+				}
+			}
+
+			// and so is the slow client
+			ByteBuffer response = ByteBuffer.allocate(4 + TsidLeaseServer.MAX_BLOCK_SIZE * 8);
+			while (response.hasRemaining()) {
+				assertTrue(channel.read(response) > 0);
+			}
+			assertEquals(TsidLeaseServer.MAX_BLOCK_SIZE, response.getInt(0));
+		}
+	}
+
+	@Test
+	public void testInvalidBlockSize() throws IOException {
+		TsidFactory factory = TsidFactory.builder().build();
+		try (TsidLeaseServer server = TsidLeaseServer.start(factory, loopback())) {
+			try {
+				TsidLeaseClient.connect(server.getAddress(), TsidLeaseServer.MAX_BLOCK_SIZE + 1);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+
+			// the server drops clients that send invalid requests
+			try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+				ByteBuffer request = ByteBuffer.allocate(4).putInt(0);
+				request.flip();
+				channel.write(request);
+				assertEquals(-1, channel.read(ByteBuffer.allocate(4)));
+			}
+		}
+	}
+
+	@Test
+	public void testUnixDomainSocket() throws Exception {
+		final Class<?> type;
+		try {
+			type = Class.forName("java.net.UnixDomainSocketAddress");
+		} catch (ClassNotFoundException e) {
+			return; // JDK 16+
+		}
+		Path path = Files.createTempDirectory("tsid").resolve("tsid.sock");
+		SocketAddress address = (SocketAddress) type.getMethod("of", Path.class).invoke(null, path);
+		try (TsidLeaseServer server = TsidLeaseServer.start(TsidFactory.builder().build(), address);
+				TsidLeaseClient client = TsidLeaseClient.connect(server.getAddress(), 10)) {
+			long prev = 0;
+			for (int i = 0; i < LOOP_MAX; i++) {
+				long tsid = client.createLong();
+				assertTrue(tsid > prev);
+				prev = tsid;
+			}
+		}
+		assertFalse(Files.exists(path));
+		Files.delete(path.getParent());
+	}
+}
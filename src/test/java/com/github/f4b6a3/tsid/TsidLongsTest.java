@@ -0,0 +1,160 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidLongsTest {
+
+	private static final int LOOP_MAX = 1_000;
+
+	@Test
+	public void testToStringAndParse() {
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long number = ThreadLocalRandom.current().nextLong();
+			final String string = TsidLongs.toString(number);
+			assertEquals(Tsid.from(number).toString(), string);
+			assertEquals(Tsid.from(number).toLowerCase(), TsidLongs.toLowerCase(number));
+			assertEquals(number, TsidLongs.parse(string));
+			assertEquals(number, TsidLongs.parse(new StringBuilder(string.toLowerCase())));
+			assertTrue(TsidLongs.isValid(new StringBuilder(string)));
+		}
+	}
+
+	@Test
+	public void testParseInvalid() {
+		String[] strings = { null, "", "0123456789AB", "0123456789ABCD", "G000000000000", "0123456789AB#",
+				"0123456789AB\u00e9", "0123456789AB\u1234" };
+		for (String string : strings) {
+			assertFalse(TsidLongs.isValid(string));
+			try {
+				TsidLongs.parse(string);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+		assertEquals(0L, TsidLongs.parse("0000000000000"));
+		assertEquals(1L, TsidLongs.parse("000000000000I")); // Crockford's I = 1
+		assertEquals(-1L, TsidLongs.parse("FZZZZZZZZZZZZ"));
+	}
+
+	@Test
+	public void testBytes() {
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long number = ThreadLocalRandom.current().nextLong();
+			final byte[] bytes = ByteBuffer.allocate(8).putLong(number).array();
+			assertArrayEquals(bytes, TsidLongs.toBytes(number));
+			assertEquals(number, TsidLongs.fromBytes(bytes));
+		}
+	}
+
+	@Test
+	public void testEncodeAndFormat() {
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long number = ThreadLocalRandom.current().nextLong();
+			final Tsid tsid = Tsid.from(number);
+			for (int base = 2; base <= 62; base++) {
+				final String string = TsidLongs.encode(number, base);
+				assertEquals(tsid.encode(base), string);
+				assertEquals(number, TsidLongs.decode(new StringBuilder(string), base));
+			}
+			assertEquals(tsid.format("K%S"), TsidLongs.format(number, "K%S"));
+			assertEquals(number, TsidLongs.unformat(new StringBuilder(tsid.format("DOC-%x.PDF")), "DOC-%x.PDF"));
+		}
+	}
+
+	@Test
+	public void testUnixMillis() {
+		final long customEpoch = Instant.parse("2015-10-23T00:00:00Z").toEpochMilli();
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long time = ThreadLocalRandom.current().nextLong(1L << 42);
+			final long number = (time << 22) | ThreadLocalRandom.current().nextInt(1 << 22);
+			assertEquals(time, TsidLongs.time(number));
+			assertEquals(time + Tsid.TSID_EPOCH, TsidLongs.unixMillis(number));
+			assertEquals(time + customEpoch, TsidLongs.unixMillis(number, customEpoch));
+			assertEquals(Tsid.from(number).getUnixMilliseconds(customEpoch), TsidLongs.unixMillis(number, customEpoch));
+		}
+	}
+
+	@Test
+	public void testNodeAndCounter() {
+		for (int nodeBits = 0; nodeBits <= 20; nodeBits++) {
+			final int node = ThreadLocalRandom.current().nextInt(1 << nodeBits);
+			TsidFactory factory = TsidFactory.builder().withNodeBits(nodeBits).withNode(node)
+					.withRandomFunction(() -> 0).build();
+			long previous = factory.create().toLong();
+			for (int i = 0; i < 10; i++) {
+				final long number = factory.create().toLong();
+				assertEquals(node, TsidLongs.node(number, nodeBits));
+				if (TsidLongs.time(number) == TsidLongs.time(previous)) {
+					assertEquals(TsidLongs.counter(previous, nodeBits) + 1, TsidLongs.counter(number, nodeBits));
+				}
+				assertEquals(TsidLongs.random(number), (TsidLongs.node(number, nodeBits) << (22 - nodeBits))
+						| TsidLongs.counter(number, nodeBits));
+				previous = number;
+			}
+		}
+
+		try {
+			TsidLongs.node(0L, 21);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidLongs.counter(0L, -1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testBulk() {
+		final long customEpoch = Instant.parse("2015-10-23T00:00:00Z").toEpochMilli();
+		final long[] tsids = new long[LOOP_MAX];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = ThreadLocalRandom.current().nextLong();
+		}
+
+		final long[] millis = new long[tsids.length];
+		TsidLongs.unixMillis(tsids, customEpoch, millis);
+		for (int i = 0; i < tsids.length; i++) {
+			assertEquals(TsidLongs.unixMillis(tsids[i], customEpoch), millis[i]);
+		}
+
+		for (int nodeBits = 0; nodeBits <= 20; nodeBits++) {
+			final int[] nodes = new int[tsids.length];
+			final int[] counters = new int[tsids.length + 1];
+			TsidLongs.nodes(tsids, nodeBits, nodes);
+			TsidLongs.counters(tsids, nodeBits, counters);
+			for (int i = 0; i < tsids.length; i++) {
+				assertEquals(TsidLongs.node(tsids[i], nodeBits), nodes[i]);
+				assertEquals(TsidLongs.counter(tsids[i], nodeBits), counters[i]);
+			}
+		}
+
+		try {
+			TsidLongs.nodes(tsids, 10, new int[tsids.length - 1]);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testCompareUnsignedAndHashCode() {
+		for (int i = 0; i < LOOP_MAX; i++) {
+			final long a = ThreadLocalRandom.current().nextLong();
+			final long b = ThreadLocalRandom.current().nextLong();
+			assertEquals(Integer.signum(Long.compareUnsigned(a, b)), TsidLongs.compareUnsigned(a, b));
+			assertEquals(0, TsidLongs.compareUnsigned(a, a));
+			assertEquals(Long.hashCode(a), TsidLongs.hashCode(a));
+		}
+	}
+}
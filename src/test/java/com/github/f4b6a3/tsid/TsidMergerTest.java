@@ -0,0 +1,136 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidMergerTest {
+
+	@Test
+	public void testMerge() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		for (int k : new int[] { 1, 2, 3, 7, 16, 100, 257 }) {
+			final long[][] arrays = arrays(random, k);
+			final long[] expected = expected(arrays);
+
+			// pull iteration
+			final TsidMerger merger = TsidMerger.of(arrays);
+			for (int i = 0; i < expected.length; i++) {
+				assertTrue(merger.hasNext());
+				assertEquals(expected[i], merger.nextLong());
+			}
+			assertFalse(merger.hasNext());
+			try {
+				merger.nextLong();
+				fail("Should throw an exception");
+			} catch (NoSuchElementException e) {
+				// success
+			}
+
+			// batches
+			final TsidMerger batches = TsidMerger.of(arrays);
+			final long[] actual = new long[expected.length + 10];
+			int count = 0;
+			int n;
+			while ((n = batches.nextLongs(actual, count, Math.min(100, actual.length - count))) > 0) {
+				count += n;
+			}
+			assertEquals(expected.length, count);
+			assertArrayEquals(expected, Arrays.copyOf(actual, count));
+		}
+	}
+
+	@Test
+	public void testHighestBit() {
+		final long[] a = { 1L, Long.MAX_VALUE, Long.MIN_VALUE, -1L };
+		final long[] b = { 0L, 2L, Long.MIN_VALUE + 1, -2L };
+		final long[] expected = { 0L, 1L, 2L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, -2L, -1L };
+		final TsidMerger merger = TsidMerger.of(a, b);
+		for (long tsid : expected) {
+			assertEquals(tsid, merger.nextLong());
+		}
+		assertFalse(merger.hasNext());
+	}
+
+	@Test
+	public void testWatermark() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final long[][] arrays = arrays(random, 10);
+		final TsidMerger merger = TsidMerger.of(arrays);
+		long watermark = merger.getWatermark();
+		while (merger.hasNext()) {
+			assertEquals(watermark, merger.nextLong());
+			final long next = merger.getWatermark();
+			assertTrue(Long.compareUnsigned(watermark, next) <= 0);
+			watermark = next;
+		}
+		assertEquals(-1L, merger.getWatermark());
+	}
+
+	@Test
+	public void testEmptySources() {
+		assertFalse(new TsidMerger().hasNext());
+		assertEquals(-1L, new TsidMerger().getWatermark());
+		assertFalse(TsidMerger.of(new long[0], new long[0]).hasNext());
+
+		final TsidMerger merger = TsidMerger.of(new long[0], new long[] { 5, 6 }, new long[0], new long[] { 4 });
+		assertEquals(4, merger.nextLong());
+		assertEquals(5, merger.nextLong());
+		assertEquals(6, merger.nextLong());
+		assertFalse(merger.hasNext());
+	}
+
+	@Test
+	public void testListOfIterators() {
+		final List<PrimitiveIterator.OfLong> sources = new ArrayList<>();
+		sources.add(Arrays.stream(new long[] { 1, 3, 5 }).iterator());
+		sources.add(Arrays.stream(new long[] { 2, 3, 4 }).iterator());
+		final TsidMerger merger = new TsidMerger(sources);
+		final long[] actual = new long[6];
+		assertEquals(6, merger.nextLongs(actual, 0, 6));
+		assertArrayEquals(new long[] { 1, 2, 3, 3, 4, 5 }, actual);
+	}
+
+	@Test
+	public void testUnsortedSource() {
+		final TsidMerger merger = TsidMerger.of(new long[] { 1, 3, 2 }, new long[] { 10 });
+		try {
+			while (merger.hasNext()) {
+				merger.nextLong();
+			}
+			fail("Should throw an exception");
+		} catch (IllegalStateException e) {
+			// success
+		}
+	}
+
+	private static long[][] arrays(final SplittableRandom random, final int k) {
+		// each node creates TSIDs in turn, some with repeated TSIDs
+		final long[][] arrays = new long[k][];
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < k; i++) {
+			final long[] now = { start };
+			final TsidFactory factory = TsidFactory.builder().withNode(i).withTimeFunction(() -> now[0]).build();
+			arrays[i] = new long[random.nextInt(200)];
+			for (int j = 0; j < arrays[i].length; j++) {
+				now[0] += random.nextInt(3);
+				arrays[i][j] = j > 0 && random.nextInt(10) == 0 ? arrays[i][j - 1] : factory.create().toLong();
+			}
+		}
+		return arrays;
+	}
+
+	private static long[] expected(final long[][] arrays) {
+		final long[] all = Arrays.stream(arrays).flatMapToLong(Arrays::stream).toArray();
+		TsidSort.sort(all);
+		return all;
+	}
+}
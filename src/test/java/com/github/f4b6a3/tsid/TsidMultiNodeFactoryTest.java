@@ -0,0 +1,104 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidMultiNodeFactoryTest {
+
+	private static final int LOOP_MAX = 1_000;
+
+	@Test
+	public void testCreateForNode() {
+		TsidMultiNodeFactory factory = TsidMultiNodeFactory.builder().withNodeBits(12).build();
+		TsidLayout layout = factory.getLayout();
+		long[] last = new long[1 << 12];
+		long before = System.currentTimeMillis();
+		for (int i = 0; i < LOOP_MAX * 10; i++) {
+			final int node = ThreadLocalRandom.current().nextInt(1 << 12);
+			final long tsid = factory.createLongForNode(node);
+			assertEquals(node, layout.getNode(tsid));
+			assertTrue(layout.getUnixMilliseconds(tsid) >= before);
+			assertTrue(tsid > last[node]);
+			last[node] = tsid;
+		}
+		assertEquals(Tsid.class, factory.createForNode(0).getClass());
+	}
+
+	@Test
+	public void testCounterOverflow() {
+		final long now = System.currentTimeMillis();
+		TsidLayout layout = TsidLayout.builder().withNodeBits(20).build(); // 2 counter bits
+		TsidMultiNodeFactory factory = TsidMultiNodeFactory.builder().withLayout(layout)
+				.withTimeFunction(() -> now).withRandomFunction(length -> new byte[length]).build();
+
+		for (int i = 0; i < 4; i++) {
+			final long tsid = factory.createLongForNode(7);
+			assertEquals(now, layout.getUnixMilliseconds(tsid));
+			assertEquals(i, layout.getCounter(tsid));
+		}
+		// borrow the next millisecond
+		final long tsid = factory.createLongForNode(7);
+		assertEquals(now + 1, layout.getUnixMilliseconds(tsid));
+		assertEquals(0, layout.getCounter(tsid));
+		assertEquals(7, layout.getNode(tsid));
+
+		// other nodes are not affected
+		assertEquals(now, layout.getUnixMilliseconds(factory.createLongForNode(8)));
+	}
+
+	@Test
+	public void testNodeOutOfRange() {
+		TsidMultiNodeFactory factory = TsidMultiNodeFactory.builder().withNodeBits(8).build();
+		for (int node : new int[] { -1, 256 }) {
+			try {
+				factory.createForNode(node);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+		try {
+			TsidMultiNodeFactory.builder().withLayout(TsidLayout.builder().withNodeBits(21).build()).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testParallel() throws InterruptedException {
+		final TsidMultiNodeFactory factory = TsidMultiNodeFactory.builder().withNodeBits(4).build();
+		final Set<Long> set = new HashSet<>();
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < LOOP_MAX * 10; j++) {
+					long tsid = factory.createLongForNode(j & 0xf);
+					synchronized (set) {
+						set.add(tsid);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(threads.length * LOOP_MAX * 10, set.size());
+	}
+
+	@Test
+	public void testEntropyPool() {
+		final int[] calls = new int[1];
+		TsidMultiNodeFactory.EntropyPool pool = new TsidMultiNodeFactory.EntropyPool(
+				new TsidFactory.IntRandom(() -> ++calls[0]));
+		for (int i = 1; i <= 5000; i++) {
+			assertEquals(i, pool.nextInt());
+		}
+	}
+}
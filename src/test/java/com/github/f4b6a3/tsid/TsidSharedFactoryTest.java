@@ -0,0 +1,220 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TsidSharedFactoryTest {
+
+	private static final int LOOP_MAX = 10_000;
+
+	private Path file;
+
+	@Before
+	public void before() throws IOException {
+		file = Files.createTempFile("tsid", ".state");
+	}
+
+	@After
+	public void after() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testCreate() throws IOException {
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withNode(7).build()) {
+			TsidLayout layout = factory.getLayout();
+			long prev = 0;
+			for (int i = 0; i < LOOP_MAX; i++) {
+				long tsid = factory.createLong();
+				assertEquals(7, layout.getNode(tsid));
+				assertTrue(tsid > prev);
+				prev = tsid;
+			}
+		}
+
+		// the state survives the factory
+		final long last;
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withNode(7)
+				.withTimeFunction(() -> 0L).build()) {
+			last = factory.create().toLong();
+		}
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withNode(7)
+				.withTimeFunction(() -> 0L).build()) {
+			assertTrue(factory.createLong() > last);
+		}
+	}
+
+	@Test
+	public void testConfigMismatch() throws IOException {
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withNode(1).build()) {
+			factory.create();
+		}
+		try {
+			TsidSharedFactory.builder().withFile(file).withNode(2).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidSharedFactory.builder().withNode(1).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testLayoutMismatch() throws IOException {
+		final TsidLayout layout = TsidLayout.builder().withNodeBits(8).withCounterBits(12).build();
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withLayout(layout).withNode(1)
+				.build()) {
+			factory.create();
+		}
+
+		// the same settings
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file)
+				.withLayout(TsidLayout.builder().withNodeBits(8).withCounterBits(12).build()).withNode(1).build()) {
+			factory.create();
+		}
+
+		// each field of the layout
+		final TsidLayout[] others = { //
+				TsidLayout.builder().withNodeBits(8).withCounterBits(11).build(), //
+				TsidLayout.builder().withNodeBits(9).withCounterBits(12).build(), //
+				TsidLayout.builder().withNodeBits(8).withCounterBits(12).withTimeUnit(Duration.ofMillis(2)).build(), //
+				TsidLayout.builder().withNodeBits(8).withCounterBits(12)
+						.withCustomEpoch(layout.getCustomEpoch().plusNanos(1)).build() };
+		for (TsidLayout other : others) {
+			try {
+				TsidSharedFactory.builder().withFile(file).withLayout(other).withNode(1).build();
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withNode(1).build()) {
+			final Set<Long> set = new HashSet<>();
+			final Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(() -> {
+					for (int j = 0; j < LOOP_MAX; j++) {
+						long tsid = factory.createLong();
+						synchronized (set) {
+							set.add(tsid);
+						}
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(threads.length * LOOP_MAX, set.size());
+		}
+	}
+
+	@Test
+	public void testRandomFunctionNotShared() throws Exception {
+		// a random function that is not thread-safe
+		final AtomicBoolean inside = new AtomicBoolean();
+		final AtomicBoolean overlap = new AtomicBoolean();
+		final AtomicLong time = new AtomicLong(System.currentTimeMillis());
+		final IntSupplier randomFunction = () -> {
+			if (!inside.compareAndSet(false, true)) {
+				overlap.set(true);
+			}
+			Thread.yield();
+			inside.set(false);
+			return 0;
+		};
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(file).withNode(1)
+				.withTimeFunction(time::incrementAndGet).withRandomFunction(randomFunction).build()) {
+			final Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(() -> {
+					for (int j = 0; j < LOOP_MAX; j++) {
+						factory.createLong();
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+		assertFalse(overlap.get());
+	}
+
+	@Test
+	public void testMultipleProcesses() throws Exception {
+
+		final int processes = 4;
+		final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		final String classpath = System.getProperty("java.class.path");
+
+		final List<Process> list = new ArrayList<>();
+		for (int i = 0; i < processes; i++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath, TsidSharedFactoryTest.class.getName(),
+					file.toString(), String.valueOf(LOOP_MAX));
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			list.add(builder.start());
+		}
+
+		final Set<Long> set = new HashSet<>();
+		for (Process process : list) {
+			try (DataInputStream input = new DataInputStream(process.getInputStream())) {
+				long prev = 0;
+				for (int i = 0; i < LOOP_MAX; i++) {
+					long tsid = input.readLong();
+					assertTrue(tsid > prev); // monotonic in each process
+					assertTrue(set.add(tsid)); // unique in all processes
+					prev = tsid;
+				}
+			}
+			assertEquals(0, process.waitFor());
+		}
+		assertEquals(processes * LOOP_MAX, set.size());
+	}
+
+	/**
+	 * Writes TSIDs of a shared factory to the standard output.
+	 * 
+	 * @param args the file and the number of TSIDs
+	 * @throws IOException if an error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		final OutputStream stdout = System.out;
+		try (TsidSharedFactory factory = TsidSharedFactory.builder().withFile(new File(args[0]).toPath()).withNode(1)
+				.build(); DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stdout))) {
+			final int count = Integer.parseInt(args[1]);
+			for (int i = 0; i < count; i++) {
+				output.writeLong(factory.createLong());
+			}
+		}
+	}
+}
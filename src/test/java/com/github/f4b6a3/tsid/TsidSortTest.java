@@ -0,0 +1,185 @@
+package com.github.f4b6a3.tsid;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidSortTest {
+
+	private static final int[] SIZES = { 0, 1, 2, 10, 2047, 2048, 10_000, 300_000 };
+
+	@Test
+	public void testRandom() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		for (int size : SIZES) {
+			final long[] tsids = new long[size];
+			for (int i = 0; i < size; i++) {
+				tsids[i] = random.nextLong(); // half with the highest bit set
+			}
+			check(tsids);
+		}
+	}
+
+	@Test
+	public void testFactoryTsids() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		for (int size : SIZES) {
+			final long[] sorted = new long[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = factory.create().toLong();
+			}
+			check(sorted);
+
+			// reversed
+			final long[] reversed = new long[size];
+			for (int i = 0; i < size; i++) {
+				reversed[i] = sorted[size - 1 - i];
+			}
+			check(reversed);
+
+			// a few sorted batches
+			final long[] batches = new long[size];
+			final int batch = Math.max(1, size / 5);
+			for (int i = 0; i < size; i++) {
+				batches[i] = sorted[(i + batch * 2) % size];
+			}
+			check(batches);
+
+			// nearly sorted, with some neighbors swapped
+			final long[] nearly = sorted.clone();
+			for (int i = 1; i < size; i += 1 + random.nextInt(10)) {
+				final long swap = nearly[i];
+				nearly[i] = nearly[i - 1];
+				nearly[i - 1] = swap;
+			}
+			check(nearly);
+
+			// a few late TSIDs, far from their places
+			final long[] late = sorted.clone();
+			for (int i = 1; i < size; i += 1 + random.nextInt(1000)) {
+				final int j = Math.max(0, i - 1 - random.nextInt(20_000));
+				final long swap = late[j];
+				System.arraycopy(late, j + 1, late, j, i - j);
+				late[i] = swap;
+			}
+			check(late);
+
+			// shuffled
+			final long[] shuffled = sorted.clone();
+			for (int i = size - 1; i > 0; i--) {
+				final int j = random.nextInt(i + 1);
+				final long swap = shuffled[i];
+				shuffled[i] = shuffled[j];
+				shuffled[j] = swap;
+			}
+			check(shuffled);
+		}
+	}
+
+	@Test
+	public void testDuplicates() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		for (int size : SIZES) {
+			final long[] same = new long[size];
+			Arrays.fill(same, Long.MIN_VALUE | 123);
+			check(same);
+
+			final long[] few = new long[size];
+			for (int i = 0; i < size; i++) {
+				few[i] = random.nextInt(3) * Long.MIN_VALUE / 2;
+			}
+			check(few);
+		}
+	}
+
+	@Test
+	public void testRange() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final long[] tsids = new long[300_000];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = random.nextLong();
+		}
+
+		final long[] expected = tsids.clone();
+		reference(expected, 1000, 299_000);
+
+		final long[] actual = tsids.clone();
+		TsidSort.sort(actual, 1000, 299_000);
+		assertArrayEquals(expected, actual);
+
+		final long[] parallel = tsids.clone();
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TsidSort.parallelSort(parallel, 1000, 299_000, pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertArrayEquals(expected, parallel);
+	}
+
+	@Test
+	public void testInvalidRange() {
+		final long[] tsids = new long[10];
+		try {
+			TsidSort.sort(tsids, 5, 4);
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidSort.sort(tsids, -1, 4);
+			fail("Should throw an exception");
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			TsidSort.parallelSort(tsids, 0, 11);
+			fail("Should throw an exception");
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	private static void check(final long[] tsids) {
+		final long[] expected = tsids.clone();
+		reference(expected, 0, expected.length);
+
+		final long[] actual = tsids.clone();
+		TsidSort.sort(actual);
+		assertArrayEquals(expected, actual);
+
+		final long[] parallel = tsids.clone();
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TsidSort.parallelSort(parallel, 0, parallel.length, pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertArrayEquals(expected, parallel);
+
+		final long[] common = tsids.clone();
+		TsidSort.parallelSort(common);
+		assertArrayEquals(expected, common);
+
+		// the same order of Tsid.compareTo()
+		for (int i = 1; i < actual.length; i++) {
+			assertTrue(Tsid.from(actual[i - 1]).compareTo(Tsid.from(actual[i])) <= 0);
+		}
+	}
+
+	private static void reference(final long[] tsids, final int fromIndex, final int toIndex) {
+		for (int i = fromIndex; i < toIndex; i++) {
+			tsids[i] ^= Long.MIN_VALUE;
+		}
+		Arrays.sort(tsids, fromIndex, toIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			tsids[i] ^= Long.MIN_VALUE;
+		}
+	}
+}
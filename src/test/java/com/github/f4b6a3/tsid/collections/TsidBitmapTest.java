@@ -0,0 +1,221 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidLayout;
+
+public class TsidBitmapTest {
+
+	// 256 values per container: arrays of up to 8 values, then bitmaps of 4 words
+	private static final TsidLayout SMALL = TsidLayout.builder().withNodeBits(0).withCounterBits(8).build();
+
+	@Test
+	public void testAddAndContains() {
+		final SplittableRandom random = new SplittableRandom(1);
+		for (TsidLayout layout : new TsidLayout[] { SMALL, TsidLayout.builder().build() }) {
+			final TsidBitmap bitmap = new TsidBitmap(layout);
+			final TreeSet<Long> expected = random(random, layout);
+			for (long tsid : expected) {
+				assertTrue(bitmap.add(tsid));
+			}
+			for (long tsid : expected.descendingSet()) {
+				assertFalse(bitmap.add(tsid));
+			}
+			assertSame(expected, bitmap);
+			final int lowBits = layout.getNodeBits() + layout.getCounterBits();
+			for (int i = 0; i < 10_000; i++) {
+				final long tsid = (random.nextLong(990, 1070) << lowBits) | random.nextInt(1 << lowBits);
+				assertEquals(expected.contains(tsid), bitmap.contains(tsid));
+			}
+
+			// adds to arrays, runs and bitmaps
+			bitmap.optimize();
+			assertSame(expected, bitmap);
+			for (long tsid : random(random, layout)) {
+				assertEquals(expected.add(tsid), bitmap.add(tsid));
+			}
+			assertSame(expected, bitmap);
+			bitmap.clear();
+			assertTrue(bitmap.isEmpty());
+			assertEquals(0, bitmap.cardinality());
+		}
+	}
+
+	@Test
+	public void testRunsOfFactory() {
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidBitmap bitmap = new TsidBitmap();
+		final TreeSet<Long> expected = new TreeSet<>();
+		for (int i = 0; i < 100_000; i++) {
+			if (i % 1000 == 0) {
+				now[0]++;
+			}
+			final long tsid = factory.create().toLong();
+			bitmap.add(tsid);
+			expected.add(tsid);
+		}
+		bitmap.optimize();
+		assertSame(expected, bitmap);
+
+		// about one run per millisecond
+		assertTrue(bitmap.toBytes().length < 100 * 30);
+		final long tsid = expected.first();
+		assertTrue(bitmap.add(tsid - 1));
+		assertFalse(bitmap.add(tsid - 1));
+		assertTrue(bitmap.contains(tsid - 1));
+	}
+
+	@Test
+	public void testRunsToBitmap() {
+		final TsidBitmap bitmap = new TsidBitmap(SMALL);
+		final TreeSet<Long> expected = new TreeSet<>();
+		for (long tsid = 0; tsid < 100; tsid++) {
+			bitmap.add(tsid);
+			expected.add(tsid);
+		}
+		bitmap.optimize(); // a single run
+
+		// scattered values take more as runs than as a bitmap of 4 words
+		for (long tsid = 102; tsid < 256; tsid += 2) {
+			bitmap.add(tsid);
+			expected.add(tsid);
+		}
+		assertSame(expected, bitmap);
+		assertTrue(bitmap.toBytes().length < 100);
+	}
+
+	@Test
+	public void testOperations() {
+		final SplittableRandom random = new SplittableRandom(2);
+		for (TsidLayout layout : new TsidLayout[] { SMALL, TsidLayout.builder().build() }) {
+			for (int i = 0; i < 20; i++) {
+				final TreeSet<Long> x = random(random, layout);
+				final TreeSet<Long> y = random(random, layout);
+				final TsidBitmap a = bitmap(layout, x, i % 2 == 0);
+				final TsidBitmap b = bitmap(layout, y, i % 3 == 0);
+
+				assertSame(filter(x, y::contains), TsidBitmap.and(a, b));
+				assertSame(filter(x, tsid -> !y.contains(tsid)), TsidBitmap.andNot(a, b));
+				assertSame(filter(y, tsid -> !x.contains(tsid)), TsidBitmap.andNot(b, a));
+				final TreeSet<Long> union = new TreeSet<>(x);
+				union.addAll(y);
+				assertSame(union, TsidBitmap.or(a, b));
+
+				// the operands are not modified
+				assertSame(x, a);
+				assertSame(y, b);
+			}
+		}
+	}
+
+	@Test
+	public void testBytes() {
+		final SplittableRandom random = new SplittableRandom(3);
+		for (TsidLayout layout : new TsidLayout[] { SMALL, TsidLayout.builder().build() }) {
+			final TreeSet<Long> expected = random(random, layout);
+			for (boolean optimize : new boolean[] { false, true }) {
+				final TsidBitmap bitmap = bitmap(layout, expected, optimize);
+				final byte[] bytes = bitmap.toBytes();
+				assertSame(expected, TsidBitmap.from(bytes));
+				try {
+					TsidBitmap.from(Arrays.copyOf(bytes, bytes.length - 1));
+					fail("Should throw an exception");
+				} catch (IllegalArgumentException e) {
+					// success
+				}
+			}
+		}
+		assertEquals(0, TsidBitmap.from(new TsidBitmap().toBytes()).cardinality());
+		try {
+			TsidBitmap.from(null);
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testOversizedRunContainer() {
+		// 31 low bits, one key, and a run container of 2^30 runs
+		final ByteBuffer buffer = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES + 1 + Integer.BYTES + 16);
+		buffer.put((byte) 31).putInt(1).putLong(0).put((byte) 1).putInt(1 << 30);
+		try {
+			TsidBitmap.from(buffer.array());
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testDifferentLayouts() {
+		try {
+			TsidBitmap.and(new TsidBitmap(), new TsidBitmap(SMALL));
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	private static TreeSet<Long> random(final SplittableRandom random, final TsidLayout layout) {
+		// sparse, dense and consecutive containers
+		final int lowBits = layout.getNodeBits() + layout.getCounterBits();
+		final TreeSet<Long> tsids = new TreeSet<>();
+		for (long key = 1000; key < 1064; key++) {
+			final int count = random.nextInt(4) == 0 ? random.nextInt(1 << Math.min(lowBits, 12)) : random.nextInt(8);
+			final int start = random.nextInt(1 << lowBits);
+			final boolean runs = random.nextBoolean();
+			for (int i = 0; i < count; i++) {
+				final int low = runs ? (start + i) & ((1 << lowBits) - 1) : random.nextInt(1 << lowBits);
+				tsids.add((key << lowBits) | low);
+			}
+		}
+		return tsids;
+	}
+
+	private static TsidBitmap bitmap(final TsidLayout layout, final TreeSet<Long> tsids, final boolean optimize) {
+		final TsidBitmap bitmap = new TsidBitmap(layout);
+		for (long tsid : tsids) {
+			bitmap.add(tsid);
+		}
+		if (optimize) {
+			bitmap.optimize();
+		}
+		return bitmap;
+	}
+
+	private static TreeSet<Long> filter(final TreeSet<Long> tsids, final LongPredicate predicate) {
+		final TreeSet<Long> filtered = new TreeSet<>();
+		for (long tsid : tsids) {
+			if (predicate.test(tsid)) {
+				filtered.add(tsid);
+			}
+		}
+		return filtered;
+	}
+
+	private static void assertSame(final TreeSet<Long> expected, final TsidBitmap bitmap) {
+		assertEquals(expected.size(), bitmap.cardinality());
+		final long[] array = bitmap.toArray();
+		final PrimitiveIterator.OfLong iterator = bitmap.iterator();
+		int i = 0;
+		for (long tsid : expected) {
+			assertEquals(tsid, array[i++]);
+			assertEquals(tsid, iterator.nextLong());
+			assertTrue(bitmap.contains(tsid));
+		}
+		assertFalse(iterator.hasNext());
+		assertEquals(expected.size(), bitmap.stream().count());
+	}
+}
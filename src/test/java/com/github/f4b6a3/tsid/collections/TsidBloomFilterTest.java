@@ -0,0 +1,204 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+
+public class TsidBloomFilterTest {
+
+	@Test
+	public void testNoFalseNegatives() {
+		for (int storage = 0; storage < 2; storage++) {
+
+			final long[] now = { System.currentTimeMillis() };
+			final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+			final TsidBloomFilter.Builder builder = TsidBloomFilter.builder().withRetention(Duration.ofSeconds(10))
+					.withBucketSize(Duration.ofSeconds(1)).withExpectedInsertions(10_000)
+					.withTimeFunction(() -> now[0]);
+			final TsidBloomFilter filter = storage == 0 ? builder.build() : builder.withOffHeap().build();
+
+			final long[] tsids = new long[50_000];
+			for (int i = 0; i < tsids.length; i++) {
+				if (i % 10 == 0) {
+					now[0]++;
+				}
+				tsids[i] = factory.create().toLong();
+				filter.add(tsids[i]);
+			}
+			for (int i = 0; i < tsids.length; i++) {
+				assertTrue(filter.mightContain(tsids[i]));
+				assertFalse(filter.add(tsids[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testFalsePositiveRate() {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidBloomFilter filter = TsidBloomFilter.builder().withRetention(Duration.ofMinutes(1))
+				.withBucketSize(Duration.ofMinutes(1)).withExpectedInsertions(100_000).withFalsePositiveRate(0.01)
+				.withTimeFunction(() -> now[0]).build();
+		assertEquals(7, filter.getHashes());
+
+		for (int i = 0; i < 100_000; i++) {
+			filter.add(factory.create().toLong());
+		}
+
+		int positives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain(factory.create().toLong())) {
+				positives++;
+			}
+		}
+		assertTrue("false positives: " + positives, positives > 500 && positives < 1500);
+	}
+
+	@Test
+	public void testRetention() {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidBloomFilter filter = TsidBloomFilter.builder().withRetention(Duration.ofSeconds(10))
+				.withBucketSize(Duration.ofSeconds(1)).withExpectedInsertions(1_000).withTimeFunction(() -> now[0])
+				.build();
+
+		final long tsid = factory.create().toLong();
+		assertTrue(filter.add(tsid));
+		now[0] += 10_000;
+		assertTrue(filter.mightContain(tsid));
+		now[0] += 1;
+		assertFalse(filter.mightContain(tsid));
+		assertFalse(filter.add(tsid));
+
+		// ahead of the clock by more than one bucket
+		final long ahead = factory.create().toLong();
+		now[0] -= 1_001;
+		assertFalse(filter.add(ahead));
+		assertFalse(filter.mightContain(ahead));
+	}
+
+	@Test
+	public void testBucketReuse() {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidBloomFilter filter = TsidBloomFilter.builder().withRetention(Duration.ofMillis(100))
+				.withBucketSize(Duration.ofMillis(10)).withExpectedInsertions(1_000).withTimeFunction(() -> now[0])
+				.build();
+
+		final long[] tsids = new long[100];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = factory.create().toLong();
+			assertTrue(filter.add(tsids[i]));
+		}
+
+		// the filter of the first bucket is cleared for a newer bucket
+		for (int i = 0; i < 20; i++) {
+			now[0] += 10;
+			filter.add(factory.create().toLong());
+		}
+		now[0] -= 100;
+		for (int i = 0; i < tsids.length; i++) {
+			assertFalse(filter.mightContain(tsids[i]));
+		}
+	}
+
+	@Test
+	public void testFile() throws IOException {
+		final Path file = Files.createTempFile("tsid", ".bloom");
+		try {
+			final long now = System.currentTimeMillis();
+			final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now).build();
+			final TsidBloomFilter.Builder builder = TsidBloomFilter.builder().withRetention(Duration.ofHours(1))
+					.withBucketSize(Duration.ofMinutes(10)).withExpectedInsertions(10_000).withFile(file)
+					.withTimeFunction(() -> now);
+
+			final long[] tsids = new long[10_000];
+			final TsidBloomFilter filter = builder.build();
+			for (int i = 0; i < tsids.length; i++) {
+				tsids[i] = factory.create().toLong();
+				filter.add(tsids[i]);
+			}
+			filter.flush();
+
+			// reopened
+			final TsidBloomFilter reopened = builder.build();
+			for (int i = 0; i < tsids.length; i++) {
+				assertTrue(reopened.mightContain(tsids[i]));
+			}
+
+			// other settings
+			try {
+				builder.withExpectedInsertions(20_000).build();
+				fail("Should throw an exception");
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testPositions() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final long[] sizes = { 64, 1000, TsidBloomFilter.NARROW_BITS, TsidBloomFilter.NARROW_BITS + 64, 1L << 33,
+				TsidBloomFilter.MAX_BITS };
+		for (long bits : sizes) {
+			long above = 0; // positions that a 32-bit hash can't reach
+			for (int n = 0; n < 100_000; n++) {
+				final long hash = random.nextLong();
+				final long hash2 = random.nextLong();
+				for (int i = 0; i < 16; i++) {
+					final long position = TsidBloomFilter.position(hash, hash2, i, bits);
+					assertTrue(position >= 0 && position < bits);
+					if (position >= TsidBloomFilter.NARROW_BITS) {
+						above++;
+					}
+				}
+			}
+			// about the share of the bits above 2^32
+			final double expected = Math.max(0, 1 - (double) TsidBloomFilter.NARROW_BITS / bits);
+			assertEquals(expected, above / 1_600_000.0, 0.01);
+		}
+	}
+
+	@Test
+	public void testInvalidSettings() {
+		try {
+			TsidBloomFilter.builder().build();
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidBloomFilter.builder().withRetention(Duration.ofDays(1)).withFalsePositiveRate(1).build();
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidBloomFilter.builder().withRetention(Duration.ofDays(1)).withExpectedInsertions(0).build();
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			TsidBloomFilter.builder().withRetention(Duration.ofDays(1)).withBucketSize(Duration.ZERO).build();
+			fail("Should throw an exception");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+
+public class TsidConcurrentMapTest {
+
+	private static final int THREADS = 8;
+
+	@Test
+	public void testRandomOperations() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final TsidConcurrentMap<Integer> map = new TsidConcurrentMap<>();
+		final Map<Long, Integer> expected = new HashMap<>();
+
+		for (int i = 0; i < 200_000; i++) {
+			// few distinct values, including zero, to have many collisions and removals
+			final long tsid = random.nextInt(5000) << 22;
+			final Integer value = i;
+			switch (random.nextInt(5)) {
+			case 0:
+				assertEquals(expected.put(tsid, value), map.put(tsid, value));
+				break;
+			case 1:
+				assertEquals(expected.remove(tsid), map.remove(tsid));
+				break;
+			case 2:
+				assertEquals(expected.putIfAbsent(tsid, value), map.putIfAbsent(tsid, value));
+				break;
+			case 3:
+				assertEquals(expected.computeIfAbsent(tsid, k -> value), map.computeIfAbsent(tsid, k -> value));
+				break;
+			default:
+				assertEquals(expected.containsKey(tsid), map.containsKey(tsid));
+				assertEquals(expected.get(tsid), map.get(tsid));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		final Map<Long, Integer> visited = new HashMap<>();
+		map.forEach((tsid, value) -> assertNull(visited.put(tsid, value)));
+		assertEquals(expected, visited);
+
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testNullValue() {
+		final TsidConcurrentMap<String> map = new TsidConcurrentMap<>();
+		try {
+			map.put(1, null);
+			fail();
+		} catch (NullPointerException e) {
+			// success
+		}
+		assertNull(map.computeIfAbsent(1, tsid -> null));
+		assertFalse(map.containsKey(1));
+	}
+
+	@Test
+	public void testConcurrentWrites() throws InterruptedException {
+
+		final TsidConcurrentMap<Long> map = new TsidConcurrentMap<>(0, 4);
+		final int perThread = 50_000;
+		final AtomicInteger missing = new AtomicInteger();
+
+		final Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final TsidFactory factory = TsidFactory.newInstance1024(t);
+			threads[t] = new Thread(() -> {
+				final long[] tsids = new long[perThread];
+				for (int i = 0; i < perThread; i++) {
+					tsids[i] = factory.create().toLong();
+					map.put(tsids[i], tsids[i]);
+					// removed and added again, to leave removed slots behind
+					if (i % 3 == 0) {
+						map.remove(tsids[i]);
+						map.put(tsids[i], tsids[i]);
+					}
+				}
+				for (long tsid : tsids) {
+					final Long value = map.get(tsid);
+					if (value == null || value != tsid) {
+						missing.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, missing.get());
+		assertEquals(THREADS * perThread, map.size());
+	}
+
+	@Test
+	public void testComputeIfAbsentOnce() throws InterruptedException {
+
+		final TsidConcurrentMap<Integer> map = new TsidConcurrentMap<>();
+		final AtomicInteger calls = new AtomicInteger();
+
+		final Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			threads[t] = new Thread(() -> {
+				for (long tsid = 0; tsid < 10_000; tsid++) {
+					map.computeIfAbsent(tsid, k -> calls.incrementAndGet());
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(10_000, calls.get());
+		assertEquals(10_000, map.size());
+	}
+
+	@Test
+	public void testComputeIfAbsentZeroWithConcurrentPut() throws InterruptedException {
+
+		final TsidConcurrentMap<Integer> map = new TsidConcurrentMap<>();
+		final Thread[] writer = new Thread[1];
+
+		// another thread puts TSID 0 while its value is computed as null
+		assertNull(map.computeIfAbsent(0, k -> {
+			writer[0] = new Thread(() -> map.put(0, 1));
+			writer[0].start();
+			try {
+				writer[0].join(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}));
+		writer[0].join();
+
+		assertEquals(Integer.valueOf(1), map.get(0));
+		assertEquals(1, map.size());
+	}
+}
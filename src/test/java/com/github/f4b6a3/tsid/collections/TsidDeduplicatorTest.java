@@ -0,0 +1,145 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidLayout;
+import com.github.f4b6a3.tsid.collections.TsidDeduplicator.Policy;
+
+public class TsidDeduplicatorTest {
+
+	@Test
+	public void testDuplicates() {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidDeduplicator dedup = TsidDeduplicator.builder().withWindow(Duration.ofMillis(100))
+				.withTimeFunction(() -> now[0]).build();
+
+		final long[] tsids = new long[10_000];
+		for (int i = 0; i < tsids.length; i++) {
+			if (i % 100 == 0) {
+				now[0]++;
+			}
+			tsids[i] = factory.create().toLong();
+			assertTrue(dedup.add(tsids[i]));
+			assertFalse(dedup.add(tsids[i]));
+		}
+
+		// repeated within the window or rejected for being too old
+		for (int i = 0; i < tsids.length; i++) {
+			assertFalse(dedup.add(tsids[i]));
+		}
+	}
+
+	@Test
+	public void testUncheckedPolicy() {
+		for (Policy policy : Policy.values()) {
+
+			final boolean expected = policy == Policy.PASS;
+			final long[] now = { System.currentTimeMillis() };
+			final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+			final TsidDeduplicator dedup = TsidDeduplicator.builder().withWindow(Duration.ofSeconds(1))
+					.withMaxSkew(Duration.ofMillis(10)).withMaxRate(2).withUncheckedPolicy(policy)
+					.withTimeFunction(() -> now[0]).build();
+
+			// older than the window
+			final long old = factory.create().toLong();
+			now[0] += 1_001;
+			assertEquals(expected, dedup.add(old));
+
+			// ahead of the clock by more than the max skew
+			now[0] -= 11;
+			final long ahead = factory.create().toLong();
+			now[0] -= 1_000;
+			assertEquals(expected, dedup.add(ahead));
+
+			// more than the maximum rate: buckets of at least 16 slots
+			now[0] += 1_000;
+			for (int i = 0; i < 16; i++) {
+				assertTrue(dedup.add(factory.create().toLong()));
+			}
+			assertEquals(expected, dedup.add(factory.create().toLong()));
+		}
+	}
+
+	@Test
+	public void testNewerTimeTakesBucket() {
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidDeduplicator dedup = TsidDeduplicator.builder().withWindow(Duration.ofMillis(10))
+				.withMaxSkew(Duration.ZERO).withTimeFunction(() -> now[0]).build();
+
+		final long tsid = factory.create().toLong();
+		assertTrue(dedup.add(tsid));
+		for (int i = 0; i < 100; i++) {
+			now[0]++;
+			assertTrue(dedup.add(factory.create().toLong()));
+		}
+		assertFalse(dedup.add(tsid)); // rejected as too old
+	}
+
+	@Test
+	public void testInvalidLayout() {
+		final TsidLayout layout = TsidLayout.builder().withNodeBits(16).withCounterBits(16).build();
+		try {
+			TsidDeduplicator.builder().withLayout(layout).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+
+		final TsidDeduplicator dedup = TsidDeduplicator.builder().withWindow(Duration.ofMinutes(1))
+				.withMaxRate(1 << 14).build();
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final long[] tsids = new long[100_000];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = factory.create().toLong();
+		}
+
+		final AtomicInteger added = new AtomicInteger();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (long tsid : tsids) {
+					if (dedup.add(tsid)) {
+						added.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(tsids.length, added.get());
+	}
+
+	@Test
+	public void testMaxRateBounds() {
+		// the buckets are allocated when used, so the largest ones can be built
+		final int max = TsidHash.MAX_CAPACITY / 2 - 1;
+		final TsidDeduplicator dedup = TsidDeduplicator.builder().withWindow(Duration.ofMillis(1))
+				.withMaxSkew(Duration.ZERO).withMaxRate(max).build();
+		assertEquals(0, dedup.getMaxMemory() % ((long) TsidHash.MAX_CAPACITY * Integer.BYTES));
+
+		for (int rate : new int[] { 0, max + 1, Integer.MAX_VALUE }) {
+			try {
+				TsidDeduplicator.builder().withMaxRate(rate).build();
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage().startsWith("Max rate out of range"));
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidLongs;
+
+public class TsidListTest {
+
+	@Test
+	public void testAddAndGet() {
+		final TsidList list = new TsidList(0);
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final long[] expected = new long[1000];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = factory.create().toLong();
+			list.add(expected[i]);
+		}
+		list.addAll(new long[] { 1, 2, 3 });
+
+		assertEquals(1003, list.size());
+		assertArrayEquals(expected, Arrays.copyOf(list.toArray(), 1000));
+		assertEquals(3, list.get(1002));
+		assertEquals(3, list.set(1002, 4));
+		assertEquals(4, list.get(1002));
+
+		try {
+			list.get(1003);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+
+		list.clear();
+		assertTrue(list.isEmpty());
+	}
+
+	@Test
+	public void testIteratorAndStream() {
+		final TsidList list = new TsidList();
+		for (long i = 0; i < 100; i++) {
+			list.add(i);
+		}
+
+		final PrimitiveIterator.OfLong iterator = list.iterator();
+		for (long i = 0; i < 100; i++) {
+			assertTrue(iterator.hasNext());
+			assertEquals(i, iterator.nextLong());
+		}
+		assertFalse(iterator.hasNext());
+
+		assertEquals(4950, list.stream().sum());
+		final long[] sum = { 0 };
+		list.forEach(tsid -> sum[0] += tsid);
+		assertEquals(4950, sum[0]);
+	}
+
+	@Test
+	public void testSortAndSearch() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final TsidList list = new TsidList();
+		for (int i = 0; i < 1000; i++) {
+			// negative values to test unsigned order
+			list.add(random.nextBoolean() ? random.nextInt(500) : -random.nextInt(500));
+		}
+
+		list.sort();
+		for (int i = 1; i < list.size(); i++) {
+			assertTrue(TsidLongs.compareUnsigned(list.get(i - 1), list.get(i)) <= 0);
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			final long key = random.nextBoolean() ? random.nextInt(600) : -random.nextInt(600);
+			final int index = list.binarySearch(key);
+			final int lower = list.lowerBound(key);
+			if (index >= 0) {
+				assertEquals(lower, index);
+				assertEquals(key, list.get(index));
+			} else {
+				assertEquals(lower, -index - 1);
+			}
+			assertTrue(lower == 0 || TsidLongs.compareUnsigned(list.get(lower - 1), key) < 0);
+			assertTrue(lower == list.size() || TsidLongs.compareUnsigned(list.get(lower), key) >= 0);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class TsidMapTest {
+
+	@Test
+	public void testRandomOperations() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final TsidMap<String> map = new TsidMap<>();
+		final Map<Long, String> expected = new HashMap<>();
+
+		for (int i = 0; i < 100_000; i++) {
+			// few distinct values, including zero, to have many collisions and removals
+			final long tsid = random.nextInt(2000) << 22;
+			final String value = random.nextInt(10) == 0 ? null : Integer.toString(i);
+			switch (random.nextInt(4)) {
+			case 0:
+				assertEquals(expected.put(tsid, value), map.put(tsid, value));
+				break;
+			case 1:
+				assertEquals(expected.remove(tsid), map.remove(tsid));
+				break;
+			case 2:
+				assertEquals(expected.computeIfAbsent(tsid, k -> value), map.computeIfAbsent(tsid, k -> value));
+				break;
+			default:
+				assertEquals(expected.containsKey(tsid), map.containsKey(tsid));
+				assertEquals(expected.get(tsid), map.get(tsid));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		final Map<Long, String> visited = new HashMap<>();
+		map.forEach((tsid, value) -> assertNull(visited.put(tsid, value)));
+		assertEquals(expected, visited);
+
+		final Set<Long> keys = new HashSet<>();
+		final PrimitiveIterator.OfLong iterator = map.keyIterator();
+		while (iterator.hasNext()) {
+			assertTrue(keys.add(iterator.nextLong()));
+		}
+		assertEquals(expected.keySet(), keys);
+		assertEquals(expected.size(), map.keyStream().count());
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(0));
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+
+public class TsidSetTest {
+
+	@Test
+	public void testRandomOperations() {
+		final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+		final TsidSet set = new TsidSet();
+		final Set<Long> expected = new HashSet<>();
+
+		for (int i = 0; i < 100_000; i++) {
+			// few distinct values, including zero, to have many collisions and removals
+			final long tsid = random.nextInt(2000) << 22;
+			switch (random.nextInt(3)) {
+			case 0:
+				assertEquals(expected.add(tsid), set.add(tsid));
+				break;
+			case 1:
+				assertEquals(expected.remove(tsid), set.remove(tsid));
+				break;
+			default:
+				assertEquals(expected.contains(tsid), set.contains(tsid));
+			}
+			assertEquals(expected.size(), set.size());
+		}
+
+		for (long tsid : expected) {
+			assertTrue(set.contains(tsid));
+		}
+		checkContents(expected, set);
+	}
+
+	@Test
+	public void testFactoryTsids() {
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final TsidSet set = new TsidSet(10);
+		final Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 100_000; i++) {
+			final long tsid = factory.create().toLong();
+			expected.add(tsid);
+			assertTrue(set.add(tsid));
+			assertFalse(set.add(tsid));
+		}
+		checkContents(expected, set);
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.iterator().hasNext());
+	}
+
+	@Test(timeout = 10_000)
+	public void testCopyInIterationOrder() {
+		// a smaller table filled in the order of a larger one must not cluster
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final TsidSet set = new TsidSet();
+		for (int i = 0; i < 1_000_000; i++) {
+			set.add(factory.create().toLong());
+		}
+		final TsidSet copy = new TsidSet();
+		set.forEach(copy::add);
+		assertEquals(set.size(), copy.size());
+		set.forEach(tsid -> assertTrue(copy.contains(tsid)));
+	}
+
+	@Test
+	public void testInvalidExpectedSize() {
+		try {
+			new TsidSet(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	private static void checkContents(final Set<Long> expected, final TsidSet set) {
+
+		final long[] array = set.toArray();
+		final long[] sorted = expected.stream().mapToLong(Long::longValue).sorted().toArray();
+		Arrays.sort(array);
+		assertArrayEquals(sorted, array);
+
+		final Set<Long> iterated = new HashSet<>();
+		final PrimitiveIterator.OfLong iterator = set.iterator();
+		while (iterator.hasNext()) {
+			assertTrue(iterated.add(iterator.nextLong()));
+		}
+		assertEquals(expected, iterated);
+
+		assertEquals(sorted.length, set.stream().count());
+		final Set<Long> visited = new HashSet<>();
+		set.forEach(tsid -> visited.add(tsid));
+		assertEquals(expected, visited);
+	}
+}
@@ -0,0 +1,169 @@
+package com.github.f4b6a3.tsid.collections;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.f4b6a3.tsid.TsidFactory;
+import com.github.f4b6a3.tsid.TsidLayout;
+
+public class TsidTtlCacheTest {
+
+	@Test
+	public void testExpiration() {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidTtlCache<String> cache = TsidTtlCache.<String>builder().withTtl(Duration.ofSeconds(10))
+				.withBucketSize(Duration.ofSeconds(1)).withTimeFunction(() -> now[0]).build();
+
+		final long first = factory.create().toLong();
+		assertNull(cache.put(first, "first"));
+		assertEquals("first", cache.get(first));
+		assertEquals("first", cache.putIfAbsent(first, "again"));
+
+		now[0] += 5_000;
+		final long second = factory.create().toLong();
+		assertNull(cache.putIfAbsent(second, "second"));
+		assertEquals(2, cache.size());
+
+		// the first TSID expires, but its bucket is not dropped yet
+		now[0] += 5_000;
+		assertNull(cache.get(first));
+		assertFalse(cache.containsKey(first));
+		assertEquals("second", cache.get(second));
+		assertNull(cache.put(first, "expired")); // not stored
+		assertEquals(2, cache.size());
+
+		// all the TSIDs of the first bucket are expired 1 second later
+		now[0] += 1_000;
+		assertEquals(1, cache.evictExpired());
+		assertEquals(1, cache.size());
+
+		assertEquals("second", cache.remove(second));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEvictionOnWrite() {
+
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0]).build();
+		final TsidTtlCache<Integer> cache = TsidTtlCache.<Integer>builder().withTtl(Duration.ofMillis(100))
+				.withTimeFunction(() -> now[0]).build();
+
+		for (int i = 0; i < 10_000; i++) {
+			cache.put(factory.create().toLong(), i);
+			if (i % 10 == 0) {
+				now[0]++;
+			}
+		}
+
+		// about 100 ms of 10 TSIDs each, the older ones were dropped on write
+		assertTrue(cache.size() >= 990);
+		assertTrue(cache.size() <= 1_010);
+	}
+
+	@Test
+	public void testFutureTsid() {
+		final long[] now = { System.currentTimeMillis() };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0] + 60_000).build();
+		final TsidTtlCache<String> cache = TsidTtlCache.<String>builder().withTtl(Duration.ofSeconds(1))
+				.withMaxSkew(Duration.ofMinutes(1)).withTimeFunction(() -> now[0]).build();
+
+		// TSIDs from a clock ahead live until their time plus the time to live
+		final long tsid = factory.create().toLong();
+		cache.put(tsid, "future");
+		now[0] += 60_000;
+		assertEquals(0, cache.evictExpired());
+		assertEquals("future", cache.get(tsid));
+		now[0] += 1_000;
+		assertNull(cache.get(tsid));
+	}
+
+	@Test
+	public void testMaxSkew() {
+		final long[] now = { System.currentTimeMillis() };
+		final long[] skew = { 0 };
+		final TsidFactory factory = TsidFactory.builder().withTimeFunction(() -> now[0] + skew[0]).build();
+		final TsidTtlCache<String> cache = TsidTtlCache.<String>builder().withTtl(Duration.ofSeconds(10))
+				.withTimeFunction(() -> now[0]).build();
+
+		// the default maximum skew is the time to live
+		skew[0] = 10_000;
+		final long ahead = factory.create().toLong();
+		assertNull(cache.put(ahead, "ahead"));
+		assertEquals("ahead", cache.get(ahead));
+
+		// TSIDs further ahead are not stored
+		skew[0] = 10_001;
+		final long bogus = factory.create().toLong();
+		assertNull(cache.put(bogus, "bogus"));
+		assertNull(cache.putIfAbsent(bogus, "bogus"));
+		assertNull(cache.get(bogus));
+		assertEquals(1, cache.size());
+
+		try {
+			TsidTtlCache.builder().withTtl(Duration.ofSeconds(1)).withMaxSkew(Duration.ofMillis(-1)).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testCustomLayout() {
+		final TsidLayout layout = TsidLayout.builder().withNodeBits(4).withCounterBits(16).build();
+		final TsidFactory factory = TsidFactory.builder().withLayout(layout).build();
+		final TsidTtlCache<String> cache = TsidTtlCache.<String>builder().withLayout(layout)
+				.withTtl(Duration.ofMinutes(1)).build();
+		final long tsid = factory.create().toLong();
+		cache.put(tsid, "value");
+		assertEquals("value", cache.get(tsid));
+	}
+
+	@Test
+	public void testInvalidTtl() {
+		for (Duration ttl : new Duration[] { null, Duration.ZERO, Duration.ofNanos(1) }) {
+			try {
+				TsidTtlCache.builder().withTtl(ttl).build();
+				fail();
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentPutIfAbsent() throws InterruptedException {
+
+		final TsidTtlCache<Integer> cache = TsidTtlCache.<Integer>builder().withTtl(Duration.ofMinutes(1)).build();
+		final TsidFactory factory = TsidFactory.newInstance1024(1);
+		final long[] tsids = new long[10_000];
+		for (int i = 0; i < tsids.length; i++) {
+			tsids[i] = factory.create().toLong();
+		}
+
+		final AtomicInteger added = new AtomicInteger();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (long tsid : tsids) {
+					if (cache.putIfAbsent(tsid, 1) == null) {
+						added.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(tsids.length, added.get());
+		assertEquals(tsids.length, cache.size());
+	}
+}